@@ -0,0 +1,363 @@
+package org.fl.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.ErrorManager;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Handler publishing the log records to a delegate handler (a FileHandler for instance) in a dedicated writer thread.
+// The logging threads only put the records in a bounded ring buffer: they do not format the records nor write them.
+// The writer thread takes the records by batches and publishes them to the delegate, without contention with the logging threads.
+// When the ring buffer is full, the overflow policy decides what happens to a new record
+// The LogContext of the logging thread is kept with the record, and restored in the writer thread when the record is published
+// The delegate is flushed once at the end of each batch: FileHandler and ConsoleHandler flush after each record,
+// use a BatchFileHandler or a BatchConsoleHandler as delegate so that the records of a batch are written together
+public class AsyncLogHandler extends Handler {
+
+	public enum OverflowPolicy {
+		// the logging thread waits for free space
+		BLOCK,
+		// the records with a level lower than the drop level are dropped, the others wait for free space
+		DROP_BELOW_LEVEL,
+		// the oldest record of the buffer is discarded to make space
+		DISCARD_OLDEST
+	}
+
+	public final static int DEFAULT_BUFFER_SIZE = 8192 ;
+	public final static int DEFAULT_BATCH_SIZE  = 256 ;
+
+	private final Handler delegate ;
+
+	// Ring buffer of the records waiting to be published
+	private final LogRecord[] ring ;
+	private final Map<String,String>[] contexts ;
+	private int head ;
+	private int count ;
+
+	private final ReentrantLock lock ;
+	private final Condition notEmpty ;
+	private final Condition notFull ;
+	private final Condition published ;
+
+	private final int batchSize ;
+	private final OverflowPolicy overflowPolicy ;
+	private final Level dropLevel ;
+
+	// The writer thread is publishing a batch taken out of the ring buffer
+	private boolean writing ;
+	private boolean closed ;
+	private long nbDroppedRecords ;
+
+	private final Thread writerThread ;
+
+	public AsyncLogHandler(Handler delegate) {
+		this(delegate, DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE, OverflowPolicy.BLOCK, Level.OFF) ;
+	}
+
+	// dropLevel: used with the DROP_BELOW_LEVEL policy only
+	public AsyncLogHandler(Handler delegate, int bufferSize, int batchSize, OverflowPolicy overflowPolicy, Level dropLevel) {
+
+		super() ;
+		if (delegate == null) {
+			throw new IllegalArgumentException("Null delegate handler") ;
+		}
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize) ;
+		}
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize) ;
+		}
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("Null overflow policy") ;
+		}
+		if ((overflowPolicy == OverflowPolicy.DROP_BELOW_LEVEL) && (dropLevel == null)) {
+			throw new IllegalArgumentException("Null drop level for the overflow policy " + overflowPolicy) ;
+		}
+		this.delegate 		= delegate ;
+		this.ring 			= new LogRecord[bufferSize] ;
+		this.contexts 		= newContexts(bufferSize) ;
+		this.batchSize 		= Math.min(batchSize, bufferSize) ;
+		this.overflowPolicy = overflowPolicy ;
+		this.dropLevel 		= dropLevel ;
+		head 			 = 0 ;
+		count 			 = 0 ;
+		writing 		 = false ;
+		closed 			 = false ;
+		nbDroppedRecords = 0 ;
+		lock 	  = new ReentrantLock() ;
+		notEmpty  = lock.newCondition() ;
+		notFull   = lock.newCondition() ;
+		published = lock.newCondition() ;
+
+		// same level and formatter as the delegate (the level is then set on both)
+		super.setLevel(delegate.getLevel()) ;
+		Formatter delegateFormatter = delegate.getFormatter() ;
+		if (delegateFormatter != null) {
+			super.setFormatter(delegateFormatter) ;
+		}
+
+		writerThread = new Thread(this::writeRecords, "AsyncLogHandler-" + delegate.getClass().getSimpleName()) ;
+		writerThread.setDaemon(true) ;
+		writerThread.start() ;
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+
+		if (! isLoggable(record)) {
+			return ;
+		}
+		// the source class and method are inferred from the stack of the calling thread, on the first get:
+		// it must be done here, not in the writer thread
+		record.getSourceClassName() ;
+		Map<String,String> context = LogContext.getContext() ;
+
+		lock.lock() ;
+		try {
+			while (count == ring.length) {
+				if (closed) {
+					return ;
+				}
+				if (overflowPolicy == OverflowPolicy.DISCARD_OLDEST) {
+					ring[head] = null ;
+					contexts[head] = null ;
+					head = (head + 1) % ring.length ;
+					count-- ;
+					nbDroppedRecords++ ;
+				} else if ((overflowPolicy == OverflowPolicy.DROP_BELOW_LEVEL) && (record.getLevel().intValue() < dropLevel.intValue())) {
+					nbDroppedRecords++ ;
+					return ;
+				} else {
+					notFull.awaitUninterruptibly() ;
+				}
+			}
+			if (closed) {
+				return ;
+			}
+			ring[(head + count) % ring.length] = record ;
+			contexts[(head + count) % ring.length] = context ;
+			count++ ;
+			notEmpty.signal() ;
+		} finally {
+			lock.unlock() ;
+		}
+	}
+
+	// Writer thread: publish the records by batches, until the handler is closed and the ring buffer empty
+	private void writeRecords() {
+
+		LogRecord[] batch = new LogRecord[batchSize] ;
+		Map<String,String>[] batchContexts = newContexts(batchSize) ;
+		while (true) {
+			int nbRecords = 0 ;
+			lock.lock() ;
+			try {
+				while ((count == 0) && (! closed)) {
+					notEmpty.awaitUninterruptibly() ;
+				}
+				if (count == 0) {
+					// closed and everything published
+					published.signalAll() ;
+					return ;
+				}
+				while ((nbRecords < batch.length) && (count > 0)) {
+					batch[nbRecords] = ring[head] ;
+					batchContexts[nbRecords++] = contexts[head] ;
+					ring[head] = null ;
+					contexts[head] = null ;
+					head = (head + 1) % ring.length ;
+					count-- ;
+				}
+				writing = true ;
+				notFull.signalAll() ;
+			} finally {
+				lock.unlock() ;
+			}
+
+			for (int i=0; i < nbRecords; i++) {
+				try {
+					LogContext.setContext(batchContexts[i]) ;
+					delegate.publish(batch[i]) ;
+				} catch (Exception e) {
+					reportError("Exception publishing a log record to the delegate handler", e, ErrorManager.WRITE_FAILURE) ;
+				}
+				batch[i] = null ;
+				batchContexts[i] = null ;
+			}
+			LogContext.clear() ;
+			try {
+				delegate.flush() ;
+			} catch (Exception e) {
+				reportError("Exception flushing the delegate handler", e, ErrorManager.FLUSH_FAILURE) ;
+			}
+
+			lock.lock() ;
+			try {
+				writing = false ;
+				published.signalAll() ;
+			} finally {
+				lock.unlock() ;
+			}
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Map<String,String>[] newContexts(int size) {
+		return (Map<String,String>[]) new Map[size] ;
+	}
+
+	// Wait until the records published before are written, then flush the delegate
+	@Override
+	public void flush() {
+
+		lock.lock() ;
+		try {
+			while (((count > 0) || writing) && writerThread.isAlive()) {
+				published.await(100, TimeUnit.MILLISECONDS) ;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt() ;
+		} finally {
+			lock.unlock() ;
+		}
+		delegate.flush() ;
+	}
+
+	// Write the records remaining in the ring buffer, stop the writer thread and close the delegate
+	@Override
+	public void close() throws SecurityException {
+
+		lock.lock() ;
+		try {
+			if (closed) {
+				return ;
+			}
+			closed = true ;
+			notEmpty.signalAll() ;
+			notFull.signalAll() ;
+		} finally {
+			lock.unlock() ;
+		}
+		try {
+			writerThread.join() ;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt() ;
+		}
+		delegate.close() ;
+	}
+
+	// The level is also set on the delegate
+	@Override
+	public synchronized void setLevel(Level newLevel) throws SecurityException {
+		super.setLevel(newLevel) ;
+		delegate.setLevel(newLevel) ;
+	}
+
+	// The formatter is also set on the delegate, that does the formatting
+	@Override
+	public synchronized void setFormatter(Formatter newFormatter) throws SecurityException {
+		super.setFormatter(newFormatter) ;
+		delegate.setFormatter(newFormatter) ;
+	}
+
+	public Handler getDelegate() {
+		return delegate ;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy ;
+	}
+
+	public Level getDropLevel() {
+		return dropLevel ;
+	}
+
+	public int getBufferSize() {
+		return ring.length ;
+	}
+
+	public int getBatchSize() {
+		return batchSize ;
+	}
+
+	// Number of records waiting in the ring buffer
+	public int getNbPendingRecords() {
+		lock.lock() ;
+		try {
+			return count ;
+		} finally {
+			lock.unlock() ;
+		}
+	}
+
+	// Number of records dropped or discarded because the ring buffer was full
+	public long getNbDroppedRecords() {
+		lock.lock() ;
+		try {
+			return nbDroppedRecords ;
+		} finally {
+			lock.unlock() ;
+		}
+	}
+
+	// FileHandler that does not flush after each record published: it is flushed by the writer thread at the end of each batch
+	// (the size limit of the log file is then checked on the bytes flushed)
+	public static class BatchFileHandler extends FileHandler {
+
+		private boolean publishing = false ;
+
+		public BatchFileHandler(String pattern, int limit, int count, boolean append) throws IOException {
+			super(pattern, limit, count, append) ;
+		}
+
+		@Override
+		public synchronized void publish(LogRecord record) {
+			publishing = true ;
+			try {
+				super.publish(record) ;
+			} finally {
+				publishing = false ;
+			}
+		}
+
+		// the flush of FileHandler.publish is skipped
+		@Override
+		public synchronized void flush() {
+			if (! publishing) {
+				super.flush() ;
+			}
+		}
+	}
+
+	// ConsoleHandler that does not flush after each record published: it is flushed by the writer thread at the end of each batch
+	public static class BatchConsoleHandler extends ConsoleHandler {
+
+		private boolean publishing = false ;
+
+		@Override
+		public synchronized void publish(LogRecord record) {
+			publishing = true ;
+			try {
+				super.publish(record) ;
+			} finally {
+				publishing = false ;
+			}
+		}
+
+		// the flush of ConsoleHandler.publish is skipped
+		@Override
+		public synchronized void flush() {
+			if (! publishing) {
+				super.flush() ;
+			}
+		}
+	}
+}
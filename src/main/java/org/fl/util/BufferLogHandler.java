@@ -1,9 +1,18 @@
 package org.fl.util;
 
 
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
 
+import org.fl.util.CompressionUtils.SupportedCompression;
+
 public class BufferLogHandler extends Handler  {
 	
 	private LogRecordMemoryBuffer logRecordBuffer ;
@@ -11,9 +20,19 @@ public class BufferLogHandler extends Handler  {
 	
 	public BufferLogHandler(String n, int nbRecords) {
 		
+		this(n, nbRecords, false) ;
+	}
+	
+	// compact: keep only the fields and formatted message of the log records (see LogRecordMemoryBuffer)
+	public BufferLogHandler(String n, int nbRecords, boolean compact) {
+		
 		super() ;
 		name = n ;
-		logRecordBuffer = new LogRecordMemoryBuffer(nbRecords) ;	
+		if (compact) {
+			logRecordBuffer = LogRecordMemoryBuffer.compactBuffer(nbRecords) ;
+		} else {
+			logRecordBuffer = new LogRecordMemoryBuffer(nbRecords) ;
+		}
 	}
 
 	@Override
@@ -38,6 +57,44 @@ public class BufferLogHandler extends Handler  {
 		return logRecordBuffer.getFormattedRecords() ;
 	}
 	
+	// Write the logs memorized selected by the filter (all the logs if the filter is null)
+	// Returns the buffer sequence to give to the filter of the next page (see LogRecordMemoryBuffer.writeFormattedRecords)
+	public long writeMemoryLogs(Writer out, MemoryLogFilter filter) throws IOException {
+		
+		return logRecordBuffer.writeFormattedRecords(out, filter) ;
+	}
+	
+	// Write the logs memorized selected by the filter, encoded with the charset and gzip compressed if requested
+	// The output stream is not closed (the gzip stream is finished)
+	public long writeMemoryLogs(OutputStream out, Charset charset, boolean gzip, MemoryLogFilter filter) throws IOException {
+		
+		OutputStream target = new NotClosedOutputStream(out) ;
+		if (gzip) {
+			target = CompressionUtils.getEncodedOutputStream(SupportedCompression.GZIP, target, 0) ;
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, charset))) {
+			return logRecordBuffer.writeFormattedRecords(writer, filter) ;
+		}
+	}
+	
+	// Closing the writers of writeMemoryLogs flushes and ends the compression without closing the output stream
+	private static class NotClosedOutputStream extends FilterOutputStream {
+		
+		private NotClosedOutputStream(OutputStream out) {
+			super(out) ;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len) ;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			out.flush() ;
+		}
+	}
+	
 	// Get all the logs memorized (in a StringBuilder) and delete them
 	public StringBuilder getMemoryAndDeleteLogs() {
 		
@@ -69,6 +126,10 @@ public class BufferLogHandler extends Handler  {
 		return (logRecordBuffer.remainingCapacity()*100)/logRecordBuffer.getMaxLogRecord() ;
 	}
 
+	public boolean isCompact() {
+		return logRecordBuffer.isCompact() ;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -1,20 +1,25 @@
 package org.fl.util;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.InflaterInputStream;
 
+import org.fl.util.io.ParallelGzipOutputStream;
+
 public class CompressionUtils {
 	
 	public static byte[] compressGzip(byte[] data, Logger logger) {
@@ -135,6 +140,37 @@ public class CompressionUtils {
 		}
 	}
 	
+	// Intermediate buffer size of the compressing output streams
+	private final static int OUTPUT_STREAM_BUFFER_SIZE = 65536 ;
+	
+	// Output stream compressing the data written with the compression algorithm, into the target output stream
+	// nbThreads = 0 : single compressed stream, compressed on the calling thread
+	// nbThreads > 0 : GZIP only, the data is compressed by blocks on nbThreads threads, each block as an independent gzip member
+	//                 (see ParallelGzipOutputStream)
+	public static OutputStream getEncodedOutputStream(SupportedCompression compressAlgo, OutputStream target, int nbThreads) throws IOException {
+		
+		if (compressAlgo == null) {
+			throw new IllegalArgumentException("Null compression algorithm in getEncodedOutputStream") ;
+		} else if (nbThreads < 0) {
+			throw new IllegalArgumentException("Invalid number of compression threads: " + nbThreads) ;
+		}
+		switch (compressAlgo) {
+		case GZIP:
+			if (nbThreads > 0) {
+				return new ParallelGzipOutputStream(target, nbThreads) ;
+			} else {
+				return new GZIPOutputStream(target, OUTPUT_STREAM_BUFFER_SIZE) ;
+			}
+		case DEFLATE:
+			if (nbThreads > 0) {
+				throw new IllegalArgumentException("Parallel compression is only supported for GZIP") ;
+			}
+			return new DeflaterOutputStream(new BufferedOutputStream(target, OUTPUT_STREAM_BUFFER_SIZE)) ;
+		default:
+			throw new IllegalArgumentException("Unexpected compression scheme: " + compressAlgo) ;
+		}
+	}
+	
 	public static ByteBuffer decompressInputStream(InputStream compressed, SupportedCompression compressSchema, int buffSize, Logger logger) {
 		
 		try (InputStream targetStream = getDecodedInputStream(compressSchema, compressed, logger)) {
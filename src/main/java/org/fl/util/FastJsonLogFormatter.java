@@ -0,0 +1,247 @@
+package org.fl.util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+// JSON log formatter: one JSON object per line, with the same field names as JsonLogFormatter, and:
+// - the strings are escaped (quote, backslash and control chars)
+// - the date is ISO 8601, with the offset of the default zone, and the number is a JSON number
+// - the message is formatted with its parameters, the exception is the toString of the throwable
+// - optional fields: the full stack of the throwable and of its causes, the thread id, the LogContext of the logging thread
+// Each thread formats in its own reusable buffer, and the date up to the second is computed only once per second and thread
+public class FastJsonLogFormatter extends Formatter {
+
+	private final static DateTimeFormatter DATE_PREFIX_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.") ;
+	private final static DateTimeFormatter DATE_SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("XXX") ;
+	
+	private final static String DATE         = "{\"date\":\"" ;
+	private final static String SEQ_NUM      = "\",\"number\":" ;
+	private final static String LOGGER_NAME  = ",\"logger name\":" ;
+	private final static String LEVEL        = ",\"level\":" ;
+	private final static String CLASS_NAME   = ",\"class\":" ;
+	private final static String METHOD_NAME  = ",\"method\":" ;
+	private final static String MESSAGE      = ",\"message\":" ;
+	private final static String THREAD_ID    = ",\"threadId\":" ;
+	private final static String EXCEPTION    = ",\"exception\":" ;
+	private final static String STACK        = ",\"stack\":" ;
+	private final static String CONTEXT      = ",\"context\":{" ;
+	private final static String END          = "}\n" ;
+	private final static String NULL         = "null" ;
+	
+	private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray() ;
+	
+	private static int MAX_PRINTED_CAUSE_LEVEL = 20 ;
+	
+	private final static int INITIAL_BUFFER_SIZE = 512 ;
+	
+	// A buffer larger than this (after a large message or stack) is not kept
+	private final static int MAX_KEPT_BUFFER_SIZE = 64*1024 ;
+	
+	// Buffer and date cache of a thread
+	private static final class ThreadBuffer {
+		
+		private StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE) ;
+		
+		// Second of the cached date, and the date before and after the milliseconds
+		private long second = Long.MIN_VALUE ;
+		private String datePrefix ;
+		private String dateSuffix ;
+	}
+	
+	private static final ThreadLocal<ThreadBuffer> threadBuffers = ThreadLocal.withInitial(ThreadBuffer::new) ;
+	
+	private boolean withStack ;
+	private boolean withThreadId ;
+	private boolean withContext ;
+	
+	public FastJsonLogFormatter() {
+		super() ;
+		withStack 	 = false ;
+		withThreadId = false ;
+		withContext  = false ;
+	}
+
+	@Override
+	public String format(LogRecord record) {
+		
+		ThreadBuffer threadBuffer = threadBuffers.get() ;
+		StringBuilder sb = threadBuffer.buffer ;
+		sb.setLength(0) ;
+		
+		sb.append(DATE) ;
+		appendDate(threadBuffer, record.getMillis()) ;
+		sb.append(SEQ_NUM).append(record.getSequenceNumber()) ;
+		sb.append(LOGGER_NAME) ;
+		appendString(sb, record.getLoggerName()) ;
+		sb.append(LEVEL) ;
+		appendString(sb, record.getLevel().getName()) ;
+		sb.append(CLASS_NAME) ;
+		appendString(sb, record.getSourceClassName()) ;
+		sb.append(METHOD_NAME) ;
+		appendString(sb, record.getSourceMethodName()) ;
+		sb.append(MESSAGE) ;
+		appendString(sb, formatMessage(record)) ;
+		if (withThreadId) {
+			sb.append(THREAD_ID).append(record.getLongThreadID()) ;
+		}
+		
+		Throwable thrown = record.getThrown() ;
+		if (thrown != null) {
+			sb.append(EXCEPTION) ;
+			appendString(sb, thrown.toString()) ;
+			if (withStack) {
+				sb.append(STACK).append('"') ;
+				appendStack(sb, thrown) ;
+				sb.append('"') ;
+			}
+		}
+		
+		if (withContext) {
+			Map<String,String> context = LogContext.getContext() ;
+			if (! context.isEmpty()) {
+				sb.append(CONTEXT) ;
+				boolean first = true ;
+				for (Map.Entry<String,String> contextEntry : context.entrySet()) {
+					if (! first) {
+						sb.append(',') ;
+					}
+					first = false ;
+					appendString(sb, contextEntry.getKey()) ;
+					sb.append(':') ;
+					appendString(sb, contextEntry.getValue()) ;
+				}
+				sb.append('}') ;
+			}
+		}
+		sb.append(END) ;
+		
+		String result = sb.toString() ;
+		if (sb.capacity() > MAX_KEPT_BUFFER_SIZE) {
+			threadBuffer.buffer = new StringBuilder(INITIAL_BUFFER_SIZE) ;
+		}
+		return result ;
+	}
+	
+	private static void appendDate(ThreadBuffer threadBuffer, long millis) {
+		
+		long second = Math.floorDiv(millis, 1000) ;
+		if (second != threadBuffer.second) {
+			ZonedDateTime dateTime = ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault()) ;
+			threadBuffer.datePrefix = DATE_PREFIX_FORMATTER.format(dateTime) ;
+			threadBuffer.dateSuffix = DATE_SUFFIX_FORMATTER.format(dateTime) ;
+			threadBuffer.second 	= second ;
+		}
+		int milliOfSecond = Math.floorMod(millis, 1000) ;
+		threadBuffer.buffer.append(threadBuffer.datePrefix)
+			.append((char)('0' + milliOfSecond/100))
+			.append((char)('0' + (milliOfSecond/10)%10))
+			.append((char)('0' + milliOfSecond%10))
+			.append(threadBuffer.dateSuffix) ;
+	}
+	
+	// Append a JSON string (or null)
+	private static void appendString(StringBuilder sb, String s) {
+		if (s == null) {
+			sb.append(NULL) ;
+		} else {
+			sb.append('"') ;
+			appendEscaped(sb, s) ;
+			sb.append('"') ;
+		}
+	}
+	
+	// Append the chars of s, escaped for a JSON string. The runs of chars without escape are appended at once
+	static void appendEscaped(StringBuilder sb, CharSequence s) {
+		
+		int length = s.length() ;
+		int start = 0 ;
+		for (int i=0; i < length; i++) {
+			char c = s.charAt(i) ;
+			if ((c < ' ') || (c == '"') || (c == '\\')) {
+				sb.append(s, start, i) ;
+				start = i + 1 ;
+				switch (c) {
+				case '"':
+					sb.append("\\\"") ;
+					break ;
+				case '\\':
+					sb.append("\\\\") ;
+					break ;
+				case '\n':
+					sb.append("\\n") ;
+					break ;
+				case '\r':
+					sb.append("\\r") ;
+					break ;
+				case '\t':
+					sb.append("\\t") ;
+					break ;
+				case '\b':
+					sb.append("\\b") ;
+					break ;
+				case '\f':
+					sb.append("\\f") ;
+					break ;
+				default:
+					sb.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]) ;
+				}
+			}
+		}
+		sb.append(s, start, length) ;
+	}
+	
+	// Append the stack of the throwable and of its causes, escaped, as printed by printStackTrace
+	private static void appendStack(StringBuilder sb, Throwable thrown) {
+		
+		Throwable current = thrown ;
+		int causeLevel = 0 ;
+		while (current != null) {
+			if (causeLevel > 0) {
+				sb.append("Caused by: ") ;
+			}
+			appendEscaped(sb, current.toString()) ;
+			for (StackTraceElement stackElem : current.getStackTrace()) {
+				sb.append("\\n\\tat ") ;
+				appendEscaped(sb, stackElem.toString()) ;
+			}
+			sb.append("\\n") ;
+			current = current.getCause() ;
+			causeLevel++ ;
+			if ((current != null) && (causeLevel >= MAX_PRINTED_CAUSE_LEVEL)) {
+				sb.append("More causes omitted\\n") ;
+				break ;
+			}
+		}
+	}
+
+	public boolean isWithStack() {
+		return withStack;
+	}
+
+	// Add the full stack of the throwable and of its causes
+	public void setWithStack(boolean withStack) {
+		this.withStack = withStack;
+	}
+
+	public boolean isWithThreadId() {
+		return withThreadId;
+	}
+
+	public void setWithThreadId(boolean withThreadId) {
+		this.withThreadId = withThreadId;
+	}
+
+	public boolean isWithContext() {
+		return withContext;
+	}
+
+	// Add the LogContext of the logging thread
+	public void setWithContext(boolean withContext) {
+		this.withContext = withContext;
+	}
+}
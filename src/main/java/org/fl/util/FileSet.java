@@ -1,24 +1,45 @@
 package org.fl.util;
 
 import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FileSet {
 
+	// Files found by the parallel traversal, waiting to be taken by the stream
+	private static final int PARALLEL_QUEUE_SIZE = 4096 ;
+	private static final long PARALLEL_PUT_RETRY_MILLIS = 100 ;
+	
+	// End of the parallel traversal. Compared by reference
+	private static final Path END_OF_FILES = Path.of("") ;
+
 	// Logger
 	private Logger fLog;
 	
@@ -28,6 +49,9 @@ public class FileSet {
 	// Set is recursive or not
 	private boolean recursive ;
 	
+	// Number of threads walking the subdirectories (1: the directories are walked one after the other)
+	private int traversalParallelism ;
+	
 	// Filters to include and exclude files
 	private List<PathMatcher> includeMatcher ;
 	private List<PathMatcher> excludeMatcher ;
@@ -57,6 +81,7 @@ public class FileSet {
 		
 		// Recursive by default
 		recursive = true ;
+		traversalParallelism = 1 ;
 		
 		try {
 			rootPath = root ;
@@ -109,6 +134,16 @@ public class FileSet {
 		// visitFile method is called each time a file is visited
 		filterFile = new SimpleFileVisitor<Path>() {
 			
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				
+				if (isPrunedDirectory(dir)) {
+					fLog.finest(() -> "Directory excluded: " + dir) ;
+					return FileVisitResult.SKIP_SUBTREE ;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+			
 			@Override
 			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
 				
@@ -132,6 +167,10 @@ public class FileSet {
 			@Override
 			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
 				
+				if (isPrunedDirectory(dir)) {
+					fLog.finest(() -> "Directory excluded: " + dir) ;
+					return FileVisitResult.SKIP_SUBTREE ;
+				}
 				// check if the file is a directory
 				if (attrs.isDirectory()) {
 					fLog.finest(() -> "Directory included: " + dir) ;
@@ -160,6 +199,15 @@ public class FileSet {
 		this.recursive = recursive;
 	}
 
+	// Walk the subdirectories on a fork join pool of traversalParallelism threads (for fileStream and getFileList)
+	// The files are then found in no particular order
+	public void setTraversalParallelism(int traversalParallelism) {
+		if (traversalParallelism < 1) {
+			throw new IllegalArgumentException("Invalid traversal parallelism: " + traversalParallelism) ;
+		}
+		this.traversalParallelism = traversalParallelism;
+	}
+
 
 	public boolean fileMatch(Path file) {
 		
@@ -183,12 +231,301 @@ public class FileSet {
 		return (included && !excluded) ;
 	}
 	
+	// A directory whose name matches an exclude filter is pruned: nothing under it is in the set (the root is never pruned)
+	private boolean isPrunedDirectory(Path dir) {
+		
+		if ((excludeMatcher == null) || dir.equals(rootPath) || (dir.getFileName() == null)) {
+			return false ;
+		}
+		for (PathMatcher eMatch : excludeMatcher) {
+			if (eMatch.matches(dir.getFileName())) {
+				return true ;
+			}
+		}
+		return false ;
+	}
+	
 	public List<Path> getFileList() {
 		
-		scan(filterFile) ;
+		if (traversalParallelism > 1) {
+			try (Stream<Path> files = fileStream()) {
+				fileList = new ArrayList<>(files.toList()) ;
+			}
+		} else {
+			scan(filterFile) ;
+		}
 		return fileList ;
 	}
 	
+	// Files of the set, given as they are found, without building the list of all the files (same files as getFileList)
+	// The stream must be closed (try with resources) if it is not read to the end.
+	// The directory and file errors are logged, and the walk goes on
+	public Stream<Path> fileStream() {
+		
+		if ((rootPath == null) || (! Files.isDirectory(rootPath)) || (! Files.isReadable(rootPath))) {
+			fLog.severe("Directory does not exist or is not readable: " + rootPath) ;
+			return Stream.empty() ;
+		}
+		FileIterator fileIterator = (traversalParallelism > 1) ? new ParallelFileIterator() : new WalkFileIterator() ;
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(fileIterator, Spliterator.NONNULL | Spliterator.DISTINCT), false)
+				.onClose(fileIterator::close) ;
+	}
+	
+	private interface FileIterator extends Iterator<Path> {
+		void close() ;
+	}
+	
+	// Attributes of the path, following the links as the scan does (null if they cannot be read)
+	private BasicFileAttributes readAttributes(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class) ;
+		} catch (IOException e) {
+			try {
+				// broken link
+				return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS) ;
+			} catch (IOException e1) {
+				fLog.log(Level.SEVERE, "Exception reading attributes of " + path, e) ;
+				return null ;
+			}
+		}
+	}
+	
+	// A sub directory is walked if the set is recursive, and if the directory is not pruned and not a link to one of its ancestors
+	private boolean isWalked(Path dir, BasicFileAttributes attrs, List<Object> ancestorsKeys) {
+		
+		if ((! recursive) || isPrunedDirectory(dir)) {
+			return false ;
+		}
+		if ((attrs.fileKey() != null) && ancestorsKeys.contains(attrs.fileKey())) {
+			fLog.warning("Directory loop on " + dir) ;
+			return false ;
+		}
+		return true ;
+	}
+	
+	private boolean isFileOfSet(Path file, BasicFileAttributes attrs) {
+		return attrs.isRegularFile() && fileMatch(file.getFileName()) ;
+	}
+	
+	// Depth first walk on the calling thread, one directory stream open for each level
+	private class WalkFileIterator implements FileIterator {
+		
+		private final ArrayDeque<Iterator<Path>> entries ;
+		private final ArrayDeque<DirectoryStream<Path>> directoryStreams ;
+		private final ArrayDeque<Path> directories ;
+		private final List<Object> ancestorsKeys ;
+		private Path nextFile ;
+		
+		private WalkFileIterator() {
+			entries 		 = new ArrayDeque<>() ;
+			directoryStreams = new ArrayDeque<>() ;
+			directories 	 = new ArrayDeque<>() ;
+			ancestorsKeys 	 = new ArrayList<>() ;
+			nextFile 		 = null ;
+			BasicFileAttributes rootAttrs = readAttributes(rootPath) ;
+			if (rootAttrs != null) {
+				open(rootPath, rootAttrs) ;
+			}
+		}
+		
+		private void open(Path dir, BasicFileAttributes attrs) {
+			try {
+				DirectoryStream<Path> directoryStream = Files.newDirectoryStream(dir) ;
+				directoryStreams.push(directoryStream) ;
+				directories.push(dir) ;
+				entries.push(directoryStream.iterator()) ;
+				ancestorsKeys.add(attrs.fileKey()) ;
+			} catch (IOException e) {
+				fLog.log(Level.SEVERE, "Exception opening directory " + dir, e) ;
+			}
+		}
+		
+		private void closeCurrentDirectory() {
+			entries.pop() ;
+			directories.pop() ;
+			ancestorsKeys.remove(ancestorsKeys.size() - 1) ;
+			try {
+				directoryStreams.pop().close() ;
+			} catch (IOException e) {
+				fLog.log(Level.SEVERE, "Exception closing directory stream", e) ;
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			
+			while ((nextFile == null) && (! entries.isEmpty())) {
+				Iterator<Path> currentEntries = entries.peek() ;
+				Path path ;
+				try {
+					path = currentEntries.hasNext() ? currentEntries.next() : null ;
+				} catch (DirectoryIteratorException e) {
+					// read error in the middle of the directory: the walk goes on with the next directory
+					fLog.log(Level.SEVERE, "Exception walking directory " + directories.peek(), e.getCause()) ;
+					path = null ;
+				}
+				if (path == null) {
+					closeCurrentDirectory() ;
+				} else {
+					BasicFileAttributes attrs = readAttributes(path) ;
+					if (attrs == null) {
+						continue ;
+					} else if (attrs.isDirectory()) {
+						if (isWalked(path, attrs, ancestorsKeys)) {
+							open(path, attrs) ;
+						}
+					} else if (isFileOfSet(path, attrs)) {
+						nextFile = path ;
+					}
+				}
+			}
+			return nextFile != null ;
+		}
+		
+		@Override
+		public Path next() {
+			if (! hasNext()) {
+				throw new NoSuchElementException() ;
+			}
+			Path file = nextFile ;
+			nextFile = null ;
+			return file ;
+		}
+		
+		@Override
+		public void close() {
+			while (! entries.isEmpty()) {
+				closeCurrentDirectory() ;
+			}
+		}
+	}
+	
+	// The directories are walked by tasks on a fork join pool, one task for each directory.
+	// The files found are put in a bounded queue, taken by the iterator
+	private class ParallelFileIterator implements FileIterator {
+		
+		private final ArrayBlockingQueue<Path> foundFiles ;
+		private final ForkJoinPool pool ;
+		private volatile boolean closed ;
+		private Path nextFile ;
+		private boolean endOfFiles ;
+		
+		private ParallelFileIterator() {
+			foundFiles = new ArrayBlockingQueue<>(PARALLEL_QUEUE_SIZE) ;
+			pool 	   = new ForkJoinPool(traversalParallelism) ;
+			closed 	   = false ;
+			nextFile   = null ;
+			endOfFiles = false ;
+			BasicFileAttributes rootAttrs = readAttributes(rootPath) ;
+			DirectoryTask rootTask = (rootAttrs == null) ? null : new DirectoryTask(rootPath, Collections.singletonList(rootAttrs.fileKey())) ;
+			pool.execute(() -> {
+				try {
+					if (rootTask != null) {
+						rootTask.invoke() ;
+					}
+				} finally {
+					put(END_OF_FILES) ;
+				}
+			}) ;
+		}
+		
+		// Wait for space in the queue, unless the iterator is closed
+		private void put(Path file) {
+			try {
+				while ((! closed) && (! foundFiles.offer(file, PARALLEL_PUT_RETRY_MILLIS, TimeUnit.MILLISECONDS))) ;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt() ;
+			}
+		}
+		
+		private class DirectoryTask extends RecursiveAction {
+			
+			private static final long serialVersionUID = 1L;
+			
+			private final Path dir ;
+			private final List<Object> ancestorsKeys ;
+			
+			private DirectoryTask(Path d, List<Object> ak) {
+				dir 		  = d ;
+				ancestorsKeys = ak ;
+			}
+			
+			@Override
+			protected void compute() {
+				
+				List<DirectoryTask> subDirectories = new ArrayList<>() ;
+				try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(dir)) {
+					for (Path path : directoryStream) {
+						if (closed) {
+							return ;
+						}
+						BasicFileAttributes attrs = readAttributes(path) ;
+						if (attrs == null) {
+							continue ;
+						} else if (attrs.isDirectory()) {
+							if (isWalked(path, attrs, ancestorsKeys)) {
+								List<Object> subAncestorsKeys = new ArrayList<>(ancestorsKeys) ;
+								subAncestorsKeys.add(attrs.fileKey()) ;
+								DirectoryTask subDirectory = new DirectoryTask(path, subAncestorsKeys) ;
+								subDirectory.fork() ;
+								subDirectories.add(subDirectory) ;
+							}
+						} else if (isFileOfSet(path, attrs)) {
+							put(path) ;
+						}
+					}
+				} catch (IOException e) {
+					fLog.log(Level.SEVERE, "Exception walking directory " + dir, e) ;
+				} catch (DirectoryIteratorException e) {
+					// read error in the middle of the directory
+					fLog.log(Level.SEVERE, "Exception walking directory " + dir, e.getCause()) ;
+				}
+				for (DirectoryTask subDirectory : subDirectories) {
+					subDirectory.join() ;
+				}
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			
+			if ((nextFile == null) && (! endOfFiles)) {
+				try {
+					Path file = foundFiles.take() ;
+					if (file == END_OF_FILES) {
+						endOfFiles = true ;
+						pool.shutdown() ;
+					} else {
+						nextFile = file ;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt() ;
+					close() ;
+				}
+			}
+			return nextFile != null ;
+		}
+		
+		@Override
+		public Path next() {
+			if (! hasNext()) {
+				throw new NoSuchElementException() ;
+			}
+			Path file = nextFile ;
+			nextFile = null ;
+			return file ;
+		}
+		
+		// The tasks end at their next file, once closed
+		@Override
+		public void close() {
+			closed 	   = true ;
+			endOfFiles = true ;
+			pool.shutdown() ;
+			foundFiles.clear() ;
+		}
+	}
+	
 	public List<Path> getDirectyList() {
 		
 		scan(filterDirectory) ;
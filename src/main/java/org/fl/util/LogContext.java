@@ -0,0 +1,53 @@
+package org.fl.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Context of the logs of the current thread (as a mapped diagnostic context): key-value pairs added to the log records
+// by the formatters that support it (FastJsonLogFormatter).
+// The context is an immutable map, copied on each change, so that a log handler can keep it cheaply with a log record
+// (the AsyncLogHandler restores the context of the logging thread in its writer thread)
+public class LogContext {
+
+	private static final ThreadLocal<Map<String,String>> context = ThreadLocal.withInitial(Collections::emptyMap) ;
+	
+	private LogContext() {
+	}
+	
+	public static void put(String key, String value) {
+		if (key == null) {
+			throw new IllegalArgumentException("Null log context key") ;
+		}
+		Map<String,String> newContext = new LinkedHashMap<String,String>(context.get()) ;
+		newContext.put(key, value) ;
+		context.set(Collections.unmodifiableMap(newContext)) ;
+	}
+	
+	public static void remove(String key) {
+		Map<String,String> currentContext = context.get() ;
+		if (currentContext.containsKey(key)) {
+			Map<String,String> newContext = new LinkedHashMap<String,String>(currentContext) ;
+			newContext.remove(key) ;
+			context.set(Collections.unmodifiableMap(newContext)) ;
+		}
+	}
+	
+	public static void clear() {
+		context.remove() ;
+	}
+	
+	// Immutable context of the current thread
+	public static Map<String,String> getContext() {
+		return context.get() ;
+	}
+	
+	// Replace the context of the current thread by a context got from another thread
+	static void setContext(Map<String,String> otherContext) {
+		if ((otherContext == null) || otherContext.isEmpty()) {
+			context.remove() ;
+		} else {
+			context.set(otherContext) ;
+		}
+	}
+}
@@ -1,12 +1,29 @@
 package org.fl.util;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.VarHandle;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
+// Memory buffer of the last log records: a fixed size ring, where a new record overwrites the oldest one.
+// The records are indexed by a sequence counter. The logging threads add records without lock:
+// each one takes the next sequence number and writes its record in the slot of that sequence.
+// The readers take a snapshot of the records present, without blocking the logging threads
+//
+// In compact capture mode, the LogRecord is not kept (nor its parameters and throwable): only its primitive fields, 
+// the interned names, the level and the formatted message are kept in preallocated slots.
+// The summary of the throwable is rendered once, when the record is added, in a char arena shared by all the records.
+// The arena is circular: the summary of an old record may be overwritten by more recent summaries
 public class LogRecordMemoryBuffer {
 
 	private final static String datePattern = "uuuu-MM-dd HH:mm:ss.SSS " ;
@@ -14,113 +31,571 @@ public class LogRecordMemoryBuffer {
 	private final static String NEWLINE   = "\n" ;
 	private final static String SEPARATOR = ": " ;
 	
+	private final static String THROWN_OVERWRITTEN = "(exception details overwritten in the memory buffer)" ;
+	private final static String THROWN_TRUNCATED   = "\n(truncated)\n" ;
+	
 	private static int MAX_PRINTED_CAUSE_LEVEL = 20 ;
 	
 	private static int MEAN_PRINTED_LOG_RECORD_SIZE = 200 ;
 	
-	int maxLogRecord ;
+	// The records written by writeFormattedRecords are formatted in a buffer of this size, then written
+	private final static int WRITE_BUFFER_SIZE = 8192 ;
+	
+	// Default size of the throwable arena of the compact mode, per record, and maximum default size of the arena
+	public final static int DEFAULT_THROWABLE_CHARS_PER_RECORD = 64 ;
+	private final static int MAX_DEFAULT_THROWABLE_ARENA_SIZE = 16*1024*1024 ;
+	
+	// A throwable summary takes at most this part of the arena, so that one deep stack does not overwrite all the others.
+	// A longer summary is cut after the header and the first frames that fit, and ends with THROWN_TRUNCATED
+	private final static int THROWABLE_SUMMARY_ARENA_DIVISOR = 4 ;
+	
+	// Throwable arena size of the compact mode that follows the maximum number of records (default arena)
+	private final static int ARENA_PER_RECORD = -1 ;
+	
+	// Maximum number of interned names in compact mode. The names are not interned beyond
+	private final static int MAX_INTERNED_NAMES = 4096 ;
+	
+	// Sequence of a slot never written
+	private final static long EMPTY = -1 ;
+	// Sequence of a slot being written
+	private final static long WRITING = Long.MIN_VALUE ;
+	
+	// A record read from a slot. In full capture mode, the throwable is rendered when the record is formatted
+	private static final class Entry {
+		
+		private long millis ;
+		private long sequenceNumber ;
+		private String loggerName ;
+		private String sourceClassName ;
+		private String sourceMethodName ;
+		private Level level ;
+		private String message ;
+		private Throwable thrown ;
+		private final StringBuilder thrownSummary = new StringBuilder() ;
+		private boolean thrownOverwritten ;
+	}
+	
+	// Slots of the records, preallocated.
+	// The sequence of a slot is the sequence of the record it holds: a reader reads the sequence, the record and then again the sequence,
+	// and keeps the record only if the sequence has not changed (as a seqlock). A writer sets the sequence to WRITING while it writes the record
+	private abstract class Ring {
+		
+		protected final int capacity ;
+		protected final AtomicLongArray sequences ;
+		
+		// Sequence of the next record added
+		protected final AtomicLong nextSequence ;
+		
+		// The records with a lower sequence are deleted
+		private final AtomicLong firstSequence ;
+		
+		// startSequence: the sequences continue from one ring to the next one when the buffer is resized
+		protected Ring(int capacity, long startSequence) {
+			this.capacity = capacity ;
+			sequences 	  = new AtomicLongArray(capacity) ;
+			for (int i=0; i < capacity; i++) {
+				sequences.set(i, EMPTY) ;
+			}
+			nextSequence  = new AtomicLong(startSequence) ;
+			firstSequence = new AtomicLong(startSequence) ;
+		}
+		
+		abstract void add(LogRecord logRecord) ;
+		
+		// Read the record of a sequence in entry. Returns false if it is overwritten, deleted or being written
+		abstract boolean read(long sequence, Entry entry) ;
+		
+		// Release the references held by a slot
+		abstract void release(int slot) ;
+		
+		protected int slot(long sequence) {
+			return (int)(sequence % capacity) ;
+		}
+		
+		// Take the slot of a sequence. Returns false if the record of the sequence is already overwritten.
+		// The slot is only contended when the ring has been filled during the write of the previous record of the slot
+		protected boolean claim(int slot, long sequence) {
+			
+			while (true) {
+				long slotSequence = sequences.get(slot) ;
+				if (slotSequence == WRITING) {
+					Thread.onSpinWait() ;
+				} else if (slotSequence > sequence) {
+					// a more recent record is already in the slot
+					return false ;
+				} else if (sequences.compareAndSet(slot, slotSequence, WRITING)) {
+					return true ;
+				}
+			}
+		}
+		
+		// Ordered write is enough: the readers read the sequence, then the record
+		protected void publish(int slot, long sequence) {
+			sequences.lazySet(slot, sequence) ;
+		}
+		
+		// First sequence still in the ring, for a snapshot ending at endSequence (excluded)
+		private long startSequence(long endSequence) {
+			return Math.min(Math.max(firstSequence.get(), endSequence - capacity), endSequence) ;
+		}
+		
+		// Wait until the records of the sequences before endSequence are written (or overwritten, or deleted by another thread).
+		// A logging thread may have taken its sequence and not yet written its record: without this wait,
+		// a delete would move the first sequence past a record it has not read
+		private void awaitWriters(long endSequence) {
+			
+			for (long sequence = startSequence(endSequence); sequence < endSequence; sequence++) {
+				int slot = slot(sequence) ;
+				int nbSpins = 0 ;
+				long slotSequence = sequences.get(slot) ;
+				// an older sequence, EMPTY or WRITING: the record of the sequence is not written yet
+				while ((slotSequence < sequence) && (sequence >= firstSequence.get())) {
+					// the logging thread may have been descheduled while writing
+					if (++nbSpins % 100 == 0) {
+						Thread.yield() ;
+					} else {
+						Thread.onSpinWait() ;
+					}
+					slotSequence = sequences.get(slot) ;
+				}
+			}
+		}
+		
+		// Delete the records before endSequence and release them
+		// A released slot is set back to EMPTY, so that a reader that has read its sequence before the release does not validate it after
+		private void delete(long endSequence) {
+			
+			long startSequence = startSequence(endSequence) ;
+			firstSequence.accumulateAndGet(endSequence, Math::max) ;
+			for (long sequence = startSequence; sequence < endSequence; sequence++) {
+				int slot = slot(sequence) ;
+				long slotSequence = sequences.get(slot) ;
+				if ((slotSequence >= 0) && (slotSequence < endSequence) && sequences.compareAndSet(slot, slotSequence, WRITING)) {
+					release(slot) ;
+					sequences.set(slot, EMPTY) ;
+				}
+			}
+		}
+		
+		private int size() {
+			long endSequence = nextSequence.get() ;
+			return (int)(endSequence - startSequence(endSequence)) ;
+		}
+	}
+	
+	// Full capture: the LogRecord is kept
+	private final class RecordRing extends Ring {
+		
+		private final AtomicReferenceArray<LogRecord> records ;
+		
+		private RecordRing(int capacity, long startSequence) {
+			super(capacity, startSequence) ;
+			records = new AtomicReferenceArray<LogRecord>(capacity) ;
+		}
+		
+		@Override
+		void add(LogRecord logRecord) {
+			
+			long sequence = nextSequence.getAndIncrement() ;
+			int slot = slot(sequence) ;
+			if (claim(slot, sequence)) {
+				records.lazySet(slot, logRecord) ;
+				publish(slot, sequence) ;
+			}
+		}
+		
+		@Override
+		boolean read(long sequence, Entry entry) {
+			
+			int slot = slot(sequence) ;
+			if (sequences.get(slot) != sequence) {
+				return false ;
+			}
+			LogRecord record = records.get(slot) ;
+			if (sequences.get(slot) != sequence) {
+				return false ;
+			}
+			entry.millis 		   = record.getMillis() ;
+			entry.sequenceNumber   = record.getSequenceNumber() ;
+			entry.loggerName 	   = record.getLoggerName() ;
+			entry.sourceClassName  = record.getSourceClassName() ;
+			entry.sourceMethodName = record.getSourceMethodName() ;
+			entry.level 		   = record.getLevel() ;
+			entry.message 		   = record.getMessage() ;
+			entry.thrown 		   = record.getThrown() ;
+			entry.thrownSummary.setLength(0) ;
+			entry.thrownOverwritten = false ;
+			return true ;
+		}
+		
+		@Override
+		void release(int slot) {
+			records.set(slot, null) ;
+		}
+	}
+	
+	// Compact capture: the fields of the records in parallel arrays, the throwable summaries in a circular char arena.
+	// The fields are plain array elements, published by the slot sequence
+	private final class CompactRing extends Ring {
+		
+		private final long[] millis ;
+		private final long[] sequenceNumbers ;
+		private final String[] loggerNames ;
+		private final String[] sourceClassNames ;
+		private final String[] sourceMethodNames ;
+		private final Level[] levels ;
+		private final String[] messages ;
+		
+		// Position of the throwable summary in the arena (counted from the creation of the arena) and length (0 if no throwable)
+		private final long[] thrownPositions ;
+		private final int[] thrownLengths ;
+		
+		private final char[] arena ;
+		
+		// Position of the next summary in the arena. The chars before nextArenaPosition - arena.length are overwritten
+		private final AtomicLong nextArenaPosition ;
+		
+		private CompactRing(int capacity, long startSequence, int arenaSize) {
+			super(capacity, startSequence) ;
+			millis 			  = new long[capacity] ;
+			sequenceNumbers   = new long[capacity] ;
+			loggerNames 	  = new String[capacity] ;
+			sourceClassNames  = new String[capacity] ;
+			sourceMethodNames = new String[capacity] ;
+			levels 			  = new Level[capacity] ;
+			messages 		  = new String[capacity] ;
+			thrownPositions   = new long[capacity] ;
+			thrownLengths 	  = new int[capacity] ;
+			arena 			  = new char[arenaSize] ;
+			nextArenaPosition = new AtomicLong(0) ;
+		}
+		
+		@Override
+		void add(LogRecord logRecord) {
+			
+			// formatting and rendering done before taking the slot
+			String message = MESSAGE_FORMATTER.formatMessage(logRecord) ;
+			long thrownPosition = 0 ;
+			int thrownLength = 0 ;
+			Throwable thrown = logRecord.getThrown() ;
+			if ((thrown != null) && (arena.length > 0)) {
+				String thrownMsg = thrown.toString() ;
+				if ((thrownMsg != null) && (! thrownMsg.isEmpty())) {
+					String summary = boundedSummary(ExceptionLogging.printExceptionInfos(thrown, MAX_PRINTED_CAUSE_LEVEL)) ;
+					thrownLength = summary.length() ;
+					if (thrownLength > 0) {
+						thrownPosition = nextArenaPosition.getAndAdd(thrownLength) ;
+						int start = (int)(thrownPosition % arena.length) ;
+						int firstPart = Math.min(thrownLength, arena.length - start) ;
+						summary.getChars(0, firstPart, arena, start) ;
+						summary.getChars(firstPart, thrownLength, arena, 0) ;
+					}
+				}
+			}
+			
+			long sequence = nextSequence.getAndIncrement() ;
+			int slot = slot(sequence) ;
+			if (claim(slot, sequence)) {
+				millis[slot] 			= logRecord.getMillis() ;
+				sequenceNumbers[slot] 	= logRecord.getSequenceNumber() ;
+				loggerNames[slot] 		= intern(logRecord.getLoggerName()) ;
+				sourceClassNames[slot] 	= intern(logRecord.getSourceClassName()) ;
+				sourceMethodNames[slot] = intern(logRecord.getSourceMethodName()) ;
+				levels[slot] 			= logRecord.getLevel() ;
+				messages[slot] 			= message ;
+				thrownPositions[slot] 	= thrownPosition ;
+				thrownLengths[slot] 	= thrownLength ;
+				publish(slot, sequence) ;
+			}
+		}
+		
+		// The summary cut at a line break if it is longer than the part of the arena allowed (empty if even the marker does not fit)
+		private String boundedSummary(String summary) {
+			
+			int maxLength = arena.length/THROWABLE_SUMMARY_ARENA_DIVISOR ;
+			if (summary.length() <= maxLength) {
+				return summary ;
+			}
+			int maxKept = maxLength - THROWN_TRUNCATED.length() ;
+			if (maxKept <= 0) {
+				return "" ;
+			}
+			int cut = summary.lastIndexOf('\n', maxKept) ;
+			if (cut <= 0) {
+				cut = maxKept ;
+			}
+			return summary.substring(0, cut) + THROWN_TRUNCATED ;
+		}
+		
+		@Override
+		boolean read(long sequence, Entry entry) {
+			
+			int slot = slot(sequence) ;
+			if (sequences.get(slot) != sequence) {
+				return false ;
+			}
+			entry.millis 		   = millis[slot] ;
+			entry.sequenceNumber   = sequenceNumbers[slot] ;
+			entry.loggerName 	   = loggerNames[slot] ;
+			entry.sourceClassName  = sourceClassNames[slot] ;
+			entry.sourceMethodName = sourceMethodNames[slot] ;
+			entry.level 		   = levels[slot] ;
+			entry.message 		   = messages[slot] ;
+			long thrownPosition = thrownPositions[slot] ;
+			int thrownLength 	= thrownLengths[slot] ;
+			// the plain reads must be done before the validation
+			VarHandle.acquireFence() ;
+			if (sequences.get(slot) != sequence) {
+				return false ;
+			}
+			
+			entry.thrown = null ;
+			entry.thrownSummary.setLength(0) ;
+			entry.thrownOverwritten = false ;
+			if (thrownLength > 0) {
+				int start = (int)(thrownPosition % arena.length) ;
+				int firstPart = Math.min(thrownLength, arena.length - start) ;
+				entry.thrownSummary.append(arena, start, firstPart).append(arena, 0, thrownLength - firstPart) ;
+				VarHandle.acquireFence() ;
+				if (nextArenaPosition.get() > thrownPosition + arena.length) {
+					// more recent summaries have been written over this one
+					entry.thrownSummary.setLength(0) ;
+					entry.thrownOverwritten = true ;
+				}
+			}
+			return true ;
+		}
+		
+		@Override
+		void release(int slot) {
+			loggerNames[slot] 		= null ;
+			sourceClassNames[slot] 	= null ;
+			sourceMethodNames[slot] = null ;
+			levels[slot] 			= null ;
+			messages[slot] 			= null ;
+			thrownLengths[slot] 	= 0 ;
+		}
+	}
+	
+	// Format the message of a record with its parameters
+	private final static Formatter MESSAGE_FORMATTER = new Formatter() {
+		@Override
+		public String format(LogRecord record) {
+			return formatMessage(record) ;
+		}
+	} ;
+	
+	private volatile Ring ring ;
 	
-	private LinkedBlockingQueue<LogRecord> logRecordBuffer ;
+	private final boolean compact ;
+	// ARENA_PER_RECORD for the default arena
+	private final int throwableArenaSize ;
+	
+	// Interned logger, class and method names of the compact mode
+	private final ConcurrentHashMap<String,String> internedNames ;
 	
 	private DateTimeFormatter dateTimeFormatter ;
 	
+	// Full capture mode: the log records are kept
 	public LogRecordMemoryBuffer(int maxRecord) {
+		this(maxRecord, false, 0) ;
+	}
+	
+	// Compact capture mode, with a throwable arena of DEFAULT_THROWABLE_CHARS_PER_RECORD chars per record (up to 16M chars)
+	// The arena is sized again for the new maximum number of records by clearAndResize
+	public static LogRecordMemoryBuffer compactBuffer(int maxRecord) {
+		return new LogRecordMemoryBuffer(maxRecord, true, ARENA_PER_RECORD) ;
+	}
+	
+	// Compact capture mode. throwableArenaSize: number of chars of the arena of the throwable summaries (kept by clearAndResize)
+	public static LogRecordMemoryBuffer compactBuffer(int maxRecord, int throwableArenaSize) {
+		if (throwableArenaSize < 0) {
+			throw new IllegalArgumentException("Invalid throwable arena size: " + throwableArenaSize) ;
+		}
+		return new LogRecordMemoryBuffer(maxRecord, true, throwableArenaSize) ;
+	}
+	
+	private LogRecordMemoryBuffer(int maxRecord, boolean compact, int throwableArenaSize) {
 		
-		maxLogRecord = maxRecord ;
+		if (maxRecord < 1) {
+			throw new IllegalArgumentException("Invalid maximum number of log records: " + maxRecord) ;
+		}
+		this.compact 			= compact ;
+		this.throwableArenaSize = throwableArenaSize ;
+		internedNames 	  = compact ? new ConcurrentHashMap<String,String>() : null ;
 		dateTimeFormatter = DateTimeFormatter.ofPattern(datePattern) ;
-		logRecordBuffer = new LinkedBlockingQueue<LogRecord>(maxRecord) ;
+		ring = newRing(maxRecord, 0) ;
 	}
 	
-	// Add a log record (remove oldest log records to make space if necessary)
-	public synchronized void addLogRecord(LogRecord logRecord) {
-		
-		// Try to add the log and as long as there is no space, remove the oldest element
-		while (!logRecordBuffer.offer(logRecord)) {
-			 
-			// remove the oldest element
-			logRecordBuffer.poll() ;
+	private Ring newRing(int maxRecord, long startSequence) {
+		if (compact) {
+			int arenaSize = throwableArenaSize ;
+			if (arenaSize == ARENA_PER_RECORD) {
+				arenaSize = (int) Math.min((long) maxRecord*DEFAULT_THROWABLE_CHARS_PER_RECORD, MAX_DEFAULT_THROWABLE_ARENA_SIZE) ;
+			}
+			return new CompactRing(maxRecord, startSequence, arenaSize) ;
+		} else {
+			return new RecordRing(maxRecord, startSequence) ;
 		}
+	}
+	
+	private String intern(String name) {
 		
+		if (name == null) {
+			return null ;
+		}
+		String internedName = internedNames.get(name) ;
+		if (internedName == null) {
+			if (internedNames.size() >= MAX_INTERNED_NAMES) {
+				return name ;
+			}
+			internedName = internedNames.putIfAbsent(name, name) ;
+			if (internedName == null) {
+				internedName = name ;
+			}
+		}
+		return internedName ;
 	}
 	
+	// Add a log record (overwrite the oldest log record if the buffer is full)
+	public void addLogRecord(LogRecord logRecord) {
+		ring.add(logRecord) ;
+	}
+	
+	// Snapshot of the records: the records added during the call may or may not be included
 	public StringBuilder getFormattedRecords() {
 		
-		StringBuilder result = new StringBuilder(logRecordBuffer.size()*MEAN_PRINTED_LOG_RECORD_SIZE) ;
-		synchronized(logRecordBuffer) {
-			
-			if (logRecordBuffer.size() > 0) {
-				for (LogRecord rec : logRecordBuffer) {
-					appendLogRecord(result, rec) ;
-				}
+		Ring currentRing = ring ;
+		return formatRecords(currentRing, currentRing.nextSequence.get()) ;
+	}
+	
+	// The records being added when the call begins are waited for, so that every record added is either returned or kept
+	public StringBuilder getAndDeleteFormattedRecords() {
+		
+		Ring currentRing = ring ;
+		long endSequence = currentRing.nextSequence.get() ;
+		currentRing.awaitWriters(endSequence) ;
+		StringBuilder result = formatRecords(currentRing, endSequence) ;
+		currentRing.delete(endSequence) ;
+		return result ;
+	}
+	
+	private StringBuilder formatRecords(Ring currentRing, long endSequence) {
+		
+		long startSequence = currentRing.startSequence(endSequence) ;
+		StringBuilder result = new StringBuilder((int)(endSequence - startSequence)*MEAN_PRINTED_LOG_RECORD_SIZE) ;
+		Entry entry = new Entry() ;
+		for (long sequence = startSequence; sequence < endSequence; sequence++) {
+			if (currentRing.read(sequence, entry)) {
+				appendLogRecord(result, entry) ;
 			}
 		}
 		return result ;
 	}
 	
-	public StringBuilder getAndDeleteFormattedRecords() {
+	// Write the records selected by the filter (all the records if the filter is null), without building the whole result in memory
+	// Returns the buffer sequence following the last record examined: 
+	// the first sequence of the next page, when the page is limited by the maximum number of records of the filter
+	public long writeFormattedRecords(Writer out, MemoryLogFilter filter) throws IOException {
 		
-		StringBuilder result = new StringBuilder(logRecordBuffer.size()*MEAN_PRINTED_LOG_RECORD_SIZE) ;
-		synchronized(logRecordBuffer) {
-			
-			if (logRecordBuffer.size() > 0) {
-				LogRecord recd ;
-				while ((recd = logRecordBuffer.poll()) != null) {
-					appendLogRecord(result, recd) ;
+		if (filter == null) {
+			filter = MemoryLogFilter.all() ;
+		}
+		Ring currentRing = ring ;
+		long endSequence = currentRing.nextSequence.get() ;
+		long sequence = Math.max(currentRing.startSequence(endSequence), filter.getFromSequence()) ;
+		int nbRecords = 0 ;
+		StringBuilder lBuff = new StringBuilder(WRITE_BUFFER_SIZE + MEAN_PRINTED_LOG_RECORD_SIZE) ;
+		Entry entry = new Entry() ;
+		for (; (sequence < endSequence) && (nbRecords < filter.getMaxRecords()); sequence++) {
+			if (currentRing.read(sequence, entry) && filter.accept(entry.level, entry.loggerName, entry.millis)) {
+				appendLogRecord(lBuff, entry) ;
+				nbRecords++ ;
+				if (lBuff.length() >= WRITE_BUFFER_SIZE) {
+					out.append(lBuff) ;
+					lBuff.setLength(0) ;
 				}
 			}
 		}
-		return result ;
+		out.append(lBuff) ;
+		out.flush() ;
+		return Math.max(sequence, filter.getFromSequence()) ;
 	}
 	
-	private void appendLogRecord(StringBuilder lBuff, LogRecord record) {
+	// Sequence of the next record added in the buffer
+	public long getNextSequence() {
+		return ring.nextSequence.get() ;
+	}
+	
+	private void appendLogRecord(StringBuilder lBuff, Entry record) {
 		// StringBuilder is always converting its argument to a String, even if it is a char
 		// so it is better to always append String
 		
-		lBuff.append(dateTimeFormatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getMillis()), ZoneId.systemDefault()))) ;
-		lBuff.append(record.getSequenceNumber()).append(BLANK) ;
-		lBuff.append(record.getLoggerName()).append(BLANK) ;
-		String srcClassName = record.getSourceClassName() ;
+		lBuff.append(dateTimeFormatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.millis), ZoneId.systemDefault()))) ;
+		lBuff.append(record.sequenceNumber).append(BLANK) ;
+		lBuff.append(record.loggerName).append(BLANK) ;
+		String srcClassName = record.sourceClassName ;
 		if (srcClassName != null) {
-			lBuff.append(record.getSourceClassName()).append(BLANK) ;
+			lBuff.append(srcClassName).append(BLANK) ;
 		}
-		String methodName = record.getSourceMethodName() ;
+		String methodName = record.sourceMethodName ;
 		if (methodName != null) {
-			lBuff.append(record.getSourceMethodName()) ;
+			lBuff.append(methodName) ;
 		}
 		lBuff.append(NEWLINE) ;
-		lBuff.append(record.getLevel().getName()).append(SEPARATOR) ;
-		lBuff.append(record.getMessage()).append(NEWLINE) ;
+		lBuff.append(record.level.getName()).append(SEPARATOR) ;
+		lBuff.append(record.message).append(NEWLINE) ;
 		
-		Throwable thrown = record.getThrown() ;
+		Throwable thrown = record.thrown ;
 		if (thrown != null) {
 			String thrownMsg = thrown.toString() ;
 			if ((thrownMsg != null) && (! thrownMsg.isEmpty())) {
 				lBuff.append(ExceptionLogging.printExceptionInfos(thrown, MAX_PRINTED_CAUSE_LEVEL)).append(NEWLINE) ;
 			}
+		} else if (record.thrownSummary.length() > 0) {
+			lBuff.append(record.thrownSummary).append(NEWLINE) ;
+		} else if (record.thrownOverwritten) {
+			lBuff.append(THROWN_OVERWRITTEN).append(NEWLINE) ;
 		}
 		lBuff.append(NEWLINE) ;
 	}
 
 	public int remainingCapacity() {
-		return logRecordBuffer.remainingCapacity() ;
+		Ring currentRing = ring ;
+		return currentRing.capacity - currentRing.size() ;
 	}
 	
 	public int logRecordNumber() {
-		return logRecordBuffer.size() ;
+		return ring.size() ;
 	}
 	
 	public void clear() {
-		logRecordBuffer.clear();
+		Ring currentRing = ring ;
+		long endSequence = currentRing.nextSequence.get() ;
+		currentRing.awaitWriters(endSequence) ;
+		currentRing.delete(endSequence) ;
 	}
 	
+	// The records added by the logging threads during the resize may be lost
+	// In compact mode, the default throwable arena follows the new size, an arena size given to compactBuffer is kept
 	public void clearAndResize(int maxRecord) {
-		logRecordBuffer.clear();
-		maxLogRecord = maxRecord ;
-		logRecordBuffer = new LinkedBlockingQueue<LogRecord>(maxRecord) ;
-
+		if (maxRecord < 1) {
+			throw new IllegalArgumentException("Invalid maximum number of log records: " + maxRecord) ;
+		}
+		ring = newRing(maxRecord, ring.nextSequence.get()) ;
 	}
 
 	public int getMaxLogRecord() {
-		return maxLogRecord;
+		return ring.capacity ;
+	}
+	
+	public boolean isCompact() {
+		return compact ;
+	}
+	
+	// Number of chars of the throwable arena (0 in full capture mode)
+	public int getThrowableArenaSize() {
+		Ring currentRing = ring ;
+		return (currentRing instanceof CompactRing) ? ((CompactRing) currentRing).arena.length : 0 ;
 	}
 }
@@ -27,7 +27,9 @@ package org.fl.util;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -175,6 +177,12 @@ public class LoggerManager {
 			formatter = new SimpleFormatter() ;
 		} else if (formatterName.equals(JsonLogFormatter.class.getName())) {
 			formatter = new JsonLogFormatter() ;
+		} else if (formatterName.equals(FastJsonLogFormatter.class.getName())) {
+			FastJsonLogFormatter fastJsonLogFormatter = new FastJsonLogFormatter() ;
+			fastJsonLogFormatter.setWithStack(properties.getBoolean("logging.fastJsonLogFormatter.stack", false)) ;
+			fastJsonLogFormatter.setWithThreadId(properties.getBoolean("logging.fastJsonLogFormatter.threadId", false)) ;
+			fastJsonLogFormatter.setWithContext(properties.getBoolean("logging.fastJsonLogFormatter.context", false)) ;
+			formatter = fastJsonLogFormatter ;
 		} else if (formatterName.equals(PlainLogFormatter.class.getName())) {
 			formatter = new PlainLogFormatter() ;	
 		} else {
@@ -214,11 +222,11 @@ public class LoggerManager {
 			String encoding = properties.getProperty("logging.file.encode", Charset.defaultCharset().name()) ;
 			Level  level    = properties.getLevel("logging.file.level", Level.FINEST) ;
 			
-			FileHandler fh = new FileHandler(logFilePattern, logfileLength, logfileNumber,true);
+			FileHandler fh = newFileHandler(logFilePattern, logfileLength, logfileNumber);
             fh.setFormatter(formatter);
             fh.setEncoding(encoding);
-            log.addHandler(fh);
             fh.setLevel(level) ;
+            log.addHandler(asyncIfEnabled(fh));
             
             // Root logger
             Level rootFileLevel 	= properties.getLevel("logging.root.file.level", null) ;
@@ -226,28 +234,28 @@ public class LoggerManager {
         		String rootLogFileName = properties.getProperty("logging.rootLogfile.name") ;
         		if ((rootLogFileName != null) && (! rootLogFileName.isEmpty())) {
                 	String rootLogFile = logDirName + rootLogFileName;
-                	FileHandler rootFh = new FileHandler(rootLogFile, logfileLength, logfileNumber,true);
+                	FileHandler rootFh = newFileHandler(rootLogFile, logfileLength, logfileNumber);
                 	rootFh.setFormatter(formatter);
-                	rootLogger.addHandler(rootFh);                
                 	rootFh.setLevel(properties.getLevel("logging.root.file.level", Level.FINEST)) ;
+                	rootLogger.addHandler(asyncIfEnabled(rootFh));
         		}	
             }
 		}
 		
         // Console Handler : always have a console handler (level maybe set to OFF)
-		ConsoleHandler ch = new ConsoleHandler() ;
+		ConsoleHandler ch = newConsoleHandler() ;
         ch.setFormatter(formatter) ;
         ch.setEncoding(properties.getProperty("logging.console.encode", Charset.defaultCharset().name()));
-        log.addHandler(ch);
         ch.setLevel(properties.getLevel("logging.console.level", Level.OFF)) ;
+        log.addHandler(asyncIfEnabled(ch));
         
         if (rootLogger != null) {
         	Level rootConsoleLevel  = properties.getLevel("logging.root.console.level", null) ;
         	if (rootConsoleLevel != null) { 
-        		ConsoleHandler chRoot = new ConsoleHandler() ;
+        		ConsoleHandler chRoot = newConsoleHandler() ;
                 chRoot.setFormatter(formatter) ;
-                rootLogger.addHandler(chRoot);
                 chRoot.setLevel(properties.getLevel("logging.root.console.level", Level.FINEST)) ;
+                rootLogger.addHandler(asyncIfEnabled(chRoot));
         	}
         	rootLogger.setLevel(getHighestHandlerLevel(rootLogger)) ;
         }
@@ -256,7 +264,8 @@ public class LoggerManager {
         int bufferSize = properties.getInt("logging.BufferLogHandler.bufferLength", 0) ;
         if (bufferSize > 0) {
         	
-        	bufferLogHandler = new BufferLogHandler("standard bufferLogHandler", bufferSize) ;
+        	boolean compact = properties.getBoolean("logging.BufferLogHandler.compact", false) ;
+        	bufferLogHandler = new BufferLogHandler("standard bufferLogHandler", bufferSize, compact) ;
         	bufferLogHandler.setLevel(properties.getLevel("logging.BufferLogHandler.level", Level.OFF)) ;
         	log.addHandler(bufferLogHandler);
         } else {
@@ -271,6 +280,57 @@ public class LoggerManager {
         
     }
     
+    // With asynchronous logging, the file and console handlers do not flush after each record:
+    // the AsyncLogHandler flushes them once per batch of records
+    private FileHandler newFileHandler(String pattern, int limit, int count) throws IOException {
+    	
+    	if (isAsyncEnabled()) {
+    		return new AsyncLogHandler.BatchFileHandler(pattern, limit, count, true) ;
+    	} else {
+    		return new FileHandler(pattern, limit, count, true) ;
+    	}
+    }
+    
+    private ConsoleHandler newConsoleHandler() {
+    	
+    	if (isAsyncEnabled()) {
+    		return new AsyncLogHandler.BatchConsoleHandler() ;
+    	} else {
+    		return new ConsoleHandler() ;
+    	}
+    }
+    
+    private boolean isAsyncEnabled() {
+    	return properties.getBoolean("logging.async.enabled", false) ;
+    }
+    
+    // Wrap a file or console handler in an AsyncLogHandler, if asynchronous logging is enabled (logging.async.enabled property)
+    // The records are then written by a dedicated thread, and not by the logging threads
+    private Handler asyncIfEnabled(Handler handler) {
+    	
+    	if (! isAsyncEnabled()) {
+    		return handler ;
+    	}
+    	int bufferSize = properties.getInt("logging.async.bufferSize", AsyncLogHandler.DEFAULT_BUFFER_SIZE) ;
+    	int batchSize  = properties.getInt("logging.async.batchSize", AsyncLogHandler.DEFAULT_BATCH_SIZE) ;
+    	Level dropLevel = properties.getLevel("logging.async.dropLevel", Level.WARNING) ;
+    	String policyName = properties.getProperty("logging.async.overflowPolicy", AsyncLogHandler.OverflowPolicy.BLOCK.name()) ;
+    	AsyncLogHandler.OverflowPolicy overflowPolicy ;
+    	try {
+    		overflowPolicy = AsyncLogHandler.OverflowPolicy.valueOf(policyName.trim().toUpperCase()) ;
+    	} catch (IllegalArgumentException e) {
+    		System.out.println("Unknown async logging overflow policy (logging.async.overflowPolicy property): " + policyName) ;
+    		overflowPolicy = AsyncLogHandler.OverflowPolicy.BLOCK ;
+    	}
+    	try {
+    		return new AsyncLogHandler(handler, bufferSize, batchSize, overflowPolicy, dropLevel) ;
+    	} catch (IllegalArgumentException e) {
+    		// the handler does not flush after each record: it is kept asynchronous
+    		System.out.println("Invalid async logging properties, default async logging used: " + e.getMessage()) ;
+    		return new AsyncLogHandler(handler) ;
+    	}
+    }
+    
     /**
      * Get the highest logging level of all logger handlers
      * @param logger
@@ -371,7 +431,7 @@ public class LoggerManager {
 			for (Handler handler : handlers) {
 				
 				JsonObject handlerJson = new JsonObject() ;
-				handlerJson.addProperty(HANDLER_NAME,  handler.getClass().getName());
+				handlerJson.addProperty(HANDLER_NAME,  getHandlerName(handler));
 				handlerJson.addProperty(HANDLER_LEVEL, handler.getLevel().getName());
 				Formatter formatter = handler.getFormatter() ;
 				String formatterName ;
@@ -438,7 +498,7 @@ public class LoggerManager {
 	    			
 	    	    	Handler[] logHandlers = log.getHandlers() ;
 	    	    	for (Handler handler : logHandlers) {
-	    	    		String handlerName = handler.getClass().getName() ;
+	    	    		String handlerName = getHandlerName(handler) ;
 	    	    		Level newHandlerLevel = handlers.get(handlerName) ;
 	    	    		if (newHandlerLevel != null) {
 	    	    			handler.setLevel(newHandlerLevel) ;
@@ -460,6 +520,23 @@ public class LoggerManager {
     	    	
     }
     
+    // Name of a handler in the levels json: class name of the handler (of its delegate for an asynchronous handler,
+    // the file and console handlers flushed by batch keep the name of the FileHandler and ConsoleHandler)
+    private static String getHandlerName(Handler handler) {
+    	if (handler instanceof AsyncLogHandler) {
+    		Handler delegate = ((AsyncLogHandler) handler).getDelegate() ;
+    		if (delegate instanceof AsyncLogHandler.BatchFileHandler) {
+    			return FileHandler.class.getName() ;
+    		} else if (delegate instanceof AsyncLogHandler.BatchConsoleHandler) {
+    			return ConsoleHandler.class.getName() ;
+    		} else {
+    			return delegate.getClass().getName() ;
+    		}
+    	} else {
+    		return handler.getClass().getName() ;
+    	}
+    }
+    
     public static void flushAllHandlers(Logger log) {
     	
     	if (log != null) {
@@ -479,6 +556,10 @@ public class LoggerManager {
     		if (handlers != null) {
 	    		for (Handler handler : handlers) {
 	    			log.removeHandler(handler) ;
+	    			if (handler instanceof AsyncLogHandler) {
+	    				// stop the writer thread, after the pending records are written
+	    				handler.close() ;
+	    			}
 	    		}
     		}
     	}
@@ -486,15 +567,43 @@ public class LoggerManager {
     
     // Get memory log (from a handler which has the largest in-memory buffer)
     public StringBuilder getMemoryLogs() {
+    	BufferLogHandler memoryLogHandler = getMemoryLogHandler() ;
+    	if (memoryLogHandler != null) {
+    		return memoryLogHandler.getMemoryLogs() ;
+    	} else {
+    		return null ;
+    	}
+    }
+    
+    // Write memory logs selected by the filter (from a handler which has the largest in-memory buffer), without building them in memory
+    // Returns the buffer sequence to give to the filter of the next page, or -1 if there is no in-memory handler
+    public long writeMemoryLogs(Writer out, MemoryLogFilter filter) throws IOException {
+    	BufferLogHandler memoryLogHandler = getMemoryLogHandler() ;
+    	if (memoryLogHandler != null) {
+    		return memoryLogHandler.writeMemoryLogs(out, filter) ;
+    	} else {
+    		return -1 ;
+    	}
+    }
+    
+    // Write memory logs selected by the filter, encoded with the charset and gzip compressed if requested (the output stream is not closed)
+    public long writeMemoryLogs(OutputStream out, Charset charset, boolean gzip, MemoryLogFilter filter) throws IOException {
+    	BufferLogHandler memoryLogHandler = getMemoryLogHandler() ;
+    	if (memoryLogHandler != null) {
+    		return memoryLogHandler.writeMemoryLogs(out, charset, gzip, filter) ;
+    	} else {
+    		return -1 ;
+    	}
+    }
+    
+    // The standard in-memory handler if it exists (it is then the only one), or the handler which has the largest in-memory buffer
+    private BufferLogHandler getMemoryLogHandler() {
     	if (bufferLogHandler != null) {
-    		// standard in-memory handler exists, so it is the only one
-    		return bufferLogHandler.getMemoryLogs() ;
+    		return bufferLogHandler ;
     	} else {
-    		// search for in-memory handlers
-    		
     		List<BufferLogHandler> inMemoryHandlers = getHandlersWithInMemoryLog() ;
     		if ((inMemoryHandlers != null) && (! inMemoryHandlers.isEmpty())) {
-    			return inMemoryHandlers.get(0).getMemoryLogs() ;
+    			return inMemoryHandlers.get(0) ;
     		} else {
     			return null ;
     		}
@@ -0,0 +1,134 @@
+package org.fl.util;
+
+import java.time.Instant;
+import java.util.logging.Level;
+
+// Selection of the in-memory log records written by LogRecordMemoryBuffer.writeFormattedRecords:
+// minimum level, logger (and its children loggers), time window, and page (first buffer sequence and maximum number of records)
+// The filter is applied on the fields of the records, before they are formatted
+public class MemoryLogFilter {
+
+	private final Level minLevel ;
+	private final String loggerName ;
+	private final long fromMillis ;
+	private final long toMillis ;
+	private final long fromSequence ;
+	private final int maxRecords ;
+	
+	private MemoryLogFilter(Builder builder) {
+		minLevel 	 = builder.minLevel ;
+		loggerName 	 = builder.loggerName ;
+		fromMillis 	 = builder.fromMillis ;
+		toMillis 	 = builder.toMillis ;
+		fromSequence = builder.fromSequence ;
+		maxRecords 	 = builder.maxRecords ;
+	}
+	
+	public static Builder builder() {
+		return new Builder() ;
+	}
+	
+	// Filter selecting all the records
+	public static MemoryLogFilter all() {
+		return builder().build() ;
+	}
+	
+	public static class Builder {
+		
+		private Level minLevel ;
+		private String loggerName ;
+		private long fromMillis ;
+		private long toMillis ;
+		private long fromSequence ;
+		private int maxRecords ;
+		
+		private Builder() {
+			minLevel 	 = Level.ALL ;
+			loggerName 	 = null ;
+			fromMillis 	 = Long.MIN_VALUE ;
+			toMillis 	 = Long.MAX_VALUE ;
+			fromSequence = 0 ;
+			maxRecords 	 = Integer.MAX_VALUE ;
+		}
+		
+		public Builder minLevel(Level minLevel) {
+			if (minLevel == null) {
+				throw new IllegalArgumentException("Null minimum level") ;
+			}
+			this.minLevel = minLevel ;
+			return this ;
+		}
+		
+		// Records of this logger and of its children loggers
+		public Builder logger(String loggerName) {
+			this.loggerName = loggerName ;
+			return this ;
+		}
+		
+		// Records logged at or after from
+		public Builder from(Instant from) {
+			fromMillis = from.toEpochMilli() ;
+			return this ;
+		}
+		
+		// Records logged before to
+		public Builder to(Instant to) {
+			toMillis = to.toEpochMilli() ;
+			return this ;
+		}
+		
+		// First buffer sequence (returned by the previous page) 
+		public Builder fromSequence(long fromSequence) {
+			if (fromSequence < 0) {
+				throw new IllegalArgumentException("Invalid first sequence: " + fromSequence) ;
+			}
+			this.fromSequence = fromSequence ;
+			return this ;
+		}
+		
+		// Maximum number of records of the page
+		public Builder maxRecords(int maxRecords) {
+			if (maxRecords < 1) {
+				throw new IllegalArgumentException("Invalid maximum number of records: " + maxRecords) ;
+			}
+			this.maxRecords = maxRecords ;
+			return this ;
+		}
+		
+		public MemoryLogFilter build() {
+			return new MemoryLogFilter(this) ;
+		}
+	}
+	
+	boolean accept(Level level, String recordLoggerName, long millis) {
+		
+		if (level.intValue() < minLevel.intValue()) {
+			return false ;
+		} else if ((millis < fromMillis) || (millis >= toMillis)) {
+			return false ;
+		} else if (loggerName == null) {
+			return true ;
+		} else if (recordLoggerName == null) {
+			return false ;
+		} else {
+			return recordLoggerName.equals(loggerName) ||
+				   (recordLoggerName.startsWith(loggerName) && (recordLoggerName.length() > loggerName.length()) && (recordLoggerName.charAt(loggerName.length()) == '.')) ;
+		}
+	}
+	
+	public Level getMinLevel() {
+		return minLevel ;
+	}
+
+	public String getLoggerName() {
+		return loggerName ;
+	}
+
+	public long getFromSequence() {
+		return fromSequence ;
+	}
+
+	public int getMaxRecords() {
+		return maxRecords ;
+	}
+}
@@ -0,0 +1,152 @@
+package org.fl.util.file;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+// Result of a FileLineTransformerBatch: throughput of each file and of the whole batch
+public class BatchTransformReport {
+
+	private final long durationMillis ;
+	private final int parallelism ;
+	private final List<FileReport> filesReports ;
+
+	// Transformation of one file
+	public static class FileReport {
+
+		private final Path sourceFilePath ;
+		private final Path resultFilePath ;
+		private final boolean succeeded ;
+		private final long nbLines ;
+		private final long nbBytes ;
+		private final long durationNanos ;
+
+		public FileReport(Path sfp, Path rfp, boolean s, long nl, long nb, long dn) {
+			sourceFilePath = sfp ;
+			resultFilePath = rfp ;
+			succeeded 	   = s ;
+			nbLines 	   = nl ;
+			nbBytes 	   = nb ;
+			durationNanos  = dn ;
+		}
+
+		public Path getSourceFilePath() {
+			return sourceFilePath;
+		}
+
+		public Path getResultFilePath() {
+			return resultFilePath;
+		}
+
+		public boolean isSucceeded() {
+			return succeeded;
+		}
+
+		public long getNbLines() {
+			return nbLines;
+		}
+
+		// Size of the source file
+		public long getNbBytes() {
+			return nbBytes;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		public double getLinesPerSecond() {
+			return perSecond(nbLines, durationNanos) ;
+		}
+
+		public double getBytesPerSecond() {
+			return perSecond(nbBytes, durationNanos) ;
+		}
+
+		private JsonObject toJson() {
+			JsonObject json = new JsonObject() ;
+			json.addProperty("source", 		   sourceFilePath.toString()) ;
+			json.addProperty("result", 		   resultFilePath.toString()) ;
+			json.addProperty("succeeded", 	   succeeded) ;
+			json.addProperty("nbLines", 	   nbLines) ;
+			json.addProperty("nbBytes", 	   nbBytes) ;
+			json.addProperty("durationMs", 	   durationNanos/1000000) ;
+			json.addProperty("linesPerSecond", getLinesPerSecond()) ;
+			json.addProperty("bytesPerSecond", getBytesPerSecond()) ;
+			return json ;
+		}
+	}
+
+	public BatchTransformReport(long dm, int p, List<FileReport> fr) {
+		durationMillis = dm ;
+		parallelism    = p ;
+		filesReports   = List.copyOf(fr) ;
+	}
+
+	// Wall clock duration of the batch
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	// In the order of the files given to the batch
+	public List<FileReport> getFilesReports() {
+		return filesReports;
+	}
+
+	public int getNbFiles() {
+		return filesReports.size() ;
+	}
+
+	public int getNbFilesFailed() {
+		return (int) filesReports.stream().filter(fileReport -> ! fileReport.isSucceeded()).count() ;
+	}
+
+	public long getNbLines() {
+		return filesReports.stream().mapToLong(FileReport::getNbLines).sum() ;
+	}
+
+	public long getNbBytes() {
+		return filesReports.stream().mapToLong(FileReport::getNbBytes).sum() ;
+	}
+
+	// Aggregate throughput, on the wall clock duration of the batch
+	public double getLinesPerSecond() {
+		return perSecond(getNbLines(), durationMillis*1000000) ;
+	}
+
+	public double getBytesPerSecond() {
+		return perSecond(getNbBytes(), durationMillis*1000000) ;
+	}
+
+	private static double perSecond(long nb, long durationNanos) {
+		return (durationNanos > 0) ? nb*1000000000.0/durationNanos : 0 ;
+	}
+
+	// withFiles: add the report of each file
+	public JsonObject toJson(boolean withFiles) {
+
+		JsonObject json = new JsonObject() ;
+		json.addProperty("nbFiles", 		getNbFiles()) ;
+		json.addProperty("nbFilesFailed", 	getNbFilesFailed()) ;
+		json.addProperty("parallelism", 	parallelism) ;
+		json.addProperty("nbLines", 		getNbLines()) ;
+		json.addProperty("nbBytes", 		getNbBytes()) ;
+		json.addProperty("durationMs", 		durationMillis) ;
+		json.addProperty("linesPerSecond", 	getLinesPerSecond()) ;
+		json.addProperty("bytesPerSecond", 	getBytesPerSecond()) ;
+		if (withFiles) {
+			JsonArray files = new JsonArray() ;
+			for (FileReport fileReport : filesReports) {
+				files.add(fileReport.toJson()) ;
+			}
+			json.add("files", files) ;
+		}
+		return json ;
+	}
+}
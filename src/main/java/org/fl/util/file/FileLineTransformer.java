@@ -2,15 +2,26 @@ package org.fl.util.file;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public abstract class FileLineTransformer {
 
+	private static final int DEFAULT_CHUNK_SIZE = 1024 ;
+
 	private Path sourceFilePath ;
 	private Path resultFilePath ;
 	
@@ -19,6 +30,18 @@ public abstract class FileLineTransformer {
 	
 	private Logger iLog ;
 	
+	// Parallel mode: chunks of chunkSize lines are transformed on a fork join pool, and the results written in the order of the lines
+	// Only for a stateless transformer (see isStateless). parallelism <= 1 : lines transformed one at a time by the calling thread
+	private int parallelism ;
+	private int chunkSize ;
+	
+	// Pool used in parallel mode (null to create a pool of parallelism threads for each process)
+	private ForkJoinPool forkJoinPool ;
+	
+	// Result of the last process
+	private long nbLinesProcessed ;
+	private boolean processSucceeded ;
+	
 	public FileLineTransformer(Path cfp, Path crfp, Logger l) {
 		
 		sourceFilePath = cfp ;
@@ -26,6 +49,9 @@ public abstract class FileLineTransformer {
 		resultFilePath = crfp ;
 		resultCharset  = StandardCharsets.UTF_8 ;
 		iLog 		   = l ;
+		parallelism	   = 1 ;
+		chunkSize	   = DEFAULT_CHUNK_SIZE ;
+		forkJoinPool   = null ;
 	}
 
 	public FileLineTransformer(Path cfp, Charset sCs,  Path crfp, Charset rCs, Logger l) {
@@ -35,40 +61,202 @@ public abstract class FileLineTransformer {
 		resultFilePath = crfp ;
 		resultCharset  = rCs ;
 		iLog 		   = l ;
+		parallelism	   = 1 ;
+		chunkSize	   = DEFAULT_CHUNK_SIZE ;
+		forkJoinPool   = null ;
+	}
+
+	// Transform the lines on parallelism threads. Ignored (with a warning) if the transformer is not stateless
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism) ;
+		}
+		this.parallelism = parallelism;
+	}
+
+	// Number of lines transformed by one task in parallel mode
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize) ;
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	// Pool used in parallel mode (set by setParallelism), instead of a pool created for each process. It is not shut down by the transformer
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
 	}
 	
 	public void process() {
+		process(null) ;
+	}
+	
+	// The lines are read and written with the buffers of a batch worker (see FileLineTransformerBatch) if given,
+	// unless they are transformed in parallel
+	void process(LineBuffers lineBuffers) {
 		
+		nbLinesProcessed = 0 ;
+		processSucceeded = false ;
 		if (sourceFilePath == null) {
 			iLog.severe("source file path null");
 		} else if (! Files.exists(sourceFilePath)) {
 			iLog.severe("Source file non existent: " + sourceFilePath);
-		} else {
-			try (BufferedReader bf = Files.newBufferedReader(sourceFilePath, sourceCharset) ;
-				 BufferedWriter bw = Files.newBufferedWriter(resultFilePath, resultCharset) ) {
-								
-				if (!Files.exists(resultFilePath)) {
-					Files.createDirectories(resultFilePath.getParent()) ;
-					Files.createFile(resultFilePath) ;
-				}
+		} else if ((lineBuffers != null) && ((parallelism <= 1) || (! isStateless()))) {
+			try (FileChannel in  = FileChannel.open(sourceFilePath, StandardOpenOption.READ) ;
+				 FileChannel out = FileChannel.open(resultFilePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
 				
+				lineBuffers.open(in, sourceCharset, out, resultCharset) ;
 				String line ;
-				long lineNumber = 0 ;
-				while ((line = bf.readLine()) != null) {
+				while ((line = lineBuffers.readLine()) != null) {
 					
-					String lineResult = processFileLine(line, lineNumber) ;
-					lineNumber++ ;
+					String lineResult = processFileLine(line, nbLinesProcessed) ;
+					nbLinesProcessed++ ;
 					if ((lineResult != null) && (! lineResult.isEmpty())) {
-						bw.write(lineResult);
-						bw.newLine();
+						lineBuffers.writeLine(lineResult) ;
 					}
 				}
+				lineBuffers.close() ;
+				processSucceeded = true ;
 				
 			} catch (Exception e) {
-				iLog.log(Level.SEVERE, "Exception reading ioc csv file", e);
+				iLog.log(Level.SEVERE, "Exception transforming file " + sourceFilePath, e);
+			}
+		} else {
+			try {
+				try (BufferedReader bf = Files.newBufferedReader(sourceFilePath, sourceCharset) ;
+					 BufferedWriter bw = Files.newBufferedWriter(resultFilePath, resultCharset) ) {
+									
+					if (!Files.exists(resultFilePath)) {
+						Files.createDirectories(resultFilePath.getParent()) ;
+						Files.createFile(resultFilePath) ;
+					}
+					
+					if (parallelism <= 1) {
+						transformLines(bf, bw) ;
+					} else if (! isStateless()) {
+						iLog.warning("Parallel transformation needs a stateless transformer, lines transformed one at a time for " + sourceFilePath) ;
+						transformLines(bf, bw) ;
+					} else if (forkJoinPool != null) {
+						transformLinesInParallel(bf, bw, forkJoinPool) ;
+					} else {
+						ForkJoinPool pool = new ForkJoinPool(parallelism) ;
+						try {
+							transformLinesInParallel(bf, bw, pool) ;
+						} finally {
+							pool.shutdown() ;
+						}
+					}
+				}
+				// the result file is closed (and its last lines flushed) without error
+				processSucceeded = true ;
+				
+			} catch (Exception e) {
+				iLog.log(Level.SEVERE, "Exception transforming file " + sourceFilePath, e);
 			}
 		} 
 	}
 
+	private void transformLines(BufferedReader bf, BufferedWriter bw) throws IOException {
+		
+		String line ;
+		while ((line = bf.readLine()) != null) {
+			
+			String lineResult = processFileLine(line, nbLinesProcessed) ;
+			nbLinesProcessed++ ;
+			writeResult(bw, lineResult) ;
+		}
+	}
+	
+	// The chunks are read and transformed ahead, up to 2 chunks per thread, and written in the order of the lines
+	// On error, the chunks in flight are cancelled and the chunks running stop at their next line,
+	// so that no line is transformed after the process has ended (the pool may be shared)
+	private void transformLinesInParallel(BufferedReader bf, BufferedWriter bw, ForkJoinPool pool) throws IOException {
+		
+		int maxChunksInFlight = 2*pool.getParallelism() ;
+		ArrayDeque<ForkJoinTask<String[]>> chunksInFlight = new ArrayDeque<ForkJoinTask<String[]>>(maxChunksInFlight) ;
+		AtomicBoolean stopped = new AtomicBoolean(false) ;
+		try {
+			ArrayList<String> chunk = new ArrayList<String>(chunkSize) ;
+			long lineNumber = 0 ;
+			String line ;
+			while ((line = bf.readLine()) != null) {
+				
+				chunk.add(line) ;
+				if (chunk.size() == chunkSize) {
+					if (chunksInFlight.size() == maxChunksInFlight) {
+						writeResults(bw, chunksInFlight.poll().join()) ;
+					}
+					chunksInFlight.add(pool.submit(transformChunk(chunk, lineNumber, stopped))) ;
+					lineNumber += chunk.size() ;
+					chunk = new ArrayList<String>(chunkSize) ;
+				}
+			}
+			if (! chunk.isEmpty()) {
+				chunksInFlight.add(pool.submit(transformChunk(chunk, lineNumber, stopped))) ;
+				lineNumber += chunk.size() ;
+			}
+			while (! chunksInFlight.isEmpty()) {
+				writeResults(bw, chunksInFlight.poll().join()) ;
+			}
+			nbLinesProcessed = lineNumber ;
+		} finally {
+			stopped.set(true) ;
+			for (ForkJoinTask<String[]> chunkInFlight : chunksInFlight) {
+				chunkInFlight.cancel(true) ;
+			}
+		}
+	}
+	
+	private ForkJoinTask<String[]> transformChunk(ArrayList<String> chunk, long firstLineNumber, AtomicBoolean stopped) {
+		
+		return ForkJoinTask.adapt(() -> {
+			String[] results = new String[chunk.size()] ;
+			for (int i=0; i < results.length; i++) {
+				if (stopped.get()) {
+					throw new CancellationException("Transformation of " + sourceFilePath + " stopped") ;
+				}
+				results[i] = processFileLine(chunk.get(i), firstLineNumber + i) ;
+			}
+			return results ;
+		}) ;
+	}
+	
+	private void writeResults(BufferedWriter bw, String[] lineResults) throws IOException {
+		for (String lineResult : lineResults) {
+			writeResult(bw, lineResult) ;
+		}
+	}
+	
+	private void writeResult(BufferedWriter bw, String lineResult) throws IOException {
+		if ((lineResult != null) && (! lineResult.isEmpty())) {
+			bw.write(lineResult);
+			bw.newLine();
+		}
+	}
+
+	// Number of lines of the source file processed by the last process
+	public long getNbLinesProcessed() {
+		return nbLinesProcessed;
+	}
+
+	// False if the last process ended on error (logged)
+	public boolean isProcessSucceeded() {
+		return processSucceeded;
+	}
+
+	public Path getSourceFilePath() {
+		return sourceFilePath;
+	}
+
+	public Path getResultFilePath() {
+		return resultFilePath;
+	}
+
 	protected abstract String processFileLine(String line, long lineNumber) ;
+	
+	// A stateless transformer gives a result depending only on the line and its number, and processFileLine may be called
+	// by several threads at the same time, in any order: needed for the parallel mode
+	protected boolean isStateless() {
+		return false ;
+	}
 }
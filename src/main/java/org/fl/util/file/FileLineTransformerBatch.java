@@ -0,0 +1,160 @@
+package org.fl.util.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.fl.util.FileSet;
+import org.fl.util.file.BatchTransformReport.FileReport;
+import org.fl.util.json.JsonUtils;
+
+// Transform many files with the same FileLineTransformer subclass (one transformer created for each file by the factory)
+// The files are transformed concurrently by parallelism workers. Each worker reuses its read and write buffers for all its files
+public class FileLineTransformerBatch {
+
+	// Creates the transformer of one file
+	@FunctionalInterface
+	public interface TransformerFactory {
+		FileLineTransformer newTransformer(Path sourceFilePath, Path resultFilePath) ;
+	}
+
+	// A source file and its result file
+	public static class FilePair {
+
+		private final Path sourceFilePath ;
+		private final Path resultFilePath ;
+
+		public FilePair(Path sfp, Path rfp) {
+			sourceFilePath = sfp ;
+			resultFilePath = rfp ;
+		}
+
+		public Path getSourceFilePath() {
+			return sourceFilePath;
+		}
+
+		public Path getResultFilePath() {
+			return resultFilePath;
+		}
+	}
+
+	private final TransformerFactory transformerFactory ;
+
+	private final Logger bLog ;
+
+	// Maximum number of files transformed at the same time
+	private int parallelism ;
+
+	public FileLineTransformerBatch(TransformerFactory tf, Logger l) {
+
+		transformerFactory = tf ;
+		bLog 			   = l ;
+		parallelism 	   = Runtime.getRuntime().availableProcessors() ;
+	}
+
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism) ;
+		}
+		this.parallelism = parallelism;
+	}
+
+	// Transform the files of the file set. The result file of a source file is given by resultPathMapper
+	public BatchTransformReport process(FileSet fileSet, Function<Path, Path> resultPathMapper) {
+
+		List<FilePair> files = new ArrayList<FilePair>() ;
+		for (Path sourceFilePath : fileSet.getFileList()) {
+			files.add(new FilePair(sourceFilePath, resultPathMapper.apply(sourceFilePath))) ;
+		}
+		return process(files) ;
+	}
+
+	// The parent directories of the result files are created if needed
+	public BatchTransformReport process(List<FilePair> files) {
+
+		long start = System.currentTimeMillis() ;
+		FileReport[] filesReports = new FileReport[files.size()] ;
+		int nbWorkers = Math.min(parallelism, files.size()) ;
+		if (nbWorkers > 0) {
+			AtomicInteger workerNumber = new AtomicInteger() ;
+			ExecutorService executorService = Executors.newFixedThreadPool(nbWorkers, runnable -> {
+				Thread thread = new Thread(runnable, "FileLineTransformerBatch-" + workerNumber.incrementAndGet()) ;
+				thread.setDaemon(true) ;
+				return thread ;
+			}) ;
+			try {
+				// the workers take the next file to transform until all the files are taken
+				AtomicInteger nextFile = new AtomicInteger() ;
+				List<Future<?>> workers = new ArrayList<Future<?>>() ;
+				for (int i=0; i < nbWorkers; i++) {
+					workers.add(executorService.submit(() -> {
+						LineBuffers lineBuffers = new LineBuffers() ;
+						int fileIndex ;
+						while ((fileIndex = nextFile.getAndIncrement()) < files.size()) {
+							filesReports[fileIndex] = transformFile(files.get(fileIndex), lineBuffers) ;
+						}
+					})) ;
+				}
+				for (Future<?> worker : workers) {
+					worker.get() ;
+				}
+			} catch (InterruptedException e) {
+				bLog.log(Level.SEVERE, "Interrupted transforming files", e) ;
+				Thread.currentThread().interrupt() ;
+			} catch (ExecutionException e) {
+				bLog.log(Level.SEVERE, "Exception transforming files", e) ;
+			} finally {
+				executorService.shutdownNow() ;
+			}
+		}
+
+		// files not transformed (after an interruption) are reported as failed
+		for (int i=0; i < filesReports.length; i++) {
+			if (filesReports[i] == null) {
+				filesReports[i] = new FileReport(files.get(i).getSourceFilePath(), files.get(i).getResultFilePath(), false, 0, 0, 0) ;
+			}
+		}
+		BatchTransformReport report = new BatchTransformReport(System.currentTimeMillis() - start, nbWorkers, Arrays.asList(filesReports)) ;
+		if (bLog.isLoggable(Level.INFO)) {
+			bLog.info(JsonUtils.jsonPrettyPrint(report.toJson(false))) ;
+		}
+		return report ;
+	}
+
+	private FileReport transformFile(FilePair file, LineBuffers lineBuffers) {
+
+		long start = System.nanoTime() ;
+		boolean succeeded = false ;
+		long nbLines = 0 ;
+		long nbBytes = 0 ;
+		try {
+			Path resultDirectory = file.getResultFilePath().toAbsolutePath().getParent() ;
+			if (resultDirectory != null) {
+				Files.createDirectories(resultDirectory) ;
+			}
+			FileLineTransformer transformer = transformerFactory.newTransformer(file.getSourceFilePath(), file.getResultFilePath()) ;
+			transformer.process(lineBuffers) ;
+			succeeded = transformer.isProcessSucceeded() ;
+			nbLines   = transformer.getNbLinesProcessed() ;
+			if (Files.exists(file.getSourceFilePath())) {
+				nbBytes = Files.size(file.getSourceFilePath()) ;
+			}
+		} catch (IOException | RuntimeException e) {
+			bLog.log(Level.SEVERE, "Exception transforming file " + file.getSourceFilePath(), e) ;
+		}
+		FileReport fileReport = new FileReport(file.getSourceFilePath(), file.getResultFilePath(), succeeded, nbLines, nbBytes, System.nanoTime() - start) ;
+		bLog.fine(() -> "File transformed: " + file.getSourceFilePath() + " nbLines=" + fileReport.getNbLines() + " linesPerSecond=" + fileReport.getLinesPerSecond()) ;
+		return fileReport ;
+	}
+}
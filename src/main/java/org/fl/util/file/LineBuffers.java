@@ -0,0 +1,189 @@
+package org.fl.util.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+// Buffers to read and write the lines of a FileLineTransformer, reused for all the files transformed by a worker of a FileLineTransformerBatch
+// (a BufferedReader and a BufferedWriter allocate their buffers for each file)
+// The lines are split as BufferedReader.readLine does (line feed, carriage return, or both), and written followed by the line separator.
+// Malformed input and unmappable chars are reported as exceptions, as with Files.newBufferedReader and Files.newBufferedWriter
+final class LineBuffers {
+
+	private static final int BUFFER_SIZE = 64*1024 ;
+	private static final String LINE_SEPARATOR = System.lineSeparator() ;
+
+	private final ByteBuffer inBytes ;
+	private final CharBuffer inChars ;
+	private final StringBuilder line ;
+	private final CharBuffer outChars ;
+	private final ByteBuffer outBytes ;
+
+	// Kept from one file to the next, while the charset is the same
+	private CharsetDecoder decoder ;
+	private CharsetEncoder encoder ;
+
+	private ReadableByteChannel in ;
+	private WritableByteChannel out ;
+	private boolean endOfInput ;
+	private boolean endOfChars ;
+
+	// A carriage return ended the previous line: a line feed just after is part of the same line end
+	private boolean skipLineFeed ;
+
+	LineBuffers() {
+		inBytes  = ByteBuffer.allocate(BUFFER_SIZE) ;
+		inChars  = CharBuffer.allocate(BUFFER_SIZE) ;
+		line 	 = new StringBuilder() ;
+		outChars = CharBuffer.allocate(BUFFER_SIZE) ;
+		outBytes = ByteBuffer.allocate(BUFFER_SIZE) ;
+		decoder  = null ;
+		encoder  = null ;
+	}
+
+	// Begin the transformation of a file
+	void open(ReadableByteChannel source, Charset sourceCharset, WritableByteChannel result, Charset resultCharset) {
+
+		if ((decoder == null) || (! decoder.charset().equals(sourceCharset))) {
+			decoder = sourceCharset.newDecoder() ;
+		}
+		if ((encoder == null) || (! encoder.charset().equals(resultCharset))) {
+			encoder = resultCharset.newEncoder() ;
+		}
+		decoder.reset() ;
+		encoder.reset() ;
+		in 			 = source ;
+		out 		 = result ;
+		endOfInput 	 = false ;
+		endOfChars 	 = false ;
+		skipLineFeed = false ;
+		inBytes.clear() ;
+		inChars.clear().flip() ;
+		line.setLength(0) ;
+		outChars.clear() ;
+		outBytes.clear() ;
+	}
+
+	// Returns null at the end of the source
+	String readLine() throws IOException {
+
+		line.setLength(0) ;
+		boolean charsRead = false ;
+		while (true) {
+			if (! inChars.hasRemaining()) {
+				if (! fill()) {
+					return charsRead ? line.toString() : null ;
+				}
+			}
+			char[] chars = inChars.array() ;
+			int position = inChars.position() ;
+			int limit 	 = inChars.limit() ;
+			if (skipLineFeed) {
+				skipLineFeed = false ;
+				if (chars[position] == '\n') {
+					position++ ;
+				}
+			}
+			int start = position ;
+			while ((position < limit) && (chars[position] != '\n') && (chars[position] != '\r')) {
+				position++ ;
+			}
+			line.append(chars, start, position - start) ;
+			charsRead = charsRead || (position > start) ;
+			if (position < limit) {
+				skipLineFeed = (chars[position] == '\r') ;
+				inChars.position(position + 1) ;
+				return line.toString() ;
+			}
+			inChars.position(position) ;
+		}
+	}
+
+	// Decode more chars. Returns false at the end of the source
+	private boolean fill() throws IOException {
+
+		if (endOfChars) {
+			return false ;
+		}
+		inChars.clear() ;
+		while (inChars.position() == 0) {
+			if (! endOfInput) {
+				endOfInput = (in.read(inBytes) < 0) ;
+			}
+			inBytes.flip() ;
+			CoderResult result = decoder.decode(inBytes, inChars, endOfInput) ;
+			inBytes.compact() ;
+			if (result.isError()) {
+				result.throwException() ;
+			}
+			if (endOfInput && result.isUnderflow()) {
+				// all the bytes are decoded
+				decoder.flush(inChars) ;
+				endOfChars = true ;
+				break ;
+			}
+		}
+		inChars.flip() ;
+		return inChars.hasRemaining() ;
+	}
+
+	void writeLine(String lineResult) throws IOException {
+		write(lineResult) ;
+		write(LINE_SEPARATOR) ;
+	}
+
+	private void write(String s) throws IOException {
+
+		int start = 0 ;
+		while (start < s.length()) {
+			int length = Math.min(s.length() - start, outChars.remaining()) ;
+			outChars.put(s, start, start + length) ;
+			start += length ;
+			if (! outChars.hasRemaining()) {
+				encode(false) ;
+			}
+		}
+	}
+
+	private void encode(boolean endOfOutput) throws IOException {
+
+		outChars.flip() ;
+		while (true) {
+			CoderResult result = encoder.encode(outChars, outBytes, endOfOutput) ;
+			if (result.isOverflow()) {
+				writeBytes() ;
+			} else if (result.isError()) {
+				result.throwException() ;
+			} else {
+				break ;
+			}
+		}
+		outChars.compact() ;
+	}
+
+	private void writeBytes() throws IOException {
+		outBytes.flip() ;
+		while (outBytes.hasRemaining()) {
+			out.write(outBytes) ;
+		}
+		outBytes.clear() ;
+	}
+
+	// End the transformation of the file: write the chars remaining in the buffers (the channels are not closed)
+	void close() throws IOException {
+
+		encode(true) ;
+		while (encoder.flush(outBytes).isOverflow()) {
+			writeBytes() ;
+		}
+		writeBytes() ;
+		in  = null ;
+		out = null ;
+	}
+}
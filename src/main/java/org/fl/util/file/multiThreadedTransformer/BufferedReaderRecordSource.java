@@ -0,0 +1,27 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.fl.util.file.multiThreadedTransformer.RecordCollector.LineGrouper;
+
+// The file is read line by line with a BufferedReader, on the calling thread
+class BufferedReaderRecordSource extends RecordSource {
+
+	@Override
+	public void readRecords(Path inputFilePath, Charset inputCharset, RecordCollector recordCollector) throws IOException, InterruptedException {
+
+		LineGrouper grouper = recordCollector.newGrouper() ;
+		try (BufferedReader bf = Files.newBufferedReader(inputFilePath, inputCharset)) {
+
+			String line ;
+			while ((line = bf.readLine()) != null) {
+				grouper.addLine(line) ;
+			}
+		}
+		grouper.end() ;
+	}
+}
@@ -0,0 +1,65 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+// Result of a ByteRecordProcessor: encoded bytes inside a shared byte array, without copy
+// The ItemsWriter writes the bytes directly when its charset is the charset of the chunk.
+// As a CharSequence, the bytes are decoded, only when the chars are asked
+final class ByteChunk implements CharSequence {
+
+	private final byte[] bytes ;
+	private final int offset ;
+	private final int length ;
+	private final Charset charset ;
+
+	// Decoded text, created on the first need
+	private String decoded ;
+
+	ByteChunk(byte[] bytes, int offset, int length, Charset charset) {
+		if ((offset < 0) || (length < 0) || (length > bytes.length - offset)) {
+			throw new IndexOutOfBoundsException("Invalid chunk: offset=" + offset + " length=" + length + " array length=" + bytes.length) ;
+		}
+		this.bytes 	 = bytes ;
+		this.offset  = offset ;
+		this.length  = length ;
+		this.charset = charset ;
+		this.decoded = null ;
+	}
+
+	Charset getCharset() {
+		return charset ;
+	}
+
+	int getNbBytes() {
+		return length ;
+	}
+
+	void writeTo(OutputStream out) throws IOException {
+		out.write(bytes, offset, length) ;
+	}
+
+	@Override
+	public int length() {
+		return toString().length() ;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return toString().charAt(index) ;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end) ;
+	}
+
+	@Override
+	public String toString() {
+		if (decoded == null) {
+			decoded = new String(bytes, offset, length, charset) ;
+		}
+		return decoded ;
+	}
+}
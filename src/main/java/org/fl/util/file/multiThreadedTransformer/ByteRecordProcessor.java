@@ -0,0 +1,42 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+// Item processor working on the bytes of the records, for ASCII compatible charsets, when the input and output charsets are the same
+// The records are given as ByteBuffer slices of a shared byte array, and the result is written as bytes:
+// the lines are decoded and the result encoded only when the processor asks for chars (ByteRecordView.decodeLine, ByteResult.append(CharSequence)).
+// An ItemsExtractor extracting with a ByteRecordProcessor groups the lines with isValidFirstLine(ByteBuffer)
+// and belongsToCurrentRecord(ByteRecordView, ByteBuffer), that should be overridden to avoid decoding
+public abstract class ByteRecordProcessor extends ItemProcessor {
+
+	// Charset of the records and of the results, set by the ItemsExtractor
+	private Charset charset = StandardCharsets.UTF_8 ;
+
+	@Override
+	public abstract ByteRecordProcessor getClone() ;
+
+	// Write the result of the record in result. Returns false if there is no result for the record
+	// The record view and its buffers are only valid during the call: keep a copy of what is needed after
+	public abstract boolean processRecord(ByteRecordView record, ByteResult result) ;
+
+	public Charset getCharset() {
+		return charset ;
+	}
+
+	public void setCharset(Charset charset) {
+		this.charset = charset ;
+	}
+
+	// ItemProcessor contract, for a call out of the byte mode (a view and a result are created for each record)
+	@Override
+	public CharSequence processItem(ArrayList<String> currentEntry) {
+		ByteResult result = new ByteResult(charset, 256) ;
+		if (processRecord(ByteRecordView.of(currentEntry, charset), result)) {
+			return result.endRecord() ;
+		} else {
+			return null ;
+		}
+	}
+}
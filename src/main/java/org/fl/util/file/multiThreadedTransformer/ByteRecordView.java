@@ -0,0 +1,135 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// View of a record (entry) inside a RecordsBatch of bytes, without copy and without decoding
+// The lines are given as ByteBuffer on the byte array of the batch: the bytes of a line are between the position and the limit of the buffer.
+// The record is the bytes of its lines separated by line feeds.
+// A view is reused for all the records of a batch: the view and its buffers are only valid during the call of the ByteRecordProcessor
+public class ByteRecordView {
+
+	private final Charset charset ;
+
+	private RecordsBatch batch ;
+	private int firstLine ;
+	private int nbLines ;
+
+	// Buffers of the lines and of the record, reused from one record to the next
+	private ByteBuffer[] lineBuffers ;
+	private ByteBuffer recordBuffer ;
+
+	public ByteRecordView(Charset cs) {
+		charset 	 = cs ;
+		batch 		 = null ;
+		firstLine 	 = 0 ;
+		nbLines 	 = 0 ;
+		lineBuffers  = new ByteBuffer[0] ;
+		recordBuffer = null ;
+	}
+
+	// Standalone record, with the lines encoded in the charset (to call a ByteRecordProcessor out of an extract, or for tests)
+	public static ByteRecordView of(List<String> lines, Charset cs) {
+
+		RecordsBatch batch = new RecordsBatch() ;
+		batch.startRecord() ;
+		for (String line : lines) {
+			byte[] lineBytes = line.getBytes(cs) ;
+			batch.appendLine(lineBytes, 0, lineBytes.length) ;
+		}
+		batch.endRecord() ;
+		return batch.getRecord(0, new ByteRecordView(cs)) ;
+	}
+
+	void set(RecordsBatch b, int fl, int nl) {
+		batch 	  = b ;
+		firstLine = fl ;
+		nbLines   = nl ;
+	}
+
+	// Charset of the bytes
+	public Charset getCharset() {
+		return charset ;
+	}
+
+	public int getNbLines() {
+		return nbLines ;
+	}
+
+	// The buffer is reused when the view is positioned on another record
+	// It must not be modified (its position and limit may be changed)
+	public ByteBuffer getLine(int index) {
+		checkLineIndex(index) ;
+		if (index >= lineBuffers.length) {
+			lineBuffers = Arrays.copyOf(lineBuffers, Math.max(index + 1, lineBuffers.length*2)) ;
+		}
+		lineBuffers[index] = position(lineBuffers[index], batch.getLineStart(firstLine + index), batch.getLineLength(firstLine + index)) ;
+		return lineBuffers[index] ;
+	}
+
+	public ByteBuffer getFirstLine() {
+		return getLine(0) ;
+	}
+
+	// Bytes of the record: the lines separated by line feeds
+	public ByteBuffer getRecord() {
+		recordBuffer = position(recordBuffer, offset(), getNbBytes()) ;
+		return recordBuffer ;
+	}
+
+	// Number of bytes of the record
+	public int getNbBytes() {
+		if (nbLines == 0) {
+			return 0 ;
+		}
+		int lastLine = firstLine + nbLines - 1 ;
+		return batch.getLineStart(lastLine) + batch.getLineLength(lastLine) - offset() ;
+	}
+
+	// Decoded line: only when the chars are really needed
+	public String decodeLine(int index) {
+		checkLineIndex(index) ;
+		return new String(batch.getBytes(), batch.getLineStart(firstLine + index), batch.getLineLength(firstLine + index), charset) ;
+	}
+
+	// Copy of the decoded lines, as the ArrayList<String> given to an ItemProcessor
+	public ArrayList<String> toLines() {
+		ArrayList<String> lines = new ArrayList<String>(nbLines) ;
+		for (int i=0; i < nbLines; i++) {
+			lines.add(decodeLine(i)) ;
+		}
+		return lines ;
+	}
+
+	@Override
+	public String toString() {
+		if (nbLines == 0) {
+			return "" ;
+		}
+		return new String(batch.getBytes(), offset(), getNbBytes(), charset) ;
+	}
+
+	private int offset() {
+		return batch.getLineStart(firstLine) ;
+	}
+
+	private void checkLineIndex(int index) {
+		if ((index < 0) || (index >= nbLines)) {
+			throw new IndexOutOfBoundsException("Line " + index + " out of record of " + nbLines + " lines") ;
+		}
+	}
+
+	// The buffer is created again only when the batch byte array has changed
+	private ByteBuffer position(ByteBuffer buffer, int start, int length) {
+		byte[] bytes = (batch.getBytes() == null) ? new byte[0] : batch.getBytes() ;
+		if ((buffer == null) || (buffer.array() != bytes)) {
+			buffer = ByteBuffer.wrap(bytes) ;
+		}
+		buffer.clear() ;
+		buffer.position(start).limit(start + length) ;
+		return buffer ;
+	}
+}
@@ -0,0 +1,140 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+// Result of a ByteRecordProcessor, written as bytes in the charset of the output
+// The results of all the records of a batch are written one after the other in the same byte array.
+// Chars are encoded only when appended as chars (append(CharSequence))
+public class ByteResult {
+
+	private final Charset charset ;
+	private final boolean asciiFastPath ;
+
+	// Created on the first non ASCII char appended
+	private CharsetEncoder encoder ;
+
+	private byte[] bytes ;
+	private int nbBytes ;
+
+	// Start of the result of the current record
+	private int recordStart ;
+
+	public ByteResult(Charset cs, int initialCapacity) {
+		charset 	  = cs ;
+		asciiFastPath = MappedLineReader.hasAsciiFastPath(cs) ;
+		encoder 	  = null ;
+		bytes 		  = new byte[Math.max(initialCapacity, 16)] ;
+		nbBytes 	  = 0 ;
+		recordStart   = 0 ;
+	}
+
+	public Charset getCharset() {
+		return charset ;
+	}
+
+	// Number of bytes of the result of the current record
+	public int length() {
+		return nbBytes - recordStart ;
+	}
+
+	// Append the bytes between the position and the limit of the buffer. The position of the buffer is not changed
+	public ByteResult append(ByteBuffer src) {
+		int length = src.remaining() ;
+		ensureCapacity(length) ;
+		src.get(src.position(), bytes, nbBytes, length) ;
+		nbBytes += length ;
+		return this ;
+	}
+
+	public ByteResult append(byte[] src, int offset, int length) {
+		ensureCapacity(length) ;
+		System.arraycopy(src, offset, bytes, nbBytes, length) ;
+		nbBytes += length ;
+		return this ;
+	}
+
+	public ByteResult append(byte b) {
+		ensureCapacity(1) ;
+		bytes[nbBytes++] = b ;
+		return this ;
+	}
+
+	// Append the chars encoded in the charset
+	public ByteResult append(CharSequence cs) {
+
+		int length = cs.length() ;
+		int i = 0 ;
+		if (asciiFastPath) {
+			ensureCapacity(length) ;
+			char c ;
+			while ((i < length) && ((c = cs.charAt(i)) < 0x80)) {
+				bytes[nbBytes++] = (byte) c ;
+				i++ ;
+			}
+		}
+		if (i < length) {
+			encode(CharBuffer.wrap(cs, i, length)) ;
+		}
+		return this ;
+	}
+
+	private void encode(CharBuffer in) {
+
+		if (encoder == null) {
+			encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE) ;
+		}
+		encoder.reset() ;
+		boolean flushing = false ;
+		while (true) {
+			ensureCapacity((int) Math.ceil(in.remaining()*encoder.averageBytesPerChar()) + 8) ;
+			ByteBuffer out = ByteBuffer.wrap(bytes, nbBytes, bytes.length - nbBytes) ;
+			CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, true) ;
+			nbBytes = out.position() ;
+			if (result.isOverflow()) {
+				bytes = Arrays.copyOf(bytes, bytes.length*2) ;
+			} else if (result.isError()) {
+				// not possible with the REPLACE actions
+				try {
+					result.throwException() ;
+				} catch (CharacterCodingException e) {
+					throw new IllegalStateException("Encoding error in " + charset, e) ;
+				}
+			} else if (flushing) {
+				return ;
+			} else {
+				flushing = true ;
+			}
+		}
+	}
+
+	private void ensureCapacity(int length) {
+		if (nbBytes + length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length*2, nbBytes + length)) ;
+		}
+	}
+
+	void startRecord() {
+		recordStart = nbBytes ;
+	}
+
+	// Result of the current record. The bytes are not copied: they must not be changed after
+	ByteChunk endRecord() {
+		ByteChunk chunk = new ByteChunk(bytes, recordStart, nbBytes - recordStart, charset) ;
+		recordStart = nbBytes ;
+		return chunk ;
+	}
+
+	// The current record has no result
+	void discardRecord() {
+		nbBytes = recordStart ;
+	}
+}
@@ -0,0 +1,99 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+// A sequence of chars inside a shared char array, without copy
+// A slice given by a RecordView is reused: it is only valid during the call of the RecordViewProcessor
+// (toString gives a String that can be kept)
+public final class CharSlice implements CharSequence {
+
+	private char[] chars ;
+	private int offset ;
+	private int length ;
+
+	public CharSlice() {
+		this(new char[0], 0, 0) ;
+	}
+
+	public CharSlice(char[] chars, int offset, int length) {
+		set(chars, offset, length) ;
+	}
+
+	void set(char[] chars, int offset, int length) {
+		if ((offset < 0) || (length < 0) || (length > chars.length - offset)) {
+			throw new IndexOutOfBoundsException("Invalid slice: offset=" + offset + " length=" + length + " array length=" + chars.length) ;
+		}
+		this.chars 	= chars ;
+		this.offset = offset ;
+		this.length = length ;
+	}
+
+	@Override
+	public int length() {
+		return length ;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if ((index < 0) || (index >= length)) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of slice of length " + length) ;
+		}
+		return chars[offset + index] ;
+	}
+
+	// The sub sequence shares the char array of this slice (it is valid as long as this slice is valid)
+	@Override
+	public CharSlice subSequence(int start, int end) {
+		if ((start < 0) || (end > length) || (start > end)) {
+			throw new IndexOutOfBoundsException("Invalid sub sequence: start=" + start + " end=" + end + " length=" + length) ;
+		}
+		return new CharSlice(chars, offset + start, end - start) ;
+	}
+
+	public boolean startsWith(CharSequence prefix) {
+		int prefixLength = prefix.length() ;
+		if (prefixLength > length) {
+			return false ;
+		}
+		for (int i=0; i < prefixLength; i++) {
+			if (chars[offset + i] != prefix.charAt(i)) {
+				return false ;
+			}
+		}
+		return true ;
+	}
+
+	// Index of the first occurrence of c in the slice, starting at fromIndex (-1 if none)
+	public int indexOf(char c, int fromIndex) {
+		for (int i = Math.max(fromIndex, 0); i < length; i++) {
+			if (chars[offset + i] == c) {
+				return i ;
+			}
+		}
+		return -1 ;
+	}
+
+	public int indexOf(char c) {
+		return indexOf(c, 0) ;
+	}
+
+	public boolean contentEquals(CharSequence cs) {
+		if (cs.length() != length) {
+			return false ;
+		}
+		for (int i=0; i < length; i++) {
+			if (chars[offset + i] != cs.charAt(i)) {
+				return false ;
+			}
+		}
+		return true ;
+	}
+
+	// Append the chars of the slice, without intermediate String
+	public StringBuilder appendTo(StringBuilder sb) {
+		return sb.append(chars, offset, length) ;
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, offset, length) ;
+	}
+}
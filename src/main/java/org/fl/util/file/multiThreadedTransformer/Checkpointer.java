@@ -0,0 +1,213 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.fl.util.json.JsonUtils;
+
+import com.google.gson.JsonObject;
+
+// Periodic checkpoints of an ItemsExtractor, to resume an extract that has not ended
+//
+// A checkpoint is taken by the reader thread, at the beginning of an entry:
+// - the entries read before are put in the entries queue
+// - the reader waits until all the batches of entries have been processed by the processor threads
+// - each writer is asked to write and flush the items queued before, and gives its position in its file
+// - the input position and the writers positions are saved in the checkpoint file (replaced atomically)
+// So the result files contain exactly the results of the entries before the input position, whatever the order of the output
+public class Checkpointer {
+
+	private static final String INPUT_POSITION 		= "inputPosition" ;
+	private static final String NB_RECORDS_READ 	= "nbRecordsRead" ;
+	private static final String NB_LINES_READ 		= "nbLinesRead" ;
+	private static final String OUTPUT_POSITION 	= "outputPosition" ;
+	private static final String ELIMINATED_POSITION = "eliminatedPosition" ;
+	private static final String ATYPIC_POSITION 	= "atypicPosition" ;
+	private static final String TIMESTAMP 			= "timestamp" ;
+
+	private static final long WAIT_PROCESSORS_NANOS = 200000 ;
+
+	private final Path checkpointFilePath ;
+	private final long checkpointIntervalNanos ;
+	private final Logger logger ;
+
+	private ItemsWriter itemsWriter ;
+	private ItemsWriter eliminatedWriter ;
+	private ItemsWriter atypicWriter ;
+
+	// Checkpoint the extract has been resumed from (null if it is a new extract)
+	private final Checkpoint resumedCheckpoint ;
+
+	private final LongAdder nbBatchesProcessed ;
+	private long lastCheckpointTime ;
+	private long nbCheckpoints ;
+
+	// The state saved by a checkpoint
+	public static class Checkpoint {
+
+		private final long inputPosition ;
+		private final long nbRecordsRead ;
+		private final long nbLinesRead ;
+		private final long outputPosition ;
+		private final long eliminatedPosition ;
+		private final long atypicPosition ;
+
+		public Checkpoint(long ip, long nr, long nl, long op, long ep, long ap) {
+			inputPosition 	   = ip ;
+			nbRecordsRead 	   = nr ;
+			nbLinesRead 	   = nl ;
+			outputPosition 	   = op ;
+			eliminatedPosition = ep ;
+			atypicPosition 	   = ap ;
+		}
+
+		private Checkpoint(JsonObject json) {
+			this(json.get(INPUT_POSITION).getAsLong(),
+				 json.get(NB_RECORDS_READ).getAsLong(),
+				 json.get(NB_LINES_READ).getAsLong(),
+				 json.get(OUTPUT_POSITION).getAsLong(),
+				 json.get(ELIMINATED_POSITION).getAsLong(),
+				 json.get(ATYPIC_POSITION).getAsLong()) ;
+		}
+
+		private JsonObject toJson() {
+			JsonObject json = new JsonObject() ;
+			json.addProperty(INPUT_POSITION, 	  inputPosition) ;
+			json.addProperty(NB_RECORDS_READ, 	  nbRecordsRead) ;
+			json.addProperty(NB_LINES_READ, 	  nbLinesRead) ;
+			json.addProperty(OUTPUT_POSITION, 	  outputPosition) ;
+			json.addProperty(ELIMINATED_POSITION, eliminatedPosition) ;
+			json.addProperty(ATYPIC_POSITION, 	  atypicPosition) ;
+			json.addProperty(TIMESTAMP, 		  System.currentTimeMillis()) ;
+			return json ;
+		}
+
+		// Byte position in the input file of the first line of the next entry
+		public long getInputPosition() {
+			return inputPosition;
+		}
+
+		public long getNbRecordsRead() {
+			return nbRecordsRead;
+		}
+
+		public long getNbLinesRead() {
+			return nbLinesRead;
+		}
+
+		// Positions in the result files (-1 if there is no such file)
+		public long getOutputPosition() {
+			return outputPosition;
+		}
+
+		public long getEliminatedPosition() {
+			return eliminatedPosition;
+		}
+
+		public long getAtypicPosition() {
+			return atypicPosition;
+		}
+	}
+
+	public Checkpointer(Path cfp, long checkpointIntervalMillis, Checkpoint rc, Logger l) {
+
+		checkpointFilePath 		= cfp ;
+		checkpointIntervalNanos = checkpointIntervalMillis*1000000 ;
+		resumedCheckpoint 		= rc ;
+		logger 					= l ;
+		nbBatchesProcessed 		= new LongAdder() ;
+		lastCheckpointTime 		= System.nanoTime() ;
+		nbCheckpoints 			= 0 ;
+	}
+
+	// Read the checkpoint file. Returns null if there is no checkpoint
+	public static Checkpoint readCheckpoint(Path checkpointFilePath, Logger logger) throws IOException {
+
+		if (! Files.exists(checkpointFilePath)) {
+			return null ;
+		}
+		JsonObject json = JsonUtils.getJsonObjectFromPath(checkpointFilePath, StandardCharsets.UTF_8, logger) ;
+		if (json == null) {
+			throw new IOException("Invalid checkpoint file " + checkpointFilePath) ;
+		}
+		try {
+			return new Checkpoint(json) ;
+		} catch (RuntimeException e) {
+			throw new IOException("Invalid checkpoint file " + checkpointFilePath, e) ;
+		}
+	}
+
+	public void setWriters(ItemsWriter iw, ItemsWriter ew, ItemsWriter aw) {
+		itemsWriter 	 = iw ;
+		eliminatedWriter = ew ;
+		atypicWriter 	 = aw ;
+	}
+
+	// Called by the processor threads when a batch of entries has been processed and its results put in the output queue
+	public void batchProcessed() {
+		nbBatchesProcessed.increment() ;
+	}
+
+	public boolean isDue() {
+		return System.nanoTime() - lastCheckpointTime >= checkpointIntervalNanos ;
+	}
+
+	// Called by the reader thread. All the entries before inputPosition must have been put in the entries queue (nbBatchesPut batches)
+	// A checkpoint failure is logged, and the extract goes on
+	public void checkpoint(long inputPosition, long nbBatchesPut, long nbRecordsRead, long nbLinesRead) throws InterruptedException {
+
+		// wait for the processors
+		while (nbBatchesProcessed.sum() < nbBatchesPut) {
+			LockSupport.parkNanos(WAIT_PROCESSORS_NANOS) ;
+			if (Thread.interrupted()) {
+				throw new InterruptedException() ;
+			}
+		}
+		try {
+			long outputPosition 	= itemsWriter.checkpoint() ;
+			long eliminatedPosition = (eliminatedWriter != null) ? eliminatedWriter.checkpoint() : -1 ;
+			long atypicPosition 	= (atypicWriter != null) ? atypicWriter.checkpoint() : -1 ;
+
+			long baseNbRecords = 0 ;
+			long baseNbLines   = 0 ;
+			if (resumedCheckpoint != null) {
+				baseNbRecords = resumedCheckpoint.getNbRecordsRead() ;
+				baseNbLines   = resumedCheckpoint.getNbLinesRead() ;
+			}
+			Checkpoint checkpoint = new Checkpoint(inputPosition, baseNbRecords + nbRecordsRead, baseNbLines + nbLinesRead,
+												   outputPosition, eliminatedPosition, atypicPosition) ;
+
+			// write a temporary file, then replace the checkpoint file, so that there is always a complete checkpoint file
+			Path tmpFile = checkpointFilePath.resolveSibling(checkpointFilePath.getFileName() + ".tmp") ;
+			Files.writeString(tmpFile, JsonUtils.jsonPrettyPrint(checkpoint.toJson()), StandardCharsets.UTF_8) ;
+			Files.move(tmpFile, checkpointFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE) ;
+			nbCheckpoints++ ;
+			if (logger.isLoggable(Level.FINE)) {
+				logger.fine("Checkpoint at input position " + inputPosition) ;
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Exception writing checkpoint " + checkpointFilePath, e) ;
+		}
+		lastCheckpointTime = System.nanoTime() ;
+	}
+
+	// The extract has ended: there is nothing to resume
+	public void end() {
+		try {
+			Files.deleteIfExists(checkpointFilePath) ;
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Exception deleting checkpoint " + checkpointFilePath, e) ;
+		}
+	}
+
+	public long getNbCheckpoints() {
+		return nbCheckpoints;
+	}
+}
@@ -0,0 +1,176 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+// Snapshot of the progress of an ItemsExtractor extract (see ExtractMonitor)
+// The rates per second are computed since the previous snapshot
+public class ExtractMetrics {
+
+	private final long elapsedMillis ;
+
+	private final long nbRecordsRead ;
+	private final long nbRecordsProcessed ;
+	private final long nbRecordsWritten ;
+
+	private final double recordsReadPerSecond ;
+	private final double recordsProcessedPerSecond ;
+	private final double recordsWrittenPerSecond ;
+
+	// -1 if there is no such queue
+	private final int entriesQueueDepth ;
+	private final int outputQueueDepth ;
+	private final int eliminatedQueueDepth ;
+	private final int atypicQueueDepth ;
+
+	private final long processItemLatencyP50 ;
+	private final long processItemLatencyP99 ;
+
+	private final List<ThreadActivity> threadsActivity ;
+
+	// Activity of a thread of the extract
+	public static class ThreadActivity {
+
+		private final String name ;
+		private final long busyMillis ;
+		private final long blockedMillis ;
+		private final boolean running ;
+
+		public ThreadActivity(String n, long bm, long blm, boolean r) {
+			name 		  = n ;
+			busyMillis 	  = bm ;
+			blockedMillis = blm ;
+			running 	  = r ;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		// Time spent working
+		public long getBusyMillis() {
+			return busyMillis;
+		}
+
+		// Time spent waiting for a queue (for an element to take or for space to put)
+		public long getBlockedMillis() {
+			return blockedMillis;
+		}
+
+		public boolean isRunning() {
+			return running;
+		}
+
+		private JsonObject toJson() {
+			JsonObject json = new JsonObject() ;
+			json.addProperty("name", 		  name) ;
+			json.addProperty("busyMillis", 	  busyMillis) ;
+			json.addProperty("blockedMillis", blockedMillis) ;
+			json.addProperty("running", 	  running) ;
+			return json ;
+		}
+	}
+
+	public ExtractMetrics(long em, long nrr, long nrp, long nrw, double rrps, double rpps, double rwps,
+						  int eqd, int oqd, int elqd, int aqd, long p50, long p99, List<ThreadActivity> ta) {
+
+		elapsedMillis 			  = em ;
+		nbRecordsRead 			  = nrr ;
+		nbRecordsProcessed 		  = nrp ;
+		nbRecordsWritten 		  = nrw ;
+		recordsReadPerSecond 	  = rrps ;
+		recordsProcessedPerSecond = rpps ;
+		recordsWrittenPerSecond   = rwps ;
+		entriesQueueDepth 		  = eqd ;
+		outputQueueDepth 		  = oqd ;
+		eliminatedQueueDepth 	  = elqd ;
+		atypicQueueDepth 		  = aqd ;
+		processItemLatencyP50 	  = p50 ;
+		processItemLatencyP99 	  = p99 ;
+		threadsActivity 		  = List.copyOf(ta) ;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getNbRecordsRead() {
+		return nbRecordsRead;
+	}
+
+	public long getNbRecordsProcessed() {
+		return nbRecordsProcessed;
+	}
+
+	public long getNbRecordsWritten() {
+		return nbRecordsWritten;
+	}
+
+	public double getRecordsReadPerSecond() {
+		return recordsReadPerSecond;
+	}
+
+	public double getRecordsProcessedPerSecond() {
+		return recordsProcessedPerSecond;
+	}
+
+	public double getRecordsWrittenPerSecond() {
+		return recordsWrittenPerSecond;
+	}
+
+	// Queue depths are in number of batches for the entries and output queues
+	public int getEntriesQueueDepth() {
+		return entriesQueueDepth;
+	}
+
+	public int getOutputQueueDepth() {
+		return outputQueueDepth;
+	}
+
+	public int getEliminatedQueueDepth() {
+		return eliminatedQueueDepth;
+	}
+
+	public int getAtypicQueueDepth() {
+		return atypicQueueDepth;
+	}
+
+	// Latencies of ItemProcessor.processItem in nanoseconds
+	public long getProcessItemLatencyP50() {
+		return processItemLatencyP50;
+	}
+
+	public long getProcessItemLatencyP99() {
+		return processItemLatencyP99;
+	}
+
+	public List<ThreadActivity> getThreadsActivity() {
+		return threadsActivity;
+	}
+
+	public JsonObject toJson() {
+
+		JsonObject json = new JsonObject() ;
+		json.addProperty("elapsedMillis", 			  elapsedMillis) ;
+		json.addProperty("nbRecordsRead", 			  nbRecordsRead) ;
+		json.addProperty("nbRecordsProcessed", 		  nbRecordsProcessed) ;
+		json.addProperty("nbRecordsWritten", 		  nbRecordsWritten) ;
+		json.addProperty("recordsReadPerSecond", 	  recordsReadPerSecond) ;
+		json.addProperty("recordsProcessedPerSecond", recordsProcessedPerSecond) ;
+		json.addProperty("recordsWrittenPerSecond",   recordsWrittenPerSecond) ;
+		json.addProperty("entriesQueueDepth", 		  entriesQueueDepth) ;
+		json.addProperty("outputQueueDepth", 		  outputQueueDepth) ;
+		json.addProperty("eliminatedQueueDepth", 	  eliminatedQueueDepth) ;
+		json.addProperty("atypicQueueDepth", 		  atypicQueueDepth) ;
+		json.addProperty("processItemLatencyP50", 	  processItemLatencyP50) ;
+		json.addProperty("processItemLatencyP99", 	  processItemLatencyP99) ;
+		JsonArray threads = new JsonArray() ;
+		for (ThreadActivity threadActivity : threadsActivity) {
+			threads.add(threadActivity.toJson()) ;
+		}
+		json.add("threadsActivity", threads) ;
+		return json ;
+	}
+}
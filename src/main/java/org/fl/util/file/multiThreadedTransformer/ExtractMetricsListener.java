@@ -0,0 +1,9 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+// Periodically informed of the progress of an ItemsExtractor extract
+// Called by a monitoring thread, and a last time at the end of the extract
+@FunctionalInterface
+public interface ExtractMetricsListener {
+
+	void metrics(ExtractMetrics extractMetrics) ;
+}
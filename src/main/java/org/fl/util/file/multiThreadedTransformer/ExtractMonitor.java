@@ -0,0 +1,136 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.fl.util.file.multiThreadedTransformer.ExtractMetrics.ThreadActivity;
+
+// Live counters of an ItemsExtractor extract, updated by the reader, the processors and the writers
+// snapshot() can be called at any time, from any thread, while the extract runs
+public class ExtractMonitor {
+
+	private final long startNanos ;
+
+	private final LinkedBlockingQueue<?> entries ;
+	private final LinkedBlockingQueue<?> outPutQ ;
+	private final LinkedBlockingQueue<?> eliminatedEntries ;
+	private final LinkedBlockingQueue<?> atypicEntries ;
+
+	private RecordCollector recordCollector ;
+	private ItemsWriter itemsWriter ;
+
+	private final LongAdder nbRecordsProcessed ;
+	private final LatencyHistogram processItemLatency ;
+	private final List<ThreadClock> threadClocks ;
+
+	// Previous snapshot, to compute the rates
+	private long previousNanos ;
+	private long previousNbRecordsRead ;
+	private long previousNbRecordsProcessed ;
+	private long previousNbRecordsWritten ;
+
+	// Busy and blocked time of a thread. Updated only by the thread itself
+	public static class ThreadClock {
+
+		private final String name ;
+		private final long startNanos ;
+		private volatile long endNanos ;
+		private volatile long blockedNanos ;
+
+		private ThreadClock(String n) {
+			name 		 = n ;
+			startNanos 	 = System.nanoTime() ;
+			endNanos 	 = 0 ;
+			blockedNanos = 0 ;
+		}
+
+		// Add the time spent waiting for a queue since blockedStartNanos (a System.nanoTime())
+		public void blockedSince(long blockedStartNanos) {
+			blockedNanos = blockedNanos + (System.nanoTime() - blockedStartNanos) ;
+		}
+
+		public void end() {
+			endNanos = System.nanoTime() ;
+		}
+
+		private ThreadActivity getActivity(long nowNanos) {
+			long end = endNanos ;
+			boolean running = (end == 0) ;
+			long elapsed = (running ? nowNanos : end) - startNanos ;
+			long blocked = blockedNanos ;
+			return new ThreadActivity(name, Math.max(0, elapsed - blocked)/1000000, blocked/1000000, running) ;
+		}
+	}
+
+	public ExtractMonitor(LinkedBlockingQueue<?> en, LinkedBlockingQueue<?> oq, LinkedBlockingQueue<?> ee, LinkedBlockingQueue<?> ae) {
+
+		startNanos 		   = System.nanoTime() ;
+		entries 		   = en ;
+		outPutQ 		   = oq ;
+		eliminatedEntries  = ee ;
+		atypicEntries 	   = ae ;
+		nbRecordsProcessed = new LongAdder() ;
+		processItemLatency = new LatencyHistogram() ;
+		threadClocks 	   = new CopyOnWriteArrayList<ThreadClock>() ;
+		previousNanos 	   = startNanos ;
+	}
+
+	public void setRecordCollector(RecordCollector recordCollector) {
+		this.recordCollector = recordCollector;
+	}
+
+	public void setItemsWriter(ItemsWriter itemsWriter) {
+		this.itemsWriter = itemsWriter;
+	}
+
+	// A clock for the calling thread
+	public ThreadClock newThreadClock(String name) {
+		ThreadClock threadClock = new ThreadClock(name) ;
+		threadClocks.add(threadClock) ;
+		return threadClock ;
+	}
+
+	// Called by the processors for each record processed
+	public void itemProcessed(long latencyNanos) {
+		nbRecordsProcessed.increment() ;
+		processItemLatency.record(latencyNanos) ;
+	}
+
+	public synchronized ExtractMetrics snapshot() {
+
+		long now = System.nanoTime() ;
+		long nbRead 	 = (recordCollector != null) ? recordCollector.getNbRecordsRead() : 0 ;
+		long nbProcessed = nbRecordsProcessed.sum() ;
+		long nbWritten 	 = (itemsWriter != null) ? itemsWriter.getNbElementWritten() : 0 ;
+
+		double seconds = (now - previousNanos)/1e9 ;
+		double readRate 	 = 0 ;
+		double processedRate = 0 ;
+		double writtenRate 	 = 0 ;
+		if (seconds > 0) {
+			readRate 	  = (nbRead - previousNbRecordsRead)/seconds ;
+			processedRate = (nbProcessed - previousNbRecordsProcessed)/seconds ;
+			writtenRate   = (nbWritten - previousNbRecordsWritten)/seconds ;
+		}
+		previousNanos 			   = now ;
+		previousNbRecordsRead 	   = nbRead ;
+		previousNbRecordsProcessed = nbProcessed ;
+		previousNbRecordsWritten   = nbWritten ;
+
+		List<ThreadActivity> threadsActivity = new ArrayList<ThreadActivity>() ;
+		for (ThreadClock threadClock : threadClocks) {
+			threadsActivity.add(threadClock.getActivity(now)) ;
+		}
+
+		return new ExtractMetrics((now - startNanos)/1000000, nbRead, nbProcessed, nbWritten, readRate, processedRate, writtenRate,
+								  depth(entries), depth(outPutQ), depth(eliminatedEntries), depth(atypicEntries),
+								  processItemLatency.getPercentile(50), processItemLatency.getPercentile(99), threadsActivity) ;
+	}
+
+	private static int depth(LinkedBlockingQueue<?> queue) {
+		return (queue != null) ? queue.size() : -1 ;
+	}
+}
@@ -0,0 +1,30 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.ArrayList;
+
+// Batch of entries, or of results, passed between the reader, the processors and the writer
+// The sequence number gives the order in which the batches of entries have been put in the entries queue.
+// The batch of results of a batch of entries has the same sequence number
+public class ItemsBatch<T> extends ArrayList<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	private long sequenceNumber ;
+
+	public ItemsBatch(int initialCapacity) {
+		this(initialCapacity, -1) ;
+	}
+
+	public ItemsBatch(int initialCapacity, long sn) {
+		super(initialCapacity) ;
+		sequenceNumber = sn ;
+	}
+
+	public long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	protected void setSequenceNumber(long sequenceNumber) {
+		this.sequenceNumber = sequenceNumber;
+	}
+}
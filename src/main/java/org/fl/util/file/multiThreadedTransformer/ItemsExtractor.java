@@ -1,18 +1,22 @@
 package org.fl.util.file.multiThreadedTransformer;
 
-import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.fl.util.CompressionUtils.SupportedCompression;
+import org.fl.util.file.multiThreadedTransformer.Checkpointer.Checkpoint;
 import org.fl.util.json.JsonUtils;
 
 import com.google.gson.JsonArray;
@@ -20,21 +24,52 @@ import com.google.gson.JsonObject;
 
 public abstract class ItemsExtractor {
 
+	// Executor running the item processors (ThreadedItemsProcess), when no ExecutorService is supplied
+	public enum ProcessExecutor {
+		// Fixed pool of platform threads
+		FIXED_THREAD_POOL,
+		// One virtual thread per processor, for processors doing blocking calls (needs java 21, a cached thread pool is used otherwise)
+		VIRTUAL_THREAD_PER_TASK
+	}
+
 	private final static int ENTRIES_Q_SIZE_DEFAULT 	= 100 ;
 	private final static int OUTPUT_Q_SIZE_DEFAULT  	= 100 ;
 	private final static int ELIMINATED_Q_SIZE_DEFAULT  = 100 ;
 	private final static int ATYPIC_Q_SIZE_DEFAULT  	= 100 ;
 	private final static int NB_PROCESS_THREAD_DEFAULT  = 10 ;
 	private final static int NB_SUPPLEMENTARY_THREAD	= 4 ;
+	private final static int BATCH_SIZE_DEFAULT			= 1 ;
+	private final static long BATCH_TIMEOUT_DEFAULT		= 100 ;
+	private final static int REORDER_WINDOW_SIZE_DEFAULT = 64 ;
+	
+	// StringBuilder pool of the record view mode
+	private final static int RESULT_INITIAL_CAPACITY 	 = 256 ;
+	private final static int RESULT_MAX_RETAINED_CAPACITY = 64*1024 ;
+	private final static int RESULT_POOL_MAX_SIZE 		 = 64*1024 ;
 	
 	private int entriesQueueSize ;
 	private int outputQueueSize ;
 	private int eliminatedQueueSize ;
 	private int atypicQueueSize ;
 	
-	private LinkedBlockingQueue<ArrayList<String>> entries ;
+	// Entries and results are passed by batch between the reader, the processors and the writer
+	// The entries and output queue sizes are expressed in number of batches
+	private int batchSize ;
+	private long batchTimeout ;
+	
+	// Ordered output: the results are written in the order of the entries (reorder window size in number of batches)
+	private boolean orderedOutput ;
+	private int reorderWindowSize ;
+	
+	private LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> entries ;
 	
-	private LinkedBlockingQueue<CharSequence> outPutQ ;
+	// or, when extracting with a RecordViewProcessor, batches of records in shared char buffers. Only one of the 2 queues is set
+	private LinkedBlockingQueue<RecordsBatch> recordsBatches ;
+	
+	// Results of the RecordViewProcessor, released by the ItemsWriter (null if not in record view mode)
+	private StringBuilderPool stringBuilderPool ;
+	
+	private LinkedBlockingQueue<List<CharSequence>> outPutQ ;
 	
 	protected LinkedBlockingQueue<CharSequence> eliminatedEntries ;
 	
@@ -43,6 +78,16 @@ public abstract class ItemsExtractor {
 
 	private ExecutorService executorService ;
 	
+	private ProcessExecutor processExecutor ;
+	
+	// Executor supplied by the caller. It is not shut down at the end of the extract
+	private ExecutorService suppliedExecutorService ;
+	
+	// Adaptive concurrency: the number of processors varies between min and max (see ProcessorsController)
+	private boolean adaptiveConcurrency ;
+	private int minProcessThreads ;
+	private int maxProcessThreads ;
+	
 	private Path 	inputFilePath ;
 	private Charset inputCharset ;
 
@@ -51,8 +96,29 @@ public abstract class ItemsExtractor {
 	private Path 	eliminatedEntriesFilePath ;
 	private Charset outputCharset ;
 	
+	// Compression of the result files (null if not compressed), and number of threads compressing each one in parallel (0 for none)
+	private SupportedCompression outputCompression ;
+	private int nbCompressionThreads ;
+	
 	private int nbProcessThreads ;
 	
+	private RecordSource recordSource ;
+	
+	// Periodic checkpoints, to resume an extract that has not ended (see Checkpointer)
+	private Path checkpointFilePath ;
+	private long checkpointInterval ;
+	private boolean resume ;
+	
+	// Live metrics of the current (or last) extract
+	private volatile ExtractMonitor extractMonitor ;
+	
+	// Listener informed periodically of the metrics (null if none)
+	private ExtractMetricsListener metricsListener ;
+	private long metricsPeriod ;
+	
+	// Duration of the last extract, from its start to the end of the writers
+	private long lastExtractDuration ;
+	
 	protected Logger logger ;
 	
 	public ItemsExtractor(Path 	  ip,
@@ -96,13 +162,65 @@ public abstract class ItemsExtractor {
 		eliminatedQueueSize = ELIMINATED_Q_SIZE_DEFAULT ;
 		atypicQueueSize 	= ATYPIC_Q_SIZE_DEFAULT ;
 		nbProcessThreads	= NB_PROCESS_THREAD_DEFAULT ;
+		batchSize			= BATCH_SIZE_DEFAULT ;
+		batchTimeout		= BATCH_TIMEOUT_DEFAULT ;
+		orderedOutput		= false ;
+		reorderWindowSize	= REORDER_WINDOW_SIZE_DEFAULT ;
+		recordSource		= RecordSource.bufferedReader() ;
+		processExecutor		= ProcessExecutor.FIXED_THREAD_POOL ;
+		suppliedExecutorService = null ;
+		adaptiveConcurrency = false ;
+		checkpointFilePath	= null ;
+		resume				= false ;
+		outputCompression	= null ;
+		nbCompressionThreads = 0 ;
 	}
 	
 	public void extract(ItemProcessor itemProcessor) {
 		
+		long now = System.currentTimeMillis() ;
+		
+		// A ByteRecordProcessor is given the bytes of the records, and its results are written as bytes: no decoding, no encoding
+		boolean byteMode = (itemProcessor instanceof ByteRecordProcessor) ;
+		if (byteMode && ((! inputCharset.equals(outputCharset)) || (! MappedLineReader.isAsciiCompatible(inputCharset)))) {
+			logger.severe("A ByteRecordProcessor needs the same ASCII compatible input and output charsets (input=" + inputCharset + ", output=" + outputCharset + "). No extract of " + inputFilePath) ;
+			return ;
+		}
+		
+		// Checkpoints and resume
+		Checkpointer checkpointer 	 = null ;
+		Checkpoint resumedCheckpoint = null ;
+		if (checkpointFilePath != null) {
+			if (! recordSource.isResumable(inputCharset)) {
+				logger.severe("Checkpoints need a resumable record source (RecordSource.memoryMapped() with an ASCII compatible charset, input=" + inputCharset + "). No checkpoint for " + inputFilePath) ;
+			} else if (! ItemsWriter.isCheckpointable(outputCompression, nbCompressionThreads)) {
+				logger.severe("Checkpoints need uncompressed or parallel gzip result files. No checkpoint for " + inputFilePath) ;
+			} else {
+				if (resume) {
+					try {
+						resumedCheckpoint = Checkpointer.readCheckpoint(checkpointFilePath, logger) ;
+					} catch (IOException e) {
+						logger.log(Level.SEVERE, "Cannot resume from checkpoint " + checkpointFilePath, e) ;
+						return ;
+					}
+				}
+				checkpointer = new Checkpointer(checkpointFilePath, checkpointInterval, resumedCheckpoint, logger) ;
+			}
+		}
+		
+		// A RecordViewProcessor is given batches of records in shared char buffers, instead of lists of String
+		// (shared byte buffers for a ByteRecordProcessor)
+		boolean recordViewMode = (itemProcessor instanceof RecordViewProcessor) || byteMode ;
+		
 		// init queues
-		entries 		  	  = new LinkedBlockingQueue<ArrayList<String>>(entriesQueueSize) ;
-		outPutQ 		  	  = new LinkedBlockingQueue<CharSequence>(outputQueueSize) ;
+		if (recordViewMode) {
+			entries 		  = null ;
+			recordsBatches 	  = new LinkedBlockingQueue<RecordsBatch>(entriesQueueSize) ;
+		} else {
+			entries 		  = new LinkedBlockingQueue<ItemsBatch<ArrayList<String>>>(entriesQueueSize) ;
+			recordsBatches 	  = null ;
+		}
+		outPutQ 		  	  = new LinkedBlockingQueue<List<CharSequence>>(outputQueueSize) ;
 		if (eliminatedEntriesFilePath != null) {
 			eliminatedEntries = new LinkedBlockingQueue<CharSequence>(eliminatedQueueSize) ;
 		} else {
@@ -114,17 +232,56 @@ public abstract class ItemsExtractor {
 			atypicEntries 	  = null ;
 		}
 		
+		// Live metrics
+		extractMonitor = new ExtractMonitor(recordViewMode ? recordsBatches : entries, outPutQ, eliminatedEntries, atypicEntries) ;
+		ScheduledExecutorService metricsScheduler = null ;
+		if (metricsListener != null) {
+			metricsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "ItemsExtractor-metrics") ;
+				thread.setDaemon(true) ;
+				return thread ;
+			}) ;
+			final ExtractMonitor monitor = extractMonitor ;
+			final ExtractMetricsListener listener = metricsListener ;
+			metricsScheduler.scheduleAtFixedRate(() -> notifyMetrics(listener, monitor), metricsPeriod, metricsPeriod, TimeUnit.MILLISECONDS) ;
+		}
+		
 		// Init executor service for multi threading
-		executorService  = Executors.newFixedThreadPool(nbProcessThreads + NB_SUPPLEMENTARY_THREAD);
+		int nbMaxProcessors = adaptiveConcurrency ? maxProcessThreads : nbProcessThreads ;
+		if (suppliedExecutorService != null) {
+			executorService = suppliedExecutorService ;
+		} else {
+			executorService = newExecutorService(nbMaxProcessors + NB_SUPPLEMENTARY_THREAD) ;
+		}
+		
+		// The pool keeps enough StringBuilder for all the results waiting to be written
+		if (recordViewMode && (! byteMode)) {
+			long nbResultsInFlight = (long)(outputQueueSize + nbMaxProcessors + (orderedOutput ? reorderWindowSize : 0))*batchSize ;
+			stringBuilderPool = new StringBuilderPool((int) Math.min(nbResultsInFlight, RESULT_POOL_MAX_SIZE), RESULT_INITIAL_CAPACITY, RESULT_MAX_RETAINED_CAPACITY) ;
+		} else {
+			stringBuilderPool = null ;
+		}
 
 		// Launch thread that writes result file
-		ItemsWriter itemsWriter = new ItemsWriter(outPutQ, outputFilePath, outputCharset, logger) ;
+		ItemsWriter itemsWriter = ItemsWriter.batchWriter(outPutQ, outputFilePath, outputCharset, logger) ;
+		if (resumedCheckpoint != null) {
+			itemsWriter.setStartPosition(resumedCheckpoint.getOutputPosition()) ;
+		}
+		itemsWriter.setCompression(outputCompression, nbCompressionThreads) ;
+		itemsWriter.setStringBuilderPool(stringBuilderPool) ;
+		itemsWriter.setExtractMonitor(extractMonitor) ;
+		extractMonitor.setItemsWriter(itemsWriter) ;
 		itemsWriter.start() ;
 		
 		// Launch thread that writes eliminated entries file
 		ItemsWriter eliminatedWriter = null ;
 		if (eliminatedEntries != null) {
 			eliminatedWriter = new ItemsWriter(eliminatedEntries, eliminatedEntriesFilePath, outputCharset, logger) ;
+			if (resumedCheckpoint != null) {
+				eliminatedWriter.setStartPosition(resumedCheckpoint.getEliminatedPosition()) ;
+			}
+			eliminatedWriter.setCompression(outputCompression, nbCompressionThreads) ;
+			eliminatedWriter.setExtractMonitor(extractMonitor) ;
 			eliminatedWriter.start() ;
 		}
 
@@ -132,91 +289,84 @@ public abstract class ItemsExtractor {
 		ItemsWriter atypicWriter = null ;
 		if (atypicEntries != null) {
 			atypicWriter = new ItemsWriter(atypicEntries, atypicEntriesFilePath, outputCharset, logger) ;
+			if (resumedCheckpoint != null) {
+				atypicWriter.setStartPosition(resumedCheckpoint.getAtypicPosition()) ;
+			}
+			atypicWriter.setCompression(outputCompression, nbCompressionThreads) ;
+			atypicWriter.setExtractMonitor(extractMonitor) ;
 			atypicWriter.start() ;
 		}
+		if (checkpointer != null) {
+			checkpointer.setWriters(itemsWriter, eliminatedWriter, atypicWriter) ;
+		}
 		
 		// launch entries processor threads
+		ReorderWindow<CharSequence> reorderWindow = null ;
+		if (orderedOutput) {
+			reorderWindow = new ReorderWindow<CharSequence>(reorderWindowSize, outPutQ) ;
+		}
+		ItemsBatch<ArrayList<String>> endBatch = new ItemsBatch<ArrayList<String>>(0) ;
+		RecordsBatch endRecordsBatch = new RecordsBatch() ;
+		final ReorderWindow<CharSequence> rw = reorderWindow ;
+		final Checkpointer cp = checkpointer ;
 		ArrayList<Future<JsonObject>> futureResponses = new ArrayList<Future<JsonObject>>() ;
-		for (int i=0; i < nbProcessThreads; i++) {
-			
-			ItemProcessor ipClone = itemProcessor.getClone() ;
-			ipClone.setAtypicEntries(atypicEntries) ;
-			ThreadedItemsProcess processItemsThread = new ThreadedItemsProcess(entries, outPutQ, ipClone, logger) ;
-			Future<JsonObject> futureResp = executorService.submit(processItemsThread) ;
-			futureResponses.add(futureResp) ;
+		ProcessorsController<?> processorsController = null ;
+		if (adaptiveConcurrency) {
+			if (recordViewMode) {
+				processorsController = new ProcessorsController<RecordsBatch>(recordsBatches, entriesQueueSize, minProcessThreads, maxProcessThreads, 
+						() -> launchProcessor(itemProcessor, rw, cp), endRecordsBatch, logger) ;
+			} else {
+				processorsController = new ProcessorsController<ItemsBatch<ArrayList<String>>>(entries, entriesQueueSize, minProcessThreads, maxProcessThreads, 
+						() -> launchProcessor(itemProcessor, rw, cp), endBatch, logger) ;
+			}
+			processorsController.start() ;
+		} else {
+			for (int i=0; i < nbProcessThreads; i++) {
+				futureResponses.add(launchProcessor(itemProcessor, rw, cp)) ;
+			}
 		}
 		
-		String line 	= null;
-		long nbElemRead = 0 ;
-		long nbLine 	= 0 ;
-		long nbElimi 	= 0 ;
-		long now 		= System.currentTimeMillis() ;
-		try (BufferedReader bf = Files.newBufferedReader(inputFilePath, inputCharset)) {			
-
-			ArrayList<String> currentEntry = null ;
-			
-			// search first entry
-			boolean firstNotReached = true ;
-			while (firstNotReached && ((line = bf.readLine()) != null)) {
-				nbLine++ ;
-				if (line != null) { 
-					if (isValidFirstLineEntry(line)) {
-						firstNotReached = false ;
-						
-						currentEntry = new ArrayList<String>() ;
-						currentEntry.add(line) ;
-
-					} else if (eliminatedEntries != null) {
-
-						nbElimi++ ;
-						eliminatedEntries.put(line) ;
-					}
-				}
-			}
-			
-			// continue (algorithm is simpler like this for all subsequent inscription)
-			while ((line = bf.readLine()) != null) {
-				nbLine++ ;
-				if (line != null) { 
-
-					if ( belongsToCurrentEntry(currentEntry, line)) {
-						// same entry as the current one : it is a secondary line
-						currentEntry.add(line) ;
-					} else {
-						// different entry as the current one : it is a first line
-
-						if (isValidFirstLineEntry(line)) {
-						// is a valid line for an entry									
-							
-							// put the previous inscription in the queue
-							// this call waits for space to be available in the queue if necessary
-							entries.put(currentEntry) ;
-							nbElemRead++ ;
-							
-							currentEntry = new ArrayList<String>() ;
-							currentEntry.add(line) ;
-														
-						} else if (eliminatedEntries != null) {
-							// not a valid record
-							nbElimi++ ;
-							eliminatedEntries.put(line) ;
-						}						
-					}
+		RecordCollector recordCollector ;
+		if (byteMode) {
+			recordCollector = RecordCollector.byteRecordCollector(this, recordsBatches, entriesQueueSize + nbMaxProcessors, inputCharset, eliminatedEntries, batchSize, batchTimeout) ;
+		} else if (recordViewMode) {
+			// the batches processed are reused by the reader
+			recordCollector = RecordCollector.recordViewCollector(this, recordsBatches, entriesQueueSize + nbMaxProcessors, eliminatedEntries, batchSize, batchTimeout) ;
+		} else {
+			recordCollector = new RecordCollector(this, entries, eliminatedEntries, batchSize, batchTimeout) ;
+		}
+		recordCollector.setCheckpointer(checkpointer) ;
+		recordCollector.setExtractMonitor(extractMonitor) ;
+		extractMonitor.setRecordCollector(recordCollector) ;
+		try {
 
-				}
+			// read the input file and put the entries in the queue
+			long startPosition = 0 ;
+			if (resumedCheckpoint != null) {
+				startPosition = resumedCheckpoint.getInputPosition() ;
+				logger.info("Extract resumed from input position " + startPosition + " of " + inputFilePath) ;
 			}
-			
-			// Put the last entry in the queue
-			if (currentEntry != null) {
-				entries.put(currentEntry) ;
-				nbElemRead++ ;
+			recordCollector.startBatchTimer() ;
+			try {
+				recordSource.readRecords(inputFilePath, inputCharset, recordCollector, startPosition) ;
+			} finally {
+				recordCollector.stopBatchTimer() ;
 			}
+			long nbElemRead = recordCollector.getNbRecordsRead() ;
 			
-			// Signal the end of the process to the threads by putting an empty element in the input queue
+			// Signal the end of the process to the threads by putting an empty batch in the input queue
 			int nbEndMark = nbProcessThreads ;
-			currentEntry =  new ArrayList<String>() ;
+			if (processorsController != null) {
+				processorsController.stopControl() ;
+				nbEndMark = processorsController.getNbProcessors() ;
+				futureResponses.addAll(processorsController.getProcessorsResults()) ;
+			}
 			while (nbEndMark > 0) {
-				entries.put(currentEntry) ;
+				if (recordViewMode) {
+					recordsBatches.put(endRecordsBatch) ;
+				} else {
+					entries.put(endBatch) ;
+				}
 				nbEndMark-- ;
 			}
 			
@@ -232,9 +382,14 @@ public abstract class ItemsExtractor {
 			}
 			globalResult.add("nbRecordsProcessedByThreads", threadsResults) ;
 			globalResult.addProperty("nbRecordsProcessed", nbElemProcessed) ;
+			if (processorsController != null) {
+				globalResult.addProperty("maxNbProcessThreads", processorsController.getMaxNbProcessorsReached()) ;
+			}
 			
 			// Wait item processor threads end
-			terminateExecutor(executorService) ;
+			if (suppliedExecutorService == null) {
+				terminateExecutor(executorService) ;
+			}
 			
 			// signal the end to the item writer and eliminated/atypic entries writer threads
 			if (eliminatedWriter != null) {
@@ -245,11 +400,20 @@ public abstract class ItemsExtractor {
 			}
 			itemsWriter.endProcess();
 			
-			// wait item writer and eliminated/atypic entries writer end
-			while (itemsWriter.isAlive()  || (! outPutQ.isEmpty()) ||
-				  ((atypicWriter     != null) && (atypicWriter.isAlive()  	|| (!     atypicEntries.isEmpty()))) ||
-				  ((eliminatedWriter != null) && (eliminatedWriter.isAlive() || (! eliminatedEntries.isEmpty())))) {
-				Thread.sleep(1000);
+			// wait item writer and eliminated/atypic entries writer end (files flushed and closed)
+			itemsWriter.join() ;
+			if (eliminatedWriter != null) {
+				eliminatedWriter.join() ;
+			}
+			if (atypicWriter != null) {
+				atypicWriter.join() ;
+			}
+			lastExtractDuration = System.currentTimeMillis() - now ;
+			
+			// the extract has ended, there is nothing to resume
+			if (checkpointer != null) {
+				checkpointer.end() ;
+				globalResult.addProperty("nbCheckpoints", checkpointer.getNbCheckpoints()) ;
 			}
 			
 			// Check number of elements processed. Log result eventually
@@ -262,8 +426,8 @@ public abstract class ItemsExtractor {
 			}				
 			if (logLevel != null) {					
 
-				globalResult.addProperty("nbLinesRead", 	   		 nbLine) ;
-				globalResult.addProperty("nbLinesEliminated",  		 nbElimi) ;
+				globalResult.addProperty("nbLinesRead", 	   		 recordCollector.getNbLinesRead()) ;
+				globalResult.addProperty("nbLinesEliminated",  		 recordCollector.getNbLinesEliminated()) ;
 				globalResult.addProperty("nbRecordsRead", 	   		 nbElemRead) ;
 				globalResult.addProperty("nbRecordsProcessed", 		 nbElemProcessed) ;
 				globalResult.addProperty("nbRecordsWritten",   		 itemsWriter.getNbElementWritten()) ;
@@ -273,16 +437,32 @@ public abstract class ItemsExtractor {
 				if (eliminatedWriter != null) {
 					globalResult.addProperty("nbEliminatedRecordsWritten",   eliminatedWriter.getNbElementWritten()) ;
 				}
+				globalResult.addProperty("durationMs", lastExtractDuration) ;
+				ExtractMetrics extractMetrics = extractMonitor.snapshot() ;
+				globalResult.addProperty("processItemLatencyP50Ns", extractMetrics.getProcessItemLatencyP50()) ;
+				globalResult.addProperty("processItemLatencyP99Ns", extractMetrics.getProcessItemLatencyP99()) ;
 
 				
 				logger.log(logLevel, JsonUtils.jsonPrettyPrint(globalResult)) ;
 			}
 			
 		} catch (Exception e) {
-			logger.log(Level.SEVERE,  "Exception reading file.\n  Line nb=" + nbLine + "\n  Line=" + line + "\n  File=" + inputFilePath, e);
+			if (processorsController != null) {
+				// stops the controller thread
+				processorsController.interrupt() ;
+			}
+			logger.log(Level.SEVERE,  "Exception reading file.\n  Line nb=" + recordCollector.getNbLinesRead() + "\n  Line=" + recordCollector.getLastLine() + "\n  File=" + inputFilePath, e);
+		}
+		
+		if (metricsScheduler != null) {
+			// last metrics, at the end of the extract
+			metricsScheduler.shutdownNow() ;
+			notifyMetrics(metricsListener, extractMonitor) ;
 		}
 		
+		long nbElemRead = recordCollector.getNbRecordsRead() ;
 		long duration = System.currentTimeMillis() - now ;
+		lastExtractDuration = duration ;
 		long durationPerItem = 0 ;
 		if (nbElemRead != 0) {
 			durationPerItem = duration/nbElemRead ;
@@ -291,6 +471,82 @@ public abstract class ItemsExtractor {
 
 	}
 	
+	// Duration in milliseconds of the last extract, including the time to flush the result files
+	public long getLastExtractDuration() {
+		return lastExtractDuration;
+	}
+
+	// Executor for the item processors, when no ExecutorService is supplied. Default is a fixed thread pool
+	public void setProcessExecutor(ProcessExecutor processExecutor) {
+		this.processExecutor = processExecutor;
+	}
+
+	// Executor supplied by the caller for the item processors (null to use the ProcessExecutor)
+	// It must be able to run all the processors concurrently, and it is not shut down by the extract
+	public void setExecutorService(ExecutorService executorService) {
+		this.suppliedExecutorService = executorService;
+	}
+
+	// The number of processors grows or shrinks between min and max, depending on the depth of the entries queue
+	// The number of process threads (setNbProcessThreads) is then ignored
+	public void setAdaptiveConcurrency(int minProcessThreads, int maxProcessThreads) {
+		if ((minProcessThreads < 1) || (maxProcessThreads < minProcessThreads)) {
+			throw new IllegalArgumentException("Invalid number of process threads: min=" + minProcessThreads + " max=" + maxProcessThreads) ;
+		}
+		this.adaptiveConcurrency = true ;
+		this.minProcessThreads = minProcessThreads ;
+		this.maxProcessThreads = maxProcessThreads ;
+	}
+
+	// Take a checkpoint every checkpointInterval milliseconds, saved in checkpointFilePath (null for no checkpoint)
+	// The checkpoint file is deleted when the extract ends. Needs a resumable record source (RecordSource.memoryMapped())
+	// and uncompressed or parallel gzip result files
+	public void setCheckpoint(Path checkpointFilePath, long checkpointInterval) {
+		this.checkpointFilePath = checkpointFilePath;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	// Resume from the checkpoint file, if it exists: the input file is read from the checkpoint position,
+	// and the result files are truncated to the checkpoint positions
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	// Write the result files (output, eliminated and atypic entries) compressed, as a single stream
+	// The file names are not changed (they should end with .gz for GZIP)
+	public void setOutputCompression(SupportedCompression outputCompression) {
+		setOutputCompression(outputCompression, 0) ;
+	}
+
+	// Write the result files compressed with GZIP by blocks on nbCompressionThreads threads for each file (like pigz)
+	// Each block is an independent gzip member: the result is a valid gzip file, a little bigger than a single stream
+	public void setOutputCompression(SupportedCompression outputCompression, int nbCompressionThreads) {
+		if ((nbCompressionThreads < 0) || ((nbCompressionThreads > 0) && (outputCompression != SupportedCompression.GZIP))) {
+			throw new IllegalArgumentException("Invalid number of compression threads for " + outputCompression + ": " + nbCompressionThreads) ;
+		}
+		this.outputCompression = outputCompression;
+		this.nbCompressionThreads = nbCompressionThreads;
+	}
+
+	// Snapshot of the metrics of the running extract (or of the last one). Null if no extract has been started
+	public ExtractMetrics getMetrics() {
+		ExtractMonitor monitor = extractMonitor ;
+		if (monitor == null) {
+			return null ;
+		} else {
+			return monitor.snapshot() ;
+		}
+	}
+
+	// The listener is informed of the metrics every metricsPeriod milliseconds while the extract runs, and at its end
+	public void setMetricsListener(ExtractMetricsListener metricsListener, long metricsPeriod) {
+		if ((metricsListener != null) && (metricsPeriod <= 0)) {
+			throw new IllegalArgumentException("The metrics period must be positive (" + metricsPeriod + ")") ;
+		}
+		this.metricsListener = metricsListener;
+		this.metricsPeriod = metricsPeriod;
+	}
+
 	public void setEntriesQueueSize(int entriesQueueSize) {
 		this.entriesQueueSize = entriesQueueSize;
 	}
@@ -311,6 +567,80 @@ public abstract class ItemsExtractor {
 		this.nbProcessThreads = nbProcessThreads;
 	}
 
+	// Maximum number of entries (and results) in a batch. Default is 1 (no batching)
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be at least 1 (" + batchSize + ")") ;
+		}
+		this.batchSize = batchSize;
+	}
+
+	// Write the results in the order of the entries, instead of the order in which the processor threads finish
+	// The order is the one of the record source: it is not the order of the input file with RecordSource.parallelSplit
+	public void setOrderedOutput(boolean orderedOutput) {
+		this.orderedOutput = orderedOutput;
+	}
+
+	// Maximum number of batches of results waiting for a previous batch, in ordered output
+	// When the window is full, the processor threads wait
+	public void setReorderWindowSize(int reorderWindowSize) {
+		this.reorderWindowSize = reorderWindowSize;
+	}
+
+	// Maximum time in milliseconds an entry waits in an incomplete batch, before the batch is put in the queue
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	// How the input file is read (see RecordSource). Default is a BufferedReader on the extract thread
+	public void setRecordSource(RecordSource recordSource) {
+		this.recordSource = recordSource;
+	}
+
+	private Future<JsonObject> launchProcessor(ItemProcessor itemProcessor, ReorderWindow<CharSequence> reorderWindow, Checkpointer checkpointer) {
+		
+		ItemProcessor ipClone = itemProcessor.getClone() ;
+		ipClone.setAtypicEntries(atypicEntries) ;
+		ThreadedItemsProcess processItemsThread ;
+		if ((recordsBatches != null) && (ipClone instanceof ByteRecordProcessor)) {
+			ByteRecordProcessor byteRecordProcessor = (ByteRecordProcessor) ipClone ;
+			byteRecordProcessor.setCharset(inputCharset) ;
+			processItemsThread = ThreadedItemsProcess.byteRecordsProcess(recordsBatches, outPutQ, reorderWindow, byteRecordProcessor, inputCharset, logger) ;
+		} else if (recordsBatches != null) {
+			processItemsThread = ThreadedItemsProcess.recordViewsProcess(recordsBatches, outPutQ, reorderWindow, (RecordViewProcessor) ipClone, stringBuilderPool, logger) ;
+		} else if (reorderWindow != null) {
+			processItemsThread = new ThreadedItemsProcess(entries, reorderWindow, ipClone, logger) ;
+		} else {
+			processItemsThread = new ThreadedItemsProcess(entries, outPutQ, ipClone, logger) ;
+		}
+		processItemsThread.setCheckpointer(checkpointer) ;
+		processItemsThread.setExtractMonitor(extractMonitor) ;
+		return executorService.submit(processItemsThread) ;
+	}
+	
+	private void notifyMetrics(ExtractMetricsListener listener, ExtractMonitor monitor) {
+		try {
+			listener.metrics(monitor.snapshot()) ;
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, "Exception in metrics listener", e) ;
+		}
+	}
+	
+	private ExecutorService newExecutorService(int nbThreads) {
+		
+		if (processExecutor == ProcessExecutor.VIRTUAL_THREAD_PER_TASK) {
+			try {
+				// Executors.newVirtualThreadPerTaskExecutor exists since java 21
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null) ;
+			} catch (ReflectiveOperationException e) {
+				logger.warning("Virtual threads not available in this java version. A cached thread pool is used") ;
+				return Executors.newCachedThreadPool() ;
+			}
+		} else {
+			return Executors.newFixedThreadPool(nbThreads) ;
+		}
+	}
+
 	private void terminateExecutor(ExecutorService execSvc) {
 
 		execSvc.shutdown();
@@ -338,4 +668,41 @@ public abstract class ItemsExtractor {
 	protected abstract boolean isValidFirstLineEntry(String line) ;
 	
 	protected abstract boolean belongsToCurrentEntry(ArrayList<String> currentEntry, String line) ;
+	
+	// Grouping of the lines when extracting with a RecordViewProcessor: the line and the record are only valid during the call
+	// The default implementations call isValidFirstLineEntry and belongsToCurrentEntry with copies of the lines:
+	// override them to avoid these allocations
+	protected boolean isValidFirstLine(CharSequence line) {
+		return isValidFirstLineEntry(line.toString()) ;
+	}
+	
+	protected boolean belongsToCurrentRecord(RecordView currentRecord, CharSequence line) {
+		return belongsToCurrentEntry(currentRecord.toLines(), line.toString()) ;
+	}
+	
+	// Grouping of the lines when extracting with a ByteRecordProcessor: the line is between the position and the limit of the buffer,
+	// in the input charset. The line and the record are only valid during the call.
+	// The default implementations decode the lines and call isValidFirstLineEntry and belongsToCurrentEntry:
+	// override them to work on the bytes
+	protected boolean isValidFirstLine(ByteBuffer line) {
+		return isValidFirstLineEntry(decode(line)) ;
+	}
+	
+	protected boolean belongsToCurrentRecord(ByteRecordView currentRecord, ByteBuffer line) {
+		return belongsToCurrentEntry(currentRecord.toLines(), decode(line)) ;
+	}
+	
+	private String decode(ByteBuffer line) {
+		return new String(line.array(), line.arrayOffset() + line.position(), line.remaining(), inputCharset) ;
+	}
+	
+	// Is line the first line of a new entry, knowing only the line before it
+	// Used by the RecordSource that split the input file to find where an entry begins.
+	// Override it if belongsToCurrentEntry needs more than the last line of the current entry
+	protected boolean isRecordBoundary(String previousLine, String line) {
+		
+		ArrayList<String> previousEntry = new ArrayList<String>() ;
+		previousEntry.add(previousLine) ;
+		return isValidFirstLineEntry(line) && (! belongsToCurrentEntry(previousEntry, line)) ;
+	}
 }
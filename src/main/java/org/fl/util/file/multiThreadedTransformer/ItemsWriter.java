@@ -1,21 +1,42 @@
 package org.fl.util.file.multiThreadedTransformer;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.fl.util.CompressionUtils;
+import org.fl.util.CompressionUtils.SupportedCompression;
+import org.fl.util.file.multiThreadedTransformer.ExtractMonitor.ThreadClock;
+
 public class ItemsWriter extends Thread {
 
 	// output queue containing items to be written in the file
 	// Each item is seprated by a line feed
+	// The items are taken by batch (all the items available in the queue)
 	private LinkedBlockingQueue<CharSequence> outputQ ;
 	
+	// or output queue containing batches of items. Only one of the 2 queues is set
+	// The end of the items is signalled by an end mark put in the queue (see endProcess)
+	private LinkedBlockingQueue<List<CharSequence>> outputBatchQ ;
+	
+	// Batch of items taken from outputQ
+	private ArrayList<CharSequence> itemsBatch ;
+	
 	// File path where items are written
 	private Path resultFilePath ;
 	
@@ -24,39 +45,194 @@ public class ItemsWriter extends Thread {
 	
 	private Logger logger ;
 	
-	private boolean endOfProcess ;
+	// End marks. Compared by reference
+	private static final CharSequence END_MARK = new StringBuilder(0) ;
+	private static final List<CharSequence> END_BATCH_MARK = new ArrayList<CharSequence>(0) ;
+	
+	// Checkpoint marks. Compared by reference
+	private static final CharSequence CHECKPOINT_MARK = new StringBuilder(0) ;
+	private static final List<CharSequence> CHECKPOINT_BATCH_MARK = new ArrayList<CharSequence>(0) ;
+	
+	private static final long END_MARK_RETRY_MILLIS = 100 ;
+	
+	private static final int BYTES_BUFFER_SIZE = 64*1024 ;
+	
+	// Position where the writing begins in the result file, when resuming from a checkpoint (-1 to create a new file)
+	private long startPosition ;
+	
+	// Positions in the result file of the checkpoints
+	private final LinkedBlockingQueue<Long> checkpointPositions ;
+	
+	// Live metrics (null if none)
+	private ExtractMonitor extractMonitor ;
+	
+	// Compression of the result file (null if not compressed)
+	private SupportedCompression compression ;
+	private int nbCompressionThreads ;
 	
-	private long nbElementWritten ;
+	// Pool where the items written are released, when they are StringBuilder taken from it (null if none)
+	private StringBuilderPool stringBuilderPool ;
+	
+	// Buffer to write the StringBuilder items without creating a String
+	private char[] itemChars ;
+	
+	// The ByteChunk items in the charset of the file are written as bytes, without decoding and encoding
+	// The chars written before them must be flushed from the BufferedWriter first (but not from the byte stream, see NotFlushedOutputStream)
+	private final byte[] lineSeparatorBytes ;
+	private boolean charsPending ;
+	
+	private volatile long nbElementWritten ;
 	
 	public ItemsWriter(LinkedBlockingQueue<CharSequence> oq, Path targetPath, Charset cs, Logger l) {
 		
+		this(oq, null, targetPath, cs, l) ;
+	}
+	
+	// Writer of the items put by batches in the output queue
+	public static ItemsWriter batchWriter(LinkedBlockingQueue<List<CharSequence>> obq, Path targetPath, Charset cs, Logger l) {
+		return new ItemsWriter(null, obq, targetPath, cs, l) ;
+	}
+	
+	private ItemsWriter(LinkedBlockingQueue<CharSequence> oq, LinkedBlockingQueue<List<CharSequence>> obq, Path targetPath, Charset cs, Logger l) {
+		
 		outputQ 	   	 = oq ;
+		outputBatchQ	 = obq ;
+		itemsBatch		 = new ArrayList<CharSequence>() ;
 		resultFilePath 	 = targetPath ;
 		charset		   	 = cs ;
 		logger 		   	 = l ;
-		endOfProcess   	 = false ;
 		nbElementWritten = 0 ;
+		startPosition	 = -1 ;
+		checkpointPositions = new LinkedBlockingQueue<Long>() ;
+		extractMonitor	 = null ;
+		compression		 = null ;
+		nbCompressionThreads = 0 ;
+		stringBuilderPool = null ;
+		itemChars		 = new char[256] ;
+		lineSeparatorBytes = System.lineSeparator().getBytes(cs) ;
+		charsPending	 = false ;
+	}
+
+	// Must be called before the writer is started
+	public void setExtractMonitor(ExtractMonitor extractMonitor) {
+		this.extractMonitor = extractMonitor;
 	}
 
+	// Write the result file compressed (null for no compression)
+	// nbCompressionThreads = 0 : a single compressed stream, compressed by the writer thread
+	// nbCompressionThreads > 0 : GZIP only, blocks compressed in parallel as independent gzip members (see ParallelGzipOutputStream)
+	// Must be called before the writer is started
+	public void setCompression(SupportedCompression compression, int nbCompressionThreads) {
+		if ((nbCompressionThreads < 0) || ((nbCompressionThreads > 0) && (compression != SupportedCompression.GZIP))) {
+			throw new IllegalArgumentException("Invalid number of compression threads for " + compression + ": " + nbCompressionThreads) ;
+		}
+		this.compression = compression;
+		this.nbCompressionThreads = nbCompressionThreads;
+	}
+
+	// The StringBuilder items are released to the pool once written: they must not be used by anybody else after being put in the queue
+	// Must be called before the writer is started
+	public void setStringBuilderPool(StringBuilderPool stringBuilderPool) {
+		this.stringBuilderPool = stringBuilderPool;
+	}
+
+	// A checkpoint position is a position where the result file may be truncated and appended when resuming
+	// This is not the case inside a single compressed stream. The parallel gzip ends a member at each checkpoint
+	public static boolean isCheckpointable(SupportedCompression compression, int nbCompressionThreads) {
+		return (compression == null) || (nbCompressionThreads > 0) ;
+	}
+
+	// Resume the writing of an existing result file: it is truncated to the given position, and the items are written after
+	// Must be called before the writer is started
+	public void setStartPosition(long startPosition) {
+		this.startPosition = startPosition;
+	}
+
+	// Wait until all the items put in the queue before have been written and flushed to the file
+	// Returns the position in the file after the last item (so the size of the file at this point)
+	// The checkpoint mark is put after the items, so this call waits for space to be available in the queue if necessary
+	public long checkpoint() throws InterruptedException, IOException {
+		
+		boolean checkpointMarkPut = false ;
+		while ((! checkpointMarkPut) && isAlive()) {
+			if (outputBatchQ != null) {
+				checkpointMarkPut = outputBatchQ.offer(CHECKPOINT_BATCH_MARK, END_MARK_RETRY_MILLIS, TimeUnit.MILLISECONDS) ;
+			} else {
+				checkpointMarkPut = outputQ.offer(CHECKPOINT_MARK, END_MARK_RETRY_MILLIS, TimeUnit.MILLISECONDS) ;
+			}
+		}
+		Long position = null ;
+		while ((position == null) && (isAlive() || (! checkpointPositions.isEmpty()))) {
+			position = checkpointPositions.poll(END_MARK_RETRY_MILLIS, TimeUnit.MILLISECONDS) ;
+		}
+		if (position == null) {
+			throw new IOException("Items writer ended before checkpoint for file " + resultFilePath) ;
+		}
+		return position ;
+	}
+
+	// Signal the end of the items: the writer ends when all the items put in the queue before have been written
+	// The end mark is put after the items, so this call waits for space to be available in the queue if necessary
+	// (unless the writer has ended on error)
+	// If the calling thread is interrupted while waiting, the end mark is not put and the interrupt status is set again
 	public void endProcess() {
-		endOfProcess = true ;
+		
+		boolean endMarkPut = false ;
+		try {
+			while ((! endMarkPut) && isAlive()) {
+				if (outputBatchQ != null) {
+					endMarkPut = outputBatchQ.offer(END_BATCH_MARK, END_MARK_RETRY_MILLIS, TimeUnit.MILLISECONDS) ;
+				} else {
+					endMarkPut = outputQ.offer(END_MARK, END_MARK_RETRY_MILLIS, TimeUnit.MILLISECONDS) ;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt() ;
+		}
 	}
 	
 	@Override
 	public void run() {
 
 		CharSequence elem = null ;
-		try ( BufferedWriter bw = Files.newBufferedWriter(resultFilePath, charset)) {
+		ThreadClock threadClock = null ;
+		if (extractMonitor != null) {
+			threadClock = extractMonitor.newThreadClock("writer " + resultFilePath.getFileName()) ;
+		}
+		try ( FileChannel fc = openResultFile() ;
+			  BufferedOutputStream bos = new BufferedOutputStream(openOutputStream(fc), BYTES_BUFFER_SIZE) ;
+			  BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new NotFlushedOutputStream(bos), charset.newEncoder()))) {
 			
+			boolean endOfProcess = false ;
 			do {
-				// Get item from output queue waiting if necessary for one to become available
-				elem = outputQ.poll( 10, TimeUnit.MILLISECONDS) ;
-				if (elem != null) {
-					bw.append(elem) ;
-					bw.newLine();
-					nbElementWritten++ ;
+				// Get items from output queue waiting if necessary for one to become available
+				long waitStart = System.nanoTime() ;
+				List<CharSequence> batch = takeBatch() ;
+				if (threadClock != null) {
+					threadClock.blockedSince(waitStart) ;
+				}
+				if (batch == CHECKPOINT_BATCH_MARK) {
+					checkpointPositions.put(flush(bw, bos, fc)) ;
+				}
+				for (CharSequence item : batch) {
+					if (item == END_MARK) {
+						endOfProcess = true ;
+					} else if (item == CHECKPOINT_MARK) {
+						checkpointPositions.put(flush(bw, bos, fc)) ;
+					} else {
+						elem = item ;
+						writeItem(bw, bos, elem) ;
+						nbElementWritten++ ;
+						if ((stringBuilderPool != null) && (elem instanceof StringBuilder)) {
+							stringBuilderPool.release((StringBuilder) elem) ;
+						}
+					}
+				}
+				elem = null ;
+				if (batch == END_BATCH_MARK) {
+					endOfProcess = true ;
 				}
-			} while ((! endOfProcess) || (! outputQ.isEmpty())) ;
+			} while (! endOfProcess) ;
 		
 			bw.flush();
 			bw.close();
@@ -75,8 +251,105 @@ public class ItemsWriter extends Thread {
 					logger.log(Level.SEVERE, "Exception in exception when trying to check if a string encodable", e1) ;
 				}
 			}
+		} finally {
+			if (threadClock != null) {
+				threadClock.end() ;
+			}
+		}
+
+	}
+
+	private FileChannel openResultFile() throws IOException {
+		
+		if (startPosition < 0) {
+			return FileChannel.open(resultFilePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ;
+		} else {
+			FileChannel fc = FileChannel.open(resultFilePath, StandardOpenOption.WRITE) ;
+			if (fc.size() < startPosition) {
+				fc.close() ;
+				throw new IOException("Result file " + resultFilePath + " shorter than the resume position " + startPosition) ;
+			}
+			fc.truncate(startPosition) ;
+			fc.position(startPosition) ;
+			return fc ;
+		}
+	}
+	
+	// Writer.append(CharSequence) creates a String from the item, this is avoided for a StringBuilder
+	// A ByteChunk in the charset of the file is written directly in the byte stream under the writer
+	private void writeItem(BufferedWriter bw, BufferedOutputStream bos, CharSequence item) throws IOException {
+		
+		if ((item instanceof ByteChunk) && ((ByteChunk) item).getCharset().equals(charset)) {
+			if (charsPending) {
+				bw.flush() ;
+				charsPending = false ;
+			}
+			((ByteChunk) item).writeTo(bos) ;
+			bos.write(lineSeparatorBytes) ;
+			return ;
 		}
+		charsPending = true ;
+		if (item instanceof StringBuilder) {
+			StringBuilder sb = (StringBuilder) item ;
+			int length = sb.length() ;
+			if (length > itemChars.length) {
+				itemChars = new char[Math.max(length, itemChars.length*2)] ;
+			}
+			sb.getChars(0, length, itemChars, 0) ;
+			bw.write(itemChars, 0, length) ;
+		} else {
+			bw.append(item) ;
+		}
+		bw.newLine() ;
+	}
+	
+	private OutputStream openOutputStream(FileChannel fc) throws IOException {
+		
+		if (compression == null) {
+			return Channels.newOutputStream(fc) ;
+		} else {
+			return CompressionUtils.getEncodedOutputStream(compression, Channels.newOutputStream(fc), nbCompressionThreads) ;
+		}
+	}
+	
+	// Flush the items written to the disk, and return the position after the last item
+	private long flush(BufferedWriter bw, BufferedOutputStream bos, FileChannel fc) throws IOException {
+		bw.flush() ;
+		charsPending = false ;
+		bos.flush() ;
+		fc.force(false) ;
+		return fc.position() ;
+	}
+	
+	// Under the writer: flushing the writer only gives its chars, encoded, to the byte stream, without flushing the byte stream
+	// (a flush of the parallel gzip stream ends a gzip member). Closing the writer closes the byte stream
+	private static class NotFlushedOutputStream extends FilterOutputStream {
 
+		private NotFlushedOutputStream(OutputStream out) {
+			super(out) ;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len) ;
+		}
+
+		@Override
+		public void flush() {
+		}
+	}
+
+	private List<CharSequence> takeBatch() throws InterruptedException {
+		
+		if (outputBatchQ != null) {
+			return outputBatchQ.take() ;
+		} else {
+			CharSequence item = outputQ.take() ;
+			itemsBatch.clear() ;
+			itemsBatch.add(item) ;
+			outputQ.drainTo(itemsBatch) ;
+			return itemsBatch ;
+		}
 	}
 
 	public long getNbElementWritten() {
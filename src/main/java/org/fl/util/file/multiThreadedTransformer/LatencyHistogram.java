@@ -0,0 +1,76 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histogram of durations in nanoseconds, that can be recorded by several threads without lock
+// The buckets are logarithmic, with 8 sub buckets per power of 2: the percentiles are given with a precision of 12.5%
+public class LatencyHistogram {
+
+	private static final int NB_LINEAR_BUCKETS = 16 ;
+	private static final int SUB_BUCKET_BITS   = 3 ;
+	private static final int NB_SUB_BUCKETS	   = 1 << SUB_BUCKET_BITS ;
+	private static final int NB_BUCKETS		   = NB_LINEAR_BUCKETS + (63 - 4)*NB_SUB_BUCKETS ;
+
+	private final AtomicLongArray buckets ;
+
+	public LatencyHistogram() {
+		buckets = new AtomicLongArray(NB_BUCKETS) ;
+	}
+
+	public void record(long durationNanos) {
+		buckets.incrementAndGet(bucketIndex(Math.max(0, durationNanos))) ;
+	}
+
+	public long getCount() {
+		long count = 0 ;
+		for (int i=0; i < NB_BUCKETS; i++) {
+			count = count + buckets.get(i) ;
+		}
+		return count ;
+	}
+
+	// Value under which are the given percentage of the recorded durations (upper bound of the bucket)
+	// Returns 0 if nothing has been recorded
+	public long getPercentile(double percentile) {
+
+		long[] counts = new long[NB_BUCKETS] ;
+		long total = 0 ;
+		for (int i=0; i < NB_BUCKETS; i++) {
+			counts[i] = buckets.get(i) ;
+			total = total + counts[i] ;
+		}
+		if (total == 0) {
+			return 0 ;
+		}
+		long rank = Math.max(1, (long)Math.ceil(total*percentile/100)) ;
+		long cumulated = 0 ;
+		for (int i=0; i < NB_BUCKETS; i++) {
+			cumulated = cumulated + counts[i] ;
+			if (cumulated >= rank) {
+				return bucketUpperBound(i) ;
+			}
+		}
+		return bucketUpperBound(NB_BUCKETS - 1) ;
+	}
+
+	private static int bucketIndex(long value) {
+
+		if (value < NB_LINEAR_BUCKETS) {
+			return (int)value ;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value) ;
+		int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (NB_SUB_BUCKETS - 1) ;
+		return NB_LINEAR_BUCKETS + (exponent - 4)*NB_SUB_BUCKETS + subBucket ;
+	}
+
+	private static long bucketUpperBound(int index) {
+
+		if (index < NB_LINEAR_BUCKETS) {
+			return index ;
+		}
+		int exponent  = (index - NB_LINEAR_BUCKETS)/NB_SUB_BUCKETS + 4 ;
+		int subBucket = (index - NB_LINEAR_BUCKETS)%NB_SUB_BUCKETS ;
+		long upperBound = ((long)(NB_SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1 ;
+		return (upperBound < 0) ? Long.MAX_VALUE : upperBound ;
+	}
+}
@@ -0,0 +1,264 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Reads the lines of a file through memory mapped windows, keeping track of the byte position of each line
+// Lines are ended by "\n" or "\r\n". The charset must be ASCII compatible (a "\n" byte is always a line feed)
+class MappedLineReader {
+
+	private static final int DEFAULT_WINDOW_SIZE = 64*1024*1024 ;
+	private static final int MAX_WINDOW_SIZE 	 = Integer.MAX_VALUE - 8 ;
+
+	private static final byte LF = '\n' ;
+	private static final byte CR = '\r' ;
+
+	private final FileChannel channel ;
+	private final Charset charset ;
+	private final long fileSize ;
+
+	private int windowSize ;
+	private MappedByteBuffer window ;
+	private long windowStart ;
+
+	// Position of the next line
+	private long position ;
+
+	private byte[] lineBytes ;
+	private int lineBytesLength ;
+	private String line ;
+	private long lineStart ;
+
+	// Lines decoded in a reused char array (nextLineChars), created at the first use
+	private CharsetDecoder decoder ;
+	private final boolean asciiFastPath ;
+	private ByteBuffer lineByteBuffer ;
+	private char[] lineChars ;
+	private int lineCharsLength ;
+
+	MappedLineReader(FileChannel fc, Charset cs, long startPosition) throws IOException {
+		this(fc, cs, startPosition, DEFAULT_WINDOW_SIZE) ;
+	}
+
+	MappedLineReader(FileChannel fc, Charset cs, long startPosition, int ws) throws IOException {
+
+		channel 	= fc ;
+		charset 	= cs ;
+		fileSize 	= fc.size() ;
+		windowSize 	= ws ;
+		window 		= null ;
+		windowStart = 0 ;
+		position 	= startPosition ;
+		lineBytes 	= new byte[256] ;
+		lineBytesLength = 0 ;
+		line 		= null ;
+		lineStart 	= -1 ;
+		decoder 	= null ;
+		asciiFastPath = hasAsciiFastPath(cs) ;
+	}
+
+	// Returns false at the end of the file
+	boolean nextLine() throws IOException {
+
+		if (! readLineBytes()) {
+			return false ;
+		}
+		line = new String(lineBytes, 0, lineBytesLength, charset) ;
+		return true ;
+	}
+
+	// Same as nextLine, but the line is decoded in a char array reused for each line, instead of a new String
+	// Returns false at the end of the file
+	boolean nextLineChars() throws IOException {
+
+		if (! readLineBytes()) {
+			return false ;
+		}
+		decodeLine() ;
+		return true ;
+	}
+
+	// Same as nextLine, but the line is not decoded: the bytes of the line are in an array reused for each line
+	// Returns false at the end of the file
+	boolean nextLineBytes() throws IOException {
+		return readLineBytes() ;
+	}
+
+	private boolean readLineBytes() throws IOException {
+
+		if (position >= fileSize) {
+			return false ;
+		}
+
+		int from ;
+		int lineEnd ;
+		long nextPosition ;
+		while (true) {
+			if ((window == null) || (position < windowStart) || (position >= windowStart + window.limit())) {
+				map(position) ;
+			}
+			from = (int)(position - windowStart) ;
+			int lf = indexOfLineFeed(window, from) ;
+			if (lf >= 0) {
+				lineEnd 	 = lf ;
+				nextPosition = windowStart + lf + 1 ;
+				break ;
+			} else if (windowStart + window.limit() >= fileSize) {
+				// last line of the file, without line feed
+				lineEnd 	 = window.limit() ;
+				nextPosition = fileSize ;
+				break ;
+			} else if (from == 0) {
+				// the line is longer than the window
+				if (windowSize == MAX_WINDOW_SIZE) {
+					throw new IOException("Line too long at position " + position) ;
+				}
+				windowSize = (int) Math.min((long)windowSize*2, MAX_WINDOW_SIZE) ;
+			}
+			// map a new window beginning at the current line
+			map(position) ;
+		}
+
+		int length = lineEnd - from ;
+		if ((length > 0) && (window.get(lineEnd - 1) == CR)) {
+			length-- ;
+		}
+		if (length > lineBytes.length) {
+			lineBytes = new byte[Math.max(length, lineBytes.length*2)] ;
+		}
+		window.get(from, lineBytes, 0, length) ;
+		lineBytesLength = length ;
+		lineStart = position ;
+		position  = nextPosition ;
+		return true ;
+	}
+
+	private void decodeLine() throws IOException {
+
+		if (decoder == null) {
+			decoder   = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE) ;
+			lineChars = new char[256] ;
+		}
+		if (lineBytesLength > lineChars.length) {
+			lineChars = new char[Math.max(lineBytesLength, lineChars.length*2)] ;
+		}
+		if (asciiFastPath) {
+			// the bytes below 0x80 are ASCII chars
+			int i = 0 ;
+			while ((i < lineBytesLength) && (lineBytes[i] >= 0)) {
+				lineChars[i] = (char) lineBytes[i] ;
+				i++ ;
+			}
+			if (i == lineBytesLength) {
+				lineCharsLength = lineBytesLength ;
+				return ;
+			}
+		}
+		if ((lineByteBuffer == null) || (lineByteBuffer.array() != lineBytes)) {
+			lineByteBuffer = ByteBuffer.wrap(lineBytes) ;
+		}
+		while (true) {
+			lineByteBuffer.clear().limit(lineBytesLength) ;
+			CharBuffer out = CharBuffer.wrap(lineChars) ;
+			decoder.reset() ;
+			CoderResult result = decoder.decode(lineByteBuffer, out, true) ;
+			if (! result.isOverflow()) {
+				result = decoder.flush(out) ;
+			}
+			if (result.isOverflow()) {
+				lineChars = new char[lineChars.length*2] ;
+			} else if (result.isError()) {
+				result.throwException() ;
+			} else {
+				lineCharsLength = out.position() ;
+				return ;
+			}
+		}
+	}
+
+	String getLine() {
+		return line ;
+	}
+
+	// Current line read by nextLineChars: the first getLineLength chars of the array (reused for the next line)
+	char[] getLineChars() {
+		return lineChars ;
+	}
+
+	int getLineLength() {
+		return lineCharsLength ;
+	}
+
+	// Current line read by nextLineBytes: the first getLineBytesLength bytes of the array (reused for the next line)
+	byte[] getLineBytes() {
+		return lineBytes ;
+	}
+
+	int getLineBytesLength() {
+		return lineBytesLength ;
+	}
+
+	// Byte position of the current line in the file
+	long getLineStart() {
+		return lineStart ;
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start ;
+		window 		= channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start)) ;
+	}
+
+	private static int indexOfLineFeed(ByteBuffer buffer, int from) {
+		int limit = buffer.limit() ;
+		for (int i = from; i < limit; i++) {
+			if (buffer.get(i) == LF) {
+				return i ;
+			}
+		}
+		return -1 ;
+	}
+
+	// Start position of the line containing the byte at the given position
+	static long lineStartOf(FileChannel fc, long bytePosition) throws IOException {
+
+		ByteBuffer chunk = ByteBuffer.allocate(4096) ;
+		long chunkEnd = bytePosition ;
+		while (chunkEnd > 0) {
+			long chunkStart = Math.max(0, chunkEnd - chunk.capacity()) ;
+			chunk.clear() ;
+			chunk.limit((int)(chunkEnd - chunkStart)) ;
+			while (chunk.hasRemaining()) {
+				if (fc.read(chunk, chunkStart + chunk.position()) < 0) {
+					throw new IOException("Unexpected end of file at position " + (chunkStart + chunk.position())) ;
+				}
+			}
+			for (int i = chunk.limit() - 1; i >= 0; i--) {
+				if (chunk.get(i) == LF) {
+					return chunkStart + i + 1 ;
+				}
+			}
+			chunkEnd = chunkStart ;
+		}
+		return 0 ;
+	}
+
+	// In these charsets, a byte below 0x80 is always the ASCII char, whatever the bytes around
+	static boolean hasAsciiFastPath(Charset cs) {
+		return cs.equals(StandardCharsets.UTF_8) || cs.equals(StandardCharsets.US_ASCII) || cs.equals(StandardCharsets.ISO_8859_1) ;
+	}
+
+	// A "\n" byte is always a line feed in ASCII compatible charsets
+	static boolean isAsciiCompatible(Charset cs) {
+		byte[] lf = "\n".getBytes(cs) ;
+		byte[] cr = "\r".getBytes(cs) ;
+		return (lf.length == 1) && (lf[0] == LF) && (cr.length == 1) && (cr[0] == CR) && (cs.newEncoder().maxBytesPerChar() >= 1) && (cs.newDecoder().averageCharsPerByte() <= 1) && (! cs.name().startsWith("UTF-16")) && (! cs.name().startsWith("UTF-32")) ;
+	}
+}
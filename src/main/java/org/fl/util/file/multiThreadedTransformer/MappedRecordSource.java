@@ -0,0 +1,59 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.fl.util.file.multiThreadedTransformer.RecordCollector.LineGrouper;
+
+// The file is memory mapped, and read on the calling thread
+// Falls back to a BufferedReader if the charset is not ASCII compatible
+class MappedRecordSource extends RecordSource {
+
+	@Override
+	public void readRecords(Path inputFilePath, Charset inputCharset, RecordCollector recordCollector) throws IOException, InterruptedException {
+		readRecords(inputFilePath, inputCharset, recordCollector, 0) ;
+	}
+
+	@Override
+	public void readRecords(Path inputFilePath, Charset inputCharset, RecordCollector recordCollector, long startPosition) throws IOException, InterruptedException {
+
+		if (! MappedLineReader.isAsciiCompatible(inputCharset)) {
+			// not resumable: the start position must be 0
+			RecordSource.bufferedReader().readRecords(inputFilePath, inputCharset, recordCollector, startPosition) ;
+			return ;
+		}
+
+		LineGrouper grouper = recordCollector.newGrouper() ;
+		try (FileChannel fc = FileChannel.open(inputFilePath, StandardOpenOption.READ)) {
+
+			if (startPosition > fc.size()) {
+				throw new IOException("Start position " + startPosition + " after the end of file " + inputFilePath) ;
+			}
+			MappedLineReader reader = new MappedLineReader(fc, inputCharset, startPosition) ;
+			if (recordCollector.isByteMode()) {
+				// the lines are not decoded
+				while (reader.nextLineBytes()) {
+					grouper.addLine(reader.getLineBytes(), 0, reader.getLineBytesLength(), reader.getLineStart()) ;
+				}
+			} else if (recordCollector.isRecordViewMode()) {
+				// no String created for the lines
+				while (reader.nextLineChars()) {
+					grouper.addLine(reader.getLineChars(), 0, reader.getLineLength(), reader.getLineStart()) ;
+				}
+			} else {
+				while (reader.nextLine()) {
+					grouper.addLine(reader.getLine(), reader.getLineStart()) ;
+				}
+			}
+		}
+		grouper.end() ;
+	}
+
+	@Override
+	public boolean isResumable(Charset inputCharset) {
+		return MappedLineReader.isAsciiCompatible(inputCharset) ;
+	}
+}
@@ -0,0 +1,129 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.fl.util.file.multiThreadedTransformer.RecordCollector.LineGrouper;
+
+// The file is cut in byte ranges, each one read by its own thread through memory mapped windows
+//
+// A record belongs to the range where its first line begins.
+// The reader of a range skips the lines until the first record boundary of its range (those lines belong to the previous range),
+// and goes past the end of its range until the first record boundary of the next range.
+// A record boundary is decided on the previous line only (see ItemsExtractor.isRecordBoundary)
+class ParallelSplitRecordSource extends RecordSource {
+
+	// Under this size, splitting the file is not worth it
+	private static final long MIN_RANGE_SIZE = 64*1024 ;
+
+	private final int nbReaders ;
+
+	ParallelSplitRecordSource(int nbr) {
+		if (nbr < 1) {
+			throw new IllegalArgumentException("The number of readers must be at least 1 (" + nbr + ")") ;
+		}
+		nbReaders = nbr ;
+	}
+
+	@Override
+	public void readRecords(Path inputFilePath, Charset inputCharset, RecordCollector recordCollector) throws IOException, InterruptedException {
+
+		if (! MappedLineReader.isAsciiCompatible(inputCharset)) {
+			new BufferedReaderRecordSource().readRecords(inputFilePath, inputCharset, recordCollector) ;
+			return ;
+		}
+
+		try (FileChannel fc = FileChannel.open(inputFilePath, StandardOpenOption.READ)) {
+
+			long fileSize = fc.size() ;
+			int nbRanges = (int) Math.max(1, Math.min(nbReaders, fileSize / MIN_RANGE_SIZE)) ;
+			if (nbRanges == 1) {
+				readRange(fc, inputCharset, 0, fileSize, recordCollector) ;
+				return ;
+			}
+
+			ExecutorService executorService = Executors.newFixedThreadPool(nbRanges) ;
+			boolean success = false ;
+			try {
+				List<Future<Void>> rangeReads = new ArrayList<Future<Void>>() ;
+				for (int k=0; k < nbRanges; k++) {
+					long start = k*fileSize/nbRanges ;
+					long end   = (k+1)*fileSize/nbRanges ;
+					rangeReads.add(executorService.submit(() -> {
+						readRange(fc, inputCharset, start, end, recordCollector) ;
+						return null ;
+					})) ;
+				}
+				for (Future<Void> rangeRead : rangeReads) {
+					rangeRead.get() ;
+				}
+				success = true ;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() ;
+				if (cause instanceof IOException) {
+					throw (IOException)cause ;
+				} else if (cause instanceof InterruptedException) {
+					throw (InterruptedException)cause ;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause ;
+				} else if (cause instanceof Error) {
+					throw (Error)cause ;
+				} else {
+					throw new IOException("Exception reading range of file " + inputFilePath, cause) ;
+				}
+			} finally {
+				if (success) {
+					executorService.shutdown() ;
+				} else {
+					// interrupt the readers that may be waiting for space in the entries queue
+					executorService.shutdownNow() ;
+				}
+			}
+		}
+	}
+
+	private static void readRange(FileChannel fc, Charset cs, long start, long end, RecordCollector recordCollector) throws IOException, InterruptedException {
+
+		LineGrouper grouper = recordCollector.newGrouper() ;
+		String previousLine = null ;
+		boolean inRange ;
+		MappedLineReader reader ;
+		if (start == 0) {
+			reader  = new MappedLineReader(fc, cs, 0) ;
+			inRange = true ;
+		} else {
+			// begin with the line containing the last byte of the previous range
+			reader  = new MappedLineReader(fc, cs, MappedLineReader.lineStartOf(fc, start - 1)) ;
+			inRange = false ;
+			if (! reader.nextLine()) {
+				return ;
+			}
+			previousLine = reader.getLine() ;
+		}
+
+		while (reader.nextLine()) {
+			String line = reader.getLine() ;
+			boolean boundary = (previousLine != null) && recordCollector.isRecordBoundary(previousLine, line) ;
+			if (boundary && (reader.getLineStart() >= end)) {
+				// first record of the next range
+				break ;
+			} else if (boundary) {
+				inRange = true ;
+			}
+			if (inRange) {
+				grouper.addLine(line) ;
+			}
+			previousLine = line ;
+		}
+		grouper.end() ;
+	}
+}
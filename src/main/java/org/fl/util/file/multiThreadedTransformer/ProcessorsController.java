@@ -0,0 +1,143 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonObject;
+
+// Adaptive concurrency: grows or shrinks the number of item processors from the depth of the entries queue
+//
+// The depth of the entries queue is sampled periodically:
+// - when the queue is filling up, the processors do not keep up with the reader: a processor is launched (up to maxProcessors)
+// - when the queue is almost empty, there are more processors than needed: an end mark is put in the queue, so that one processor ends (down to minProcessors)
+// B is the type of the batches in the entries queue
+public class ProcessorsController<B> extends Thread {
+
+	private static final long SAMPLING_PERIOD_MILLIS = 20 ;
+
+	// Number of consecutive samples with the same trend needed to change the number of processors
+	private static final int NB_SAMPLES_TREND = 3 ;
+
+	private final LinkedBlockingQueue<B> entries ;
+	private final int entriesQueueSize ;
+	private final int minProcessors ;
+	private final int maxProcessors ;
+	private final Supplier<Future<JsonObject>> processorLauncher ;
+	private final B endBatch ;
+	private final Logger logger ;
+
+	// Futures of all the processors launched. Read it only when the controller has ended
+	private final List<Future<JsonObject>> processorsResults ;
+
+	private volatile boolean stopped ;
+	private volatile int nbProcessors ;
+	private volatile int maxNbProcessorsReached ;
+
+	public ProcessorsController(LinkedBlockingQueue<B> 					   en,
+								int 								   	   eqs,
+								int 								   	   min,
+								int 								   	   max,
+								Supplier<Future<JsonObject>> 			   pl,
+								B 										   eb,
+								Logger 								   	   l) {
+
+		super("ProcessorsController") ;
+		if ((min < 1) || (max < min)) {
+			throw new IllegalArgumentException("Invalid number of processors: min=" + min + " max=" + max) ;
+		}
+		entries 		  = en ;
+		entriesQueueSize  = eqs ;
+		minProcessors 	  = min ;
+		maxProcessors 	  = max ;
+		processorLauncher = pl ;
+		endBatch 		  = eb ;
+		logger 			  = l ;
+		processorsResults = new ArrayList<Future<JsonObject>>() ;
+		stopped 		  = false ;
+		nbProcessors 	  = 0 ;
+		maxNbProcessorsReached = 0 ;
+		setDaemon(true) ;
+	}
+
+	// Launch the minimum number of processors, then adapt
+	@Override
+	public synchronized void start() {
+		for (int i=0; i < minProcessors; i++) {
+			launchProcessor() ;
+		}
+		super.start() ;
+	}
+
+	@Override
+	public void run() {
+
+		int nbSamplesFilling  = 0 ;
+		int nbSamplesDraining = 0 ;
+		try {
+			while (! stopped) {
+				Thread.sleep(SAMPLING_PERIOD_MILLIS) ;
+
+				int depth = entries.size() ;
+				if (depth*4 >= entriesQueueSize*3) {
+					nbSamplesFilling++ ;
+					nbSamplesDraining = 0 ;
+				} else if (depth*10 <= entriesQueueSize) {
+					nbSamplesDraining++ ;
+					nbSamplesFilling = 0 ;
+				} else {
+					nbSamplesFilling  = 0 ;
+					nbSamplesDraining = 0 ;
+				}
+
+				if ((nbSamplesFilling >= NB_SAMPLES_TREND) && (nbProcessors < maxProcessors) && (! stopped)) {
+					launchProcessor() ;
+					nbSamplesFilling = 0 ;
+				} else if ((nbSamplesDraining >= NB_SAMPLES_TREND) && (nbProcessors > minProcessors) && (! stopped)) {
+					// the end mark is taken by one of the processors, that ends
+					if (entries.offer(endBatch)) {
+						nbProcessors-- ;
+						if (logger.isLoggable(Level.FINE)) {
+							logger.fine("Processor ended. Number of processors=" + nbProcessors) ;
+						}
+					}
+					nbSamplesDraining = 0 ;
+				}
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		}
+	}
+
+	// Stop adapting the number of processors. When this method returns, getNbProcessors is the number of processors still running
+	public void stopControl() throws InterruptedException {
+		stopped = true ;
+		interrupt() ;
+		join() ;
+	}
+
+	public int getNbProcessors() {
+		return nbProcessors;
+	}
+
+	public int getMaxNbProcessorsReached() {
+		return maxNbProcessorsReached;
+	}
+
+	public List<Future<JsonObject>> getProcessorsResults() {
+		return processorsResults;
+	}
+
+	private void launchProcessor() {
+		processorsResults.add(processorLauncher.get()) ;
+		nbProcessors++ ;
+		maxNbProcessorsReached = Math.max(maxNbProcessorsReached, nbProcessors) ;
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Processor launched. Number of processors=" + nbProcessors) ;
+		}
+	}
+}
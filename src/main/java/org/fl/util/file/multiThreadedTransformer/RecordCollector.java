@@ -0,0 +1,551 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.fl.util.file.multiThreadedTransformer.ExtractMonitor.ThreadClock;
+
+// Groups the lines given by a RecordSource into records (entries), according to the rules of the ItemsExtractor,
+// and puts them in the entries queue by batches. The eliminated lines are put in the eliminated entries queue, if any
+public class RecordCollector {
+
+	private final ItemsExtractor itemsExtractor ;
+	private final LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> entries ;
+
+	// or, for a RecordViewProcessor, queue of batches of records in shared char buffers. Only one of the 2 queues is set
+	private final LinkedBlockingQueue<RecordsBatch> recordsBatches ;
+
+	// Records batches given back by the processors, to be reused
+	private final ArrayBlockingQueue<RecordsBatch> recordsBatchesPool ;
+
+	// For a ByteRecordProcessor, charset of the lines, given as bytes to the records batches (null in the other modes)
+	private final Charset byteCharset ;
+
+	private final LinkedBlockingQueue<CharSequence> eliminatedEntries ;
+	
+	// A batch is put in the entries queue when it contains batchSize entries,
+	// or when its first entry has been waiting for more than batchTimeout milliseconds
+	// The timeout is checked when an entry is added, and by the batch timer (if started) when the source gives no line
+	private final int batchSize ;
+	private final long batchTimeoutNanos ;
+	private ScheduledExecutorService batchTimer ;
+	
+	// Groupers not ended, checked by the batch timer
+	private final CopyOnWriteArrayList<LineGrouper> activeGroupers ;
+	
+	// Sequence number of the next batch put in the entries queue
+	// The batches are put in the queue in the order of their sequence number, even with several groupers
+	private long nextSequenceNumber ;
+	private final Object sequenceLock ;
+
+	private final LongAdder nbLinesRead ;
+	private final LongAdder nbLinesEliminated ;
+	private final LongAdder nbRecordsRead ;
+
+	// Last grouper created, to report the last line read in case of error
+	private volatile LineGrouper lastGrouper ;
+	
+	// Periodic checkpoints (null if none). Only for a single grouper giving the line positions
+	private Checkpointer checkpointer ;
+	
+	// Live metrics (null if none)
+	private ExtractMonitor extractMonitor ;
+	private int nbGroupers ;
+
+	protected RecordCollector(ItemsExtractor ie, LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> en, LinkedBlockingQueue<CharSequence> ee, int bs, long bt) {
+
+		this(ie, en, null, 0, null, ee, bs, bt) ;
+	}
+
+	// Collector of records for a RecordViewProcessor
+	// Up to poolSize batches given back by the processors (RecordsBatch.recycle) are kept to be reused
+	protected static RecordCollector recordViewCollector(ItemsExtractor ie, LinkedBlockingQueue<RecordsBatch> rbq, int poolSize, LinkedBlockingQueue<CharSequence> ee, int bs, long bt) {
+
+		return new RecordCollector(ie, null, rbq, poolSize, null, ee, bs, bt) ;
+	}
+
+	// Collector of records for a ByteRecordProcessor: the records batches contain the bytes of the lines, in the charset cs (ASCII compatible)
+	protected static RecordCollector byteRecordCollector(ItemsExtractor ie, LinkedBlockingQueue<RecordsBatch> rbq, int poolSize, Charset cs, LinkedBlockingQueue<CharSequence> ee, int bs, long bt) {
+
+		return new RecordCollector(ie, null, rbq, poolSize, cs, ee, bs, bt) ;
+	}
+
+	private RecordCollector(ItemsExtractor ie, LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> en, LinkedBlockingQueue<RecordsBatch> rbq, int poolSize, Charset cs, LinkedBlockingQueue<CharSequence> ee, int bs, long bt) {
+
+		itemsExtractor 	  = ie ;
+		entries 		  = en ;
+		recordsBatches	  = rbq ;
+		if (poolSize > 0) {
+			recordsBatchesPool = new ArrayBlockingQueue<RecordsBatch>(poolSize) ;
+		} else {
+			recordsBatchesPool = null ;
+		}
+		byteCharset 	  = cs ;
+		eliminatedEntries = ee ;
+		batchSize		  = bs ;
+		batchTimeoutNanos = bt*1000000 ;
+		nextSequenceNumber = 0 ;
+		sequenceLock	  = new Object() ;
+		nbLinesRead 	  = new LongAdder() ;
+		nbLinesEliminated = new LongAdder() ;
+		nbRecordsRead 	  = new LongAdder() ;
+		activeGroupers	  = new CopyOnWriteArrayList<LineGrouper>() ;
+	}
+
+	// A grouper must be used by one thread, for consecutive lines of the input file
+	// The first line given to a grouper must be the first line of the file, or a record boundary
+	public synchronized LineGrouper newGrouper() {
+		nbGroupers++ ;
+		LineGrouper grouper = new LineGrouper(nbGroupers) ;
+		lastGrouper = grouper ;
+		activeGroupers.add(grouper) ;
+		return grouper ;
+	}
+
+	// Start a thread putting in the queue the batches waiting for more than batchTimeout milliseconds,
+	// so that the records read are processed even when the source gives no more line for a while
+	protected synchronized void startBatchTimer() {
+		if ((batchTimeoutNanos > 0) && (batchTimer == null)) {
+			batchTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "RecordCollector-batchTimer") ;
+				thread.setDaemon(true) ;
+				return thread ;
+			}) ;
+			long checkPeriod = Math.max(batchTimeoutNanos/2, TimeUnit.MILLISECONDS.toNanos(1)) ;
+			batchTimer.scheduleWithFixedDelay(this::putExpiredBatches, checkPeriod, checkPeriod, TimeUnit.NANOSECONDS) ;
+		}
+	}
+
+	protected synchronized void stopBatchTimer() {
+		if (batchTimer != null) {
+			batchTimer.shutdownNow() ;
+			batchTimer = null ;
+		}
+	}
+
+	private void putExpiredBatches() {
+		for (LineGrouper grouper : activeGroupers) {
+			grouper.putExpiredBatch() ;
+		}
+	}
+
+	protected void setCheckpointer(Checkpointer checkpointer) {
+		this.checkpointer = checkpointer;
+	}
+
+	protected void setExtractMonitor(ExtractMonitor extractMonitor) {
+		this.extractMonitor = extractMonitor;
+	}
+
+	// In record view mode, the lines should be given as chars (LineGrouper.addLine(char[], int, int, long)) to avoid a String per line
+	public boolean isRecordViewMode() {
+		return recordsBatches != null ;
+	}
+
+	// In byte mode (a record view mode), the lines should be given as bytes (LineGrouper.addLine(byte[], int, int, long)), without decoding
+	public boolean isByteMode() {
+		return byteCharset != null ;
+	}
+
+	public boolean isRecordBoundary(String previousLine, String line) {
+		return itemsExtractor.isRecordBoundary(previousLine, line) ;
+	}
+
+	public long getNbLinesRead() {
+		return nbLinesRead.sum() ;
+	}
+
+	public long getNbLinesEliminated() {
+		return nbLinesEliminated.sum() ;
+	}
+
+	public long getNbRecordsRead() {
+		return nbRecordsRead.sum() ;
+	}
+
+	public String getLastLine() {
+		LineGrouper grouper = lastGrouper ;
+		if (grouper == null) {
+			return null ;
+		} else if (isByteMode()) {
+			ByteBuffer line = grouper.lineBuffer ;
+			return (line == null) ? null : new String(line.array(), line.position(), line.remaining(), byteCharset) ;
+		} else if (isRecordViewMode()) {
+			return grouper.lineSlice.toString() ;
+		} else {
+			return grouper.lastLine ;
+		}
+	}
+
+	private RecordsBatch newRecordsBatch() {
+		RecordsBatch recordsBatch = null ;
+		if (recordsBatchesPool != null) {
+			recordsBatch = recordsBatchesPool.poll() ;
+		}
+		if (recordsBatch == null) {
+			recordsBatch = new RecordsBatch(recordsBatchesPool) ;
+		}
+		return recordsBatch ;
+	}
+
+	public class LineGrouper {
+
+		private ArrayList<String> currentEntry ;
+		private String lastLine ;
+		
+		private ItemsBatch<ArrayList<String>> batch ;
+		private long batchStart ;
+		
+		// Record view mode: the records are added to a RecordsBatch. The current record is the open record of the batch
+		private RecordsBatch recordsBatch ;
+		private final RecordView currentRecord ;
+		private final CharSlice lineSlice ;
+		private char[] lineChars ;
+
+		// Byte mode: the current record is the open record of the batch, seen as bytes
+		private final ByteRecordView currentByteRecord ;
+		private ByteBuffer lineBuffer ;
+
+		private final ThreadClock threadClock ;
+
+		// Held while a line is added, and by the batch timer to put an expired batch
+		private final ReentrantLock lock ;
+		private boolean ended ;
+
+		private LineGrouper(int grouperNumber) {
+			if (extractMonitor != null) {
+				threadClock = extractMonitor.newThreadClock("reader " + grouperNumber) ;
+			} else {
+				threadClock = null ;
+			}
+			currentEntry = null ;
+			lastLine	 = null ;
+			batchStart	 = 0 ;
+			if (isRecordViewMode()) {
+				batch		 = null ;
+				recordsBatch = newRecordsBatch() ;
+			} else {
+				batch		 = new ItemsBatch<ArrayList<String>>(batchSize) ;
+				recordsBatch = null ;
+			}
+			currentRecord = new RecordView() ;
+			lineSlice	  = new CharSlice() ;
+			lineChars	  = new char[256] ;
+			currentByteRecord = new ByteRecordView(byteCharset) ;
+			lineBuffer	  = null ;
+			lock		  = new ReentrantLock() ;
+			ended		  = false ;
+		}
+		
+		public void addLine(String line) throws InterruptedException {
+			addLine(line, -1) ;
+		}
+		
+		// position: byte position of the line in the input file (-1 if unknown), needed for checkpoints
+		public void addLine(String line, long position) throws InterruptedException {
+			lock.lock() ;
+			try {
+				addStringLine(line, position) ;
+			} finally {
+				lock.unlock() ;
+			}
+		}
+
+		// Record view mode: the line is the length chars of the array from start (the array may be reused after the call)
+		// position: byte position of the line in the input file (-1 if unknown), needed for checkpoints
+		public void addLine(char[] chars, int start, int length, long position) throws InterruptedException {
+			lock.lock() ;
+			try {
+				addCharLine(chars, start, length, position) ;
+			} finally {
+				lock.unlock() ;
+			}
+		}
+
+		// Byte mode: the line is the length bytes of the array from start (the array may be reused after the call)
+		// position: byte position of the line in the input file (-1 if unknown), needed for checkpoints
+		public void addLine(byte[] bytes, int start, int length, long position) throws InterruptedException {
+			lock.lock() ;
+			try {
+				addByteLine(bytes, start, length, position) ;
+			} finally {
+				lock.unlock() ;
+			}
+		}
+
+		private void addStringLine(String line, long position) throws InterruptedException {
+
+			if (isByteMode()) {
+				byte[] lineBytes = line.getBytes(byteCharset) ;
+				addByteLine(lineBytes, 0, lineBytes.length, position) ;
+				return ;
+			} else if (isRecordViewMode()) {
+				if (line.length() > lineChars.length) {
+					lineChars = new char[Math.max(line.length(), lineChars.length*2)] ;
+				}
+				line.getChars(0, line.length(), lineChars, 0) ;
+				addCharLine(lineChars, 0, line.length(), position) ;
+				return ;
+			}
+			
+			if ((checkpointer != null) && (position >= 0) && checkpointer.isDue() && itemsExtractor.isValidFirstLineEntry(line) &&
+				((currentEntry == null) || (! itemsExtractor.belongsToCurrentEntry(currentEntry, line)))) {
+				// beginning of an entry: all the entries before are complete
+				checkpoint(position) ;
+			}
+			
+			lastLine = line ;
+			nbLinesRead.increment() ;
+			if (currentEntry == null) {
+				// search first entry
+				if (itemsExtractor.isValidFirstLineEntry(line)) {
+					currentEntry = new ArrayList<String>() ;
+					currentEntry.add(line) ;
+				} else {
+					eliminate(line) ;
+				}
+			} else if (itemsExtractor.belongsToCurrentEntry(currentEntry, line)) {
+				// same entry as the current one : it is a secondary line
+				currentEntry.add(line) ;
+			} else if (itemsExtractor.isValidFirstLineEntry(line)) {
+				// different entry as the current one : it is a first line
+				// put the previous entry in the queue
+				// this call waits for space to be available in the queue if necessary
+				putEntry(currentEntry) ;
+				currentEntry = new ArrayList<String>() ;
+				currentEntry.add(line) ;
+			} else {
+				// not a valid record
+				eliminate(line) ;
+			}
+		}
+		
+		private void addCharLine(char[] chars, int start, int length, long position) throws InterruptedException {
+
+			lineSlice.set(chars, start, length) ;
+			boolean belongsToCurrentRecord = false ;
+			if (recordsBatch.hasOpenRecord()) {
+				recordsBatch.getOpenRecord(currentRecord) ;
+				belongsToCurrentRecord = itemsExtractor.belongsToCurrentRecord(currentRecord, lineSlice) ;
+			}
+			boolean validFirstLine = (! belongsToCurrentRecord) && itemsExtractor.isValidFirstLine(lineSlice) ;
+
+			if ((checkpointer != null) && (position >= 0) && validFirstLine && checkpointer.isDue()) {
+				// beginning of an entry: all the entries before are complete
+				checkpoint(position) ;
+			}
+			
+			nbLinesRead.increment() ;
+			if (belongsToCurrentRecord) {
+				// same entry as the current one : it is a secondary line
+				recordsBatch.appendLine(chars, start, length) ;
+			} else if (validFirstLine) {
+				// put the previous entry in the queue (this call waits for space to be available in the queue if necessary)
+				if (recordsBatch.hasOpenRecord()) {
+					endRecord() ;
+				}
+				recordsBatch.startRecord() ;
+				recordsBatch.appendLine(chars, start, length) ;
+			} else {
+				// not a valid record
+				eliminate(lineSlice) ;
+			}
+		}
+
+		private void addByteLine(byte[] bytes, int start, int length, long position) throws InterruptedException {
+
+			boolean belongsToCurrentRecord = false ;
+			if (recordsBatch.hasOpenRecord()) {
+				recordsBatch.getOpenRecord(currentByteRecord) ;
+				belongsToCurrentRecord = itemsExtractor.belongsToCurrentRecord(currentByteRecord, lineBuffer(bytes, start, length)) ;
+			}
+			boolean validFirstLine = (! belongsToCurrentRecord) && itemsExtractor.isValidFirstLine(lineBuffer(bytes, start, length)) ;
+
+			if ((checkpointer != null) && (position >= 0) && validFirstLine && checkpointer.isDue()) {
+				// beginning of an entry: all the entries before are complete
+				checkpoint(position) ;
+			}
+			
+			nbLinesRead.increment() ;
+			if (belongsToCurrentRecord) {
+				// same entry as the current one : it is a secondary line
+				recordsBatch.appendLine(bytes, start, length) ;
+			} else if (validFirstLine) {
+				// put the previous entry in the queue (this call waits for space to be available in the queue if necessary)
+				if (recordsBatch.hasOpenRecord()) {
+					endRecord() ;
+				}
+				recordsBatch.startRecord() ;
+				recordsBatch.appendLine(bytes, start, length) ;
+			} else if (eliminatedEntries != null) {
+				// not a valid record: the eliminated line is written as bytes too
+				eliminate(new ByteChunk(Arrays.copyOfRange(bytes, start, start + length), 0, length, byteCharset)) ;
+			}
+		}
+
+		// Buffer on the line given as bytes, positioned again before each rule (a rule may move the position)
+		private ByteBuffer lineBuffer(byte[] bytes, int start, int length) {
+			ByteBuffer buffer = lineBuffer ;
+			if ((buffer == null) || (buffer.array() != bytes)) {
+				buffer = ByteBuffer.wrap(bytes) ;
+			}
+			buffer.clear() ;
+			buffer.position(start).limit(start + length) ;
+			lineBuffer = buffer ;
+			return buffer ;
+		}
+		
+		// Put the last entry and the last batch in the queue
+		public void end() throws InterruptedException {
+			lock.lock() ;
+			try {
+				if (currentEntry != null) {
+					putEntry(currentEntry) ;
+					currentEntry = null ;
+				}
+				if ((recordsBatch != null) && recordsBatch.hasOpenRecord()) {
+					endRecord() ;
+				}
+				putBatch() ;
+				ended = true ;
+			} finally {
+				lock.unlock() ;
+			}
+			activeGroupers.remove(this) ;
+			if (threadClock != null) {
+				threadClock.end() ;
+			}
+		}
+
+		// Batch timer: put the complete records of the batch if the first one has been waiting for more than batchTimeout
+		// Nothing is done when a line is being added (the timeout is checked then) or when the queue is full (the processors are busy)
+		private void putExpiredBatch() {
+			if (! lock.tryLock()) {
+				return ;
+			}
+			try {
+				if (ended || (System.nanoTime() - batchStart < batchTimeoutNanos)) {
+					return ;
+				}
+				if ((batch != null) && (! batch.isEmpty())) {
+					synchronized (sequenceLock) {
+						batch.setSequenceNumber(nextSequenceNumber) ;
+						if (! entries.offer(batch)) {
+							return ;
+						}
+						nextSequenceNumber++ ;
+					}
+					batch = new ItemsBatch<ArrayList<String>>(batchSize) ;
+				} else if ((recordsBatch != null) && (! recordsBatch.isEmpty())) {
+					// the record being added goes on in the next batch
+					RecordsBatch nextBatch = newRecordsBatch() ;
+					boolean openRecord = recordsBatch.hasOpenRecord() ;
+					if (openRecord) {
+						recordsBatch.moveOpenRecord(nextBatch) ;
+					}
+					synchronized (sequenceLock) {
+						recordsBatch.setSequenceNumber(nextSequenceNumber) ;
+						if (recordsBatches.offer(recordsBatch)) {
+							nextSequenceNumber++ ;
+							recordsBatch = nextBatch ;
+							return ;
+						}
+					}
+					// queue full: the batch stays as it was
+					if (openRecord) {
+						nextBatch.moveOpenRecord(recordsBatch) ;
+					}
+					nextBatch.recycle() ;
+				}
+			} finally {
+				lock.unlock() ;
+			}
+		}
+		
+		private void checkpoint(long position) throws InterruptedException {
+			
+			if (currentEntry != null) {
+				putEntry(currentEntry) ;
+				currentEntry = null ;
+			}
+			if ((recordsBatch != null) && recordsBatch.hasOpenRecord()) {
+				endRecord() ;
+			}
+			putBatch() ;
+			long nbBatchesPut ;
+			synchronized (sequenceLock) {
+				nbBatchesPut = nextSequenceNumber ;
+			}
+			checkpointer.checkpoint(position, nbBatchesPut, nbRecordsRead.sum(), nbLinesRead.sum()) ;
+		}
+		
+		private void putEntry(ArrayList<String> entry) throws InterruptedException {
+			
+			if (batch.isEmpty()) {
+				batchStart = System.nanoTime() ;
+			}
+			batch.add(entry) ;
+			nbRecordsRead.increment() ;
+			if ((batch.size() >= batchSize) || (System.nanoTime() - batchStart >= batchTimeoutNanos)) {
+				putBatch() ;
+			}
+		}
+		
+		private void endRecord() throws InterruptedException {
+
+			if (recordsBatch.isEmpty()) {
+				batchStart = System.nanoTime() ;
+			}
+			recordsBatch.endRecord() ;
+			nbRecordsRead.increment() ;
+			if ((recordsBatch.size() >= batchSize) || (System.nanoTime() - batchStart >= batchTimeoutNanos)) {
+				putBatch() ;
+			}
+		}
+		
+		private void putBatch() throws InterruptedException {
+			if ((batch != null) && (! batch.isEmpty())) {
+				long waitStart = System.nanoTime() ;
+				synchronized (sequenceLock) {
+					batch.setSequenceNumber(nextSequenceNumber++) ;
+					entries.put(batch) ;
+				}
+				if (threadClock != null) {
+					threadClock.blockedSince(waitStart) ;
+				}
+				batch = new ItemsBatch<ArrayList<String>>(batchSize) ;
+			} else if ((recordsBatch != null) && (! recordsBatch.isEmpty())) {
+				long waitStart = System.nanoTime() ;
+				synchronized (sequenceLock) {
+					recordsBatch.setSequenceNumber(nextSequenceNumber++) ;
+					recordsBatches.put(recordsBatch) ;
+				}
+				if (threadClock != null) {
+					threadClock.blockedSince(waitStart) ;
+				}
+				recordsBatch = newRecordsBatch() ;
+			}
+		}
+		
+		private void eliminate(CharSequence line) throws InterruptedException {
+			if (eliminatedEntries != null) {
+				nbLinesEliminated.increment() ;
+				long waitStart = System.nanoTime() ;
+				eliminatedEntries.put((line instanceof ByteChunk) ? line : line.toString()) ;
+				if (threadClock != null) {
+					threadClock.blockedSince(waitStart) ;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+// Reads the lines of the input file of an ItemsExtractor and gives them to the RecordCollector,
+// that groups them into records (entries) and puts them in the entries queue
+public abstract class RecordSource {
+
+	// Read the input file. When this method returns, all the records must have been given to the recordCollector
+	public abstract void readRecords(Path inputFilePath, Charset inputCharset, RecordCollector recordCollector) throws IOException, InterruptedException ;
+
+	// Read the input file from a byte position, which must be the beginning of an entry (given by a checkpoint)
+	// A start position other than 0 needs a record source resumable for the input charset (see isResumable), otherwise an IOException is thrown
+	public void readRecords(Path inputFilePath, Charset inputCharset, RecordCollector recordCollector, long startPosition) throws IOException, InterruptedException {
+		if (startPosition != 0) {
+			throw new IOException("The record source " + getClass().getSimpleName() + " is not resumable for the charset " + inputCharset + ": it cannot start at position " + startPosition + " of " + inputFilePath) ;
+		}
+		readRecords(inputFilePath, inputCharset, recordCollector) ;
+	}
+
+	// A resumable record source reads the file sequentially, and gives the line positions to the RecordCollector
+	// so it can be used for checkpoints (see Checkpointer)
+	public boolean isResumable(Charset inputCharset) {
+		return false ;
+	}
+
+	// Default record source: the file is read with a BufferedReader on the calling thread
+	public static RecordSource bufferedReader() {
+		return new BufferedReaderRecordSource() ;
+	}
+
+	// The file is memory mapped, and read on the calling thread
+	// Only for ASCII compatible charsets (UTF-8, ISO-8859-x...). Lines are ended by "\n" or "\r\n"
+	// It is resumable, except for a charset not ASCII compatible (it falls back to a BufferedReader)
+	public static RecordSource memoryMapped() {
+		return new MappedRecordSource() ;
+	}
+
+	// The file is cut in nbReaders byte ranges, each one read by its own thread
+	// Each range begins at a record boundary (see ItemsExtractor.isRecordBoundary)
+	// The records are not put in the entries queue in the order of the file
+	// Only for ASCII compatible charsets (UTF-8, ISO-8859-x...). Lines are ended by "\n" or "\r\n"
+	public static RecordSource parallelSplit(int nbReaders) {
+		return new ParallelSplitRecordSource(nbReaders) ;
+	}
+}
@@ -0,0 +1,114 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// View of a record (entry) inside a RecordsBatch, without copy: it is an offset and a length in the char array of the batch
+// As a CharSequence, the record is the text of its lines separated by line feeds.
+// A view is reused for all the records of a batch: the view and its line slices are only valid during the call of the RecordViewProcessor
+public class RecordView implements CharSequence {
+
+	private RecordsBatch batch ;
+	private int firstLine ;
+	private int nbLines ;
+
+	// Slices of the lines, reused from one record to the next
+	private CharSlice[] lineSlices ;
+
+	public RecordView() {
+		batch 	   = null ;
+		firstLine  = 0 ;
+		nbLines    = 0 ;
+		lineSlices = new CharSlice[0] ;
+	}
+
+	// Standalone record, with a copy of the lines (to call a RecordViewProcessor out of an extract, or for tests)
+	public static RecordView of(List<String> lines) {
+
+		RecordsBatch batch = new RecordsBatch() ;
+		batch.startRecord() ;
+		for (String line : lines) {
+			batch.appendLine(line.toCharArray(), 0, line.length()) ;
+		}
+		batch.endRecord() ;
+		return batch.getRecord(0, new RecordView()) ;
+	}
+
+	void set(RecordsBatch b, int fl, int nl) {
+		batch 	  = b ;
+		firstLine = fl ;
+		nbLines   = nl ;
+	}
+
+	public int getNbLines() {
+		return nbLines ;
+	}
+
+	// The slice is reused when the view is positioned on another record
+	public CharSlice getLine(int index) {
+		if ((index < 0) || (index >= nbLines)) {
+			throw new IndexOutOfBoundsException("Line " + index + " out of record of " + nbLines + " lines") ;
+		}
+		if (index >= lineSlices.length) {
+			int previousLength = lineSlices.length ;
+			lineSlices = Arrays.copyOf(lineSlices, Math.max(index + 1, previousLength*2)) ;
+			for (int i = previousLength; i < lineSlices.length; i++) {
+				lineSlices[i] = new CharSlice() ;
+			}
+		}
+		CharSlice slice = lineSlices[index] ;
+		slice.set(batch.getChars(), batch.getLineStart(firstLine + index), batch.getLineLength(firstLine + index)) ;
+		return slice ;
+	}
+
+	public CharSlice getFirstLine() {
+		return getLine(0) ;
+	}
+
+	// Copy of the lines, as the ArrayList<String> given to an ItemProcessor
+	public ArrayList<String> toLines() {
+		ArrayList<String> lines = new ArrayList<String>(nbLines) ;
+		for (int i=0; i < nbLines; i++) {
+			lines.add(getLine(i).toString()) ;
+		}
+		return lines ;
+	}
+
+	private int offset() {
+		return batch.getLineStart(firstLine) ;
+	}
+
+	@Override
+	public int length() {
+		if (nbLines == 0) {
+			return 0 ;
+		}
+		int lastLine = firstLine + nbLines - 1 ;
+		return batch.getLineStart(lastLine) + batch.getLineLength(lastLine) - offset() ;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if ((index < 0) || (index >= length())) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of record of length " + length()) ;
+		}
+		return batch.getChars()[offset() + index] ;
+	}
+
+	@Override
+	public CharSlice subSequence(int start, int end) {
+		if ((start < 0) || (end > length()) || (start > end)) {
+			throw new IndexOutOfBoundsException("Invalid sub sequence: start=" + start + " end=" + end + " length=" + length()) ;
+		}
+		return new CharSlice(batch.getChars(), offset() + start, end - start) ;
+	}
+
+	@Override
+	public String toString() {
+		if (nbLines == 0) {
+			return "" ;
+		}
+		return new String(batch.getChars(), offset(), length()) ;
+	}
+}
@@ -0,0 +1,28 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.ArrayList;
+
+// Allocation light item processor: the records are given as views on a shared char buffer (no String per line,
+// no list per record), and the result is written in a pooled StringBuilder, recycled when the result has been written.
+// An ItemsExtractor extracting with a RecordViewProcessor groups the lines with isValidFirstLine(CharSequence)
+// and belongsToCurrentRecord(RecordView, CharSequence), that should be overridden to avoid allocations
+public abstract class RecordViewProcessor extends ItemProcessor {
+
+	@Override
+	public abstract RecordViewProcessor getClone() ;
+
+	// Write the result of the record in result (given empty). Returns false if there is no result for the record
+	// The record view and its lines are only valid during the call: keep a copy (toString) of what is needed after
+	public abstract boolean processRecord(RecordView record, StringBuilder result) ;
+
+	// ItemProcessor contract, for a call out of the record view mode (a view and a result are created for each record)
+	@Override
+	public CharSequence processItem(ArrayList<String> currentEntry) {
+		StringBuilder result = new StringBuilder() ;
+		if (processRecord(RecordView.of(currentEntry), result)) {
+			return result ;
+		} else {
+			return null ;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+
+// Batch of records for a RecordViewProcessor or a ByteRecordProcessor, passed between the reader and the processors
+// The lines of all the records are copied in one char array (or one byte array, for a ByteRecordProcessor),
+// each line followed by a line feed, so that no String and no list is created for each line or record.
+// A batch holds either chars or bytes, never both.
+// The records are read through a RecordView (or a ByteRecordView). An empty batch signals the end of the records.
+// A batch taken from a pool is given back to it by the processor (recycle), when its records have been processed
+public class RecordsBatch {
+
+	private static final int INITIAL_DATA_LENGTH = 8192 ;
+	private static final int INITIAL_NB_LINES = 64 ;
+
+	private long sequenceNumber ;
+
+	// Only one of the 2 arrays is allocated, on the first line added
+	private char[] chars ;
+	private byte[] bytes ;
+	private int dataLength ;
+
+	// Start of each line in the char (or byte) array
+	private int[] lineStarts ;
+	private int nbLines ;
+
+	// First line, and line after the last line, of each record
+	private int[] recordFirstLines ;
+	private int[] recordEndLines ;
+	private int nbRecords ;
+
+	// First line of the record being added (-1 if none)
+	private int openRecordFirstLine ;
+
+	// Pool where the batch is given back when recycled (null if none)
+	private final BlockingQueue<RecordsBatch> pool ;
+
+	public RecordsBatch() {
+		this(null) ;
+	}
+
+	protected RecordsBatch(BlockingQueue<RecordsBatch> p) {
+		pool 			 = p ;
+		sequenceNumber 	 = -1 ;
+		chars 			 = null ;
+		bytes 			 = null ;
+		lineStarts 		 = new int[INITIAL_NB_LINES] ;
+		recordFirstLines = new int[INITIAL_NB_LINES] ;
+		recordEndLines 	 = new int[INITIAL_NB_LINES] ;
+		clear() ;
+	}
+
+	// Number of records
+	public int size() {
+		return nbRecords ;
+	}
+
+	public boolean isEmpty() {
+		return nbRecords == 0 ;
+	}
+
+	public long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	protected void setSequenceNumber(long sequenceNumber) {
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	// Position the view on the record at the given index. Returns the view
+	public RecordView getRecord(int index, RecordView view) {
+		checkRecordIndex(index) ;
+		view.set(this, recordFirstLines[index], recordEndLines[index] - recordFirstLines[index]) ;
+		return view ;
+	}
+
+	// Position the byte view on the record at the given index. Returns the view
+	public ByteRecordView getRecord(int index, ByteRecordView view) {
+		checkRecordIndex(index) ;
+		view.set(this, recordFirstLines[index], recordEndLines[index] - recordFirstLines[index]) ;
+		return view ;
+	}
+
+	private void checkRecordIndex(int index) {
+		if ((index < 0) || (index >= nbRecords)) {
+			throw new IndexOutOfBoundsException("Record " + index + " out of batch of " + nbRecords + " records") ;
+		}
+	}
+
+	// Give the batch back to its pool, if any. It must not be used after
+	public void recycle() {
+		if (pool != null) {
+			clear() ;
+			pool.offer(this) ;
+		}
+	}
+
+	void clear() {
+		sequenceNumber 		= -1 ;
+		dataLength 			= 0 ;
+		nbLines 			= 0 ;
+		nbRecords 			= 0 ;
+		openRecordFirstLine = -1 ;
+	}
+
+	void startRecord() {
+		openRecordFirstLine = nbLines ;
+	}
+
+	boolean hasOpenRecord() {
+		return openRecordFirstLine >= 0 ;
+	}
+
+	// Position the view on the record being added
+	void getOpenRecord(RecordView view) {
+		view.set(this, openRecordFirstLine, nbLines - openRecordFirstLine) ;
+	}
+
+	void getOpenRecord(ByteRecordView view) {
+		view.set(this, openRecordFirstLine, nbLines - openRecordFirstLine) ;
+	}
+
+	void appendLine(char[] src, int start, int length) {
+		if (chars == null) {
+			chars = new char[Math.max(INITIAL_DATA_LENGTH, length + 1)] ;
+		} else if (dataLength + length + 1 > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length*2, dataLength + length + 1)) ;
+		}
+		addLineStart() ;
+		System.arraycopy(src, start, chars, dataLength, length) ;
+		dataLength += length ;
+		chars[dataLength++] = '\n' ;
+	}
+
+	void appendLine(byte[] src, int start, int length) {
+		if (bytes == null) {
+			bytes = new byte[Math.max(INITIAL_DATA_LENGTH, length + 1)] ;
+		} else if (dataLength + length + 1 > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length*2, dataLength + length + 1)) ;
+		}
+		addLineStart() ;
+		System.arraycopy(src, start, bytes, dataLength, length) ;
+		dataLength += length ;
+		bytes[dataLength++] = '\n' ;
+	}
+
+	private void addLineStart() {
+		if (nbLines == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, nbLines*2) ;
+		}
+		lineStarts[nbLines++] = dataLength ;
+	}
+
+	void endRecord() {
+		if (nbRecords == recordFirstLines.length) {
+			recordFirstLines = Arrays.copyOf(recordFirstLines, nbRecords*2) ;
+			recordEndLines 	 = Arrays.copyOf(recordEndLines, nbRecords*2) ;
+		}
+		recordFirstLines[nbRecords] = openRecordFirstLine ;
+		recordEndLines[nbRecords] 	= nbLines ;
+		nbRecords++ ;
+		openRecordFirstLine = -1 ;
+	}
+
+	// Move the record being added to the empty batch target, where it stays open. This batch keeps its complete records only
+	void moveOpenRecord(RecordsBatch target) {
+		target.startRecord() ;
+		for (int line = openRecordFirstLine; line < nbLines; line++) {
+			if (chars != null) {
+				target.appendLine(chars, lineStarts[line], getLineLength(line)) ;
+			} else {
+				target.appendLine(bytes, lineStarts[line], getLineLength(line)) ;
+			}
+		}
+		dataLength = lineStarts[openRecordFirstLine] ;
+		nbLines = openRecordFirstLine ;
+		openRecordFirstLine = -1 ;
+	}
+
+	char[] getChars() {
+		return chars ;
+	}
+
+	byte[] getBytes() {
+		return bytes ;
+	}
+
+	// Number of chars (or bytes) of the lines, line feeds included
+	int getDataLength() {
+		return dataLength ;
+	}
+
+	int getLineStart(int line) {
+		return lineStarts[line] ;
+	}
+
+	// Length of the line, without its line feed
+	int getLineLength(int line) {
+		int lineEnd = (line + 1 < nbLines) ? lineStarts[line + 1] : dataLength ;
+		return lineEnd - 1 - lineStarts[line] ;
+	}
+}
@@ -0,0 +1,67 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Puts the batches of results in the output queue in the order of their sequence number,
+// whatever the order in which the processor threads give them
+//
+// The window holds at most windowSize batches waiting for a batch with a lower sequence number:
+// a processor thread giving a batch out of the window waits until the window has moved forward
+public class ReorderWindow<T> {
+
+	private final ItemsBatch<T>[] window ;
+	private final LinkedBlockingQueue<List<T>> outputQ ;
+
+	// Sequence number of the next batch to put in the output queue
+	private long nextSequenceNumber ;
+
+	public ReorderWindow(int windowSize, LinkedBlockingQueue<List<T>> oq) {
+
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("The reorder window size must be at least 1 (" + windowSize + ")") ;
+		}
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ItemsBatch<T>[] slots = new ItemsBatch[windowSize] ;
+		window 			   = slots ;
+		outputQ 		   = oq ;
+		nextSequenceNumber = 0 ;
+	}
+
+	// Empty batches must be given too, so that the window can move forward
+	public synchronized void put(ItemsBatch<T> batch) throws InterruptedException {
+
+		long sequenceNumber = batch.getSequenceNumber() ;
+		if (sequenceNumber < nextSequenceNumber) {
+			throw new IllegalArgumentException("Batch sequence number already passed: " + sequenceNumber) ;
+		}
+		while (sequenceNumber >= nextSequenceNumber + window.length) {
+			wait() ;
+		}
+		window[slot(sequenceNumber)] = batch ;
+
+		// Put the batches that are now in order in the output queue
+		// this call waits for space to be available in the queue if necessary, the writer does not need the window lock
+		boolean moved = false ;
+		ItemsBatch<T> nextBatch ;
+		while ((nextBatch = window[slot(nextSequenceNumber)]) != null) {
+			window[slot(nextSequenceNumber)] = null ;
+			if (! nextBatch.isEmpty()) {
+				outputQ.put(nextBatch) ;
+			}
+			nextSequenceNumber++ ;
+			moved = true ;
+		}
+		if (moved) {
+			notifyAll() ;
+		}
+	}
+
+	public synchronized long getNextSequenceNumber() {
+		return nextSequenceNumber ;
+	}
+
+	private int slot(long sequenceNumber) {
+		return (int)(sequenceNumber % window.length) ;
+	}
+}
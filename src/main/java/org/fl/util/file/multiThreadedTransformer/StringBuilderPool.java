@@ -0,0 +1,48 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Pool of StringBuilder for the results of a RecordViewProcessor
+// The processors acquire the builders, and the ItemsWriter releases them when the results have been written
+// When the pool is empty, a new builder is created. A builder released when the pool is full is left to the garbage collector
+public class StringBuilderPool {
+
+	private final ArrayBlockingQueue<StringBuilder> freeBuilders ;
+
+	private final int initialCapacity ;
+
+	// Builders grown above this capacity are not kept, so that one huge result does not stay in memory
+	private final int maxRetainedCapacity ;
+
+	public StringBuilderPool(int poolSize, int initialCapacity, int maxRetainedCapacity) {
+
+		if ((poolSize < 1) || (initialCapacity < 0) || (maxRetainedCapacity < initialCapacity)) {
+			throw new IllegalArgumentException("Invalid StringBuilder pool: poolSize=" + poolSize + " initialCapacity=" + initialCapacity + " maxRetainedCapacity=" + maxRetainedCapacity) ;
+		}
+		this.freeBuilders 		 = new ArrayBlockingQueue<StringBuilder>(poolSize) ;
+		this.initialCapacity 	 = initialCapacity ;
+		this.maxRetainedCapacity = maxRetainedCapacity ;
+	}
+
+	// Returns an empty builder
+	public StringBuilder acquire() {
+		StringBuilder sb = freeBuilders.poll() ;
+		if (sb == null) {
+			sb = new StringBuilder(initialCapacity) ;
+		}
+		return sb ;
+	}
+
+	// The builder must not be used after
+	public void release(StringBuilder sb) {
+		if (sb.capacity() <= maxRetainedCapacity) {
+			sb.setLength(0) ;
+			freeBuilders.offer(sb) ;
+		}
+	}
+
+	// Number of builders available in the pool
+	public int getNbFreeBuilders() {
+		return freeBuilders.size() ;
+	}
+}
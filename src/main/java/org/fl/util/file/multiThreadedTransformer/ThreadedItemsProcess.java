@@ -1,70 +1,291 @@
 package org.fl.util.file.multiThreadedTransformer;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.fl.util.file.multiThreadedTransformer.ExtractMonitor.ThreadClock;
+
 import com.google.gson.JsonObject;
 
 public class ThreadedItemsProcess implements Callable<JsonObject>  {
 
-	private LinkedBlockingQueue<ArrayList<String>> entries ;
+	// Entries are taken by batch. An empty batch signals the end of the entries
+	private LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> entries ;
+	
+	// or, for a RecordViewProcessor, batches of records in shared char buffers. Only one of the 2 queues is set
+	private LinkedBlockingQueue<RecordsBatch> recordsBatches ;
+	
+	// The results of a batch of entries are put in the output queue as one batch
+	private LinkedBlockingQueue<List<CharSequence>> outPutQ ;
+	
+	// For ordered output, the results are given to the reorder window instead of the output queue
+	private ReorderWindow<CharSequence> reorderWindow ;
 	
-	private LinkedBlockingQueue<CharSequence> outPutQ ;
+	// Informed of each batch processed, for checkpoints (null if none)
+	private Checkpointer checkpointer ;
+	
+	// Live metrics (null if none)
+	private ExtractMonitor extractMonitor ;
 	
 	private Logger logger ;
 	
 	private ItemProcessor itemProcessor  ;
 	
-	public ThreadedItemsProcess(LinkedBlockingQueue<ArrayList<String>> iq, 
-								LinkedBlockingQueue<CharSequence> 	   oq, 
-								ItemProcessor						   it,
-								Logger 								   l) {
+	// Record view mode: the results are written in StringBuilder taken from the pool (released by the ItemsWriter)
+	private RecordViewProcessor recordViewProcessor ;
+	private StringBuilderPool stringBuilderPool ;
+	
+	// or byte mode: the results are written as bytes, in the charset of the records
+	private ByteRecordProcessor byteRecordProcessor ;
+	private Charset byteCharset ;
+	
+	private long nbRecordProcessed ;
+	
+	public ThreadedItemsProcess(LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> iq, 
+								LinkedBlockingQueue<List<CharSequence>> 		  oq, 
+								ItemProcessor						   			  it,
+								Logger 								   			  l) {
+		
+		this(iq, oq, null, it, l) ;
+	}
+	
+	public ThreadedItemsProcess(LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> iq, 
+								ReorderWindow<CharSequence> 					  rw, 
+								ItemProcessor						   			  it,
+								Logger 								   			  l) {
+		
+		this(iq, null, rw, it, l) ;
+	}
+	
+	// Processor of batches of records for a RecordViewProcessor
+	// The results are put in the output queue, or given to the reorder window if it is not null
+	public static ThreadedItemsProcess recordViewsProcess(LinkedBlockingQueue<RecordsBatch> 		   rbq,
+														  LinkedBlockingQueue<List<CharSequence>> oq,
+														  ReorderWindow<CharSequence> 			   rw,
+														  RecordViewProcessor 					   rvp,
+														  StringBuilderPool 					   sbp,
+														  Logger 								   l) {
+		
+		ThreadedItemsProcess recordViewsProcess ;
+		if (rw != null) {
+			recordViewsProcess = new ThreadedItemsProcess(null, null, rw, rvp, l) ;
+		} else {
+			recordViewsProcess = new ThreadedItemsProcess(null, oq, null, rvp, l) ;
+		}
+		recordViewsProcess.recordsBatches 	   = rbq ;
+		recordViewsProcess.recordViewProcessor = rvp ;
+		recordViewsProcess.stringBuilderPool   = sbp ;
+		return recordViewsProcess ;
+	}
+	
+	// Processor of batches of records given as bytes, for a ByteRecordProcessor
+	// The results, bytes in the charset cs, are put in the output queue, or given to the reorder window if it is not null
+	public static ThreadedItemsProcess byteRecordsProcess(LinkedBlockingQueue<RecordsBatch> 		   rbq,
+														  LinkedBlockingQueue<List<CharSequence>> oq,
+														  ReorderWindow<CharSequence> 			   rw,
+														  ByteRecordProcessor 					   brp,
+														  Charset 								   cs,
+														  Logger 								   l) {
+		
+		ThreadedItemsProcess byteRecordsProcess ;
+		if (rw != null) {
+			byteRecordsProcess = new ThreadedItemsProcess(null, null, rw, brp, l) ;
+		} else {
+			byteRecordsProcess = new ThreadedItemsProcess(null, oq, null, brp, l) ;
+		}
+		byteRecordsProcess.recordsBatches 	   = rbq ;
+		byteRecordsProcess.byteRecordProcessor = brp ;
+		byteRecordsProcess.byteCharset 		   = cs ;
+		return byteRecordsProcess ;
+	}
+	
+	private ThreadedItemsProcess(LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> iq, 
+								 LinkedBlockingQueue<List<CharSequence>> 		   oq, 
+								 ReorderWindow<CharSequence> 					   rw, 
+								 ItemProcessor						   			   it,
+								 Logger 								   		   l) {
 		
 		entries 	  = iq ;
 		outPutQ 	  = oq ;
+		reorderWindow = rw ;
+		checkpointer  = null ;
+		extractMonitor = null ;
 		itemProcessor = it ;
 		logger		  = l ;
+		recordsBatches 		= null ;
+		recordViewProcessor = null ;
+		stringBuilderPool 	= null ;
+		byteRecordProcessor = null ;
+		byteCharset 		= null ;
+	}
+
+	public void setCheckpointer(Checkpointer checkpointer) {
+		this.checkpointer = checkpointer;
+	}
+
+	public void setExtractMonitor(ExtractMonitor extractMonitor) {
+		this.extractMonitor = extractMonitor;
 	}
 
 	@Override
 	public JsonObject call() throws Exception {
 
 		// Loop
-		long nbRecordProcessed	  = 0 ;
-		ArrayList<String> currentEntry = null ;
+		nbRecordProcessed = 0 ;
+		boolean endOfEntries = false ;
+		ThreadClock threadClock = null ;
+		if (extractMonitor != null) {
+			threadClock = extractMonitor.newThreadClock("processor " + Thread.currentThread().getName()) ;
+		}
 
 		do {
 
 			try {
-				// Get item from input queue waiting if necessary for one to become available
-				currentEntry = entries.take() ;
-
-				// process item
-				if (currentEntry.size() > 0) {
-					
-					// build out item
-					CharSequence outItem = itemProcessor.processItem(currentEntry) ;
+				// Get a batch from input queue waiting if necessary for one to become available
+				// and process items
+				ItemsBatch<CharSequence> outBatch ;
+				long waitStart = System.nanoTime() ;
+				if (recordsBatches != null) {
+					RecordsBatch currentRecords = recordsBatches.take() ;
+					if (threadClock != null) {
+						threadClock.blockedSince(waitStart) ;
+					}
+					endOfEntries = currentRecords.isEmpty() ;
+					if (endOfEntries) {
+						outBatch = null ;
+					} else if (byteRecordProcessor != null) {
+						outBatch = processByteRecords(currentRecords) ;
+					} else {
+						outBatch = processRecords(currentRecords) ;
+					}
+				} else {
+					ItemsBatch<ArrayList<String>> currentBatch = entries.take() ;
+					if (threadClock != null) {
+						threadClock.blockedSince(waitStart) ;
+					}
+					endOfEntries = currentBatch.isEmpty() ;
+					outBatch = endOfEntries ? null : processEntries(currentBatch) ;
+				}
 
-					// put item in output queue
-					outPutQ.put(outItem);
+				if (outBatch != null) {
 
-					nbRecordProcessed++ ;
+					// put items in output queue
+					long putStart = System.nanoTime() ;
+					if (reorderWindow != null) {
+						// even if empty, so that the window moves forward
+						reorderWindow.put(outBatch) ;
+					} else if (! outBatch.isEmpty()) {
+						outPutQ.put(outBatch);
+					}
+					if (threadClock != null) {
+						threadClock.blockedSince(putStart) ;
+					}
+					if (checkpointer != null) {
+						checkpointer.batchProcessed() ;
+					}
 				}
 
-			} catch (Exception e) {
-				String msg = null;
-				if (currentEntry != null) {
-					msg = currentEntry.get(0) ;
-				}
-				logger.log(Level.SEVERE, "Exception processing record=" + msg, e);
+			} catch (InterruptedException e) {
+				logger.log(Level.SEVERE, "Interrupted processing records", e);
+				Thread.currentThread().interrupt();
+				break ;
 			}
-		} while (currentEntry.size() > 0) ;
+		} while (! endOfEntries) ;
+		if (threadClock != null) {
+			threadClock.end() ;
+		}
 
 		JsonObject result = new JsonObject() ;
 		result.addProperty("nbRecordsProcessed", nbRecordProcessed);
 		return result ;
 	}
+
+	private ItemsBatch<CharSequence> processEntries(ItemsBatch<ArrayList<String>> currentBatch) {
+		
+		ItemsBatch<CharSequence> outBatch = new ItemsBatch<CharSequence>(currentBatch.size(), currentBatch.getSequenceNumber()) ;
+		for (ArrayList<String> currentEntry : currentBatch) {
+			try {
+				// build out item
+				long processStart = System.nanoTime() ;
+				CharSequence outItem = itemProcessor.processItem(currentEntry) ;
+				if (outItem == null) {
+					logger.severe("Null result processing record=" + currentEntry.get(0)) ;
+				} else {
+					outBatch.add(outItem) ;
+					nbRecordProcessed++ ;
+					if (extractMonitor != null) {
+						extractMonitor.itemProcessed(System.nanoTime() - processStart) ;
+					}
+				}
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Exception processing record=" + currentEntry.get(0), e);
+			}
+		}
+		return outBatch ;
+	}
+	
+	// The records batch is recycled when processed: the record views are not valid after
+	private ItemsBatch<CharSequence> processRecords(RecordsBatch currentRecords) {
+		
+		ItemsBatch<CharSequence> outBatch = new ItemsBatch<CharSequence>(currentRecords.size(), currentRecords.getSequenceNumber()) ;
+		RecordView record = new RecordView() ;
+		for (int i=0; i < currentRecords.size(); i++) {
+			currentRecords.getRecord(i, record) ;
+			StringBuilder outItem = stringBuilderPool.acquire() ;
+			try {
+				long processStart = System.nanoTime() ;
+				if (recordViewProcessor.processRecord(record, outItem)) {
+					outBatch.add(outItem) ;
+					nbRecordProcessed++ ;
+					if (extractMonitor != null) {
+						extractMonitor.itemProcessed(System.nanoTime() - processStart) ;
+					}
+				} else {
+					logger.severe("No result processing record=" + record.getFirstLine()) ;
+					stringBuilderPool.release(outItem) ;
+				}
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Exception processing record=" + record.getFirstLine(), e);
+				stringBuilderPool.release(outItem) ;
+			}
+		}
+		currentRecords.recycle() ;
+		return outBatch ;
+	}
+	
+	// The results of all the records of the batch are written in the same byte array, each result is a chunk of this array
+	// The records batch is recycled when processed: the record views are not valid after
+	private ItemsBatch<CharSequence> processByteRecords(RecordsBatch currentRecords) {
+		
+		ItemsBatch<CharSequence> outBatch = new ItemsBatch<CharSequence>(currentRecords.size(), currentRecords.getSequenceNumber()) ;
+		ByteResult result = new ByteResult(byteCharset, currentRecords.getDataLength()) ;
+		ByteRecordView record = new ByteRecordView(byteCharset) ;
+		for (int i=0; i < currentRecords.size(); i++) {
+			currentRecords.getRecord(i, record) ;
+			result.startRecord() ;
+			try {
+				long processStart = System.nanoTime() ;
+				if (byteRecordProcessor.processRecord(record, result)) {
+					outBatch.add(result.endRecord()) ;
+					nbRecordProcessed++ ;
+					if (extractMonitor != null) {
+						extractMonitor.itemProcessed(System.nanoTime() - processStart) ;
+					}
+				} else {
+					logger.severe("No result processing record=" + record.decodeLine(0)) ;
+					result.discardRecord() ;
+				}
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Exception processing record=" + record.decodeLine(0), e);
+				result.discardRecord() ;
+			}
+		}
+		currentRecords.recycle() ;
+		return outBatch ;
+	}
 }
@@ -0,0 +1,328 @@
+package org.fl.util.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// A thread safe circular byte buffer with multiple readers and one writer
+// Specialized version of MultiReaderCircularBuffer for bytes: no boxing and bulk write/read
+// The bytes are stored in a heap ByteBuffer backed by a byte array, or in a direct ByteBuffer
+// As with MultiReaderCircularBuffer, the bytes written while no reader is registered are lost (the writes never fail nor wait)
+public class ByteRingBuffer {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    protected static final int MINIMAL_CAPACITY = 512;
+    private static final int MAXIMAL_CAPACITY = 1048576;
+
+    protected static final int MAX_READ_CLIENTS = 1024;
+
+    // The read positions array grows as readers are added, up to MAX_READ_CLIENTS
+    private static final int INITIAL_READ_CLIENTS = 8;
+
+    // Read position of a removed reader
+    private static final long REMOVED_READER = Long.MAX_VALUE;
+
+    private final int capacity;
+
+    private final ByteBuffer buffer;
+
+    // Number of bytes written since the creation of the buffer (position of the next write)
+    private long writePosition;
+
+    // Position of the next read, for each reader (REMOVED_READER for a removed reader)
+    private long[] readPositions;
+    private int nbReadClients;
+
+    // Lower bound of the read positions. As read positions only increase,
+    // it is only recomputed when the buffer seems to be too full for a write
+    private long minimalReadPosition;
+
+    private final WaitStrategy waitStrategy;
+
+    public ByteRingBuffer() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    public ByteRingBuffer(int capacity) {
+        this(capacity, false);
+    }
+
+    public ByteRingBuffer(int capacity, boolean direct) {
+        this(capacity, direct, false);
+    }
+
+    public ByteRingBuffer(int capacity, boolean direct, WaitStrategy waitStrategy) {
+        this(capacity, direct, false, waitStrategy);
+    }
+
+    // Essentially for test
+    protected ByteRingBuffer(int capacity, boolean direct, boolean force) {
+        this(capacity, direct, force, WaitStrategy.blocking());
+    }
+
+    private ByteRingBuffer(int capacity, boolean direct, boolean force, WaitStrategy waitStrategy) {
+
+        if (force) {
+            this.capacity = capacity;
+        } else {
+            this.capacity = returnBoundedCapacity(capacity);
+        }
+        if (direct) {
+            buffer = ByteBuffer.allocateDirect(this.capacity);
+        } else {
+            buffer = ByteBuffer.wrap(new byte[this.capacity]);
+        }
+        writePosition = 0;
+        readPositions = new long[INITIAL_READ_CLIENTS];
+        nbReadClients = 0;
+        minimalReadPosition = 0;
+        this.waitStrategy = waitStrategy;
+    }
+
+    private static int returnBoundedCapacity(int capacity) {
+        if (capacity < MINIMAL_CAPACITY) {
+            return MINIMAL_CAPACITY;
+        } else {
+            return Math.min(capacity, MAXIMAL_CAPACITY);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    // A new reader will only get the future writes
+    // Returns the id of the new reader, or -1 if the maximal number of readers is reached
+    // The id of a removed reader may be reused
+    public synchronized int newReadClient() {
+
+        int clientId = 0;
+        while ((clientId < nbReadClients) && (readPositions[clientId] != REMOVED_READER)) {
+            clientId++;
+        }
+        if (clientId >= MAX_READ_CLIENTS) {
+            return -1;
+        } else {
+            if (clientId == readPositions.length) {
+                readPositions = Arrays.copyOf(readPositions, Math.min(readPositions.length * 2, MAX_READ_CLIENTS));
+            }
+            readPositions[clientId] = writePosition;
+            if (clientId == nbReadClients) {
+                nbReadClients++;
+            }
+            minimalReadPosition = Math.min(minimalReadPosition, writePosition);
+            return clientId;
+        }
+    }
+
+    // The reader will not hold back the writer anymore
+    public void removeReadClient(int clientId) {
+
+        synchronized (this) {
+            checkClientId(clientId);
+            readPositions[clientId] = REMOVED_READER;
+        }
+        // the writer may be waiting for this reader
+        waitStrategy.signalAll();
+    }
+
+    public boolean write(byte b) {
+
+        boolean written = writeByte(b);
+        if (written) {
+            waitStrategy.signalAll();
+        }
+        return written;
+    }
+
+    // Write as many bytes as possible, up to len
+    // Returns the number of bytes written, 0 if the buffer is full
+    public int write(byte[] b, int off, int len) {
+
+        int nbBytesWritten = writeBytes(b, off, len);
+        if (nbBytesWritten > 0) {
+            waitStrategy.signalAll();
+        }
+        return nbBytesWritten;
+    }
+
+    // Write the len bytes, waiting according to the wait strategy when the buffer is full
+    // Returns the number of bytes written, lower than len only if the timeout has elapsed
+    public int write(byte[] b, int off, int len, long timeout, TimeUnit unit) throws InterruptedException {
+
+        checkBounds(b, off, len);
+
+        long deadline = WaitStrategy.deadline(timeout, unit);
+        int[] nbBytesWritten = {0};
+        waitStrategy.waitFor(() -> {
+            int n = writeBytes(b, off + nbBytesWritten[0], len - nbBytesWritten[0]);
+            if (n > 0) {
+                nbBytesWritten[0] = nbBytesWritten[0] + n;
+                waitStrategy.signalAll();
+            }
+            return nbBytesWritten[0] == len;
+        }, deadline);
+        return nbBytesWritten[0];
+    }
+
+    // Returns the byte read as an int in the range 0 to 255, or -1 if there is nothing to read
+    public int read(int clientId) {
+
+        int readValue = readByte(clientId);
+        if (readValue != -1) {
+            waitStrategy.signalAll();
+        }
+        return readValue;
+    }
+
+    // Read as many bytes as available, up to len
+    // Returns the number of bytes read, 0 if there is nothing to read
+    public int read(int clientId, byte[] b, int off, int len) {
+
+        int nbBytesRead = readBytes(clientId, b, off, len);
+        if (nbBytesRead > 0) {
+            waitStrategy.signalAll();
+        }
+        return nbBytesRead;
+    }
+
+    // Read as many bytes as available, up to len, waiting according to the wait strategy when there is nothing to read
+    // Returns the number of bytes read, 0 only if the timeout has elapsed (or len is 0)
+    public int read(int clientId, byte[] b, int off, int len, long timeout, TimeUnit unit) throws InterruptedException {
+
+        checkClientId(clientId);
+        checkBounds(b, off, len);
+        if (len == 0) {
+            return 0;
+        }
+
+        int[] nbBytesRead = {0};
+        if (waitStrategy.waitFor(() -> (nbBytesRead[0] = readBytes(clientId, b, off, len)) > 0, WaitStrategy.deadline(timeout, unit))) {
+            waitStrategy.signalAll();
+        }
+        return nbBytesRead[0];
+    }
+
+    private synchronized boolean writeByte(byte b) {
+
+        if (freeSpace(1) < 1) {
+            // no more space to write
+            return false;
+        } else {
+            buffer.put(indexOf(writePosition), b);
+            writePosition++;
+            return true;
+        }
+    }
+
+    private synchronized int writeBytes(byte[] b, int off, int len) {
+
+        checkBounds(b, off, len);
+
+        int nbBytesToWrite = (int) Math.min(len, freeSpace(len));
+        if (nbBytesToWrite > 0) {
+            int writeIndex = indexOf(writePosition);
+            int firstPart = Math.min(nbBytesToWrite, capacity - writeIndex);
+            buffer.put(writeIndex, b, off, firstPart);
+            if (firstPart < nbBytesToWrite) {
+                // wrap around
+                buffer.put(0, b, off + firstPart, nbBytesToWrite - firstPart);
+            }
+            writePosition = writePosition + nbBytesToWrite;
+        }
+        return nbBytesToWrite;
+    }
+
+    private synchronized int readByte(int clientId) {
+
+        checkClientId(clientId);
+
+        long readPosition = readPositions[clientId];
+        if (writePosition <= readPosition) {
+            // nothing to read
+            return -1;
+        } else {
+            int readValue = buffer.get(indexOf(readPosition)) & 0xFF;
+            readPositions[clientId] = readPosition + 1;
+            return readValue;
+        }
+    }
+
+    private synchronized int readBytes(int clientId, byte[] b, int off, int len) {
+
+        checkClientId(clientId);
+        checkBounds(b, off, len);
+
+        long readPosition = readPositions[clientId];
+        int nbBytesToRead = (int) Math.min(len, writePosition - readPosition);
+        if (nbBytesToRead > 0) {
+            int readIndex = indexOf(readPosition);
+            int firstPart = Math.min(nbBytesToRead, capacity - readIndex);
+            buffer.get(readIndex, b, off, firstPart);
+            if (firstPart < nbBytesToRead) {
+                // wrap around
+                buffer.get(0, b, off + firstPart, nbBytesToRead - firstPart);
+            }
+            readPositions[clientId] = readPosition + nbBytesToRead;
+            return nbBytesToRead;
+        } else {
+            return 0;
+        }
+    }
+
+    public long available(int clientId) {
+        // available being an optional estimation, it is better to not synchronize it
+        // result can only be lower than the reality when the method is called by the client reader
+        return Math.max(writePosition - readPositions[clientId], 0);
+    }
+
+    private long freeSpace(int needed) {
+
+        long free = capacity - (writePosition - minimalReadPosition);
+        if (free < needed) {
+            // The cached minimal read position may be outdated
+            minimalReadPosition = minimalReadPosition();
+            free = capacity - (writePosition - minimalReadPosition);
+        }
+        return free;
+    }
+
+    private long minimalReadPosition() {
+
+        long minPos = REMOVED_READER;
+        for (int clientId = 0; clientId < nbReadClients; clientId++) {
+            if (readPositions[clientId] < minPos) {
+                minPos = readPositions[clientId];
+            }
+        }
+        if (minPos == REMOVED_READER) {
+            // no reader: written bytes are lost
+            return writePosition;
+        } else {
+            return minPos;
+        }
+    }
+
+    private int indexOf(long position) {
+        return (int) (position % capacity);
+    }
+
+    private void checkClientId(int clientId) {
+        if ((clientId < 0) || (clientId >= nbReadClients) || (readPositions[clientId] == REMOVED_READER)) {
+            // unknown client id
+            throw new IllegalArgumentException("Invalid read client id " + clientId + ". Max id=" + (nbReadClients - 1));
+        }
+    }
+
+    private static void checkBounds(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
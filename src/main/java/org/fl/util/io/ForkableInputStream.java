@@ -1,39 +1,82 @@
 package org.fl.util.io;
 
 import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ForkableInputStream extends InputStream {
 
+    // What to do when an asynchronous fork is more than its maximal lag behind the primary reader
+    public enum LaggingForkPolicy {
+        // The primary reader waits for the fork
+        BLOCK,
+        // The fork is abandoned: it will not receive any more bytes
+        DROP,
+        // The bytes exceeding the maximal lag are written to a temporary file, until the fork catches up
+        SPILL
+    }
+
+    private static final AtomicInteger forkThreadNumber = new AtomicInteger(0);
+
+    // Default thread factory for the asynchronous forks: daemon threads
+    // With java 21 and above, Thread.ofVirtual().factory() may be set instead with setForkThreadFactory
+    private static final ThreadFactory DEFAULT_FORK_THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "ForkableInputStream-fork-" + forkThreadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
     private final Logger logger;
     private final int readerId;
-    private final MultiReaderCircularBuffer<Integer> buffer;
+    private final ByteRingBuffer buffer;
+    private final byte[] transferArray;
     private final InputStream sourceInputStream;
     private final InputStream originInputStream;
     private List<ForkedOutputStream> forkedOutputStreams;
     private long nbBytesRead;
+    // Number of bytes read or skipped from the source
+    private long nbSourceBytesConsumed;
     private boolean isClosed = false;
+    // When the origin is a FileInputStream, the forks to channels are done with FileChannel.transferTo
+    private FileChannel sourceChannel;
+    private long sourceStartPosition;
+    private int nbChannelForks;
+    private ThreadFactory forkThreadFactory = DEFAULT_FORK_THREAD_FACTORY;
 
     public ForkableInputStream(InputStream originInputStream, Logger l) {
 
     	this.originInputStream = originInputStream;
 
-        // As the implementation of read(yte[] b, int off, int len) calls read()
+        // As the implementation of read() reads the source one byte at a time
         // there is a high interest in enclosing the source inputStream in a BufferedInputStream
         // There is a small penalty if the source inputStream is already buffered but a great advantage if it is not
         // That is the case for FileInputStream, for instance
     	this.logger = l;
         this.sourceInputStream = new BufferedInputStream(originInputStream);
-        this.buffer = new MultiReaderCircularBuffer<>();
+        this.buffer = new ByteRingBuffer();
         this.readerId = this.buffer.newReadClient();
+        this.transferArray = new byte[this.buffer.getCapacity()];
         this.forkedOutputStreams = new ArrayList<>();
         this.nbBytesRead = 0;
+        initSourceChannel();
     }
 
     public ForkableInputStream(InputStream originInputStream, int capacity, Logger l) {
@@ -41,10 +84,12 @@ public class ForkableInputStream extends InputStream {
     	this.logger = l;
     	this.originInputStream = originInputStream;
         this.sourceInputStream = new BufferedInputStream(originInputStream);
-        this.buffer = new MultiReaderCircularBuffer<>(capacity);
+        this.buffer = new ByteRingBuffer(capacity);
         this.readerId = this.buffer.newReadClient();
+        this.transferArray = new byte[this.buffer.getCapacity()];
         this.forkedOutputStreams = new ArrayList<>();
         this.nbBytesRead = 0;
+        initSourceChannel();
     }
 
     // Essentially for test
@@ -53,14 +98,37 @@ public class ForkableInputStream extends InputStream {
     	this.logger = l;
     	this.originInputStream = originInputStream;
         this.sourceInputStream = new BufferedInputStream(originInputStream);
-        this.buffer = new MultiReaderCircularBuffer<>(capacity, force);
+        this.buffer = new ByteRingBuffer(capacity, false, force);
         this.readerId = this.buffer.newReadClient();
+        this.transferArray = new byte[this.buffer.getCapacity()];
         this.forkedOutputStreams = new ArrayList<>();
         this.nbBytesRead = 0;
+        initSourceChannel();
+    }
+
+    private void initSourceChannel() {
+
+        this.nbSourceBytesConsumed = 0;
+        this.nbChannelForks = 0;
+        if (originInputStream instanceof FileInputStream) {
+            try {
+                FileChannel channel = ((FileInputStream) originInputStream).getChannel();
+                this.sourceStartPosition = channel.position();
+                this.sourceChannel = channel;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to get the position of the source file channel. Forks will not use channel transfer", e);
+            }
+        }
     }
 
+    // When the origin input stream is a FileInputStream and the output stream is a FileOutputStream,
+    // the bytes are copied from the source file to the fork by the kernel (FileChannel.transferTo), without going through the java heap
     public boolean addForkedOutputStream(OutputStream outputStream) {
 
+        if ((sourceChannel != null) && (outputStream instanceof FileOutputStream)) {
+            addChannelFork(outputStream, ((FileOutputStream) outputStream).getChannel());
+            return true;
+        }
         int osReaderClient = buffer.newReadClient();
         if (osReaderClient > -1) {
             forkedOutputStreams.add(new ForkedOutputStream(osReaderClient, outputStream));
@@ -71,22 +139,103 @@ public class ForkableInputStream extends InputStream {
         }
     }
 
+    // Fork to a channel (a socket channel for instance)
+    // When the origin input stream is a FileInputStream, the bytes are copied with FileChannel.transferTo
+    public boolean addForkedChannel(WritableByteChannel channel) {
+
+        if (sourceChannel != null) {
+            addChannelFork(Channels.newOutputStream(channel), channel);
+            return true;
+        } else {
+            return addForkedOutputStream(Channels.newOutputStream(channel));
+        }
+    }
+
+    private void addChannelFork(OutputStream outputStream, WritableByteChannel channel) {
+        forkedOutputStreams.add(new ChannelForkedOutputStream(outputStream, sourceChannel, channel));
+        nbChannelForks++;
+    }
+
+    // The bytes are written to the output stream by a dedicated thread, so that a slow output stream
+    // does not slow down the primary reader, as long as it is less than maxLag bytes behind
+    public boolean addAsynchronousForkedOutputStream(OutputStream outputStream, int maxLag, LaggingForkPolicy laggingForkPolicy) {
+
+        int osReaderClient = buffer.newReadClient();
+        if (osReaderClient > -1) {
+            forkedOutputStreams.add(new AsynchronousForkedOutputStream(osReaderClient, outputStream, maxLag, laggingForkPolicy, forkThreadFactory, logger));
+            return true;
+        } else {
+            logger.severe("Impossible to fork an output stream: maximal number of fork reached");
+            return false;
+        }
+    }
+
+    // The bytes read so far are written to the forked output stream, then it is closed and detached
+    // Returns false if the output stream is not a fork of this ForkableInputStream
+    public boolean removeForkedOutputStream(OutputStream outputStream) throws IOException {
+
+        for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
+            if (forkedOutputStream.outputStream == outputStream) {
+                if (forkedOutputStream.readerId > -1) {
+                    int n;
+                    while ((n = buffer.read(forkedOutputStream.readerId, transferArray, 0, transferArray.length)) > 0) {
+                        forkedOutputStream.write(transferArray, 0, n);
+                    }
+                    buffer.removeReadClient(forkedOutputStream.readerId);
+                } else {
+                    nbChannelForks--;
+                }
+                forkedOutputStreams.remove(forkedOutputStream);
+                forkedOutputStream.close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Thread factory used for the asynchronous forks added afterwards
+    public void setForkThreadFactory(ThreadFactory forkThreadFactory) {
+        this.forkThreadFactory = forkThreadFactory;
+    }
+
+    // Metrics of the forks, in the order they have been added
+    public List<ForkMetrics> getForkMetrics() {
+
+        List<ForkMetrics> forkMetrics = new ArrayList<>();
+        for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
+            forkMetrics.add(forkedOutputStream.getMetrics());
+        }
+        return forkMetrics;
+    }
+
     @Override
     public int read() throws IOException {
 
-        Integer b = buffer.read(readerId);
-        if (b == null) {
+        int b = buffer.read(readerId);
+        if (b == -1) {
             // no bytes available in buffer for this reader
             // fill buffer with source
             int i = sourceInputStream.read();
+            if (i == -1) {
+                // end of source input stream
+                writeToForkedOutputStreams();
+                return -1;
+            }
+            if (nbChannelForks > 0) {
+                long sourcePosition = sourceStartPosition + nbSourceBytesConsumed;
+                for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
+                    forkedOutputStream.addSourceRange(sourcePosition, 1);
+                }
+            }
+            nbSourceBytesConsumed++;
 
-            if (buffer.write(i)) {
+            if (buffer.write((byte) i)) {
                 b = buffer.read(readerId);
             } else {
                 // no more space in buffer
                 // Make space in sending to output streams
                 writeToForkedOutputStreams();
-                if (buffer.write(i)) {
+                if (buffer.write((byte) i)) {
                     b = buffer.read(readerId);
                 } else {
                     // Still no more space, give up
@@ -95,18 +244,15 @@ public class ForkableInputStream extends InputStream {
             }
         }
 
-        if (b == -1) {
-            // end of source input stream
-            writeToForkedOutputStreams();
-        } else {
-            this.nbBytesRead++;
-        }
+        this.nbBytesRead++;
         return b;
     }
 
     // The read(byte[] b, int off, int len) has to be overridden in case the source InputStream has itself overridden it
     // without calling the read() in its implementation
-    // This ensures that all the bytes are going into the MultiReaderCircularBuffer
+    // This ensures that all the bytes read are written to the forked output streams
+    // The bytes are read from the source in bulk and the same block is written to every forked output stream,
+    // instead of going byte per byte through the MultiReaderCircularBuffer
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
 
@@ -119,30 +265,22 @@ public class ForkableInputStream extends InputStream {
             return 0;
         }
 
-        int c = read();
-        if (c == -1) {
+        // Bytes previously read with read() may still be in the buffer, waiting for the forked output streams
+        // They must be written before the block to keep the order of the bytes
+        writeToForkedOutputStreams();
+
+        int numberOfBytesRead = sourceInputStream.read(b, off, len);
+        if (numberOfBytesRead == -1) {
             // end of source inputStream
-            // The writeToForkedOutputStreams has already been done in read()
             return -1;
         }
 
-        b[off] = (byte)c;
-        int numberOfBytesRead = 1;
-        try {
-            for (; numberOfBytesRead < len ; numberOfBytesRead++) {
-                c = read();
-
-                if (c == -1) {
-                    // end of source inputStream
-                    // The writeToForkedOutputStreams has already been done in read()
-                    break;
-                }
-                b[off + numberOfBytesRead] = (byte)c;
-            }
-        } catch (IOException ignored) {
-            // Treated as  if it were end of file, according to InputStream contract
+        long sourcePosition = sourceStartPosition + nbSourceBytesConsumed;
+        this.nbBytesRead = this.nbBytesRead + numberOfBytesRead;
+        this.nbSourceBytesConsumed = this.nbSourceBytesConsumed + numberOfBytesRead;
+        for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
+            forkedOutputStream.forward(b, off, numberOfBytesRead, sourcePosition);
         }
-
         return numberOfBytesRead;
     }
 
@@ -157,9 +295,13 @@ public class ForkableInputStream extends InputStream {
     	if (! isClosed) {
 
     		super.close();
-    		originInputStream.close();
     		isClosed = true;
-    		closeForkedOutputStreams();
+    		try {
+    			// The channel forks still need the source channel to be opened
+    			closeForkedOutputStreams();
+    		} finally {
+    			originInputStream.close();
+    		}
     		if (logger.isLoggable(Level.FINEST)) {
     			logger.finest(() -> "Number of bytes read on " + this + " : " + this.nbBytesRead);
     			for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
@@ -188,6 +330,7 @@ public class ForkableInputStream extends InputStream {
             }
             remaining--;
         }
+        nbSourceBytesConsumed = nbSourceBytesConsumed + n - remaining;
         return n - remaining;
     }
 
@@ -216,30 +359,99 @@ public class ForkableInputStream extends InputStream {
     private void writeToForkedOutputStreams() throws IOException {
 
         for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
-                Integer b = 0;
-                long nbBytesWritten = 0;
-                while (b != null) {
-                    b = buffer.read(forkedOutputStream.readerId);
-                    if ((b != null) && (b != -1)) {
-                        forkedOutputStream.write(b);
-                        nbBytesWritten++;
-                    }
+            if (forkedOutputStream.readerId > -1) {
+                int n;
+                while ((n = buffer.read(forkedOutputStream.readerId, transferArray, 0, transferArray.length)) > 0) {
+                    forkedOutputStream.write(transferArray, 0, n);
                 }
-                forkedOutputStream.addNbBytesWritten(nbBytesWritten);
+            } else {
+                // channel fork: transfer the pending source range
+                forkedOutputStream.flush();
+            }
         }
     }
 
     private void closeForkedOutputStreams() throws IOException {
+
+        // All the forks are closed, even if one of them fails
+        IOException closeException = null;
         for (ForkedOutputStream forkedOutputStream : forkedOutputStreams) {
-            forkedOutputStream.close();
+            try {
+                forkedOutputStream.close();
+            } catch (IOException e) {
+                if (closeException == null) {
+                    closeException = e;
+                } else {
+                    closeException.addSuppressed(e);
+                }
+            }
+        }
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+    // Snapshot of the state of a fork
+    public static class ForkMetrics {
+
+        private final boolean asynchronous;
+        private final long nbBytesWritten;
+        private final long lag;
+        private final long maxLag;
+        private final long nbBytesSpilled;
+        private final boolean dropped;
+
+        private ForkMetrics(boolean asynchronous, long nbBytesWritten, long lag, long maxLag, long nbBytesSpilled, boolean dropped) {
+            this.asynchronous = asynchronous;
+            this.nbBytesWritten = nbBytesWritten;
+            this.lag = lag;
+            this.maxLag = maxLag;
+            this.nbBytesSpilled = nbBytesSpilled;
+            this.dropped = dropped;
+        }
+
+        public boolean isAsynchronous() {
+            return asynchronous;
+        }
+
+        // Number of bytes written to the forked output stream
+        public long getNbBytesWritten() {
+            return nbBytesWritten;
+        }
+
+        // Number of bytes read by the primary reader and not yet written to the forked output stream
+        public long getLag() {
+            return lag;
+        }
+
+        // Maximal lag observed
+        public long getMaxLag() {
+            return maxLag;
+        }
+
+        // Number of bytes that have been written to the spill file (SPILL policy)
+        public long getNbBytesSpilled() {
+            return nbBytesSpilled;
+        }
+
+        // True if the fork has been dropped (DROP policy or error on the forked output stream)
+        public boolean isDropped() {
+            return dropped;
+        }
+
+        @Override
+        public String toString() {
+            return "ForkMetrics [asynchronous=" + asynchronous + ", nbBytesWritten=" + nbBytesWritten + ", lag=" + lag
+                    + ", maxLag=" + maxLag + ", nbBytesSpilled=" + nbBytesSpilled + ", dropped=" + dropped + "]";
         }
     }
 
     private static class ForkedOutputStream {
 
-        private final int readerId;
-        private final OutputStream outputStream;
-        private long nbBytesWritten;
+        // -1 if the fork does not read the MultiReaderCircularBuffer
+        protected final int readerId;
+        protected final OutputStream outputStream;
+        protected long nbBytesWritten;
 
         public ForkedOutputStream(int readerId, OutputStream outputStream) {
             this.readerId = readerId;
@@ -247,16 +459,29 @@ public class ForkableInputStream extends InputStream {
             this.nbBytesWritten = 0;
         }
 
-        public void addNbBytesWritten(long n) {
-            this.nbBytesWritten = this.nbBytesWritten + n;
-        }
-
         public long getNbBytesWritten() {
             return this.nbBytesWritten;
         }
 
-        public void write(int b) throws IOException {
-            this.outputStream.write(b);
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.outputStream.write(b, off, len);
+            this.nbBytesWritten = this.nbBytesWritten + len;
+        }
+
+        // Bytes read by the primary reader, at the given position in the source
+        public void forward(byte[] b, int off, int len, long sourcePosition) throws IOException {
+            write(b, off, len);
+        }
+
+        // Range of the source read by the primary reader, for the forks that read the source directly
+        public void addSourceRange(long sourcePosition, long length) throws IOException {
+        }
+
+        public void flush() throws IOException {
+        }
+
+        public ForkMetrics getMetrics() {
+            return new ForkMetrics(false, nbBytesWritten, 0, 0, 0, false);
         }
 
         public void close() throws IOException {
@@ -264,4 +489,289 @@ public class ForkableInputStream extends InputStream {
             this.outputStream.close();
         }
     }
-}
\ No newline at end of file
+
+    // The ranges of the source file read by the primary reader are copied to the channel
+    // with FileChannel.transferTo (kernel copy, without going through the java heap)
+    private static class ChannelForkedOutputStream extends ForkedOutputStream {
+
+        // Pending ranges are transferred when they reach this size
+        private static final long TRANSFER_THRESHOLD = 1048576;
+
+        private final FileChannel sourceChannel;
+        private final WritableByteChannel targetChannel;
+        private long pendingPosition;
+        private long pendingLength;
+
+        public ChannelForkedOutputStream(OutputStream outputStream, FileChannel sourceChannel, WritableByteChannel targetChannel) {
+            super(-1, outputStream);
+            this.sourceChannel = sourceChannel;
+            this.targetChannel = targetChannel;
+            this.pendingPosition = 0;
+            this.pendingLength = 0;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            throw new IllegalStateException("Channel forks are written from the source channel");
+        }
+
+        @Override
+        public void forward(byte[] b, int off, int len, long sourcePosition) throws IOException {
+            addSourceRange(sourcePosition, len);
+        }
+
+        @Override
+        public void addSourceRange(long sourcePosition, long length) throws IOException {
+
+            if ((pendingLength > 0) && (sourcePosition != pendingPosition + pendingLength)) {
+                // bytes have been skipped: transfer the previous range first
+                flush();
+            }
+            if (pendingLength == 0) {
+                pendingPosition = sourcePosition;
+            }
+            pendingLength = pendingLength + length;
+            if (pendingLength >= TRANSFER_THRESHOLD) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            while (pendingLength > 0) {
+                long n = sourceChannel.transferTo(pendingPosition, pendingLength, targetChannel);
+                if (n <= 0) {
+                    throw new IOException("Unable to transfer source file range [" + pendingPosition + ", " + (pendingPosition + pendingLength) + "[ to forked channel");
+                }
+                pendingPosition = pendingPosition + n;
+                pendingLength = pendingLength - n;
+                nbBytesWritten = nbBytesWritten + n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    // The bytes are put in a ring buffer by the primary reader thread
+    // and written to the output stream by a dedicated thread
+    private static class AsynchronousForkedOutputStream extends ForkedOutputStream {
+
+        // Maximal time a waiting thread stays without checking the state of the fork
+        private static final long POLL_MILLIS = 5;
+
+        private final ByteRingBuffer lagBuffer;
+        private final int drainerId;
+        private final LaggingForkPolicy laggingForkPolicy;
+        private final Logger logger;
+        private final Thread drainerThread;
+
+        // Updated by the primary reader thread only
+        private volatile long nbBytesAccepted;
+        private volatile long maxLag;
+        // Updated by the drainer thread only
+        private volatile long nbBytesDrained;
+
+        private volatile boolean endOfStream;
+        private volatile boolean dropped;
+        private volatile IOException drainException;
+
+        // Spill file, accessed under spillLock. Used only with the SPILL policy
+        private final Object spillLock = new Object();
+        private FileChannel spillChannel;
+        private boolean spilling;
+        private long spillWritePosition;
+        private long spillReadPosition;
+        private volatile long nbBytesSpilled;
+
+        public AsynchronousForkedOutputStream(int readerId, OutputStream outputStream, int maxLag, LaggingForkPolicy laggingForkPolicy, ThreadFactory threadFactory, Logger logger) {
+            super(readerId, outputStream);
+            this.lagBuffer = new ByteRingBuffer(maxLag, false, WaitStrategy.blocking());
+            this.drainerId = lagBuffer.newReadClient();
+            this.laggingForkPolicy = laggingForkPolicy;
+            this.logger = logger;
+            this.nbBytesAccepted = 0;
+            this.maxLag = 0;
+            this.nbBytesDrained = 0;
+            this.endOfStream = false;
+            this.dropped = false;
+            this.spilling = false;
+            this.drainerThread = threadFactory.newThread(this::drain);
+            this.drainerThread.start();
+        }
+
+        @Override
+        public long getNbBytesWritten() {
+            return nbBytesDrained;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            if (dropped) {
+                return;
+            }
+            switch (laggingForkPolicy) {
+                case BLOCK:
+                    writeOrWait(b, off, len);
+                    break;
+                case DROP:
+                    if (lagBuffer.write(b, off, len) < len) {
+                        dropped = true;
+                        logger.warning(() -> "Asynchronous fork " + readerId + " dropped: more than " + lagBuffer.getCapacity() + " bytes behind");
+                    }
+                    break;
+                case SPILL:
+                    writeOrSpill(b, off, len);
+                    break;
+            }
+            nbBytesAccepted = nbBytesAccepted + len;
+            long lag = nbBytesAccepted - nbBytesDrained;
+            if (lag > maxLag) {
+                maxLag = lag;
+            }
+        }
+
+        private void writeOrWait(byte[] b, int off, int len) throws IOException {
+
+            int nbBytesWritten = 0;
+            try {
+                // The state of the drainer is checked periodically, in case it has failed
+                while ((nbBytesWritten < len) && ! dropped) {
+                    nbBytesWritten = nbBytesWritten + lagBuffer.write(b, off + nbBytesWritten, len - nbBytesWritten, POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for asynchronous fork " + readerId);
+            }
+        }
+
+        private void writeOrSpill(byte[] b, int off, int len) throws IOException {
+
+            synchronized (spillLock) {
+                int nbBytesWritten = 0;
+                if (! spilling) {
+                    nbBytesWritten = lagBuffer.write(b, off, len);
+                }
+                if (nbBytesWritten < len) {
+                    // The following bytes go to the spill file until the drainer has caught up
+                    spilling = true;
+                    if (spillChannel == null) {
+                        Path spillFile = Files.createTempFile("ForkableInputStream", ".spill");
+                        spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                    }
+                    ByteBuffer toSpill = ByteBuffer.wrap(b, off + nbBytesWritten, len - nbBytesWritten);
+                    while (toSpill.hasRemaining()) {
+                        spillWritePosition = spillWritePosition + spillChannel.write(toSpill, spillWritePosition);
+                    }
+                    nbBytesSpilled = nbBytesSpilled + len - nbBytesWritten;
+                }
+            }
+        }
+
+        // Read the spill file, once the lag buffer has been emptied
+        private int readSpill(byte[] transfer) throws IOException {
+
+            long spillReadLimit;
+            synchronized (spillLock) {
+                if (! spilling) {
+                    return 0;
+                }
+                // A write may have put its first bytes in the lag buffer and spilled the following ones
+                // after the drainer has found the lag buffer empty: these first bytes must be drained before the spill file.
+                // The lag buffer is not written while spilling, so it is checked once more under the lock
+                int nbLagBytes = lagBuffer.read(drainerId, transfer, 0, transfer.length);
+                if (nbLagBytes > 0) {
+                    return nbLagBytes;
+                } else if (spillReadPosition == spillWritePosition) {
+                    // The drainer has caught up: the following bytes go to the lag buffer again
+                    spilling = false;
+                    spillReadPosition = 0;
+                    spillWritePosition = 0;
+                    return 0;
+                }
+                spillReadLimit = spillWritePosition;
+            }
+            // The spill file is only appended while spilling, so the part before spillReadLimit can be read outside the lock
+            ByteBuffer spilled = ByteBuffer.wrap(transfer, 0, (int) Math.min(transfer.length, spillReadLimit - spillReadPosition));
+            int n = spillChannel.read(spilled, spillReadPosition);
+            synchronized (spillLock) {
+                spillReadPosition = spillReadPosition + n;
+            }
+            return n;
+        }
+
+        private void drain() {
+
+            byte[] transfer = new byte[Math.min(lagBuffer.getCapacity(), 65536)];
+            try {
+                boolean finished = false;
+                while (! finished && ! dropped) {
+                    int n = lagBuffer.read(drainerId, transfer, 0, transfer.length);
+                    if (n == 0) {
+                        n = readSpill(transfer);
+                    }
+                    if (n == 0) {
+                        if (endOfStream) {
+                            // All the bytes have been put before endOfStream was set: check a last time
+                            n = lagBuffer.read(drainerId, transfer, 0, transfer.length);
+                            if (n == 0) {
+                                n = readSpill(transfer);
+                            }
+                            finished = (n == 0);
+                        } else {
+                            n = lagBuffer.read(drainerId, transfer, 0, transfer.length, POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                    if (n > 0) {
+                        outputStream.write(transfer, 0, n);
+                        nbBytesDrained = nbBytesDrained + n;
+                    }
+                }
+            } catch (IOException e) {
+                drainException = e;
+                dropped = true;
+                logger.log(Level.SEVERE, "Exception writing to asynchronous fork " + readerId + ". The fork is dropped", e);
+            } catch (InterruptedException e) {
+                dropped = true;
+                logger.warning(() -> "Asynchronous fork " + readerId + " interrupted. The fork is dropped");
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public ForkMetrics getMetrics() {
+            long drained = nbBytesDrained;
+            return new ForkMetrics(true, drained, Math.max(nbBytesAccepted - drained, 0), maxLag, nbBytesSpilled, dropped);
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            endOfStream = true;
+            try {
+                drainerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for asynchronous fork " + readerId);
+            } finally {
+                synchronized (spillLock) {
+                    if (spillChannel != null) {
+                        spillChannel.close();
+                    }
+                }
+                super.close();
+            }
+            if (drainException != null) {
+                throw drainException;
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.fl.util.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+
+// A lock free circular buffer with multiple readers and one writer
+// Same contract as MultiReaderCircularBuffer, but:
+// - write must always be called by the same thread
+// - read for a given client id must always be called by the same thread (each reader may have its own thread)
+// The writer publishes a write sequence and each reader publishes its read sequence (Disruptor style)
+// No lock is taken: the writer only waits for the slowest reader and readers never wait for each other
+// As with MultiReaderCircularBuffer, the elements written while no reader is registered are lost
+public class LockFreeMultiReaderCircularBuffer<E> {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    protected static final int MINIMAL_CAPACITY = 512;
+    private static final int MAXIMAL_CAPACITY = 1048576;
+
+    // The read positions array is allocated once for all, as the writer scans it without lock
+    protected static final int MAX_READ_CLIENTS = 64;
+
+    // Read position of a removed reader
+    private static final long REMOVED_READER = Long.MAX_VALUE;
+
+    // Each read position is isolated on its own cache lines to avoid false sharing between readers
+    private static final int READ_POSITION_PADDING = 16;
+
+    private static final VarHandle WRITE_POSITION;
+    private static final VarHandle NB_READ_CLIENTS;
+    private static final VarHandle READ_POSITIONS = MethodHandles.arrayElementVarHandle(long[].class);
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            WRITE_POSITION = lookup.findVarHandle(LockFreeMultiReaderCircularBuffer.class, "writePosition", long.class);
+            NB_READ_CLIENTS = lookup.findVarHandle(LockFreeMultiReaderCircularBuffer.class, "nbReadClients", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int capacity;
+
+    private final Object[] buffer;
+
+    // Number of elements published since the creation of the buffer (position of the next write)
+    // Written by the writer thread only
+    private long writePosition;
+
+    // Minimal read position as last seen by the writer. Only accessed by the writer thread
+    private long cachedMinimalReadPosition;
+
+    // Position of the next read, for each reader. Each one is written by its reader thread only
+    private final long[] readPositions;
+
+    private int nbReadClients;
+
+    private final WaitStrategy waitStrategy;
+
+    public LockFreeMultiReaderCircularBuffer() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    public LockFreeMultiReaderCircularBuffer(int capacity) {
+        this(capacity, false);
+    }
+
+    public LockFreeMultiReaderCircularBuffer(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, false, waitStrategy);
+    }
+
+    // Essentially for test
+    protected LockFreeMultiReaderCircularBuffer(int capacity, boolean force) {
+        this(capacity, force, WaitStrategy.blocking());
+    }
+
+    private LockFreeMultiReaderCircularBuffer(int capacity, boolean force, WaitStrategy waitStrategy) {
+
+        if (force) {
+            this.capacity = capacity;
+        } else {
+            this.capacity = returnBoundedCapacity(capacity);
+        }
+        buffer = new Object[this.capacity];
+        readPositions = new long[(MAX_READ_CLIENTS + 1) * READ_POSITION_PADDING];
+        writePosition = 0;
+        cachedMinimalReadPosition = 0;
+        nbReadClients = 0;
+        this.waitStrategy = waitStrategy;
+    }
+
+    private static int returnBoundedCapacity(int capacity) {
+        if (capacity < MINIMAL_CAPACITY) {
+            return MINIMAL_CAPACITY;
+        } else {
+            return Math.min(capacity, MAXIMAL_CAPACITY);
+        }
+    }
+
+    // A new reader will only get the future writes
+    // The registration of readers is not on the critical path, so it is simply synchronized
+    // Readers should be registered before the writer starts, as ForkableInputStream does for its forks
+    public synchronized int newReadClient() {
+
+        int clientId = (int) NB_READ_CLIENTS.getAcquire(this);
+        if (clientId >= MAX_READ_CLIENTS) {
+            return -1;
+        } else {
+            READ_POSITIONS.setRelease(readPositions, readPositionIndex(clientId), (long) WRITE_POSITION.getAcquire(this));
+            NB_READ_CLIENTS.setRelease(this, clientId + 1);
+            return clientId;
+        }
+    }
+
+    // The reader will not hold back the writer anymore
+    // Must be called by the reader thread. The id of a removed reader is not reused
+    public void removeReadClient(int clientId) {
+
+        checkClientId(clientId);
+        READ_POSITIONS.setRelease(readPositions, readPositionIndex(clientId), REMOVED_READER);
+        // the writer may be waiting for this reader
+        waitStrategy.signalAll();
+    }
+
+    public boolean write(E element) {
+
+        boolean written = writeElement(element);
+        if (written) {
+            waitStrategy.signalAll();
+        }
+        return written;
+    }
+
+    // Wait, according to the wait strategy, until there is space to write or the timeout has elapsed
+    // Returns false if the timeout has elapsed
+    public boolean write(E element, long timeout, TimeUnit unit) throws InterruptedException {
+
+        boolean written = waitStrategy.waitFor(() -> writeElement(element), WaitStrategy.deadline(timeout, unit));
+        if (written) {
+            waitStrategy.signalAll();
+        }
+        return written;
+    }
+
+    public E read(int clientId) {
+
+        E readValue = readElement(clientId);
+        if (readValue != null) {
+            waitStrategy.signalAll();
+        }
+        return readValue;
+    }
+
+    // Wait, according to the wait strategy, until there is something to read or the timeout has elapsed
+    // Returns null if the timeout has elapsed
+    @SuppressWarnings("unchecked")
+    public E read(int clientId, long timeout, TimeUnit unit) throws InterruptedException {
+
+        Object[] readValue = new Object[1];
+        if (waitStrategy.waitFor(() -> (readValue[0] = readElement(clientId)) != null, WaitStrategy.deadline(timeout, unit))) {
+            waitStrategy.signalAll();
+            return (E) readValue[0];
+        } else {
+            return null;
+        }
+    }
+
+    private boolean writeElement(E element) {
+
+        long position = writePosition;
+        if (position - cachedMinimalReadPosition >= capacity) {
+            // the buffer seems full, look for the current position of the slowest reader
+            cachedMinimalReadPosition = minimalReadPosition(position);
+            if (position - cachedMinimalReadPosition >= capacity) {
+                // no more space to write
+                return false;
+            }
+        }
+        buffer[(int) (position % capacity)] = element;
+        // publish the element to the readers
+        WRITE_POSITION.setRelease(this, position + 1);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E readElement(int clientId) {
+
+        checkClientId(clientId);
+
+        int index = readPositionIndex(clientId);
+        long readPosition = (long) READ_POSITIONS.getOpaque(readPositions, index);
+        if ((long) WRITE_POSITION.getAcquire(this) <= readPosition) {
+            // nothing to read
+            return null;
+        } else {
+            E readValue = (E) buffer[(int) (readPosition % capacity)];
+            // release the slot to the writer
+            READ_POSITIONS.setRelease(readPositions, index, readPosition + 1);
+            return readValue;
+        }
+    }
+
+    public long available(int clientId) {
+
+        checkClientId(clientId);
+        long readPosition = (long) READ_POSITIONS.getAcquire(readPositions, readPositionIndex(clientId));
+        return Math.max((long) WRITE_POSITION.getAcquire(this) - readPosition, 0);
+    }
+
+    private long minimalReadPosition(long position) {
+
+        int nbClients = (int) NB_READ_CLIENTS.getAcquire(this);
+        long minPos = REMOVED_READER;
+        for (int clientId = 0; clientId < nbClients; clientId++) {
+            long pos = (long) READ_POSITIONS.getAcquire(readPositions, readPositionIndex(clientId));
+            if (pos < minPos) {
+                minPos = pos;
+            }
+        }
+        if (minPos == REMOVED_READER) {
+            // no reader: written elements are lost
+            return position;
+        } else {
+            return minPos;
+        }
+    }
+
+    private void checkClientId(int clientId) {
+        int nbClients = (int) NB_READ_CLIENTS.getAcquire(this);
+        if ((clientId < 0) || (clientId >= nbClients)
+                || ((long) READ_POSITIONS.getOpaque(readPositions, readPositionIndex(clientId)) == REMOVED_READER)) {
+            // unknown client id
+            throw new IllegalArgumentException("Invalid read client id " + clientId + ". Max id=" + nbClients);
+        }
+    }
+
+    private static int readPositionIndex(int clientId) {
+        // the first padding slot is left empty, so that the first read position is not next to the array header
+        return (clientId + 1) * READ_POSITION_PADDING;
+    }
+}
@@ -1,16 +1,24 @@
 package org.fl.util.io;
 
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 //A thread safe circular int buffer with multiple readers and one writer
+// The writer is only held back by the registered readers: while no reader is registered (none added yet, or all removed),
+// a write never fails nor waits and the elements written are lost (a reader added later gets the last element written and the following ones)
 public class MultiReaderCircularBuffer<E> {
 
     private static final int DEFAULT_CAPACITY = 8192;
     protected static final int MINIMAL_CAPACITY = 512;
     private static final int MAXIMAL_CAPACITY = 1048576;
 
-    protected static final int MAX_READ_CLIENTS = 8;
+    protected static final int MAX_READ_CLIENTS = 1024;
+
+    // The read positions array grows as readers are added, up to MAX_READ_CLIENTS
+    private static final int INITIAL_READ_CLIENTS = 8;
+
+    // Read position of a removed reader
+    private static final long REMOVED_READER = Long.MAX_VALUE;
 
     private final int capacity;
 
@@ -18,16 +26,30 @@ public class MultiReaderCircularBuffer<E> {
 
     private long writePosition;
 
-    private List<Long> readPositions;
+    // Position of the next read, for each reader (REMOVED_READER for a removed reader)
+    private long[] readPositions;
+    private int nbReadClients;
+
+    // Lower bound of the read positions. As read positions only increase,
+    // it is only recomputed when the buffer seems to be full
+    private long minimalReadPosition;
+
+    private final WaitStrategy waitStrategy;
 
     public MultiReaderCircularBuffer() {
         this.capacity = DEFAULT_CAPACITY;
+        this.waitStrategy = WaitStrategy.blocking();
         init(DEFAULT_CAPACITY);
     }
 
     public MultiReaderCircularBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    public MultiReaderCircularBuffer(int capacity, WaitStrategy waitStrategy) {
 
         this.capacity = returnBoundedCapacity(capacity);
+        this.waitStrategy = waitStrategy;
         init(this.capacity);
     }
 
@@ -39,6 +61,7 @@ public class MultiReaderCircularBuffer<E> {
         } else {
             this.capacity = returnBoundedCapacity(capacity);
         }
+        this.waitStrategy = WaitStrategy.blocking();
         init(this.capacity);
     }
 
@@ -50,22 +73,89 @@ public class MultiReaderCircularBuffer<E> {
         }
     }
 
+    // Returns the id of the new reader, or -1 if the maximal number of readers is reached
+    // The id of a removed reader may be reused
     public synchronized int newReadClient() {
 
-        if (readPositions.size() >= MAX_READ_CLIENTS) {
+        int clientId = 0;
+        while ((clientId < nbReadClients) && (readPositions[clientId] != REMOVED_READER)) {
+            clientId++;
+        }
+        if (clientId >= MAX_READ_CLIENTS) {
             return -1;
         } else {
+            if (clientId == readPositions.length) {
+                readPositions = Arrays.copyOf(readPositions, Math.min(readPositions.length * 2, MAX_READ_CLIENTS));
+            }
             if (writePosition > -1) {
                 // if write operation has started, the new reader will only get the last write and future write
-                readPositions.add(writePosition);
+                readPositions[clientId] = writePosition;
             } else {
-                readPositions.add(0L);
+                readPositions[clientId] = 0L;
+            }
+            if (clientId == nbReadClients) {
+                nbReadClients++;
             }
-            return readPositions.size() - 1;
+            minimalReadPosition = Math.min(minimalReadPosition, readPositions[clientId]);
+            return clientId;
         }
     }
 
-    public synchronized boolean write(E i) {
+    // The reader will not hold back the writer anymore
+    public void removeReadClient(int clientId) {
+
+        synchronized (this) {
+            checkClientId(clientId);
+            readPositions[clientId] = REMOVED_READER;
+        }
+        // the writer may be waiting for this reader
+        waitStrategy.signalAll();
+    }
+
+    public boolean write(E i) {
+
+        boolean written = writeElement(i);
+        if (written) {
+            waitStrategy.signalAll();
+        }
+        return written;
+    }
+
+    // Wait, according to the wait strategy, until there is space to write or the timeout has elapsed
+    // Returns false if the timeout has elapsed
+    public boolean write(E i, long timeout, TimeUnit unit) throws InterruptedException {
+
+        boolean written = waitStrategy.waitFor(() -> writeElement(i), WaitStrategy.deadline(timeout, unit));
+        if (written) {
+            waitStrategy.signalAll();
+        }
+        return written;
+    }
+
+    public E read(int clientId) {
+
+        E readValue = readElement(clientId);
+        if (readValue != null) {
+            waitStrategy.signalAll();
+        }
+        return readValue;
+    }
+
+    // Wait, according to the wait strategy, until there is something to read or the timeout has elapsed
+    // Returns null if the timeout has elapsed
+    @SuppressWarnings("unchecked")
+    public E read(int clientId, long timeout, TimeUnit unit) throws InterruptedException {
+
+        Object[] readValue = new Object[1];
+        if (waitStrategy.waitFor(() -> (readValue[0] = readElement(clientId)) != null, WaitStrategy.deadline(timeout, unit))) {
+            waitStrategy.signalAll();
+            return (E) readValue[0];
+        } else {
+            return null;
+        }
+    }
+
+    private synchronized boolean writeElement(E i) {
 
         if (numberOfUnreadElement() >= capacity) {
             // no more space to write
@@ -78,21 +168,18 @@ public class MultiReaderCircularBuffer<E> {
         }
     }
 
-    public synchronized E read(int clientId) {
+    private synchronized E readElement(int clientId) {
 
-        if ((clientId < 0) || (clientId >= readPositions.size())) {
-            // unknown client id
-            throw new IllegalArgumentException("Invalid read client id " + clientId + ". Max id=" + readPositions.size());
-        }
+        checkClientId(clientId);
 
-        long readPosition = readPositions.get(clientId);
+        long readPosition = readPositions[clientId];
         if (writePosition < readPosition) {
             // nothing to read
             return null;
         } else {
             int readIndex = (int)(readPosition % capacity);
             E readValue = buffer[readIndex];
-            readPositions.set(clientId, readPosition + 1);
+            readPositions[clientId] = readPosition + 1;
             return readValue;
         }
     }
@@ -100,7 +187,7 @@ public class MultiReaderCircularBuffer<E> {
     public long available(int clientId) {
         // available being an optional estimation, it is better to not synchronize it
         // result can only be lower than the reality when the method is called by the client reader
-        long readPosition = readPositions.get(clientId);
+        long readPosition = readPositions[clientId];
         if (writePosition < readPosition) {
             // nothing to read
             return 0;
@@ -110,27 +197,45 @@ public class MultiReaderCircularBuffer<E> {
     }
 
     private long numberOfUnreadElement() {
-        return (writePosition - minimalReadPosition()) + 1;
+
+        long unread = (writePosition - minimalReadPosition) + 1;
+        if (unread >= capacity) {
+            // The cached minimal read position may be outdated
+            minimalReadPosition = minimalReadPosition();
+            unread = (writePosition - minimalReadPosition) + 1;
+        }
+        return unread;
     }
 
     private long minimalReadPosition() {
-        if (readPositions.isEmpty()) {
-            return 0;
-        } else {
-            long minPos = Long.MAX_VALUE;
-            for (Long pos : readPositions) {
-                if (pos < minPos) {
-                    minPos = pos;
-                }
+
+        long minPos = REMOVED_READER;
+        for (int clientId = 0; clientId < nbReadClients; clientId++) {
+            if (readPositions[clientId] < minPos) {
+                minPos = readPositions[clientId];
             }
+        }
+        if (minPos == REMOVED_READER) {
+            // no reader: written elements are lost
+            return writePosition + 1;
+        } else {
             return minPos;
         }
     }
 
+    private void checkClientId(int clientId) {
+        if ((clientId < 0) || (clientId >= nbReadClients) || (readPositions[clientId] == REMOVED_READER)) {
+            // unknown client id
+            throw new IllegalArgumentException("Invalid read client id " + clientId + ". Max id=" + (nbReadClients - 1));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private void init(int bufferSize) {
         this.writePosition = -1;
         buffer = (E[]) new Object[bufferSize];
-        readPositions = new ArrayList<>();
+        readPositions = new long[INITIAL_READ_CLIENTS];
+        nbReadClients = 0;
+        minimalReadPosition = 0;
     }
 }
@@ -0,0 +1,156 @@
+package org.fl.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+// Gzip output stream compressing the data by blocks on several threads (like pigz)
+// Each block is compressed as an independent gzip member, and the members are written in order to the underlying stream.
+// The concatenation of gzip members is a valid gzip stream (RFC 1952), read by GZIPInputStream or gunzip.
+// Each flush ends the current member: after a flush, the underlying stream is at a member boundary,
+// so it may be truncated at this position and appended later (used for the ItemsWriter checkpoints)
+public class ParallelGzipOutputStream extends FilterOutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1024*1024;
+
+	private final int blockSize;
+	private final ExecutorService compressors;
+
+	// Members being compressed, in the order of the blocks
+	private final ArrayDeque<Future<byte[]>> pendingMembers;
+	// Maximum number of members being compressed, to bound the memory used
+	private final int maxPendingMembers;
+
+	private byte[] block;
+	private int blockLength;
+	private boolean closed;
+	private boolean memberWritten;
+
+	public ParallelGzipOutputStream(OutputStream out, int nbThreads) {
+		this(out, nbThreads, DEFAULT_BLOCK_SIZE);
+	}
+
+	public ParallelGzipOutputStream(OutputStream out, int nbThreads, int blockSize) {
+		super(out);
+		if (nbThreads < 1) {
+			throw new IllegalArgumentException("Number of compression threads must be at least 1: " + nbThreads);
+		}
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Compression block size must be positive: " + blockSize);
+		}
+		this.blockSize = blockSize;
+		compressors = Executors.newFixedThreadPool(nbThreads, runnable -> {
+			Thread thread = new Thread(runnable, "gzip compressor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		pendingMembers = new ArrayDeque<>();
+		maxPendingMembers = 2*nbThreads;
+		block = new byte[blockSize];
+		blockLength = 0;
+		closed = false;
+		memberWritten = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		block[blockLength++] = (byte) b;
+		if (blockLength == blockSize) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if ((off < 0) || (len < 0) || (len > b.length - off)) {
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0) {
+			int n = Math.min(len, blockSize - blockLength);
+			System.arraycopy(b, off, block, blockLength, n);
+			blockLength += n;
+			off += n;
+			len -= n;
+			if (blockLength == blockSize) {
+				submitBlock();
+			}
+		}
+	}
+
+	// Compress the current block (even if it is not full), and write all the members to the underlying stream
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (blockLength > 0) {
+			submitBlock();
+		}
+		while (! pendingMembers.isEmpty()) {
+			writeOldestMember();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (! closed) {
+			try {
+				flush();
+				if (! memberWritten) {
+					// An empty gzip file contains an empty member
+					out.write(compressMember(new byte[0]));
+				}
+			} finally {
+				closed = true;
+				compressors.shutdownNow();
+				out.close();
+			}
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		if (pendingMembers.size() >= maxPendingMembers) {
+			writeOldestMember();
+		}
+		final byte[] data = (blockLength == blockSize) ? block : Arrays.copyOf(block, blockLength);
+		pendingMembers.add(compressors.submit(() -> compressMember(data)));
+		block = new byte[blockSize];
+		blockLength = 0;
+	}
+
+	private void writeOldestMember() throws IOException {
+		try {
+			out.write(pendingMembers.poll().get());
+			memberWritten = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a gzip member");
+		} catch (ExecutionException e) {
+			throw new IOException("Exception when compressing a gzip member", e.getCause());
+		}
+	}
+
+	private static byte[] compressMember(byte[] data) throws IOException {
+		ByteArrayOutputStream member = new ByteArrayOutputStream(data.length/2 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(member, 64*1024)) {
+			gzip.write(data);
+		}
+		return member.toByteArray();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package org.fl.util.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+// How a thread waits for a circular buffer to change (space freed for the writer, new elements for a reader)
+// Used by the timed write and read of MultiReaderCircularBuffer, LockFreeMultiReaderCircularBuffer and ByteRingBuffer
+public interface WaitStrategy {
+
+	// Retry the operation until it succeeds (returns true) or the deadline (System.nanoTime based) is reached
+	// Returns true if the operation has succeeded, false if the deadline has been reached
+	boolean waitFor(BooleanSupplier operation, long deadlineNanos) throws InterruptedException;
+
+	// Called by the buffer each time its state has changed
+	// Must not be called while holding the buffer lock
+	void signalAll();
+
+	// Lowest latency, but burns a CPU while waiting
+	static WaitStrategy busySpin() {
+		return new SpinningWaitStrategy(Thread::onSpinWait);
+	}
+
+	// Gives the CPU to other threads while waiting
+	static WaitStrategy yielding() {
+		return new SpinningWaitStrategy(Thread::yield);
+	}
+
+	// Sleeps at most parkNanos between two retries
+	static WaitStrategy parking(long parkNanos) {
+		return new SpinningWaitStrategy(() -> LockSupport.parkNanos(parkNanos));
+	}
+
+	// Waits on a condition signalled by the buffer. The waiting thread also wakes up every millisecond to retry
+	// (a signal may be missed by the lock free buffers): little CPU used while waiting, but not none
+	static WaitStrategy blocking() {
+		return new BlockingWaitStrategy();
+	}
+
+	static long deadline(long timeout, TimeUnit unit) {
+		long now = System.nanoTime();
+		long timeoutNanos = unit.toNanos(timeout);
+		if (timeoutNanos > Long.MAX_VALUE - now) {
+			return Long.MAX_VALUE;
+		} else {
+			return now + timeoutNanos;
+		}
+	}
+
+	class SpinningWaitStrategy implements WaitStrategy {
+
+		private final Runnable idle;
+
+		private SpinningWaitStrategy(Runnable idle) {
+			this.idle = idle;
+		}
+
+		@Override
+		public boolean waitFor(BooleanSupplier operation, long deadlineNanos) throws InterruptedException {
+
+			while (! operation.getAsBoolean()) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				} else if (System.nanoTime() - deadlineNanos >= 0) {
+					return false;
+				}
+				idle.run();
+			}
+			return true;
+		}
+
+		@Override
+		public void signalAll() {
+			// Nothing to signal, waiting threads are retrying
+		}
+	}
+
+	class BlockingWaitStrategy implements WaitStrategy {
+
+		// The buffers publishing their state without lock (LockFreeMultiReaderCircularBuffer) may miss a signal
+		// So a waiting thread never waits more than this before retrying
+		private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+		private final ReentrantLock lock;
+		private final Condition stateChanged;
+		private final AtomicInteger nbWaiters;
+
+		private BlockingWaitStrategy() {
+			lock = new ReentrantLock();
+			stateChanged = lock.newCondition();
+			nbWaiters = new AtomicInteger(0);
+		}
+
+		@Override
+		public boolean waitFor(BooleanSupplier operation, long deadlineNanos) throws InterruptedException {
+
+			if (operation.getAsBoolean()) {
+				return true;
+			}
+			lock.lockInterruptibly();
+			try {
+				// Registered as waiter before retrying, so that a state change after the retry is signalled
+				nbWaiters.incrementAndGet();
+				try {
+					while (! operation.getAsBoolean()) {
+						long remaining = deadlineNanos - System.nanoTime();
+						if (remaining <= 0) {
+							return false;
+						}
+						stateChanged.awaitNanos(Math.min(remaining, MAX_WAIT_NANOS));
+					}
+					return true;
+				} finally {
+					nbWaiters.decrementAndGet();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void signalAll() {
+
+			// The lock is only taken if some threads are waiting
+			if (nbWaiters.get() > 0) {
+				lock.lock();
+				try {
+					stateChanged.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package org.fl.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.stream.Collectors;
+
+import org.fl.util.AsyncLogHandler.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AsyncLogHandlerTest {
+
+	// Delegate handler keeping the messages published, with the name of the publishing thread
+	// Its publish may be held until release to fill the ring buffer of the async handler
+	private static class RecordingHandler extends Handler {
+
+		private final List<String> messages = Collections.synchronizedList(new ArrayList<>()) ;
+		private final List<String> threadNames = Collections.synchronizedList(new ArrayList<>()) ;
+		private final CountDownLatch firstPublish = new CountDownLatch(1) ;
+		private final CountDownLatch release ;
+		private boolean closed = false ;
+		private int nbFlush = 0 ;
+
+		RecordingHandler(boolean held) {
+			release = new CountDownLatch(held ? 1 : 0) ;
+		}
+
+		@Override
+		public void publish(LogRecord record) {
+			firstPublish.countDown() ;
+			try {
+				release.await() ;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt() ;
+			}
+			messages.add(record.getMessage()) ;
+			threadNames.add(Thread.currentThread().getName()) ;
+		}
+
+		@Override
+		public void flush() {
+			nbFlush++ ;
+		}
+
+		@Override
+		public void close() {
+			closed = true ;
+		}
+	}
+
+	private static LogRecord record(Level level, String message) {
+		return new LogRecord(level, message) ;
+	}
+
+	@Test
+	void recordsArePublishedInOrderByTheWriterThread() {
+
+		RecordingHandler delegate = new RecordingHandler(false) ;
+		delegate.setLevel(Level.FINE) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate, 16, 4, OverflowPolicy.BLOCK, null) ;
+		assertThat(asyncHandler.getLevel()).isEqualTo(Level.FINE) ;
+
+		List<String> expected = new ArrayList<>() ;
+		for (int i=0; i < 100; i++) {
+			asyncHandler.publish(record(Level.INFO, "message " + i)) ;
+			expected.add("message " + i) ;
+		}
+		asyncHandler.publish(record(Level.FINEST, "not loggable")) ;
+		asyncHandler.flush() ;
+
+		assertThat(delegate.messages).containsExactlyElementsOf(expected) ;
+		assertThat(delegate.threadNames).allMatch(name -> name.startsWith("AsyncLogHandler-")) ;
+		// once per batch of at most 4 records, and once for the flush of the async handler
+		assertThat(delegate.nbFlush).isGreaterThanOrEqualTo(26) ;
+		assertThat(asyncHandler.getNbPendingRecords()).isZero() ;
+		assertThat(asyncHandler.getNbDroppedRecords()).isZero() ;
+
+		asyncHandler.close() ;
+		assertThat(delegate.closed).isTrue() ;
+		asyncHandler.publish(record(Level.INFO, "after close")) ;
+		assertThat(delegate.messages).hasSize(100) ;
+	}
+
+	@Test
+	void recordsPendingAreWrittenOnClose() throws InterruptedException {
+
+		RecordingHandler delegate = new RecordingHandler(true) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate, 8, 2, OverflowPolicy.BLOCK, null) ;
+
+		asyncHandler.publish(record(Level.INFO, "first")) ;
+		assertThat(delegate.firstPublish.await(10, TimeUnit.SECONDS)).isTrue() ;
+		for (int i=0; i < 8; i++) {
+			asyncHandler.publish(record(Level.INFO, "pending " + i)) ;
+		}
+		assertThat(asyncHandler.getNbPendingRecords()).isEqualTo(8) ;
+
+		delegate.release.countDown() ;
+		asyncHandler.close() ;
+		assertThat(delegate.messages).hasSize(9).startsWith("first").endsWith("pending 7") ;
+		assertThat(delegate.closed).isTrue() ;
+	}
+
+	@Test
+	void delegateIsFlushedOncePerBatch() throws InterruptedException {
+
+		RecordingHandler delegate = new RecordingHandler(true) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate, 8, 4, OverflowPolicy.BLOCK, null) ;
+
+		asyncHandler.publish(record(Level.INFO, "first")) ;
+		assertThat(delegate.firstPublish.await(10, TimeUnit.SECONDS)).isTrue() ;
+		for (int i=0; i < 8; i++) {
+			asyncHandler.publish(record(Level.INFO, "pending " + i)) ;
+		}
+
+		// batches: "first", then 2 batches of 4 records
+		delegate.release.countDown() ;
+		asyncHandler.close() ;
+		assertThat(delegate.messages).hasSize(9) ;
+		assertThat(delegate.nbFlush).isEqualTo(3) ;
+	}
+
+	@Test
+	void batchFileHandlerDoesNotFlushEachRecord(@TempDir Path tempDir) throws IOException {
+
+		Path logFile = tempDir.resolve("batch.log") ;
+		AsyncLogHandler.BatchFileHandler fileHandler = new AsyncLogHandler.BatchFileHandler(logFile.toString(), 0, 1, false) ;
+		try {
+			fileHandler.setFormatter(new SimpleFormatter()) ;
+			fileHandler.publish(record(Level.INFO, "buffered message")) ;
+			assertThat(Files.size(logFile)).isZero() ;
+
+			fileHandler.flush() ;
+			assertThat(Files.readString(logFile)).contains("buffered message") ;
+		} finally {
+			fileHandler.close() ;
+		}
+	}
+
+	@Test
+	void discardOldest() throws InterruptedException {
+
+		RecordingHandler delegate = new RecordingHandler(true) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate, 4, 1, OverflowPolicy.DISCARD_OLDEST, null) ;
+
+		asyncHandler.publish(record(Level.INFO, "first")) ;
+		assertThat(delegate.firstPublish.await(10, TimeUnit.SECONDS)).isTrue() ;
+		for (int i=0; i < 10; i++) {
+			asyncHandler.publish(record(Level.INFO, "message " + i)) ;
+		}
+		assertThat(asyncHandler.getNbDroppedRecords()).isEqualTo(6) ;
+
+		delegate.release.countDown() ;
+		asyncHandler.close() ;
+		assertThat(delegate.messages).containsExactly("first", "message 6", "message 7", "message 8", "message 9") ;
+	}
+
+	@Test
+	void dropBelowLevel() throws InterruptedException {
+
+		RecordingHandler delegate = new RecordingHandler(true) ;
+		delegate.setLevel(Level.ALL) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate, 2, 1, OverflowPolicy.DROP_BELOW_LEVEL, Level.WARNING) ;
+
+		asyncHandler.publish(record(Level.INFO, "first")) ;
+		assertThat(delegate.firstPublish.await(10, TimeUnit.SECONDS)).isTrue() ;
+		asyncHandler.publish(record(Level.INFO, "info 1")) ;
+		asyncHandler.publish(record(Level.INFO, "info 2")) ;
+		asyncHandler.publish(record(Level.INFO, "info dropped")) ;
+		asyncHandler.publish(record(Level.FINE, "fine dropped")) ;
+		assertThat(asyncHandler.getNbDroppedRecords()).isEqualTo(2) ;
+
+		// a severe record waits for free space
+		Thread severeLogger = new Thread(() -> asyncHandler.publish(record(Level.SEVERE, "severe"))) ;
+		severeLogger.start() ;
+		delegate.release.countDown() ;
+		severeLogger.join(10000) ;
+		assertThat(severeLogger.isAlive()).isFalse() ;
+
+		asyncHandler.close() ;
+		assertThat(delegate.messages).containsExactly("first", "info 1", "info 2", "severe") ;
+		assertThat(asyncHandler.getNbDroppedRecords()).isEqualTo(2) ;
+	}
+
+	@Test
+	void manyLoggingThreads() throws InterruptedException {
+
+		RecordingHandler delegate = new RecordingHandler(false) ;
+		delegate.setLevel(Level.ALL) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate, 32, 8, OverflowPolicy.BLOCK, null) ;
+
+		List<Thread> threads = new ArrayList<>() ;
+		for (int t=0; t < 8; t++) {
+			int threadNumber = t ;
+			threads.add(new Thread(() -> {
+				for (int i=0; i < 1000; i++) {
+					asyncHandler.publish(record(Level.INFO, threadNumber + "-" + i)) ;
+				}
+			})) ;
+		}
+		threads.forEach(Thread::start) ;
+		for (Thread thread : threads) {
+			thread.join() ;
+		}
+		asyncHandler.flush() ;
+
+		assertThat(delegate.messages).hasSize(8000).doesNotHaveDuplicates() ;
+		// the records of each thread are published in the order of the thread
+		for (int t=0; t < 8; t++) {
+			String prefix = t + "-" ;
+			List<String> threadMessages = delegate.messages.stream().filter(m -> m.startsWith(prefix)).collect(Collectors.toList()) ;
+			List<String> expected = new ArrayList<>() ;
+			for (int i=0; i < 1000; i++) {
+				expected.add(prefix + i) ;
+			}
+			assertThat(threadMessages).containsExactlyElementsOf(expected) ;
+		}
+		asyncHandler.close() ;
+	}
+
+	@Test
+	void levelIsSetOnTheDelegate() {
+
+		RecordingHandler delegate = new RecordingHandler(false) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate) ;
+		asyncHandler.setLevel(Level.WARNING) ;
+		assertThat(delegate.getLevel()).isEqualTo(Level.WARNING) ;
+		asyncHandler.close() ;
+	}
+
+	@Test
+	void invalidParameters() {
+
+		RecordingHandler delegate = new RecordingHandler(false) ;
+		assertThatIllegalArgumentException().isThrownBy(() -> new AsyncLogHandler(null)) ;
+		assertThatIllegalArgumentException().isThrownBy(() -> new AsyncLogHandler(delegate, 0, 1, OverflowPolicy.BLOCK, null)) ;
+		assertThatIllegalArgumentException().isThrownBy(() -> new AsyncLogHandler(delegate, 8, 0, OverflowPolicy.BLOCK, null)) ;
+		assertThatIllegalArgumentException().isThrownBy(() -> new AsyncLogHandler(delegate, 8, 1, OverflowPolicy.DROP_BELOW_LEVEL, null)) ;
+	}
+
+	@Test
+	void loggerManagerWithAsyncHandlers() {
+
+		Properties props = new Properties() ;
+		props.setProperty("logging.async.enabled", "true") ;
+		props.setProperty("logging.async.bufferSize", "128") ;
+		props.setProperty("logging.async.overflowPolicy", "discard_oldest") ;
+		props.setProperty("logging.console.level", "SEVERE") ;
+		Logger logger = Logger.getLogger("AsyncLogHandlerTest") ;
+		LoggerManager logMgr = LoggerManager.builder().logName("AsyncLogHandlerTest").properties(new AdvancedProperties(props, logger)).build() ;
+
+		Handler[] handlers = logger.getHandlers() ;
+		assertThat(handlers).hasSize(1).allMatch(handler -> handler instanceof AsyncLogHandler) ;
+		AsyncLogHandler asyncHandler = (AsyncLogHandler) handlers[0] ;
+		assertThat(asyncHandler.getDelegate()).isInstanceOf(AsyncLogHandler.BatchConsoleHandler.class) ;
+		assertThat(asyncHandler.getBufferSize()).isEqualTo(128) ;
+		assertThat(asyncHandler.getOverflowPolicy()).isEqualTo(OverflowPolicy.DISCARD_OLDEST) ;
+		assertThat(asyncHandler.getLevel()).isEqualTo(Level.SEVERE) ;
+		assertThat(logger.getLevel()).isEqualTo(Level.SEVERE) ;
+
+		// the levels json gives the class of the delegate
+		assertThat(logMgr.getLoggerLevels().toString()).contains(ConsoleHandler.class.getName()) ;
+		assertThat(logMgr.setLogsLevels(logMgr.getLoggerLevels())).isTrue() ;
+
+		LoggerManager.builder().logName("AsyncLogHandlerTest").build() ;
+		assertThat(logger.getHandlers()).noneMatch(handler -> handler == asyncHandler) ;
+	}
+}
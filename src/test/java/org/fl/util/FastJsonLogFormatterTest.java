@@ -0,0 +1,152 @@
+package org.fl.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+class FastJsonLogFormatterTest {
+
+	@AfterEach
+	void clearContext() {
+		LogContext.clear() ;
+	}
+
+	private static LogRecord record(String message) {
+		LogRecord logRecord = new LogRecord(Level.WARNING, message) ;
+		logRecord.setLoggerName("org.fl.test") ;
+		logRecord.setSourceClassName("org.fl.SomeClass") ;
+		logRecord.setSourceMethodName("someMethod") ;
+		logRecord.setInstant(Instant.ofEpochMilli(1700000000123L)) ;
+		return logRecord ;
+	}
+
+	private static JsonObject parse(String formatted) {
+		assertThat(formatted).endsWith("}\n") ;
+		assertThat(formatted.indexOf('\n')).isEqualTo(formatted.length() - 1) ;
+		return JsonParser.parseString(formatted).getAsJsonObject() ;
+	}
+
+	@Test
+	void formatsTheFields() {
+
+		FastJsonLogFormatter formatter = new FastJsonLogFormatter() ;
+		LogRecord logRecord = record("value of {0} is {1}") ;
+		logRecord.setParameters(new Object[] { "x", "y" }) ;
+		JsonObject json = parse(formatter.format(logRecord)) ;
+
+		assertThat(OffsetDateTime.parse(json.get("date").getAsString()).toInstant()).isEqualTo(Instant.ofEpochMilli(1700000000123L)) ;
+		assertThat(json.get("number").getAsLong()).isEqualTo(logRecord.getSequenceNumber()) ;
+		assertThat(json.get("logger name").getAsString()).isEqualTo("org.fl.test") ;
+		assertThat(json.get("level").getAsString()).isEqualTo("WARNING") ;
+		assertThat(json.get("class").getAsString()).isEqualTo("org.fl.SomeClass") ;
+		assertThat(json.get("method").getAsString()).isEqualTo("someMethod") ;
+		assertThat(json.get("message").getAsString()).isEqualTo("value of x is y") ;
+		assertThat(json.has("threadId")).isFalse() ;
+		assertThat(json.has("exception")).isFalse() ;
+		assertThat(json.has("context")).isFalse() ;
+	}
+
+	@Test
+	void escapesTheStrings() {
+
+		FastJsonLogFormatter formatter = new FastJsonLogFormatter() ;
+		String message = "quote \" backslash \\ newline \n tab \t return \r control \u0001 unicode é中 end" ;
+		LogRecord logRecord = record(message) ;
+		logRecord.setSourceClassName(null) ;
+		String formatted = formatter.format(logRecord) ;
+		assertThat(formatted).contains("\\u0001") ;
+
+		JsonObject json = parse(formatted) ;
+		assertThat(json.get("message").getAsString()).isEqualTo(message) ;
+		assertThat(json.get("class").isJsonNull()).isTrue() ;
+	}
+
+	@Test
+	void dateOfSuccessiveRecords() {
+
+		FastJsonLogFormatter formatter = new FastJsonLogFormatter() ;
+		long[] millis = { 1700000000000L, 1700000000007L, 1700000000999L, 1700000001050L, 1700000000500L, -1L } ;
+		for (long milli : millis) {
+			LogRecord logRecord = record("message") ;
+			logRecord.setInstant(Instant.ofEpochMilli(milli)) ;
+			JsonObject json = parse(formatter.format(logRecord)) ;
+			assertThat(OffsetDateTime.parse(json.get("date").getAsString()).toInstant()).isEqualTo(Instant.ofEpochMilli(milli)) ;
+		}
+	}
+
+	@Test
+	void optionalFields() {
+
+		FastJsonLogFormatter formatter = new FastJsonLogFormatter() ;
+		formatter.setWithStack(true) ;
+		formatter.setWithThreadId(true) ;
+		formatter.setWithContext(true) ;
+
+		LogContext.put("requestId", "r\"42") ;
+		LogContext.put("user", "someone") ;
+		LogRecord logRecord = record("failure") ;
+		logRecord.setThrown(new IllegalStateException("bad \"state\"", new RuntimeException("root cause"))) ;
+		JsonObject json = parse(formatter.format(logRecord)) ;
+
+		assertThat(json.get("threadId").getAsLong()).isEqualTo(logRecord.getLongThreadID()) ;
+		assertThat(json.get("exception").getAsString()).isEqualTo("java.lang.IllegalStateException: bad \"state\"") ;
+		assertThat(json.get("stack").getAsString())
+			.startsWith("java.lang.IllegalStateException: bad \"state\"\n\tat org.fl.util.FastJsonLogFormatterTest.optionalFields")
+			.contains("\nCaused by: java.lang.RuntimeException: root cause\n\tat ") ;
+		JsonObject context = json.get("context").getAsJsonObject() ;
+		assertThat(context.get("requestId").getAsString()).isEqualTo("r\"42") ;
+		assertThat(context.get("user").getAsString()).isEqualTo("someone") ;
+
+		LogContext.remove("user") ;
+		assertThat(parse(formatter.format(record("no user"))).get("context").getAsJsonObject().has("user")).isFalse() ;
+		LogContext.clear() ;
+		assertThat(parse(formatter.format(record("no context"))).has("context")).isFalse() ;
+	}
+
+	@Test
+	void contextWithAsyncLogHandler() {
+
+		FastJsonLogFormatter formatter = new FastJsonLogFormatter() ;
+		formatter.setWithContext(true) ;
+		List<String> formatted = new ArrayList<>() ;
+		Handler delegate = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				formatted.add(getFormatter().format(record)) ;
+			}
+			@Override
+			public void flush() {
+			}
+			@Override
+			public void close() {
+			}
+		} ;
+		delegate.setFormatter(formatter) ;
+		AsyncLogHandler asyncHandler = new AsyncLogHandler(delegate) ;
+
+		LogContext.put("requestId", "1") ;
+		asyncHandler.publish(record("first")) ;
+		LogContext.put("requestId", "2") ;
+		asyncHandler.publish(record("second")) ;
+		LogContext.clear() ;
+		asyncHandler.publish(record("third")) ;
+		asyncHandler.close() ;
+
+		assertThat(formatted).hasSize(3) ;
+		assertThat(parse(formatted.get(0)).get("context").getAsJsonObject().get("requestId").getAsString()).isEqualTo("1") ;
+		assertThat(parse(formatted.get(1)).get("context").getAsJsonObject().get("requestId").getAsString()).isEqualTo("2") ;
+		assertThat(parse(formatted.get(2)).has("context")).isFalse() ;
+	}
+}
@@ -0,0 +1,151 @@
+package org.fl.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class FileSetTest {
+
+	private static final Logger logger = Logger.getLogger(FileSetTest.class.getName());
+
+	@TempDir
+	Path rootDir;
+
+	// Files expected with the include filter *.txt and the exclude filter tmp
+	private List<Path> expectedFiles;
+
+	@BeforeEach
+	void createTree() throws IOException {
+
+		expectedFiles = new ArrayList<>();
+		for (int d = 0; d < 5; d++) {
+			Path dir = rootDir.resolve("dir" + d).resolve("sub" + d);
+			Files.createDirectories(dir);
+			for (int f = 0; f < 20; f++) {
+				expectedFiles.add(Files.createFile(dir.resolve("file" + f + ".txt")));
+				Files.createFile(dir.resolve("file" + f + ".log"));
+			}
+			// pruned: nothing under a directory named tmp
+			Path tmp = Files.createDirectories(dir.resolve("tmp").resolve("deep"));
+			Files.createFile(tmp.resolve("hidden.txt"));
+			Files.createFile(dir.resolve("tmp").resolve("hidden.txt"));
+		}
+		expectedFiles.add(Files.createFile(rootDir.resolve("top.txt")));
+	}
+
+	private FileSet newFileSet() {
+		FileSet fileSet = new FileSet(rootDir, logger);
+		fileSet.setIncludeFilters(new String[] {"*.txt"});
+		fileSet.setExcludeFilters(new String[] {"tmp"});
+		return fileSet;
+	}
+
+	private static List<Path> sorted(List<Path> list) {
+		return list.stream().sorted().toList();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	void fileStream(int traversalParallelism) {
+
+		FileSet fileSet = newFileSet();
+		fileSet.setTraversalParallelism(traversalParallelism);
+		try (Stream<Path> files = fileSet.fileStream()) {
+			assertThat(sorted(files.toList())).containsExactlyElementsOf(sorted(expectedFiles));
+		}
+		assertThat(sorted(fileSet.getFileList())).containsExactlyElementsOf(sorted(expectedFiles));
+	}
+
+	@Test
+	void excludedDirectoriesPruned() {
+
+		FileSet fileSet = newFileSet();
+		assertThat(sorted(fileSet.getFileList())).containsExactlyElementsOf(sorted(expectedFiles));
+		assertThat(fileSet.getDirectyList()).noneMatch(dir -> dir.getFileName().toString().equals("tmp") || dir.getFileName().toString().equals("deep"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	void notRecursive(int traversalParallelism) {
+
+		FileSet fileSet = newFileSet();
+		fileSet.setRecursive(false);
+		fileSet.setTraversalParallelism(traversalParallelism);
+		try (Stream<Path> files = fileSet.fileStream()) {
+			assertThat(files).containsExactly(rootDir.resolve("top.txt"));
+		}
+	}
+
+	// The stream gives the first files without walking all the tree, and can be closed before the end
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	void fileStreamClosedEarly(int traversalParallelism) {
+
+		FileSet fileSet = newFileSet();
+		fileSet.setTraversalParallelism(traversalParallelism);
+		try (Stream<Path> files = fileSet.fileStream()) {
+			Iterator<Path> iterator = files.iterator();
+			for (int i = 0; i < 3; i++) {
+				assertThat(iterator.hasNext()).isTrue();
+				assertThat(expectedFiles).contains(iterator.next());
+			}
+		}
+	}
+
+	@Test
+	void invalidTraversalParallelism() {
+
+		FileSet fileSet = newFileSet();
+		assertThatIllegalArgumentException().isThrownBy(() -> fileSet.setTraversalParallelism(0));
+	}
+
+	// The error on the unreadable directory is logged, and the walk goes on with the other directories
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	void unreadableDirectory(int traversalParallelism) throws IOException {
+
+		Path unreadable = rootDir.resolve("dir2").resolve("sub2");
+		Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(unreadable);
+		Files.setPosixFilePermissions(unreadable, EnumSet.noneOf(PosixFilePermission.class));
+		try {
+			// the permissions are not checked for root
+			assumeFalse(Files.isReadable(unreadable));
+
+			FileSet fileSet = newFileSet();
+			fileSet.setTraversalParallelism(traversalParallelism);
+			List<Path> readableFiles = expectedFiles.stream().filter(file -> ! file.startsWith(unreadable)).toList();
+			try (Stream<Path> files = fileSet.fileStream()) {
+				assertThat(sorted(files.toList())).containsExactlyElementsOf(sorted(readableFiles));
+			}
+		} finally {
+			Files.setPosixFilePermissions(unreadable, permissions);
+		}
+	}
+
+	@Test
+	void missingRoot() {
+
+		FileSet fileSet = new FileSet(rootDir.resolve("missing"), logger);
+		try (Stream<Path> files = fileSet.fileStream()) {
+			assertThat(files).isEmpty();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.fl.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Compare FastJsonLogFormatter with JsonLogFormatter and PlainLogFormatter, on a record without throwable
+// (run with -prof gc to see the allocation rates)
+// Not a unit test: run the main method (from the test classpath) to get the results
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LogFormatterBenchmark {
+
+	@Param({ "json", "fastJson", "plain" })
+	public String formatterName ;
+
+	private Formatter formatter ;
+	private LogRecord logRecord ;
+
+	@Setup
+	public void setup() {
+		switch (formatterName) {
+		case "json":
+			formatter = new JsonLogFormatter() ;
+			break ;
+		case "fastJson":
+			formatter = new FastJsonLogFormatter() ;
+			break ;
+		default:
+			formatter = new PlainLogFormatter() ;
+		}
+		logRecord = new LogRecord(Level.INFO, "Request processed: GET /api/items/42 status=200 duration=12ms user=someone") ;
+		logRecord.setLoggerName("org.fl.app.RequestLogger") ;
+		logRecord.setSourceClassName("org.fl.app.RequestHandler") ;
+		logRecord.setSourceMethodName("handleRequest") ;
+	}
+
+	@Benchmark
+	public String format() {
+		return formatter.format(logRecord) ;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options options = new OptionsBuilder()
+				.include(LogFormatterBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
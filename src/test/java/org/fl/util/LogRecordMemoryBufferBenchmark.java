@@ -0,0 +1,91 @@
+package org.fl.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Compare the lock free ring of LogRecordMemoryBuffer with the previous implementation (synchronized add on a LinkedBlockingQueue)
+// 16 logging threads add records to the same buffer
+// Not a unit test: run the main method (from the test classpath) to get the results
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class LogRecordMemoryBufferBenchmark {
+
+	// The previous implementation of LogRecordMemoryBuffer.addLogRecord
+	static class QueueMemoryBuffer {
+
+		private final LinkedBlockingQueue<LogRecord> logRecordBuffer ;
+
+		QueueMemoryBuffer(int maxRecord) {
+			logRecordBuffer = new LinkedBlockingQueue<LogRecord>(maxRecord) ;
+		}
+
+		synchronized void addLogRecord(LogRecord logRecord) {
+			while (!logRecordBuffer.offer(logRecord)) {
+				logRecordBuffer.poll() ;
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Buffers {
+
+		@Param({ "10000" })
+		int bufferSize ;
+
+		LogRecordMemoryBuffer ringBuffer ;
+		QueueMemoryBuffer queueBuffer ;
+
+		@Setup
+		public void setup() {
+			ringBuffer  = new LogRecordMemoryBuffer(bufferSize) ;
+			queueBuffer = new QueueMemoryBuffer(bufferSize) ;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Record {
+
+		final LogRecord logRecord = new LogRecord(Level.INFO, "benchmark log message") ;
+	}
+
+	@Benchmark
+	public void ringBuffer(Buffers buffers, Record rec) {
+		buffers.ringBuffer.addLogRecord(rec.logRecord) ;
+	}
+
+	@Benchmark
+	public void synchronizedQueue(Buffers buffers, Record rec) {
+		buffers.queueBuffer.addLogRecord(rec.logRecord) ;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options options = new OptionsBuilder()
+				.include(LogRecordMemoryBufferBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
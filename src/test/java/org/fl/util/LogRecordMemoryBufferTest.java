@@ -0,0 +1,379 @@
+package org.fl.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class LogRecordMemoryBufferTest {
+
+	private static LogRecord record(String message) {
+		LogRecord logRecord = new LogRecord(Level.INFO, message) ;
+		logRecord.setLoggerName("testLogger") ;
+		return logRecord ;
+	}
+
+	private static LogRecordMemoryBuffer buffer(int maxRecord, boolean compact) {
+		return compact ? LogRecordMemoryBuffer.compactBuffer(maxRecord) : new LogRecordMemoryBuffer(maxRecord) ;
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void keepsTheLastRecords(boolean compact) {
+
+		LogRecordMemoryBuffer buffer = buffer(5, compact) ;
+		assertThat(buffer.logRecordNumber()).isZero() ;
+		assertThat(buffer.remainingCapacity()).isEqualTo(5) ;
+		assertThat(buffer.getFormattedRecords().toString()).isEmpty() ;
+
+		for (int i=0; i < 3; i++) {
+			buffer.addLogRecord(record("message " + i)) ;
+		}
+		assertThat(buffer.logRecordNumber()).isEqualTo(3) ;
+		assertThat(buffer.remainingCapacity()).isEqualTo(2) ;
+
+		for (int i=3; i < 12; i++) {
+			buffer.addLogRecord(record("message " + i)) ;
+		}
+		assertThat(buffer.logRecordNumber()).isEqualTo(5) ;
+		assertThat(buffer.remainingCapacity()).isZero() ;
+
+		String logs = buffer.getFormattedRecords().toString() ;
+		assertThat(logs).doesNotContain("message 6\n").contains("INFO: message 7\n", "message 11\n") ;
+		assertThat(logs.indexOf("message 7")).isLessThan(logs.indexOf("message 8")) ;
+		assertThat(logs.indexOf("message 10")).isLessThan(logs.indexOf("message 11")) ;
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void getAndDelete(boolean compact) {
+
+		LogRecordMemoryBuffer buffer = buffer(4, compact) ;
+		buffer.addLogRecord(record("first")) ;
+		buffer.addLogRecord(record("second")) ;
+
+		assertThat(buffer.getAndDeleteFormattedRecords().toString()).contains("first", "second") ;
+		assertThat(buffer.logRecordNumber()).isZero() ;
+		assertThat(buffer.getFormattedRecords().toString()).isEmpty() ;
+
+		buffer.addLogRecord(record("third")) ;
+		assertThat(buffer.logRecordNumber()).isEqualTo(1) ;
+		assertThat(buffer.getFormattedRecords().toString()).contains("third").doesNotContain("first") ;
+
+		buffer.clear() ;
+		assertThat(buffer.logRecordNumber()).isZero() ;
+		assertThat(buffer.remainingCapacity()).isEqualTo(4) ;
+	}
+
+	@Test
+	void clearAndResize() {
+
+		LogRecordMemoryBuffer buffer = new LogRecordMemoryBuffer(4) ;
+		buffer.addLogRecord(record("first")) ;
+		buffer.clearAndResize(10) ;
+		assertThat(buffer.getMaxLogRecord()).isEqualTo(10) ;
+		assertThat(buffer.logRecordNumber()).isZero() ;
+		for (int i=0; i < 8; i++) {
+			buffer.addLogRecord(record("message " + i)) ;
+		}
+		assertThat(buffer.logRecordNumber()).isEqualTo(8) ;
+
+		assertThatIllegalArgumentException().isThrownBy(() -> buffer.clearAndResize(0)) ;
+		assertThatIllegalArgumentException().isThrownBy(() -> new LogRecordMemoryBuffer(-1)) ;
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void concurrentLoggers(boolean compact) throws InterruptedException {
+
+		int nbThreads = 8 ;
+		int nbRecordsPerThread = 5000 ;
+		LogRecordMemoryBuffer buffer = buffer(1000, compact) ;
+
+		List<Thread> loggers = new ArrayList<>() ;
+		for (int t=0; t < nbThreads; t++) {
+			int threadNumber = t ;
+			loggers.add(new Thread(() -> {
+				for (int i=0; i < nbRecordsPerThread; i++) {
+					buffer.addLogRecord(record("thread" + threadNumber + " " + i)) ;
+				}
+			})) ;
+		}
+		// read snapshots while logging
+		Thread reader = new Thread(() -> {
+			for (int i=0; i < 20; i++) {
+				buffer.getFormattedRecords() ;
+			}
+		}) ;
+		loggers.forEach(Thread::start) ;
+		reader.start() ;
+		for (Thread logger : loggers) {
+			logger.join() ;
+		}
+		reader.join() ;
+
+		assertThat(buffer.logRecordNumber()).isEqualTo(1000) ;
+		String logs = buffer.getFormattedRecords().toString() ;
+		assertThat(logs.split("INFO: ", -1)).hasSize(1001) ;
+		// the records of each thread are in the order of the thread
+		int[] lastRecords = new int[nbThreads] ;
+		Arrays.fill(lastRecords, -1) ;
+		for (String line : logs.split("\n")) {
+			if (line.startsWith("INFO: thread")) {
+				String[] threadAndNumber = line.substring("INFO: thread".length()).split(" ") ;
+				int threadNumber = Integer.parseInt(threadAndNumber[0]) ;
+				int recordNumber = Integer.parseInt(threadAndNumber[1]) ;
+				assertThat(recordNumber).isGreaterThan(lastRecords[threadNumber]) ;
+				lastRecords[threadNumber] = recordNumber ;
+			}
+		}
+	}
+
+	// Every record added is returned once by the deletes done while logging, or by the last one
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void concurrentGetAndDelete(boolean compact) throws InterruptedException {
+
+		int nbThreads = 4 ;
+		int nbRecordsPerThread = 20000 ;
+		LogRecordMemoryBuffer buffer = buffer(nbThreads*nbRecordsPerThread, compact) ;
+
+		List<Thread> loggers = new ArrayList<>() ;
+		for (int t=0; t < nbThreads; t++) {
+			int threadNumber = t ;
+			loggers.add(new Thread(() -> {
+				for (int i=0; i < nbRecordsPerThread; i++) {
+					buffer.addLogRecord(record("thread" + threadNumber + " " + i)) ;
+				}
+			})) ;
+		}
+		loggers.forEach(Thread::start) ;
+		long nbRecordsDeleted = 0 ;
+		while (loggers.stream().anyMatch(Thread::isAlive)) {
+			nbRecordsDeleted += countRecords(buffer.getAndDeleteFormattedRecords()) ;
+		}
+		for (Thread logger : loggers) {
+			logger.join() ;
+		}
+		nbRecordsDeleted += countRecords(buffer.getAndDeleteFormattedRecords()) ;
+		assertThat(nbRecordsDeleted).isEqualTo(nbThreads*nbRecordsPerThread) ;
+		assertThat(buffer.logRecordNumber()).isZero() ;
+	}
+
+	private static int countRecords(StringBuilder logs) {
+		return logs.toString().split("INFO: ", -1).length - 1 ;
+	}
+
+	@Test
+	void compactModeFormatsTheMessage() {
+
+		LogRecordMemoryBuffer fullBuffer = new LogRecordMemoryBuffer(10) ;
+		LogRecordMemoryBuffer compactBuffer = LogRecordMemoryBuffer.compactBuffer(10) ;
+		assertThat(fullBuffer.isCompact()).isFalse() ;
+		assertThat(compactBuffer.isCompact()).isTrue() ;
+
+		LogRecord withoutParameters = record("simple message") ;
+		withoutParameters.setSourceClassName("org.fl.SomeClass") ;
+		withoutParameters.setSourceMethodName("someMethod") ;
+		fullBuffer.addLogRecord(withoutParameters) ;
+		compactBuffer.addLogRecord(withoutParameters) ;
+		assertThat(compactBuffer.getFormattedRecords().toString()).isEqualTo(fullBuffer.getFormattedRecords().toString()) ;
+
+		LogRecord withParameters = record("value of {0} is {1}") ;
+		withParameters.setParameters(new Object[] { "x", 42 }) ;
+		compactBuffer.addLogRecord(withParameters) ;
+		assertThat(compactBuffer.getFormattedRecords().toString()).contains("INFO: value of x is 42\n") ;
+	}
+
+	@Test
+	void compactModeRendersTheThrowable() {
+
+		LogRecordMemoryBuffer fullBuffer = new LogRecordMemoryBuffer(10) ;
+		LogRecordMemoryBuffer compactBuffer = LogRecordMemoryBuffer.compactBuffer(10, 100000) ;
+
+		LogRecord withThrowable = record("failure") ;
+		withThrowable.setThrown(new IllegalStateException("bad state", new RuntimeException("root cause"))) ;
+		fullBuffer.addLogRecord(withThrowable) ;
+		compactBuffer.addLogRecord(withThrowable) ;
+
+		String fullLogs = fullBuffer.getFormattedRecords().toString() ;
+		assertThat(fullLogs).contains("bad state", "root cause") ;
+		assertThat(compactBuffer.getFormattedRecords().toString()).isEqualTo(fullLogs) ;
+	}
+
+	@Test
+	void compactModeThrowableOverwritten() {
+
+		// small arena: a summary takes a quarter of it at most
+		LogRecordMemoryBuffer compactBuffer = LogRecordMemoryBuffer.compactBuffer(10, 600) ;
+
+		LogRecord first = record("first failure") ;
+		first.setThrown(new IllegalStateException("first exception")) ;
+		compactBuffer.addLogRecord(first) ;
+		assertThat(compactBuffer.getFormattedRecords().toString()).contains("first exception") ;
+
+		for (int i=0; i < 5; i++) {
+			LogRecord next = record("next failure") ;
+			next.setThrown(new IllegalStateException("next exception")) ;
+			compactBuffer.addLogRecord(next) ;
+		}
+		String logs = compactBuffer.getFormattedRecords().toString() ;
+		assertThat(logs).contains("INFO: first failure\n(exception details overwritten in the memory buffer)\n", "next exception")
+			.doesNotContain("first exception") ;
+		assertThat(compactBuffer.logRecordNumber()).isEqualTo(6) ;
+
+		assertThatIllegalArgumentException().isThrownBy(() -> LogRecordMemoryBuffer.compactBuffer(10, -1)) ;
+	}
+
+	@Test
+	void compactModeThrowableTruncated() {
+
+		LogRecordMemoryBuffer compactBuffer = LogRecordMemoryBuffer.compactBuffer(10, 2000) ;
+		LogRecord withThrowable = record("failure") ;
+		withThrowable.setThrown(new IllegalStateException("deep failure", new RuntimeException("root cause"))) ;
+		compactBuffer.addLogRecord(withThrowable) ;
+
+		String logs = compactBuffer.getFormattedRecords().toString() ;
+		String summary = logs.substring(logs.indexOf("INFO: failure\n") + "INFO: failure\n".length()) ;
+		assertThat(summary).startsWith("Exception deep failure\n\t\tat ").contains("\n(truncated)\n").doesNotContain("root cause") ;
+		assertThat(summary.length()).isLessThanOrEqualTo(500 + 2) ;
+	}
+
+	@Test
+	void compactModeArenaSize() {
+
+		LogRecordMemoryBuffer defaultArena = LogRecordMemoryBuffer.compactBuffer(100) ;
+		assertThat(defaultArena.getThrowableArenaSize()).isEqualTo(100*LogRecordMemoryBuffer.DEFAULT_THROWABLE_CHARS_PER_RECORD) ;
+		defaultArena.clearAndResize(1000) ;
+		assertThat(defaultArena.getThrowableArenaSize()).isEqualTo(1000*LogRecordMemoryBuffer.DEFAULT_THROWABLE_CHARS_PER_RECORD) ;
+
+		// the default arena is bounded
+		defaultArena.clearAndResize(300000) ;
+		assertThat(defaultArena.getThrowableArenaSize()).isEqualTo(16*1024*1024) ;
+
+		LogRecordMemoryBuffer givenArena = LogRecordMemoryBuffer.compactBuffer(100, 5000) ;
+		givenArena.clearAndResize(1000) ;
+		assertThat(givenArena.getThrowableArenaSize()).isEqualTo(5000) ;
+		assertThat(new LogRecordMemoryBuffer(10).getThrowableArenaSize()).isZero() ;
+	}
+
+	@Test
+	void compactBufferLogHandler() {
+
+		BufferLogHandler handler = new BufferLogHandler("compact", 100, true) ;
+		assertThat(handler.isCompact()).isTrue() ;
+		handler.publish(record("in memory")) ;
+		assertThat(handler.getMemoryLogs().toString()).contains("INFO: in memory") ;
+		assertThat(new BufferLogHandler("full", 100).isCompact()).isFalse() ;
+	}
+
+	private static LogRecord record(Level level, String loggerName, long millis, String message) {
+		LogRecord logRecord = new LogRecord(level, message) ;
+		logRecord.setLoggerName(loggerName) ;
+		logRecord.setInstant(Instant.ofEpochMilli(millis)) ;
+		return logRecord ;
+	}
+
+	private static String write(LogRecordMemoryBuffer buffer, MemoryLogFilter filter) throws IOException {
+		StringWriter out = new StringWriter() ;
+		buffer.writeFormattedRecords(out, filter) ;
+		return out.toString() ;
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void writeWithFilters(boolean compact) throws IOException {
+
+		LogRecordMemoryBuffer buffer = buffer(100, compact) ;
+		buffer.addLogRecord(record(Level.INFO, "org.fl.app", 1000, "app info")) ;
+		buffer.addLogRecord(record(Level.WARNING, "org.fl.app.db", 2000, "db warning")) ;
+		buffer.addLogRecord(record(Level.FINE, "org.fl.application", 3000, "application fine")) ;
+		buffer.addLogRecord(record(Level.SEVERE, "other", 4000, "other severe")) ;
+
+		assertThat(write(buffer, null)).isEqualTo(buffer.getFormattedRecords().toString()) ;
+		assertThat(write(buffer, MemoryLogFilter.builder().minLevel(Level.WARNING).build()))
+			.contains("db warning", "other severe").doesNotContain("app info", "application fine") ;
+		assertThat(write(buffer, MemoryLogFilter.builder().logger("org.fl.app").build()))
+			.contains("app info", "db warning").doesNotContain("application fine", "other severe") ;
+		assertThat(write(buffer, MemoryLogFilter.builder().from(Instant.ofEpochMilli(2000)).to(Instant.ofEpochMilli(4000)).build()))
+			.contains("db warning", "application fine").doesNotContain("app info", "other severe") ;
+		assertThat(write(buffer, MemoryLogFilter.builder().logger("none").build())).isEmpty() ;
+	}
+
+	@Test
+	void writeByPages() throws IOException {
+
+		LogRecordMemoryBuffer buffer = new LogRecordMemoryBuffer(10) ;
+		for (int i=0; i < 15; i++) {
+			buffer.addLogRecord(record((i % 2 == 0) ? Level.INFO : Level.FINE, "org.fl.app", 1000 + i, "message " + i)) ;
+		}
+		assertThat(buffer.getNextSequence()).isEqualTo(15) ;
+
+		// the 5 first records are overwritten: the first page begins at the first record in the buffer
+		List<String> pages = new ArrayList<>() ;
+		long nextSequence = 0 ;
+		for (int i=0; i < 3; i++) {
+			StringWriter out = new StringWriter() ;
+			nextSequence = buffer.writeFormattedRecords(out, MemoryLogFilter.builder().minLevel(Level.INFO).fromSequence(nextSequence).maxRecords(2).build()) ;
+			pages.add(out.toString()) ;
+		}
+		assertThat(pages.get(0)).contains("message 6\n", "message 8\n").doesNotContain("message 10\n") ;
+		assertThat(pages.get(1)).contains("message 10\n", "message 12\n").doesNotContain("message 8\n", "message 14\n") ;
+		assertThat(pages.get(2)).contains("message 14\n").doesNotContain("message 12\n") ;
+		assertThat(nextSequence).isEqualTo(15) ;
+
+		// next page, after new records
+		buffer.addLogRecord(record(Level.INFO, "org.fl.app", 2000, "new message")) ;
+		StringWriter out = new StringWriter() ;
+		assertThat(buffer.writeFormattedRecords(out, MemoryLogFilter.builder().fromSequence(nextSequence).build())).isEqualTo(16) ;
+		assertThat(out.toString()).contains("new message").doesNotContain("message 14") ;
+
+		// the sequences continue after a resize
+		buffer.clearAndResize(5) ;
+		buffer.addLogRecord(record(Level.INFO, "org.fl.app", 3000, "after resize")) ;
+		out = new StringWriter() ;
+		assertThat(buffer.writeFormattedRecords(out, MemoryLogFilter.builder().fromSequence(16).build())).isEqualTo(17) ;
+		assertThat(out.toString()).contains("after resize") ;
+	}
+
+	@Test
+	void writeLargeBuffer() throws IOException {
+
+		LogRecordMemoryBuffer buffer = LogRecordMemoryBuffer.compactBuffer(5000) ;
+		for (int i=0; i < 5000; i++) {
+			buffer.addLogRecord(record("message " + i)) ;
+		}
+		assertThat(write(buffer, MemoryLogFilter.all())).isEqualTo(buffer.getFormattedRecords().toString()) ;
+	}
+
+	@Test
+	void writeGzipMemoryLogs() throws IOException {
+
+		BufferLogHandler handler = new BufferLogHandler("gzip", 100) ;
+		handler.publish(record("first")) ;
+		handler.publish(record(Level.SEVERE, "testLogger", 1000, "\u00e9v\u00e9nement")) ;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+		assertThat(handler.writeMemoryLogs(out, StandardCharsets.UTF_8, true, null)).isEqualTo(2) ;
+		String logs = CompressionUtils.decompressGzipString(out.toByteArray(), StandardCharsets.UTF_8, Logger.getLogger("test")) ;
+		assertThat(logs).isEqualTo(handler.getMemoryLogs().toString()).contains("SEVERE: \u00e9v\u00e9nement") ;
+
+		out = new ByteArrayOutputStream() ;
+		handler.writeMemoryLogs(out, StandardCharsets.UTF_8, false, MemoryLogFilter.builder().minLevel(Level.SEVERE).build()) ;
+		assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).contains("\u00e9v\u00e9nement").doesNotContain("first") ;
+	}
+}
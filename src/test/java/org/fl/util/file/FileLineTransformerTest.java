@@ -0,0 +1,294 @@
+package org.fl.util.file;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import org.fl.util.FileSet;
+import org.fl.util.file.FileLineTransformerBatch.FilePair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class FileLineTransformerTest {
+
+	private static final Logger logger = Logger.getLogger(FileLineTransformerTest.class.getName());
+
+	// Prefix each line with its number, every third line has no result
+	private static class NumberingTransformer extends FileLineTransformer {
+
+		private final boolean stateless;
+		private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		public NumberingTransformer(Path source, Path result, boolean stateless) {
+			super(source, result, logger);
+			this.stateless = stateless;
+		}
+
+		@Override
+		protected String processFileLine(String line, long lineNumber) {
+			threads.add(Thread.currentThread());
+			// processing time varies, so that the chunks finish out of order
+			LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1000));
+			return (lineNumber % 3 == 2) ? null : lineNumber + ":" + line;
+		}
+
+		@Override
+		protected boolean isStateless() {
+			return stateless;
+		}
+	}
+
+	private static List<String> writeLines(Path sourceFile, int nbLines) throws IOException {
+
+		List<String> expectedResults = new ArrayList<>();
+		try (BufferedWriter bw = Files.newBufferedWriter(sourceFile, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < nbLines; i++) {
+				bw.write("line " + i + " é\n");
+				if (i % 3 != 2) {
+					expectedResults.add(i + ":line " + i + " é");
+				}
+			}
+		}
+		return expectedResults;
+	}
+
+	@ParameterizedTest
+	@CsvSource({"1,1024", "4,1", "4,7", "8,1024"})
+	void parallelTransformKeepsOrder(int parallelism, int chunkSize, @TempDir Path tempDir) throws IOException {
+
+		Path sourceFile = tempDir.resolve("source.txt");
+		Path resultFile = tempDir.resolve("result.txt");
+		List<String> expectedResults = writeLines(sourceFile, 10000);
+
+		NumberingTransformer transformer = new NumberingTransformer(sourceFile, resultFile, true);
+		transformer.setParallelism(parallelism);
+		transformer.setChunkSize(chunkSize);
+		transformer.process();
+
+		assertThat(Files.readAllLines(resultFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedResults);
+	}
+
+	@Test
+	void parallelTransformOnSuppliedPool(@TempDir Path tempDir) throws IOException {
+
+		Path sourceFile = tempDir.resolve("source.txt");
+		Path resultFile = tempDir.resolve("result.txt");
+		List<String> expectedResults = writeLines(sourceFile, 5000);
+
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			NumberingTransformer transformer = new NumberingTransformer(sourceFile, resultFile, true);
+			transformer.setParallelism(3);
+			transformer.setChunkSize(10);
+			transformer.setForkJoinPool(pool);
+			transformer.process();
+
+			assertThat(pool.isShutdown()).isFalse();
+		} finally {
+			pool.shutdown();
+		}
+		assertThat(Files.readAllLines(resultFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedResults);
+	}
+
+	// The first line fails, the other ones take some time
+	private static class FailingTransformer extends FileLineTransformer {
+
+		private volatile boolean processEnded = false;
+		private final AtomicInteger nbLinesAfterEnd = new AtomicInteger();
+
+		public FailingTransformer(Path source, Path result) {
+			super(source, result, logger);
+		}
+
+		@Override
+		protected String processFileLine(String line, long lineNumber) {
+			if (processEnded) {
+				nbLinesAfterEnd.incrementAndGet();
+			}
+			if (lineNumber == 0) {
+				throw new IllegalStateException("transformation failure");
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			return line;
+		}
+
+		@Override
+		protected boolean isStateless() {
+			return true;
+		}
+	}
+
+	// On a shared pool, the chunks in flight are not transformed any further once the process has ended on error
+	// (at most the line being transformed by each thread)
+	@Test
+	void parallelTransformFailureStopsTheChunksInFlight(@TempDir Path tempDir) throws IOException {
+
+		Path sourceFile = tempDir.resolve("source.txt");
+		writeLines(sourceFile, 2000);
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			FailingTransformer transformer = new FailingTransformer(sourceFile, tempDir.resolve("result.txt"));
+			transformer.setParallelism(2);
+			transformer.setChunkSize(100);
+			transformer.setForkJoinPool(pool);
+			transformer.process();
+			transformer.processEnded = true;
+			assertThat(transformer.isProcessSucceeded()).isFalse();
+
+			assertThat(pool.awaitQuiescence(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(transformer.nbLinesAfterEnd.get()).isLessThanOrEqualTo(2);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// A transformer that is not stateless is never run in parallel
+	// The last lines are flushed when the result file is closed: an error then fails the process
+	@Test
+	void errorOnResultFileClose(@TempDir Path tempDir) throws IOException {
+
+		Path fullDevice = Path.of("/dev/full");
+		assumeTrue(Files.isWritable(fullDevice));
+		Path sourceFile = tempDir.resolve("source.txt");
+		writeLines(sourceFile, 10);
+
+		NumberingTransformer transformer = new NumberingTransformer(sourceFile, fullDevice, false);
+		transformer.process();
+		assertThat(transformer.getNbLinesProcessed()).isEqualTo(10);
+		assertThat(transformer.isProcessSucceeded()).isFalse();
+	}
+
+	@Test
+	void statefulTransformSequential(@TempDir Path tempDir) throws IOException {
+
+		Path sourceFile = tempDir.resolve("source.txt");
+		Path resultFile = tempDir.resolve("result.txt");
+		List<String> expectedResults = writeLines(sourceFile, 1000);
+
+		NumberingTransformer transformer = new NumberingTransformer(sourceFile, resultFile, false);
+		transformer.setParallelism(4);
+		transformer.process();
+
+		assertThat(Files.readAllLines(resultFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedResults);
+		assertThat(transformer.threads).containsExactly(Thread.currentThread());
+
+		assertThatIllegalArgumentException().isThrownBy(() -> transformer.setParallelism(0));
+		assertThatIllegalArgumentException().isThrownBy(() -> transformer.setChunkSize(0));
+	}
+
+	// Copy of the lines, with their number
+	private static class CopyTransformer extends FileLineTransformer {
+
+		public CopyTransformer(Path source, Path result) {
+			super(source, result, logger);
+		}
+
+		@Override
+		protected String processFileLine(String line, long lineNumber) {
+			return lineNumber + ":" + line;
+		}
+	}
+
+	private static List<String> expectedCopy(String content) throws IOException {
+		List<String> expected = new ArrayList<>();
+		try (BufferedReader br = new BufferedReader(new StringReader(content))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				expected.add(expected.size() + ":" + line);
+			}
+		}
+		return expected;
+	}
+
+	@Test
+	void batchOnFileSet(@TempDir Path tempDir) throws IOException {
+
+		Path sourceDir = tempDir.resolve("source");
+		Path resultDir = tempDir.resolve("result");
+		List<String> contents = new ArrayList<>();
+		// line ends as BufferedReader.readLine, long lines over the buffers, multi-byte chars
+		contents.add("");
+		contents.add("a\nb\r\nc\rd\r\re\n\n");
+		contents.add("no line end é");
+		contents.add("é".repeat(50000) + "\r\n" + "x".repeat(70000) + "\r");
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			big.append("line ").append(i).append(" détail\n");
+		}
+		contents.add(big.toString());
+		for (int i = 0; i < contents.size(); i++) {
+			Path sourceFile = sourceDir.resolve("dir" + (i % 2)).resolve("file" + i + ".txt");
+			Files.createDirectories(sourceFile.getParent());
+			Files.writeString(sourceFile, contents.get(i), StandardCharsets.UTF_8);
+		}
+
+		FileSet fileSet = new FileSet(sourceDir, logger);
+		fileSet.setIncludeFilters(new String[] {"*.txt"});
+		FileLineTransformerBatch batch = new FileLineTransformerBatch(CopyTransformer::new, logger);
+		batch.setParallelism(2);
+		BatchTransformReport report = batch.process(fileSet, source -> resultDir.resolve(sourceDir.relativize(source)));
+
+		assertThat(report.getNbFiles()).isEqualTo(contents.size());
+		assertThat(report.getNbFilesFailed()).isZero();
+		assertThat(report.getParallelism()).isEqualTo(2);
+		long nbLines = 0;
+		for (int i = 0; i < contents.size(); i++) {
+			Path resultFile = resultDir.resolve("dir" + (i % 2)).resolve("file" + i + ".txt");
+			List<String> expected = expectedCopy(contents.get(i));
+			assertThat(Files.readAllLines(resultFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expected);
+			nbLines += expected.size();
+		}
+		assertThat(report.getNbLines()).isEqualTo(nbLines);
+		assertThat(report.getFilesReports()).allSatisfy(fileReport -> assertThat(fileReport.getNbBytes()).isEqualTo(Files.size(fileReport.getSourceFilePath())));
+		assertThat(report.toJson(true).getAsJsonArray("files")).hasSize(contents.size());
+	}
+
+	@Test
+	void batchOnFilePairs(@TempDir Path tempDir) throws IOException {
+
+		List<FilePair> files = new ArrayList<>();
+		List<List<String>> expectedResults = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Path sourceFile = tempDir.resolve("source" + i + ".txt");
+			expectedResults.add(writeLines(sourceFile, 100*i));
+			files.add(new FilePair(sourceFile, tempDir.resolve("results").resolve("result" + i + ".txt")));
+		}
+		// missing source file
+		files.add(new FilePair(tempDir.resolve("missing.txt"), tempDir.resolve("results").resolve("missing.txt")));
+
+		FileLineTransformerBatch batch = new FileLineTransformerBatch((source, result) -> new NumberingTransformer(source, result, true), logger);
+		batch.setParallelism(4);
+		BatchTransformReport report = batch.process(files);
+
+		assertThat(report.getNbFiles()).isEqualTo(21);
+		assertThat(report.getNbFilesFailed()).isEqualTo(1);
+		assertThat(report.getFilesReports().get(20).isSucceeded()).isFalse();
+		for (int i = 0; i < 20; i++) {
+			assertThat(Files.readAllLines(files.get(i).getResultFilePath(), StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedResults.get(i));
+			assertThat(report.getFilesReports().get(i).getNbLines()).isEqualTo(100*i);
+		}
+
+		assertThatIllegalArgumentException().isThrownBy(() -> batch.setParallelism(0));
+	}
+}
@@ -0,0 +1,200 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Cost of the ordered output compared with the unordered output of ItemsExtractor, for several batch sizes,
+// and allocation light RecordViewProcessor and ByteRecordProcessor (no decoding, no encoding) compared with the ItemProcessor
+// (run with -prof gc to see the allocation rates)
+// Not a unit test: run the main method (from the test classpath) to get the results
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemsExtractorBenchmark {
+
+	private static final Logger logger = Logger.getLogger(ItemsExtractorBenchmark.class.getName());
+
+	private static final int NB_RECORDS = 200000;
+
+	@Param({"false", "true"})
+	public boolean orderedOutput;
+
+	@Param({"1", "64"})
+	public int batchSize;
+
+	@Param({"items", "recordView", "bytes"})
+	public String processor;
+
+	private Path tempDir;
+	private Path inputFile;
+	private Path outputFile;
+
+	private static class BenchItemsExtractor extends ItemsExtractor {
+
+		public BenchItemsExtractor(Path ip, Path op) {
+			super(ip, StandardCharsets.UTF_8, op, StandardCharsets.UTF_8, ItemsExtractorBenchmark.logger);
+		}
+
+		@Override
+		protected boolean isValidFirstLineEntry(String line) {
+			return line.startsWith("A");
+		}
+
+		@Override
+		protected boolean belongsToCurrentEntry(ArrayList<String> currentEntry, String line) {
+			return line.startsWith(" ");
+		}
+
+		@Override
+		protected boolean isValidFirstLine(CharSequence line) {
+			return (line.length() > 0) && (line.charAt(0) == 'A');
+		}
+
+		@Override
+		protected boolean belongsToCurrentRecord(RecordView currentRecord, CharSequence line) {
+			return (line.length() > 0) && (line.charAt(0) == ' ');
+		}
+
+		@Override
+		protected boolean isValidFirstLine(ByteBuffer line) {
+			return line.hasRemaining() && (line.get(line.position()) == 'A');
+		}
+
+		@Override
+		protected boolean belongsToCurrentRecord(ByteRecordView currentRecord, ByteBuffer line) {
+			return line.hasRemaining() && (line.get(line.position()) == ' ');
+		}
+	}
+
+	private static class UpperCaseItemProcessor extends ItemProcessor {
+
+		@Override
+		public ItemProcessor getClone() {
+			return new UpperCaseItemProcessor();
+		}
+
+		@Override
+		public CharSequence processItem(ArrayList<String> currentEntry) {
+			StringBuilder result = new StringBuilder();
+			for (String line : currentEntry) {
+				result.append(line.toUpperCase()).append(';');
+			}
+			return result;
+		}
+	}
+
+	private static class UpperCaseRecordViewProcessor extends RecordViewProcessor {
+
+		@Override
+		public RecordViewProcessor getClone() {
+			return new UpperCaseRecordViewProcessor();
+		}
+
+		@Override
+		public boolean processRecord(RecordView record, StringBuilder result) {
+			for (int i = 0; i < record.getNbLines(); i++) {
+				CharSlice line = record.getLine(i);
+				for (int c = 0; c < line.length(); c++) {
+					result.append(Character.toUpperCase(line.charAt(c)));
+				}
+				result.append(';');
+			}
+			return true;
+		}
+	}
+
+	// ASCII letters only: the other bytes are copied as they are
+	private static class UpperCaseByteRecordProcessor extends ByteRecordProcessor {
+
+		@Override
+		public ByteRecordProcessor getClone() {
+			return new UpperCaseByteRecordProcessor();
+		}
+
+		@Override
+		public boolean processRecord(ByteRecordView record, ByteResult result) {
+			for (int i = 0; i < record.getNbLines(); i++) {
+				ByteBuffer line = record.getLine(i);
+				for (int b = line.position(); b < line.limit(); b++) {
+					byte c = line.get(b);
+					result.append(((c >= 'a') && (c <= 'z')) ? (byte) (c - 'a' + 'A') : c);
+				}
+				result.append((byte) ';');
+			}
+			return true;
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+
+		logger.setLevel(Level.WARNING);
+		tempDir = Files.createTempDirectory("itemsExtractorBenchmark");
+		inputFile = tempDir.resolve("input.txt");
+		outputFile = tempDir.resolve("output.txt");
+		try (BufferedWriter bw = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < NB_RECORDS; i++) {
+				bw.write("A" + i + " first line of the record\n");
+				bw.write(" second line of the record " + i + "\n");
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(inputFile);
+		Files.deleteIfExists(outputFile);
+		Files.deleteIfExists(tempDir);
+	}
+
+	@Benchmark
+	public void extract() {
+
+		BenchItemsExtractor itemsExtractor = new BenchItemsExtractor(inputFile, outputFile);
+		itemsExtractor.setNbProcessThreads(4);
+		itemsExtractor.setBatchSize(batchSize);
+		itemsExtractor.setOrderedOutput(orderedOutput);
+		itemsExtractor.setRecordSource(RecordSource.memoryMapped());
+		switch (processor) {
+			case "recordView" -> itemsExtractor.extract(new UpperCaseRecordViewProcessor());
+			case "bytes" -> itemsExtractor.extract(new UpperCaseByteRecordProcessor());
+			default -> itemsExtractor.extract(new UpperCaseItemProcessor());
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options options = new OptionsBuilder()
+				.include(ItemsExtractorBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,698 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.fl.util.CompressionUtils.SupportedCompression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class ItemsExtractorTest {
+
+	private static final Logger logger = Logger.getLogger(ItemsExtractorTest.class.getName());
+
+	// An entry begins with a line "A<n>", followed by detail lines beginning with a space
+	// Lines beginning with # are eliminated
+	private static class TestItemsExtractor extends ItemsExtractor {
+
+		public TestItemsExtractor(Path ip, Charset ics, Path op, Charset ocs, Path ep, Path ap) {
+			super(ip, ics, op, ocs, ep, ap, ItemsExtractorTest.logger);
+		}
+
+		@Override
+		protected boolean isValidFirstLineEntry(String line) {
+			return line.startsWith("A");
+		}
+
+		@Override
+		protected boolean belongsToCurrentEntry(ArrayList<String> currentEntry, String line) {
+			return line.startsWith(" ");
+		}
+	}
+
+	// Same grouping rules, on the record views
+	private static class RecordViewItemsExtractor extends TestItemsExtractor {
+
+		public RecordViewItemsExtractor(Path ip, Charset ics, Path op, Charset ocs, Path ep, Path ap) {
+			super(ip, ics, op, ocs, ep, ap);
+		}
+
+		@Override
+		protected boolean isValidFirstLine(CharSequence line) {
+			return (line.length() > 0) && (line.charAt(0) == 'A');
+		}
+
+		@Override
+		protected boolean belongsToCurrentRecord(RecordView currentRecord, CharSequence line) {
+			return (line.length() > 0) && (line.charAt(0) == ' ');
+		}
+	}
+
+	private static class JoinRecordViewProcessor extends RecordViewProcessor {
+
+		@Override
+		public RecordViewProcessor getClone() {
+			return new JoinRecordViewProcessor();
+		}
+
+		@Override
+		public boolean processRecord(RecordView record, StringBuilder result) {
+			for (int i = 0; i < record.getNbLines(); i++) {
+				if (i > 0) {
+					result.append('|');
+				}
+				record.getLine(i).appendTo(result);
+			}
+			return true;
+		}
+	}
+
+	// Same grouping rules, on the bytes of the lines
+	private static class ByteItemsExtractor extends TestItemsExtractor {
+
+		public ByteItemsExtractor(Path ip, Charset ics, Path op, Charset ocs, Path ep, Path ap) {
+			super(ip, ics, op, ocs, ep, ap);
+		}
+
+		@Override
+		protected boolean isValidFirstLine(ByteBuffer line) {
+			return line.hasRemaining() && (line.get(line.position()) == 'A');
+		}
+
+		@Override
+		protected boolean belongsToCurrentRecord(ByteRecordView currentRecord, ByteBuffer line) {
+			return line.hasRemaining() && (line.get(line.position()) == ' ');
+		}
+	}
+
+	private static class JoinByteRecordProcessor extends ByteRecordProcessor {
+
+		@Override
+		public ByteRecordProcessor getClone() {
+			return new JoinByteRecordProcessor();
+		}
+
+		@Override
+		public boolean processRecord(ByteRecordView record, ByteResult result) {
+			for (int i = 0; i < record.getNbLines(); i++) {
+				if (i > 0) {
+					result.append((byte) '|');
+				}
+				result.append(record.getLine(i));
+			}
+			return true;
+		}
+	}
+
+	private static class JoinItemProcessor extends ItemProcessor {
+
+		@Override
+		public ItemProcessor getClone() {
+			return new JoinItemProcessor();
+		}
+
+		@Override
+		public CharSequence processItem(ArrayList<String> currentEntry) {
+			return String.join("|", currentEntry);
+		}
+	}
+
+	// Processing time varies, so that the processor threads finish out of order
+	private static class SlowJoinItemProcessor extends JoinItemProcessor {
+
+		@Override
+		public ItemProcessor getClone() {
+			return new SlowJoinItemProcessor();
+		}
+
+		@Override
+		public CharSequence processItem(ArrayList<String> currentEntry) {
+			LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(100000));
+			return super.processItem(currentEntry);
+		}
+	}
+
+	private static Stream<Arguments> recordSources() {
+		return Stream.of(
+				Arguments.of(RecordSource.bufferedReader(), 100, "\n", 1, false),
+				Arguments.of(RecordSource.bufferedReader(), 40000, "\n", 64, false),
+				Arguments.of(RecordSource.memoryMapped(), 100, "\r\n", 7, false),
+				Arguments.of(RecordSource.parallelSplit(4), 100, "\n", 1, false),
+				Arguments.of(RecordSource.parallelSplit(4), 40000, "\n", 1, false),
+				Arguments.of(RecordSource.parallelSplit(7), 40000, "\r\n", 100, false),
+				Arguments.of(RecordSource.bufferedReader(), 40000, "\n", 64, true),
+				Arguments.of(RecordSource.memoryMapped(), 100, "\n", 1, true),
+				Arguments.of(RecordSource.memoryMapped(), 40000, "\r\n", 7, true),
+				Arguments.of(RecordSource.parallelSplit(4), 40000, "\n", 16, true));
+	}
+
+	@ParameterizedTest
+	@MethodSource("recordSources")
+	void extractWithRecordSource(RecordSource recordSource, int nbRecords, String lineSeparator, int batchSize, boolean recordView, @TempDir Path tempDir) throws IOException {
+
+		Path inputFile 		= tempDir.resolve("input.txt");
+		Path outputFile 	= tempDir.resolve("output.txt");
+		Path eliminatedFile = tempDir.resolve("eliminated.txt");
+		Path atypicFile 	= tempDir.resolve("atypic.txt");
+
+		List<String> expectedRecords = new ArrayList<>();
+		List<String> expectedEliminated = new ArrayList<>();
+		try (BufferedWriter bw = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_8)) {
+
+			// lines before the first entry are eliminated
+			bw.write(" orphan détail" + lineSeparator);
+			expectedEliminated.add(" orphan détail");
+			for (int i = 0; i < nbRecords; i++) {
+				StringBuilder record = new StringBuilder("A" + i + " é");
+				bw.write("A" + i + " é" + lineSeparator);
+				for (int j = 0; j < i % 3; j++) {
+					bw.write(" detail " + j + lineSeparator);
+					record.append("| detail ").append(j);
+				}
+				if (i % 5 == 0) {
+					bw.write("#comment " + i + lineSeparator);
+					expectedEliminated.add("#comment " + i);
+				}
+				expectedRecords.add(record.toString());
+			}
+		}
+
+		TestItemsExtractor itemsExtractor;
+		if (recordView) {
+			itemsExtractor = new RecordViewItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, atypicFile);
+		} else {
+			itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, atypicFile);
+		}
+		itemsExtractor.setNbProcessThreads(3);
+		itemsExtractor.setRecordSource(recordSource);
+		itemsExtractor.setBatchSize(batchSize);
+		itemsExtractor.extract(recordView ? new JoinRecordViewProcessor() : new JoinItemProcessor());
+
+		// sorted before comparison: containsExactlyInAnyOrder is too slow for big lists
+		assertThat(sorted(Files.readAllLines(outputFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedRecords));
+		assertThat(sorted(Files.readAllLines(eliminatedFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedEliminated));
+		assertThat(Files.readAllLines(atypicFile, StandardCharsets.UTF_8)).isEmpty();
+		assertThat(itemsExtractor.getLastExtractDuration()).isNotNegative();
+	}
+
+	// Write records of 2 lines, returns the expected results of the JoinItemProcessor
+	private static List<String> writeTwoLinesRecords(Path inputFile, int nbRecords) throws IOException {
+
+		List<String> expectedRecords = new ArrayList<>();
+		try (BufferedWriter bw = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < nbRecords; i++) {
+				bw.write("A" + i + "\n");
+				bw.write(" detail " + i + "\n");
+				expectedRecords.add("A" + i + "| detail " + i);
+			}
+		}
+		return expectedRecords;
+	}
+
+	private static List<String> sorted(List<String> list) {
+		return list.stream().sorted().toList();
+	}
+
+	@ParameterizedTest
+	@CsvSource({"1,1", "1,4", "16,2", "7,64"})
+	void extractWithOrderedOutput(int batchSize, int reorderWindowSize, @TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt");
+
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 3000);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, null, null);
+		itemsExtractor.setNbProcessThreads(6);
+		itemsExtractor.setBatchSize(batchSize);
+		itemsExtractor.setOrderedOutput(true);
+		itemsExtractor.setReorderWindowSize(reorderWindowSize);
+		itemsExtractor.extract(new SlowJoinItemProcessor());
+
+		assertThat(Files.readAllLines(outputFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedRecords);
+	}
+
+	@ParameterizedTest
+	@CsvSource({"GZIP,0", "DEFLATE,0", "GZIP,1", "GZIP,4"})
+	void extractWithCompressedOutput(SupportedCompression compression, int nbCompressionThreads, @TempDir Path tempDir) throws IOException {
+
+		Path inputFile 		= tempDir.resolve("input.txt");
+		Path outputFile 	= tempDir.resolve("output.txt.gz");
+		Path eliminatedFile = tempDir.resolve("eliminated.txt.gz");
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 20000);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, null);
+		itemsExtractor.setNbProcessThreads(4);
+		itemsExtractor.setBatchSize(16);
+		itemsExtractor.setOrderedOutput(true);
+		itemsExtractor.setOutputCompression(compression, nbCompressionThreads);
+		itemsExtractor.extract(new JoinItemProcessor());
+
+		assertThat(Files.size(outputFile)).isLessThan(Files.size(inputFile));
+		assertThat(readLines(outputFile, compression)).containsExactlyElementsOf(expectedRecords);
+		assertThat(readLines(eliminatedFile, compression)).isEmpty();
+
+		assertThatIllegalArgumentException().isThrownBy(() -> itemsExtractor.setOutputCompression(SupportedCompression.DEFLATE, 2));
+	}
+
+	// compression: null if the file is not compressed
+	private static List<String> readLines(Path file, SupportedCompression compression) throws IOException {
+		if (compression == null) {
+			return Files.readAllLines(file, StandardCharsets.UTF_8);
+		}
+		try (InputStream in = Files.newInputStream(file);
+			 InputStream decompressed = (compression == SupportedCompression.GZIP) ? new GZIPInputStream(in) : new InflaterInputStream(in)) {
+			return new String(decompressed.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+		}
+	}
+
+	// The default grouping of the record views calls the String based rules
+	@Test
+	void extractWithRecordViewProcessor(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt");
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 5000);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, null, null);
+		itemsExtractor.setRecordSource(RecordSource.memoryMapped());
+		itemsExtractor.setEntriesQueueSize(10);
+		itemsExtractor.setAdaptiveConcurrency(1, 4);
+		itemsExtractor.setBatchSize(10);
+		itemsExtractor.setOrderedOutput(true);
+		itemsExtractor.extract(new JoinRecordViewProcessor());
+
+		assertThat(Files.readAllLines(outputFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedRecords);
+	}
+
+	private static Stream<Arguments> byteRecordSources() {
+		return Stream.of(
+				Arguments.of(RecordSource.bufferedReader(), "\n", 1, false),
+				Arguments.of(RecordSource.memoryMapped(), "\r\n", 64, false),
+				Arguments.of(RecordSource.memoryMapped(), "\n", 7, true),
+				Arguments.of(RecordSource.parallelSplit(4), "\n", 16, false));
+	}
+
+	@ParameterizedTest
+	@MethodSource("byteRecordSources")
+	void extractWithByteRecordProcessor(RecordSource recordSource, String lineSeparator, int batchSize, boolean orderedOutput, @TempDir Path tempDir) throws IOException {
+
+		Path inputFile 		= tempDir.resolve("input.txt");
+		Path outputFile 	= tempDir.resolve("output.txt");
+		Path eliminatedFile = tempDir.resolve("eliminated.txt");
+
+		List<String> expectedRecords = new ArrayList<>();
+		List<String> expectedEliminated = new ArrayList<>();
+		try (BufferedWriter bw = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < 20000; i++) {
+				bw.write("A" + i + " é" + lineSeparator);
+				bw.write(" détail " + i + lineSeparator);
+				expectedRecords.add("A" + i + " é| détail " + i);
+				if (i % 7 == 0) {
+					bw.write("#commentaire " + i + lineSeparator);
+					expectedEliminated.add("#commentaire " + i);
+				}
+			}
+		}
+
+		ByteItemsExtractor itemsExtractor = new ByteItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, null);
+		itemsExtractor.setNbProcessThreads(3);
+		itemsExtractor.setRecordSource(recordSource);
+		itemsExtractor.setBatchSize(batchSize);
+		itemsExtractor.setOrderedOutput(orderedOutput);
+		itemsExtractor.extract(new JoinByteRecordProcessor());
+
+		if (orderedOutput) {
+			assertThat(Files.readAllLines(outputFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedRecords);
+		} else {
+			assertThat(sorted(Files.readAllLines(outputFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedRecords));
+		}
+		assertThat(sorted(Files.readAllLines(eliminatedFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedEliminated));
+	}
+
+	// The default grouping of the byte records calls the String based rules
+	@Test
+	void extractWithByteRecordProcessorDefaultGrouping(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt.gz");
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 5000);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, null, null);
+		itemsExtractor.setRecordSource(RecordSource.memoryMapped());
+		itemsExtractor.setAdaptiveConcurrency(1, 4);
+		itemsExtractor.setBatchSize(10);
+		itemsExtractor.setOrderedOutput(true);
+		itemsExtractor.setOutputCompression(SupportedCompression.GZIP, 2);
+		itemsExtractor.extract(new JoinByteRecordProcessor());
+
+		assertThat(readLines(outputFile, SupportedCompression.GZIP)).containsExactlyElementsOf(expectedRecords);
+	}
+
+	// The bytes of the input cannot be written as they are in another charset
+	@Test
+	void byteRecordProcessorNeedsSameCharsets(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt");
+		writeTwoLinesRecords(inputFile, 10);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.ISO_8859_1, null, null);
+		itemsExtractor.extract(new JoinByteRecordProcessor());
+
+		assertThat(outputFile).doesNotExist();
+	}
+
+	@Test
+	void extractWithAdaptiveConcurrency(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt");
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 5000);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, null, null);
+		itemsExtractor.setEntriesQueueSize(10);
+		itemsExtractor.setAdaptiveConcurrency(1, 8);
+		itemsExtractor.extract(new SlowJoinItemProcessor());
+
+		assertThat(sorted(Files.readAllLines(outputFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedRecords));
+
+		assertThatIllegalArgumentException().isThrownBy(() -> itemsExtractor.setAdaptiveConcurrency(4, 2));
+	}
+
+	@Test
+	void extractWithSuppliedExecutorService(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt");
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 3000);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, null, null);
+			itemsExtractor.setNbProcessThreads(4);
+			itemsExtractor.setExecutorService(executorService);
+			itemsExtractor.setOrderedOutput(true);
+			itemsExtractor.extract(new JoinItemProcessor());
+
+			assertThat(Files.readAllLines(outputFile, StandardCharsets.UTF_8)).containsExactlyElementsOf(expectedRecords);
+
+			// the executor service belongs to the caller
+			assertThat(executorService.isShutdown()).isFalse();
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	void extractWithVirtualThreadPerTask(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 	= tempDir.resolve("input.txt");
+		Path outputFile = tempDir.resolve("output.txt");
+		List<String> expectedRecords = writeTwoLinesRecords(inputFile, 3000);
+
+		// a cached thread pool if virtual threads are not available
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, null, null);
+		itemsExtractor.setNbProcessThreads(50);
+		itemsExtractor.setProcessExecutor(ItemsExtractor.ProcessExecutor.VIRTUAL_THREAD_PER_TASK);
+		itemsExtractor.extract(new SlowJoinItemProcessor());
+
+		assertThat(sorted(Files.readAllLines(outputFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedRecords));
+	}
+
+	// Blocks on the record "A300" until released. Records multiple of 7 are also atypic
+	private static class BlockingItemProcessor extends JoinItemProcessor {
+
+		private final CountDownLatch release;
+
+		private BlockingItemProcessor(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public ItemProcessor getClone() {
+			return new BlockingItemProcessor(release);
+		}
+
+		@Override
+		public CharSequence processItem(ArrayList<String> currentEntry) {
+			try {
+				if (currentEntry.get(0).equals("A300")) {
+					release.await();
+				}
+				if (Integer.parseInt(currentEntry.get(0).substring(1)) % 7 == 0) {
+					atypicEntries.put(currentEntry.get(0));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.processItem(currentEntry);
+		}
+	}
+
+	// Uncompressed result files, or compressed by parallel gzip (the checkpoints are at gzip member boundaries)
+	@ParameterizedTest
+	@ValueSource(ints = {0, 2})
+	@Timeout(60)
+	void resumeFromCheckpoint(int nbCompressionThreads, @TempDir Path tempDir) throws Exception {
+
+		Path inputFile 		= tempDir.resolve("input.txt");
+		Path outputFile 	= tempDir.resolve("output.txt");
+		Path eliminatedFile = tempDir.resolve("eliminated.txt");
+		Path atypicFile 	= tempDir.resolve("atypic.txt");
+		Path checkpointFile = tempDir.resolve("checkpoint.json");
+
+		List<String> expectedRecords = new ArrayList<>();
+		List<String> expectedEliminated = new ArrayList<>();
+		List<String> expectedAtypic = new ArrayList<>();
+		try (BufferedWriter bw = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < 1000; i++) {
+				bw.write("A" + i + "\n");
+				bw.write(" détail " + i + "\n");
+				expectedRecords.add("A" + i + "| détail " + i);
+				if (i % 3 == 0) {
+					bw.write("#comment " + i + "\n");
+					expectedEliminated.add("#comment " + i);
+				}
+				if (i % 7 == 0) {
+					expectedAtypic.add("A" + i);
+				}
+			}
+		}
+
+		// First extract, with a checkpoint at each entry. It is stuck on the record A300
+		CountDownLatch release = new CountDownLatch(1);
+		TestItemsExtractor firstExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, atypicFile);
+		firstExtractor.setNbProcessThreads(3);
+		firstExtractor.setEntriesQueueSize(20);
+		firstExtractor.setRecordSource(RecordSource.memoryMapped());
+		firstExtractor.setCheckpoint(checkpointFile, 0);
+		if (nbCompressionThreads > 0) {
+			firstExtractor.setOutputCompression(SupportedCompression.GZIP, nbCompressionThreads);
+		}
+		Thread firstExtract = new Thread(() -> firstExtractor.extract(new BlockingItemProcessor(release)));
+		firstExtract.start();
+
+		// Wait for the queues to be full, and take a snapshot of the files, as if the extract had crashed
+		while (! Files.exists(checkpointFile)) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(500);
+		Path crashDir = Files.createDirectory(tempDir.resolve("crash"));
+		Files.copy(checkpointFile, crashDir.resolve("checkpoint.json"));
+		for (Path file : List.of(outputFile, eliminatedFile, atypicFile)) {
+			Files.copy(file, crashDir.resolve(file.getFileName()));
+		}
+
+		release.countDown();
+		firstExtract.join();
+		assertThat(checkpointFile).doesNotExist();
+
+		// Resume the extract from the snapshot
+		for (Path file : List.of(checkpointFile, outputFile, eliminatedFile, atypicFile)) {
+			Files.copy(crashDir.resolve(file.getFileName()), file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		long nbRecordsInCheckpoint = Checkpointer.readCheckpoint(checkpointFile, logger).getNbRecordsRead();
+		assertThat(nbRecordsInCheckpoint).isPositive().isLessThanOrEqualTo(300);
+
+		TestItemsExtractor resumedExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, atypicFile);
+		resumedExtractor.setNbProcessThreads(3);
+		resumedExtractor.setRecordSource(RecordSource.memoryMapped());
+		resumedExtractor.setCheckpoint(checkpointFile, TimeUnit.HOURS.toMillis(1));
+		resumedExtractor.setResume(true);
+		if (nbCompressionThreads > 0) {
+			resumedExtractor.setOutputCompression(SupportedCompression.GZIP, nbCompressionThreads);
+		}
+		resumedExtractor.extract(new BlockingItemProcessor(new CountDownLatch(0)));
+
+		assertThat(checkpointFile).doesNotExist();
+		SupportedCompression compression = (nbCompressionThreads > 0) ? SupportedCompression.GZIP : null;
+		assertThat(sorted(readLines(outputFile, compression))).containsExactlyElementsOf(sorted(expectedRecords));
+		assertThat(sorted(readLines(eliminatedFile, compression))).containsExactlyElementsOf(sorted(expectedEliminated));
+		assertThat(sorted(readLines(atypicFile, compression))).containsExactlyElementsOf(sorted(expectedAtypic));
+	}
+
+	// The memory mapped source falls back to a BufferedReader for a charset not ASCII compatible: it is not resumable then
+	@Test
+	void memoryMappedSourceNotResumableInUtf16(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 		= tempDir.resolve("input.txt");
+		Path outputFile 	= tempDir.resolve("output.txt");
+		Path checkpointFile = tempDir.resolve("checkpoint.json");
+		List<String> expectedRecords = new ArrayList<>();
+		try (BufferedWriter bw = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_16)) {
+			for (int i = 0; i < 100; i++) {
+				bw.write("A" + i + "\n");
+				bw.write(" détail " + i + "\n");
+				expectedRecords.add("A" + i + "| détail " + i);
+			}
+		}
+
+		RecordSource recordSource = RecordSource.memoryMapped();
+		assertThat(recordSource.isResumable(StandardCharsets.UTF_8)).isTrue();
+		assertThat(recordSource.isResumable(StandardCharsets.UTF_16)).isFalse();
+		assertThat(RecordSource.bufferedReader().isResumable(StandardCharsets.UTF_8)).isFalse();
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_16, outputFile, StandardCharsets.UTF_8, null, null);
+		RecordCollector recordCollector = new RecordCollector(itemsExtractor, new LinkedBlockingQueue<>(), null, 10, 100);
+		assertThatIOException().isThrownBy(() -> recordSource.readRecords(inputFile, StandardCharsets.UTF_16, recordCollector, 10))
+			.withMessageContaining("not resumable");
+
+		// no checkpoint, but the extract is done
+		itemsExtractor.setRecordSource(recordSource);
+		itemsExtractor.setCheckpoint(checkpointFile, 0);
+		itemsExtractor.extract(new JoinItemProcessor());
+		assertThat(checkpointFile).doesNotExist();
+		assertThat(sorted(Files.readAllLines(outputFile, StandardCharsets.UTF_8))).containsExactlyElementsOf(sorted(expectedRecords));
+	}
+
+	@Test
+	void extractWithMetrics(@TempDir Path tempDir) throws IOException {
+
+		Path inputFile 		= tempDir.resolve("input.txt");
+		Path outputFile 	= tempDir.resolve("output.txt");
+		Path eliminatedFile = tempDir.resolve("eliminated.txt");
+		writeTwoLinesRecords(inputFile, 3000);
+
+		TestItemsExtractor itemsExtractor = new TestItemsExtractor(inputFile, StandardCharsets.UTF_8, outputFile, StandardCharsets.UTF_8, eliminatedFile, null);
+		assertThat(itemsExtractor.getMetrics()).isNull();
+
+		List<ExtractMetrics> allMetrics = new CopyOnWriteArrayList<>();
+		itemsExtractor.setNbProcessThreads(4);
+		assertThatIllegalArgumentException().isThrownBy(() -> itemsExtractor.setMetricsListener(allMetrics::add, 0));
+		assertThatIllegalArgumentException().isThrownBy(() -> itemsExtractor.setMetricsListener(allMetrics::add, -10));
+		itemsExtractor.setMetricsListener(allMetrics::add, 10);
+		itemsExtractor.extract(new SlowJoinItemProcessor());
+
+		// the last metrics are given at the end of the extract
+		assertThat(allMetrics).hasSizeGreaterThan(1);
+		ExtractMetrics lastMetrics = allMetrics.get(allMetrics.size() - 1);
+		assertThat(lastMetrics.getNbRecordsRead()).isEqualTo(3000);
+		assertThat(lastMetrics.getNbRecordsProcessed()).isEqualTo(3000);
+		assertThat(lastMetrics.getNbRecordsWritten()).isEqualTo(3000);
+		assertThat(lastMetrics.getEntriesQueueDepth()).isZero();
+		assertThat(lastMetrics.getAtypicQueueDepth()).isEqualTo(-1);
+		assertThat(lastMetrics.getProcessItemLatencyP50()).isPositive();
+		assertThat(lastMetrics.getProcessItemLatencyP99()).isGreaterThanOrEqualTo(lastMetrics.getProcessItemLatencyP50());
+
+		// 1 reader, 4 processors, 2 writers
+		assertThat(lastMetrics.getThreadsActivity()).hasSize(7)
+			.allSatisfy(threadActivity -> {
+				assertThat(threadActivity.isRunning()).isFalse();
+				assertThat(threadActivity.getBusyMillis() + threadActivity.getBlockedMillis()).isLessThanOrEqualTo(lastMetrics.getElapsedMillis());
+			});
+		assertThat(lastMetrics.getThreadsActivity()).filteredOn(threadActivity -> threadActivity.getName().startsWith("processor")).hasSize(4);
+
+		assertThat(itemsExtractor.getMetrics().getNbRecordsWritten()).isEqualTo(3000);
+		assertThat(lastMetrics.toJson().get("nbRecordsRead").getAsLong()).isEqualTo(3000);
+	}
+
+	// The source gives no more line for a while: the complete records are put in the queue on batch timeout, without waiting for the next line
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	@Timeout(30)
+	void partialBatchPutOnTimeoutWhenTheSourceStalls(boolean recordView) throws InterruptedException {
+
+		LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> entries = new LinkedBlockingQueue<>(4);
+		LinkedBlockingQueue<RecordsBatch> recordsBatches = new LinkedBlockingQueue<>(4);
+		RecordCollector recordCollector;
+		if (recordView) {
+			recordCollector = RecordCollector.recordViewCollector(new RecordViewItemsExtractor(null, StandardCharsets.UTF_8, null, StandardCharsets.UTF_8, null, null), recordsBatches, 8, null, 100, 20);
+		} else {
+			recordCollector = new RecordCollector(new TestItemsExtractor(null, StandardCharsets.UTF_8, null, StandardCharsets.UTF_8, null, null), entries, null, 100, 20);
+		}
+		recordCollector.startBatchTimer();
+		RecordCollector.LineGrouper grouper = recordCollector.newGrouper();
+		grouper.addLine("A1");
+		grouper.addLine("A2");
+		grouper.addLine(" detail 2");
+		grouper.addLine("A3");
+		grouper.addLine(" detail 3");
+
+		// A3 may go on with other lines: only A1 and A2 are complete
+		assertThat(pollRecords(entries, recordsBatches, recordView, 2)).containsExactly("A1", "A2\n detail 2");
+
+		grouper.addLine(" more detail 3");
+		grouper.addLine("A4");
+		grouper.end();
+		recordCollector.stopBatchTimer();
+		assertThat(pollRecords(entries, recordsBatches, recordView, 2)).containsExactly("A3\n detail 3\n more detail 3", "A4");
+		assertThat(entries).isEmpty();
+		assertThat(recordsBatches).isEmpty();
+		assertThat(recordCollector.getNbRecordsRead()).isEqualTo(4);
+	}
+
+	// Records of the batches put in the queue, until nbRecords are taken (the records may be put in one batch or several)
+	private static List<String> pollRecords(LinkedBlockingQueue<ItemsBatch<ArrayList<String>>> entries, LinkedBlockingQueue<RecordsBatch> recordsBatches, boolean recordView, int nbRecords) throws InterruptedException {
+		List<String> records = new ArrayList<>();
+		RecordView view = new RecordView();
+		while (records.size() < nbRecords) {
+			if (recordView) {
+				RecordsBatch recordsBatch = recordsBatches.poll(10, TimeUnit.SECONDS);
+				assertThat(recordsBatch).isNotNull();
+				for (int i=0; i < recordsBatch.size(); i++) {
+					records.add(String.join("\n", recordsBatch.getRecord(i, view).toLines()));
+				}
+			} else {
+				ItemsBatch<ArrayList<String>> batch = entries.poll(10, TimeUnit.SECONDS);
+				assertThat(batch).isNotNull();
+				for (ArrayList<String> entry : batch) {
+					records.add(String.join("\n", entry));
+				}
+			}
+		}
+		return records;
+	}
+}
@@ -0,0 +1,79 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.fl.util.CompressionUtils.SupportedCompression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ItemsWriterTest {
+
+	private static final Logger logger = Logger.getLogger(ItemsWriterTest.class.getName());
+
+	// Items as chars and as bytes alternate: the switches do not end a gzip member each
+	@Test
+	void mixedCharsAndBytesWithParallelGzip(@TempDir Path tempDir) throws Exception {
+
+		Path resultFile = tempDir.resolve("result.txt.gz");
+		LinkedBlockingQueue<CharSequence> outputQ = new LinkedBlockingQueue<>();
+		ItemsWriter itemsWriter = new ItemsWriter(outputQ, resultFile, StandardCharsets.UTF_8, logger);
+		itemsWriter.setCompression(SupportedCompression.GZIP, 2);
+		itemsWriter.start();
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			String item = "item " + i;
+			if (i % 2 == 0) {
+				byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+				outputQ.put(new ByteChunk(bytes, 0, bytes.length, StandardCharsets.UTF_8));
+			} else {
+				outputQ.put(new StringBuilder(item));
+			}
+			expected.add(item);
+		}
+		itemsWriter.endProcess();
+		itemsWriter.join();
+
+		assertThat(itemsWriter.getNbElementWritten()).isEqualTo(500);
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(resultFile))) {
+			assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()).containsExactlyElementsOf(expected);
+		}
+		assertThat(countGzipMembers(Files.readAllBytes(resultFile))).isEqualTo(1);
+	}
+
+	// Members with the minimal header written by GZIPOutputStream (no optional field)
+	private static int countGzipMembers(byte[] gzip) throws IOException, DataFormatException {
+
+		int nbMembers = 0;
+		int position = 0;
+		byte[] buffer = new byte[8192];
+		while (position < gzip.length) {
+			assertThat(gzip[position] & 0xff).isEqualTo(0x1f);
+			assertThat(gzip[position + 1] & 0xff).isEqualTo(0x8b);
+			assertThat(gzip[position + 3]).isZero();
+			Inflater inflater = new Inflater(true);
+			inflater.setInput(gzip, position + 10, gzip.length - position - 10);
+			while (! inflater.finished()) {
+				inflater.inflate(buffer);
+			}
+			// the member ends with the CRC and the size
+			position = gzip.length - inflater.getRemaining() + 8;
+			inflater.end();
+			nbMembers++;
+		}
+		return nbMembers;
+	}
+}
@@ -0,0 +1,54 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Percentage.withPercentage;
+
+public class LatencyHistogramTest {
+
+	@Test
+	void emptyHistogram() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertThat(histogram.getCount()).isZero();
+		assertThat(histogram.getPercentile(50)).isZero();
+	}
+
+	@Test
+	void percentiles() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 10000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertThat(histogram.getCount()).isEqualTo(10000);
+		assertThat(histogram.getPercentile(50)).isCloseTo(5000000, withPercentage(12.5));
+		assertThat(histogram.getPercentile(99)).isCloseTo(9900000, withPercentage(12.5));
+		assertThat(histogram.getPercentile(100)).isGreaterThanOrEqualTo(10000000);
+	}
+
+	@Test
+	void smallAndExtremeValues() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(3);
+		assertThat(histogram.getPercentile(50)).isEqualTo(3);
+
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertThat(histogram.getCount()).isEqualTo(3);
+		assertThat(histogram.getPercentile(1)).isZero();
+		assertThat(histogram.getPercentile(100)).isEqualTo(Long.MAX_VALUE);
+	}
+
+	@Test
+	void concurrentRecords() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		IntStream.range(0, 100000).parallel().forEach(i -> histogram.record(i % 1000));
+		assertThat(histogram.getCount()).isEqualTo(100000);
+	}
+}
@@ -0,0 +1,163 @@
+package org.fl.util.file.multiThreadedTransformer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class RecordViewTest {
+
+	@Test
+	void recordViewOfLines() {
+
+		RecordView record = RecordView.of(List.of("A1 first", "", " détail"));
+
+		assertThat(record.getNbLines()).isEqualTo(3);
+		assertThat(record.getFirstLine()).hasToString("A1 first");
+		assertThat(record.getLine(1)).isEmpty();
+		assertThat(record.getLine(2).toString()).isEqualTo(" détail");
+		assertThat(record.toLines()).containsExactly("A1 first", "", " détail");
+
+		// the record is the text of its lines separated by line feeds
+		assertThat(record).hasToString("A1 first\n\n détail");
+		assertThat(record.length()).isEqualTo(record.toString().length());
+		assertThat(record.charAt(8)).isEqualTo('\n');
+		assertThat(record.subSequence(3, 8)).hasToString("first");
+
+		assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> record.getLine(3));
+		assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> record.charAt(record.length()));
+	}
+
+	@Test
+	void charSlice() {
+
+		char[] chars = "xxA12, détail|yy".toCharArray();
+		CharSlice slice = new CharSlice(chars, 2, 12);
+
+		assertThat(slice).hasToString("A12, détail|");
+		assertThat(slice.startsWith("A12")).isTrue();
+		assertThat(slice.startsWith("A13")).isFalse();
+		assertThat(slice.indexOf(',')).isEqualTo(3);
+		assertThat(slice.indexOf('y')).isEqualTo(-1);
+		assertThat(slice.subSequence(5, 11).contentEquals("détail")).isTrue();
+		assertThat(slice.appendTo(new StringBuilder(">"))).hasToString(">A12, détail|");
+
+		assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> new CharSlice(chars, 10, 7));
+		assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> slice.charAt(12));
+	}
+
+	@Test
+	void recordsBatchRecycled() {
+
+		ArrayBlockingQueue<RecordsBatch> pool = new ArrayBlockingQueue<>(2);
+		RecordsBatch batch = new RecordsBatch(pool);
+		char[] line = new char[10000];
+		for (int r = 0; r < 100; r++) {
+			batch.startRecord();
+			for (int l = 0; l <= r % 3; l++) {
+				line[0] = (char) ('a' + l);
+				// long lines, so that the char array grows
+				batch.appendLine(line, 0, (r == 50) ? line.length : 1);
+			}
+			batch.endRecord();
+		}
+		assertThat(batch.size()).isEqualTo(100);
+		RecordView record = batch.getRecord(50, new RecordView());
+		assertThat(record.getNbLines()).isEqualTo(3);
+		assertThat(record.getLine(2).length()).isEqualTo(line.length);
+		assertThat(batch.getRecord(99, record).toLines()).containsExactly("a");
+
+		batch.recycle();
+		assertThat(pool).containsExactly(batch);
+		assertThat(batch.isEmpty()).isTrue();
+	}
+
+	@Test
+	void stringBuilderPool() {
+
+		StringBuilderPool pool = new StringBuilderPool(2, 16, 64);
+
+		StringBuilder sb1 = pool.acquire();
+		StringBuilder sb2 = pool.acquire();
+		StringBuilder sb3 = pool.acquire();
+		sb1.append("result");
+		pool.release(sb1);
+		pool.release(sb2);
+		// pool full
+		pool.release(sb3);
+		assertThat(pool.getNbFreeBuilders()).isEqualTo(2);
+
+		StringBuilder reused = pool.acquire();
+		assertThat(reused).isSameAs(sb1).isEmpty();
+
+		// too big to be kept
+		StringBuilder big = pool.acquire();
+		big.append(new char[1000]);
+		pool.release(big);
+		assertThat(pool.getNbFreeBuilders()).isZero();
+
+		assertThatIllegalArgumentException().isThrownBy(() -> new StringBuilderPool(0, 16, 64));
+	}
+
+	@Test
+	void byteRecordViewOfLines() {
+
+		ByteRecordView record = ByteRecordView.of(List.of("A1 first", "", " détail"), StandardCharsets.UTF_8);
+
+		assertThat(record.getNbLines()).isEqualTo(3);
+		ByteBuffer firstLine = record.getFirstLine();
+		assertThat(firstLine.remaining()).isEqualTo(8);
+		assertThat(firstLine.get(firstLine.position())).isEqualTo((byte) 'A');
+		assertThat(record.getLine(1).hasRemaining()).isFalse();
+		// "é" is 2 bytes in UTF-8
+		assertThat(record.getLine(2).remaining()).isEqualTo(8);
+		assertThat(record.decodeLine(2)).isEqualTo(" détail");
+		assertThat(record.toLines()).containsExactly("A1 first", "", " détail");
+		assertThat(record.getNbBytes()).isEqualTo(18);
+		assertThat(record.getRecord().remaining()).isEqualTo(18);
+		assertThat(record).hasToString("A1 first\n\n détail");
+
+		assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> record.getLine(3));
+	}
+
+	@Test
+	void byteResult() throws IOException {
+
+		ByteResult result = new ByteResult(StandardCharsets.UTF_8, 4);
+		result.startRecord();
+		ByteBuffer line = ByteBuffer.wrap("xxA1|yy".getBytes(StandardCharsets.UTF_8), 2, 3);
+		result.append(line).append((byte) '-').append("détail → ok");
+		// the buffer appended is not moved
+		assertThat(line.position()).isEqualTo(2);
+		ByteChunk first = result.endRecord();
+
+		result.startRecord();
+		result.append("dropped");
+		result.discardRecord();
+		result.startRecord();
+		result.append(new byte[] {'o', 'k'}, 0, 2);
+		ByteChunk second = result.endRecord();
+
+		assertThat(first).hasToString("A1|-détail → ok");
+		assertThat(first.getNbBytes()).isEqualTo("A1|-détail → ok".getBytes(StandardCharsets.UTF_8).length);
+		assertThat(second).hasToString("ok");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		first.writeTo(out);
+		second.writeTo(out);
+		assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("A1|-détail → okok");
+
+		// unmappable chars are replaced
+		ByteResult latin1 = new ByteResult(StandardCharsets.ISO_8859_1, 16);
+		latin1.startRecord();
+		latin1.append("é→");
+		assertThat(latin1.endRecord()).hasToString("é?");
+	}
+}
@@ -0,0 +1,254 @@
+package org.fl.util.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.fl.util.io.ByteRingBuffer.MAX_READ_CLIENTS;
+import static org.fl.util.io.ByteRingBuffer.MINIMAL_CAPACITY;
+
+public class ByteRingBufferTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void regularTest(boolean direct) {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer(4096, direct);
+        assertThat(byteBuffer.isDirect()).isEqualTo(direct);
+
+        int readClient1 = byteBuffer.newReadClient();
+        int readClient2 = byteBuffer.newReadClient();
+
+        assertThat(byteBuffer.read(readClient1)).isEqualTo(-1);
+        assertThat(byteBuffer.read(readClient2)).isEqualTo(-1);
+
+        assertThat(byteBuffer.write((byte) 200)).isTrue();
+
+        assertThat(byteBuffer.read(readClient1)).isEqualTo(200);
+        assertThat(byteBuffer.read(readClient1)).isEqualTo(-1);
+
+        assertThat(byteBuffer.read(readClient2)).isEqualTo(200);
+        assertThat(byteBuffer.read(readClient2)).isEqualTo(-1);
+
+        int nbWrites = 440;
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(byteBuffer.write((byte) i)).isTrue();
+            assertThat(byteBuffer.available(readClient1)).isEqualTo(byteBuffer.available(readClient2)).isEqualTo(i+1);
+        }
+
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(byteBuffer.read(readClient1)).isEqualTo(i & 0xFF);
+            assertThat(byteBuffer.available(readClient1)).isEqualTo(nbWrites - i - 1);
+        }
+        assertThat(byteBuffer.read(readClient1)).isEqualTo(-1);
+
+        byte[] readArray = new byte[nbWrites + 10];
+        assertThat(byteBuffer.read(readClient2, readArray, 5, readArray.length - 5)).isEqualTo(nbWrites);
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(readArray[i + 5]).isEqualTo((byte) i);
+        }
+        assertThat(byteBuffer.read(readClient2, readArray, 0, readArray.length)).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void bulkWriteAndReadWrapAround(boolean direct) {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer(MINIMAL_CAPACITY, direct);
+        int readClient1 = byteBuffer.newReadClient();
+        int readClient2 = byteBuffer.newReadClient();
+
+        byte[] source = new byte[300];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) (i * 7);
+        }
+        byte[] result = new byte[source.length];
+
+        // Several writes of 300 bytes in a 512 bytes buffer: the writes and reads wrap around
+        for (int n = 0; n < 10; n++) {
+            assertThat(byteBuffer.write(source, 0, source.length)).isEqualTo(source.length);
+
+            assertThat(byteBuffer.read(readClient1, result, 0, result.length)).isEqualTo(source.length);
+            assertThat(result).isEqualTo(source);
+
+            assertThat(byteBuffer.read(readClient2, result, 0, result.length)).isEqualTo(source.length);
+            assertThat(result).isEqualTo(source);
+        }
+    }
+
+    @Test
+    void invalidClientId() {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer();
+        assertThatIllegalArgumentException().isThrownBy(() -> byteBuffer.read(0));
+
+        assertThatIllegalArgumentException().isThrownBy(() -> byteBuffer.read(-1));
+    }
+
+    @Test
+    void invalidBounds() {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer();
+        int readClient = byteBuffer.newReadClient();
+        byte[] array = new byte[10];
+
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> byteBuffer.write(array, 5, 6));
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> byteBuffer.read(readClient, array, -1, 2));
+        assertThatNullPointerException().isThrownBy(() -> byteBuffer.write(null, 0, 1));
+    }
+
+    @Test
+    void readClientCreationAfterFirstWrite() {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer();
+        int nbWrites = 44;
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(byteBuffer.write((byte) i)).isTrue();
+        }
+
+        int readClient = byteBuffer.newReadClient();
+
+        // only the future writes are available
+        assertThat(byteBuffer.available(readClient)).isZero();
+        assertThat(byteBuffer.read(readClient)).isEqualTo(-1);
+
+        assertThat(byteBuffer.write((byte) 11)).isTrue();
+        assertThat(byteBuffer.available(readClient)).isEqualTo(1);
+        assertThat(byteBuffer.read(readClient)).isEqualTo(11);
+    }
+
+    @Test
+    void maximalNumberOfClient() {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer();
+
+        int clientId;
+        int numberOfClient = -1;
+        do {
+            clientId = byteBuffer.newReadClient();
+            numberOfClient++;
+        } while (clientId != -1);
+        assertThat(numberOfClient).isEqualTo(MAX_READ_CLIENTS);
+    }
+
+    @Test
+    void bufferFull() {
+
+        // Size of the buffer will be the minimal size
+        ByteRingBuffer byteBuffer = new ByteRingBuffer(1);
+        int readClient1 = byteBuffer.newReadClient();
+        int readClient2 = byteBuffer.newReadClient();
+
+        byte[] source = new byte[MINIMAL_CAPACITY + 100];
+        assertThat(byteBuffer.write(source, 0, source.length)).isEqualTo(MINIMAL_CAPACITY);
+        // Buffer is now full
+        assertThat(byteBuffer.write((byte) 1)).isFalse();
+
+        byte[] result = new byte[source.length];
+        assertThat(byteBuffer.read(readClient1, result, 0, result.length)).isEqualTo(MINIMAL_CAPACITY);
+
+        // Still not possible to write (readClient2 has not read anything)
+        assertThat(byteBuffer.write((byte) 1)).isFalse();
+        assertThat(byteBuffer.write(source, 0, 10)).isZero();
+
+        // readClient2 reads 3 bytes
+        assertThat(byteBuffer.read(readClient2, result, 0, 3)).isEqualTo(3);
+
+        // now it is possible to write, but just 3 bytes !
+        assertThat(byteBuffer.write(source, 0, 10)).isEqualTo(3);
+        assertThat(byteBuffer.write((byte) 1)).isFalse();
+    }
+
+    private static Stream<WaitStrategy> waitStrategies() {
+        return Stream.of(WaitStrategy.busySpin(), WaitStrategy.yielding(), WaitStrategy.parking(10000), WaitStrategy.blocking());
+    }
+
+    @ParameterizedTest
+    @MethodSource("waitStrategies")
+    @Timeout(30)
+    void timedWriteAndRead(WaitStrategy waitStrategy) throws Exception {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer(MINIMAL_CAPACITY, false, waitStrategy);
+        int readClient = byteBuffer.newReadClient();
+
+        byte[] result = new byte[100];
+
+        // nothing to read: the timeout elapses
+        assertThat(byteBuffer.read(readClient, result, 0, result.length, 10, TimeUnit.MILLISECONDS)).isZero();
+
+        // buffer too small: only a part is written before the timeout elapses
+        byte[] source = new byte[MINIMAL_CAPACITY * 20];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) (i % 251);
+        }
+        assertThat(byteBuffer.write(source, 0, source.length, 10, TimeUnit.MILLISECONDS)).isEqualTo(MINIMAL_CAPACITY);
+
+        // the writer waits for the reader, in another thread
+        CompletableFuture<Integer> writer = CompletableFuture.supplyAsync(() -> {
+            try {
+                return byteBuffer.write(source, MINIMAL_CAPACITY, source.length - MINIMAL_CAPACITY, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        });
+
+        ByteArrayOutputStream readBytes = new ByteArrayOutputStream();
+        while (readBytes.size() < source.length) {
+            int n = byteBuffer.read(readClient, result, 0, result.length, 10, TimeUnit.SECONDS);
+            assertThat(n).isPositive();
+            readBytes.write(result, 0, n);
+        }
+        assertThat(writer.get()).isEqualTo(source.length - MINIMAL_CAPACITY);
+        assertThat(readBytes.toByteArray()).isEqualTo(source);
+    }
+
+    @Test
+    void writesWithoutReadClient() {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer(1);
+
+        // no reader: the writer is never held back, the bytes are lost
+        byte[] source = new byte[MINIMAL_CAPACITY];
+        for (int i = 0; i < 3; i++) {
+            assertThat(byteBuffer.write(source, 0, source.length)).isEqualTo(MINIMAL_CAPACITY);
+        }
+
+        // a new reader only gets the future writes
+        int readClient = byteBuffer.newReadClient();
+        assertThat(byteBuffer.available(readClient)).isZero();
+        assertThat(byteBuffer.write((byte) 7)).isTrue();
+        assertThat(byteBuffer.read(readClient)).isEqualTo(7);
+    }
+
+    @Test
+    void removedReadClient() {
+
+        ByteRingBuffer byteBuffer = new ByteRingBuffer(1);
+        int readClient1 = byteBuffer.newReadClient();
+        int readClient2 = byteBuffer.newReadClient();
+
+        byte[] source = new byte[MINIMAL_CAPACITY];
+        byte[] result = new byte[MINIMAL_CAPACITY];
+        assertThat(byteBuffer.write(source, 0, source.length)).isEqualTo(MINIMAL_CAPACITY);
+        assertThat(byteBuffer.read(readClient1, result, 0, result.length)).isEqualTo(MINIMAL_CAPACITY);
+
+        // readClient2 has not read anything, it holds back the writer until it is removed
+        assertThat(byteBuffer.write(source, 0, source.length)).isZero();
+        byteBuffer.removeReadClient(readClient2);
+        assertThat(byteBuffer.write(source, 0, source.length)).isEqualTo(MINIMAL_CAPACITY);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> byteBuffer.read(readClient2));
+
+        // the id of the removed reader is reused
+        assertThat(byteBuffer.newReadClient()).isEqualTo(readClient2);
+    }
+}
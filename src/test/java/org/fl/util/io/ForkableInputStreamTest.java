@@ -1,13 +1,22 @@
 package org.fl.util.io;
 
+import org.fl.util.io.ForkableInputStream.ForkMetrics;
+import org.fl.util.io.ForkableInputStream.LaggingForkPolicy;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.*;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -233,6 +242,263 @@ public class ForkableInputStreamTest {
         }
     }
 
+    @Test
+    void mixSingleByteAndArrayReads() throws IOException {
+
+        String source = generateRandomAlphaNumericString(5000);
+        InputStream in = stringToInputStream(source);
+
+        try (ForkableInputStream forkableInputStream = new ForkableInputStream(in, logger)) {
+
+            ByteArrayOutputStream forkedOutputStream1 = new ByteArrayOutputStream();
+            assertThat(forkableInputStream.addForkedOutputStream(forkedOutputStream1)).isTrue();
+            ByteArrayOutputStream forkedOutputStream2 = new ByteArrayOutputStream();
+            assertThat(forkableInputStream.addForkedOutputStream(forkedOutputStream2)).isTrue();
+
+            ByteArrayOutputStream readBytes = new ByteArrayOutputStream();
+            byte[] tab = new byte[700];
+            boolean endOfStream = false;
+            while (! endOfStream) {
+                // a few bytes one by one, then a block
+                for (int i = 0; i < 3 && ! endOfStream; i++) {
+                    int c = forkableInputStream.read();
+                    if (c == -1) {
+                        endOfStream = true;
+                    } else {
+                        readBytes.write(c);
+                    }
+                }
+                if (! endOfStream) {
+                    int length = forkableInputStream.read(tab, 0, tab.length);
+                    if (length == -1) {
+                        endOfStream = true;
+                    } else {
+                        readBytes.write(tab, 0, length);
+                    }
+                }
+            }
+
+            assertThat(readBytes.toString(StandardCharsets.UTF_8)).isEqualTo(source);
+            assertThat(forkedOutputStream1.toString()).isEqualTo(source);
+            assertThat(forkedOutputStream2.toString()).isEqualTo(source);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("sourcesAndBufferCapacities")
+    @Timeout(60)
+    void asynchronousForks(String source, int bufferCapacity, boolean forceCapacity, InputStream sourceInputStream, Function<InputStream, String> streamToString) throws IOException {
+
+        ForkableInputStream forkableInputStream = new ForkableInputStream(sourceInputStream, logger);
+
+        // One synchronous fork, and one slow asynchronous fork per policy that never loses bytes
+        ByteArrayOutputStream forkedOutputStream1 = new ByteArrayOutputStream();
+        assertThat(forkableInputStream.addForkedOutputStream(forkedOutputStream1)).isTrue();
+        SlowOutputStream forkedOutputStream2 = new SlowOutputStream();
+        assertThat(forkableInputStream.addAsynchronousForkedOutputStream(forkedOutputStream2, 512, LaggingForkPolicy.BLOCK)).isTrue();
+        SlowOutputStream forkedOutputStream3 = new SlowOutputStream();
+        assertThat(forkableInputStream.addAsynchronousForkedOutputStream(forkedOutputStream3, 512, LaggingForkPolicy.SPILL)).isTrue();
+
+        String readSource = streamToString.apply(forkableInputStream);
+        forkableInputStream.close();
+
+        assertThat(readSource)
+            .isEqualTo(source)
+            .isEqualTo(forkedOutputStream1.toString())
+            .isEqualTo(forkedOutputStream2.toString())
+            .isEqualTo(forkedOutputStream3.toString());
+
+        List<ForkMetrics> forkMetrics = forkableInputStream.getForkMetrics();
+        assertThat(forkMetrics).hasSize(3);
+        assertThat(forkMetrics.get(0).isAsynchronous()).isFalse();
+        for (ForkMetrics metrics : forkMetrics) {
+            assertThat(metrics.getNbBytesWritten()).isEqualTo(source.length());
+            assertThat(metrics.getLag()).isZero();
+            assertThat(metrics.isDropped()).isFalse();
+        }
+        assertThat(forkMetrics.get(1).isAsynchronous()).isTrue();
+        assertThat(forkMetrics.get(1).getNbBytesSpilled()).isZero();
+        assertThat(forkMetrics.get(2).getMaxLag()).isLessThanOrEqualTo(source.length());
+    }
+
+    @Test
+    @Timeout(60)
+    void asynchronousForkDropped() throws IOException {
+
+        String source = generateRandomAlphaNumericString(16000);
+        ForkableInputStream forkableInputStream = new ForkableInputStream(stringToInputStream(source), logger);
+
+        // This fork does not write anything until the source has been fully read
+        CountDownLatch sourceRead = new CountDownLatch(1);
+        ByteArrayOutputStream blockedOutputStream = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                try {
+                    sourceRead.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(b, off, len);
+            }
+        };
+        assertThat(forkableInputStream.addAsynchronousForkedOutputStream(blockedOutputStream, 512, LaggingForkPolicy.DROP)).isTrue();
+
+        String readSource = inputStreamToString(forkableInputStream);
+        assertThat(readSource).isEqualTo(source);
+
+        ForkMetrics metrics = forkableInputStream.getForkMetrics().get(0);
+        assertThat(metrics.isDropped()).isTrue();
+
+        sourceRead.countDown();
+        forkableInputStream.close();
+        assertThat(blockedOutputStream.size()).isLessThan(source.length());
+    }
+
+    @Test
+    @Timeout(60)
+    void asynchronousForkSpilled() throws IOException {
+
+        String source = generateRandomAlphaNumericString(16000);
+        ForkableInputStream forkableInputStream = new ForkableInputStream(stringToInputStream(source), logger);
+
+        SlowOutputStream forkedOutputStream = new SlowOutputStream();
+        assertThat(forkableInputStream.addAsynchronousForkedOutputStream(forkedOutputStream, 512, LaggingForkPolicy.SPILL)).isTrue();
+
+        String readSource = inputStreamToString(forkableInputStream);
+        forkableInputStream.close();
+
+        assertThat(readSource).isEqualTo(source).isEqualTo(forkedOutputStream.toString());
+        ForkMetrics metrics = forkableInputStream.getForkMetrics().get(0);
+        assertThat(metrics.getNbBytesSpilled()).isPositive();
+        assertThat(metrics.getMaxLag()).isGreaterThan(512);
+    }
+
+    @Test
+    @Timeout(120)
+    void asynchronousForkSpilledKeepsByteOrder() throws IOException {
+
+        Random random = new Random();
+        for (int run = 0; run < 20; run++) {
+            String source = generateRandomAlphaNumericString(64000);
+            ForkableInputStream forkableInputStream = new ForkableInputStream(stringToInputStream(source), logger);
+
+            // The fork is irregularly slow, so that the reads of the source partially fit in the lag buffer
+            ByteArrayOutputStream irregularOutputStream = new ByteArrayOutputStream() {
+                @Override
+                public synchronized void write(byte[] b, int off, int len) {
+                    if (random.nextInt(4) == 0) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    super.write(b, off, len);
+                }
+            };
+            assertThat(forkableInputStream.addAsynchronousForkedOutputStream(irregularOutputStream, 512, LaggingForkPolicy.SPILL)).isTrue();
+
+            ByteArrayOutputStream readBytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[700];
+            int n;
+            while ((n = forkableInputStream.read(chunk, 0, 100 + random.nextInt(600))) > 0) {
+                readBytes.write(chunk, 0, n);
+                if (random.nextInt(8) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+            forkableInputStream.close();
+
+            assertThat(readBytes.toString(StandardCharsets.UTF_8)).isEqualTo(source);
+            assertThat(irregularOutputStream.toString(StandardCharsets.UTF_8)).isEqualTo(source);
+        }
+    }
+
+    @Test
+    void manyForksAndRemovedFork() throws IOException {
+
+        String source = generateRandomAlphaNumericString(20000);
+        int nbForks = 12;
+        ForkableInputStream forkableInputStream = new ForkableInputStream(stringToInputStream(source), logger);
+
+        ByteArrayOutputStream[] forkedOutputStreams = new ByteArrayOutputStream[nbForks];
+        for (int f = 0; f < nbForks; f++) {
+            forkedOutputStreams[f] = new ByteArrayOutputStream();
+            assertThat(forkableInputStream.addForkedOutputStream(forkedOutputStreams[f])).isTrue();
+        }
+
+        // Read the first part one byte at a time, then remove the first fork
+        int firstPartLength = 1000;
+        for (int i = 0; i < firstPartLength; i++) {
+            assertThat(forkableInputStream.read()).isEqualTo(source.charAt(i));
+        }
+        assertThat(forkableInputStream.removeForkedOutputStream(forkedOutputStreams[0])).isTrue();
+        assertThat(forkableInputStream.removeForkedOutputStream(forkedOutputStreams[0])).isFalse();
+
+        String remaining = inputStreamToString(forkableInputStream);
+        forkableInputStream.close();
+
+        assertThat(remaining).isEqualTo(source.substring(firstPartLength));
+        assertThat(forkedOutputStreams[0].toString()).isEqualTo(source.substring(0, firstPartLength));
+        for (int f = 1; f < nbForks; f++) {
+            assertThat(forkedOutputStreams[f].toString()).isEqualTo(source);
+        }
+        assertThat(forkableInputStream.getForkMetrics()).hasSize(nbForks - 1);
+    }
+
+    @Test
+    void channelForksOfFileSource(@TempDir Path tempDir) throws IOException {
+
+        String source = generateRandomAlphaNumericString(3000000);
+        Path sourceFile = tempDir.resolve("source.txt");
+        Files.writeString(sourceFile, source, StandardCharsets.UTF_8);
+        Path forkFile = tempDir.resolve("fork.txt");
+
+        ByteArrayOutputStream forkedChannelTarget = new ByteArrayOutputStream();
+        ByteArrayOutputStream forkedOutputStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream readBytes = new ByteArrayOutputStream();
+        int firstPartLength = 1000;
+        int nbSkipped = 500;
+
+        try (ForkableInputStream forkableInputStream = new ForkableInputStream(new FileInputStream(sourceFile.toFile()), logger)) {
+
+            assertThat(forkableInputStream.addForkedOutputStream(new FileOutputStream(forkFile.toFile()))).isTrue();
+            assertThat(forkableInputStream.addForkedChannel(Channels.newChannel(forkedChannelTarget))).isTrue();
+            assertThat(forkableInputStream.addForkedOutputStream(forkedOutputStream)).isTrue();
+
+            // one byte at a time, then skip, then by blocks
+            for (int i = 0; i < firstPartLength; i++) {
+                readBytes.write(forkableInputStream.read());
+            }
+            assertThat(forkableInputStream.skip(nbSkipped)).isEqualTo(nbSkipped);
+            byte[] tab = new byte[100000];
+            int n;
+            while ((n = forkableInputStream.read(tab)) != -1) {
+                readBytes.write(tab, 0, n);
+            }
+        }
+
+        String expectedResult = source.substring(0, firstPartLength) + source.substring(firstPartLength + nbSkipped);
+        assertThat(readBytes.toString(StandardCharsets.UTF_8)).isEqualTo(expectedResult);
+        assertThat(Files.readString(forkFile, StandardCharsets.UTF_8)).isEqualTo(expectedResult);
+        assertThat(forkedChannelTarget.toString(StandardCharsets.UTF_8)).isEqualTo(expectedResult);
+        assertThat(forkedOutputStream.toString(StandardCharsets.UTF_8)).isEqualTo(expectedResult);
+    }
+
+    // An output stream that takes 1 millisecond per write
+    private static class SlowOutputStream extends ByteArrayOutputStream {
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.write(b, off, len);
+        }
+    }
+
     private static InputStream stringToInputStream(String s) {
         return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
     }
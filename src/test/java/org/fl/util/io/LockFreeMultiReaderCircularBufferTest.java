@@ -0,0 +1,233 @@
+package org.fl.util.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.fl.util.io.LockFreeMultiReaderCircularBuffer.MAX_READ_CLIENTS;
+import static org.fl.util.io.LockFreeMultiReaderCircularBuffer.MINIMAL_CAPACITY;
+
+public class LockFreeMultiReaderCircularBufferTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {4096, 0, -1, Integer.MAX_VALUE})
+    void regularTest(int capacity) {
+
+
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer;
+        if (capacity == -1) {
+            // test with default constructor
+            integerBuffer = new LockFreeMultiReaderCircularBuffer<>();
+        } else {
+            integerBuffer = new LockFreeMultiReaderCircularBuffer<>(capacity);
+        }
+
+        int readClient1 = integerBuffer.newReadClient();
+        int readClient2 = integerBuffer.newReadClient();
+
+        assertThat(integerBuffer.read(readClient1)).isNull();
+        assertThat(integerBuffer.read(readClient2)).isNull();
+
+        int value = 22;
+        assertThat(integerBuffer.write(22)).isTrue();
+
+        assertThat(integerBuffer.read(readClient1)).isEqualTo(value);
+        assertThat(integerBuffer.read(readClient1)).isNull();
+
+        assertThat(integerBuffer.read(readClient2)).isEqualTo(value);
+        assertThat(integerBuffer.read(readClient2)).isNull();
+
+        int nbWrites = 440;
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(integerBuffer.write(i)).isTrue();
+            assertThat(integerBuffer.available(readClient1)).isEqualTo(integerBuffer.available(readClient2)).isEqualTo(i+1);
+        }
+
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(integerBuffer.read(readClient1)).isEqualTo(i);
+            assertThat(integerBuffer.available(readClient1)).isEqualTo(nbWrites - i - 1);
+        }
+        assertThat(integerBuffer.read(readClient1)).isNull();
+
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(integerBuffer.read(readClient2)).isEqualTo(i);
+        }
+        assertThat(integerBuffer.read(readClient2)).isNull();
+
+        int nbWrites2 = 444;
+        for (int i = 0; i < nbWrites2; i++) {
+            assertThat(integerBuffer.write(i)).isTrue();
+            assertThat(integerBuffer.read(readClient2)).isEqualTo(i);
+            if (i % 2 == 0) {
+                assertThat(integerBuffer.read(readClient1)).isEqualTo(i/2);
+            }
+        }
+        assertThat(integerBuffer.read(readClient2)).isNull();
+
+        for (int i = nbWrites2/2; i < nbWrites2; i++) {
+            assertThat(integerBuffer.read(readClient1)).isEqualTo(i);
+        }
+        assertThat(integerBuffer.read(readClient1)).isNull();
+    }
+
+    @Test
+    void invalidClientId() {
+
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer = new LockFreeMultiReaderCircularBuffer<>();
+        assertThatIllegalArgumentException().isThrownBy(() -> integerBuffer.read(0));
+
+        assertThatIllegalArgumentException().isThrownBy(() -> integerBuffer.read(-1));
+    }
+
+    @Test
+    void readClientCreationAfterFirstWrite() {
+
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer = new LockFreeMultiReaderCircularBuffer<>();
+        int nbWrites = 44;
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(integerBuffer.write(i)).isTrue();
+        }
+
+        int readClient = integerBuffer.newReadClient();
+
+        // only the future writes are available
+        assertThat(integerBuffer.available(readClient)).isZero();
+        assertThat(integerBuffer.read(readClient)).isNull();
+
+        assertThat(integerBuffer.write(11)).isTrue();
+        assertThat(integerBuffer.read(readClient)).isEqualTo(11);
+    }
+
+    @Test
+    void maximalNumberOfClient() {
+
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer = new LockFreeMultiReaderCircularBuffer<>();
+
+        int clientId;
+        int numberOfClient = -1;
+        do {
+            clientId = integerBuffer.newReadClient();
+            numberOfClient++;
+        } while (clientId != -1);
+        assertThat(numberOfClient).isEqualTo(MAX_READ_CLIENTS);
+    }
+
+    @Test
+    void bufferFull() {
+
+        // Size of the buffer will be the minimal size
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer = new LockFreeMultiReaderCircularBuffer<>(1);
+        int readClient1 = integerBuffer.newReadClient();
+        int readClient2 = integerBuffer.newReadClient();
+
+        int i = 0;
+        boolean success;
+        do {
+            success = integerBuffer.write(i++);
+        } while (success);
+        // Buffer is now full
+
+        Integer result = -1;
+        int lastValidResult = -1;
+        while (result != null) {
+            lastValidResult = result;
+           result = integerBuffer.read(readClient1);
+        }
+        assertThat(lastValidResult).isEqualTo(MINIMAL_CAPACITY - 1);
+
+        // Still not possible to write (readClient2 has not read anything)
+        assertThat(integerBuffer.write(144)).isFalse();
+
+        // readClient2 reads the first byte written (0)
+        assertThat( integerBuffer.read(readClient2)).isZero();
+
+        // now it is possible to write
+        assertThat(integerBuffer.write(145)).isTrue();
+
+        // but just one byte !
+        assertThat(integerBuffer.write(146)).isFalse();
+    }
+
+    @Test
+    @Timeout(60)
+    void concurrentWriterAndReaders() throws Exception {
+
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer = new LockFreeMultiReaderCircularBuffer<>(MINIMAL_CAPACITY);
+        int nbReaders = 3;
+        int nbWrites = 200000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbReaders + 1);
+        try {
+            List<Future<Long>> readersResults = new ArrayList<>();
+            for (int r = 0; r < nbReaders; r++) {
+                int readClient = integerBuffer.newReadClient();
+                Callable<Long> reader = () -> {
+                    long sum = 0;
+                    int expected = 0;
+                    while (expected < nbWrites) {
+                        Integer value = integerBuffer.read(readClient);
+                        if (value == null) {
+                            Thread.onSpinWait();
+                        } else {
+                            // elements are read in the order of the writes
+                            assertThat(value).isEqualTo(expected);
+                            expected++;
+                            sum = sum + value;
+                        }
+                    }
+                    return sum;
+                };
+                readersResults.add(executor.submit(reader));
+            }
+
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < nbWrites; i++) {
+                    while (! integerBuffer.write(i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+
+            writer.get();
+            long expectedSum = ((long) nbWrites * (nbWrites - 1)) / 2;
+            for (Future<Long> readerResult : readersResults) {
+                assertThat(readerResult.get()).isEqualTo(expectedSum);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void removedReadClient() {
+
+        LockFreeMultiReaderCircularBuffer<Integer> integerBuffer = new LockFreeMultiReaderCircularBuffer<>(1);
+        int readClient1 = integerBuffer.newReadClient();
+        int readClient2 = integerBuffer.newReadClient();
+
+        int i = 0;
+        while (integerBuffer.write(i)) {
+            i++;
+        }
+        for (int j = 0; j < MINIMAL_CAPACITY; j++) {
+            assertThat(integerBuffer.read(readClient1)).isEqualTo(j);
+        }
+
+        // readClient2 has not read anything, it holds back the writer until it is removed
+        assertThat(integerBuffer.write(i)).isFalse();
+        integerBuffer.removeReadClient(readClient2);
+        assertThat(integerBuffer.write(i)).isTrue();
+        assertThat(integerBuffer.read(readClient1)).isEqualTo(i);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> integerBuffer.read(readClient2));
+    }
+}
@@ -0,0 +1,104 @@
+package org.fl.util.io;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Compare the synchronized MultiReaderCircularBuffer with the LockFreeMultiReaderCircularBuffer
+// One writer thread and 2 reader threads, each one with its own read client
+// Not a unit test: run the main method (from the test classpath) to get the results
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiReaderCircularBufferBenchmark {
+
+	@State(Scope.Group)
+	public static class SynchronizedBuffer {
+
+		final MultiReaderCircularBuffer<Integer> buffer = new MultiReaderCircularBuffer<>();
+		final Integer value = 42;
+	}
+
+	@State(Scope.Group)
+	public static class LockFreeBuffer {
+
+		final LockFreeMultiReaderCircularBuffer<Integer> buffer = new LockFreeMultiReaderCircularBuffer<>();
+		final Integer value = 42;
+	}
+
+	@State(Scope.Thread)
+	public static class SynchronizedReader {
+
+		int clientId;
+
+		@Setup
+		public void setup(SynchronizedBuffer synchronizedBuffer) {
+			clientId = synchronizedBuffer.buffer.newReadClient();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class LockFreeReader {
+
+		int clientId;
+
+		@Setup
+		public void setup(LockFreeBuffer lockFreeBuffer) {
+			clientId = lockFreeBuffer.buffer.newReadClient();
+		}
+	}
+
+	@Benchmark
+	@Group("synchronizedBuffer")
+	@GroupThreads(1)
+	public boolean synchronizedWrite(SynchronizedBuffer synchronizedBuffer) {
+		return synchronizedBuffer.buffer.write(synchronizedBuffer.value);
+	}
+
+	@Benchmark
+	@Group("synchronizedBuffer")
+	@GroupThreads(2)
+	public void synchronizedRead(SynchronizedBuffer synchronizedBuffer, SynchronizedReader reader, Blackhole blackhole) {
+		blackhole.consume(synchronizedBuffer.buffer.read(reader.clientId));
+	}
+
+	@Benchmark
+	@Group("lockFreeBuffer")
+	@GroupThreads(1)
+	public boolean lockFreeWrite(LockFreeBuffer lockFreeBuffer) {
+		return lockFreeBuffer.buffer.write(lockFreeBuffer.value);
+	}
+
+	@Benchmark
+	@Group("lockFreeBuffer")
+	@GroupThreads(2)
+	public void lockFreeRead(LockFreeBuffer lockFreeBuffer, LockFreeReader reader, Blackhole blackhole) {
+		blackhole.consume(lockFreeBuffer.buffer.read(reader.clientId));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options options = new OptionsBuilder()
+				.include(MultiReaderCircularBufferBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -1,9 +1,15 @@
 package org.fl.util.io;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.Assertions.*;
 import static org.fl.util.io.MultiReaderCircularBuffer.MAX_READ_CLIENTS;
 import static org.fl.util.io.MultiReaderCircularBuffer.MINIMAL_CAPACITY;
@@ -150,4 +156,124 @@ public class MultiReaderCircularBufferTest {
         // but just one byte !
         assertThat(integerBuffer.write(146)).isFalse();
     }
+
+    private static Stream<WaitStrategy> waitStrategies() {
+        return Stream.of(WaitStrategy.busySpin(), WaitStrategy.yielding(), WaitStrategy.parking(10000), WaitStrategy.blocking());
+    }
+
+    @ParameterizedTest
+    @MethodSource("waitStrategies")
+    @Timeout(30)
+    void timedWriteAndRead(WaitStrategy waitStrategy) throws Exception {
+
+        MultiReaderCircularBuffer<Integer> integerBuffer = new MultiReaderCircularBuffer<>(1, waitStrategy);
+        int readClient = integerBuffer.newReadClient();
+
+        // nothing to read: the timeout elapses
+        assertThat(integerBuffer.read(readClient, 10, TimeUnit.MILLISECONDS)).isNull();
+
+        // fill the buffer
+        for (int i = 0; i < MINIMAL_CAPACITY; i++) {
+            assertThat(integerBuffer.write(i, 10, TimeUnit.MILLISECONDS)).isTrue();
+        }
+        // buffer full: the timeout elapses
+        assertThat(integerBuffer.write(-1, 10, TimeUnit.MILLISECONDS)).isFalse();
+
+        // the writer waits for the reader, in another thread
+        int nbWrites = 10 * MINIMAL_CAPACITY;
+        CompletableFuture<Boolean> writer = CompletableFuture.supplyAsync(() -> {
+            try {
+                for (int i = MINIMAL_CAPACITY; i < nbWrites; i++) {
+                    if (! integerBuffer.write(i, 10, TimeUnit.SECONDS)) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+
+        for (int i = 0; i < nbWrites; i++) {
+            assertThat(integerBuffer.read(readClient, 10, TimeUnit.SECONDS)).isEqualTo(i);
+        }
+        assertThat(writer.get()).isTrue();
+        assertThat(integerBuffer.read(readClient)).isNull();
+    }
+
+    @Test
+    void writesWithoutReadClient() {
+
+        MultiReaderCircularBuffer<Integer> integerBuffer = new MultiReaderCircularBuffer<>(1);
+
+        // no reader: the writer is never held back, the elements are lost
+        for (int i = 0; i < 3 * MINIMAL_CAPACITY; i++) {
+            assertThat(integerBuffer.write(i)).isTrue();
+        }
+
+        // a new reader gets the last element written and the following ones
+        int readClient = integerBuffer.newReadClient();
+        assertThat(integerBuffer.read(readClient)).isEqualTo(3 * MINIMAL_CAPACITY - 1);
+        assertThat(integerBuffer.read(readClient)).isNull();
+        assertThat(integerBuffer.write(-1)).isTrue();
+        assertThat(integerBuffer.read(readClient)).isEqualTo(-1);
+
+        // same once all the readers are removed
+        integerBuffer.removeReadClient(readClient);
+        for (int i = 0; i < 3 * MINIMAL_CAPACITY; i++) {
+            assertThat(integerBuffer.write(i)).isTrue();
+        }
+    }
+
+    @Test
+    void removedReadClient() {
+
+        MultiReaderCircularBuffer<Integer> integerBuffer = new MultiReaderCircularBuffer<>(1);
+        int readClient1 = integerBuffer.newReadClient();
+        int readClient2 = integerBuffer.newReadClient();
+
+        int i = 0;
+        while (integerBuffer.write(i)) {
+            i++;
+        }
+        assertThat(i).isEqualTo(MINIMAL_CAPACITY);
+        for (int j = 0; j < MINIMAL_CAPACITY; j++) {
+            assertThat(integerBuffer.read(readClient1)).isEqualTo(j);
+        }
+
+        // readClient2 has not read anything, it holds back the writer until it is removed
+        assertThat(integerBuffer.write(i)).isFalse();
+        integerBuffer.removeReadClient(readClient2);
+        assertThat(integerBuffer.write(i)).isTrue();
+        assertThat(integerBuffer.read(readClient1)).isEqualTo(i);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> integerBuffer.read(readClient2));
+        assertThatIllegalArgumentException().isThrownBy(() -> integerBuffer.removeReadClient(readClient2));
+
+        // the id of the removed reader is reused
+        assertThat(integerBuffer.newReadClient()).isEqualTo(readClient2);
+    }
+
+    @Test
+    void manyReadClients() {
+
+        MultiReaderCircularBuffer<Integer> integerBuffer = new MultiReaderCircularBuffer<>();
+        int nbReaders = 20;
+        int[] readClients = new int[nbReaders];
+        for (int r = 0; r < nbReaders; r++) {
+            readClients[r] = integerBuffer.newReadClient();
+            assertThat(readClients[r]).isEqualTo(r);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(integerBuffer.write(i)).isTrue();
+        }
+        for (int r = 0; r < nbReaders; r++) {
+            for (int i = 0; i < 100; i++) {
+                assertThat(integerBuffer.read(readClients[r])).isEqualTo(i);
+            }
+            assertThat(integerBuffer.read(readClients[r])).isNull();
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package org.fl.util.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ParallelGzipOutputStreamTest {
+
+    private static byte[] testData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ((i % 97) + (i / 1000));
+        }
+        return data;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1,1024,0", "1,1024,100", "4,1024,100000", "4,100000,100000", "3,7,5000"})
+    void compressedByBlocks(int nbThreads, int blockSize, int dataLength) throws IOException {
+
+        byte[] data = testData(dataLength);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, nbThreads, blockSize)) {
+            // writes of various sizes, crossing the block boundaries
+            int pos = 0;
+            int chunk = 1;
+            while (pos < data.length) {
+                int n = Math.min(chunk, data.length - pos);
+                if (n == 1) {
+                    gzip.write(data[pos]);
+                } else {
+                    gzip.write(data, pos, n);
+                }
+                pos += n;
+                chunk = (chunk * 3) % 4099 + 1;
+            }
+        }
+        // GZIPInputStream reads the concatenated members
+        assertThat(gunzip(compressed.toByteArray())).isEqualTo(data);
+    }
+
+    @Test
+    void flushEndsMember() throws IOException {
+
+        byte[] data = testData(50000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, 2, 4096);
+        gzip.write(data, 0, 30000);
+        gzip.flush();
+        byte[] firstPart = compressed.toByteArray();
+
+        // the stream is at a member boundary after a flush: the content flushed is a complete gzip stream
+        assertThat(gunzip(firstPart)).isEqualTo(Arrays.copyOf(data, 30000));
+
+        gzip.write(data, 30000, 20000);
+        gzip.close();
+        assertThat(gunzip(compressed.toByteArray())).isEqualTo(data);
+
+        assertThatIOException().isThrownBy(() -> gzip.write(1));
+        // close may be called several times
+        gzip.close();
+    }
+
+    @Test
+    void invalidArguments() {
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        assertThatIllegalArgumentException().isThrownBy(() -> new ParallelGzipOutputStream(compressed, 0));
+        assertThatIllegalArgumentException().isThrownBy(() -> new ParallelGzipOutputStream(compressed, 2, 0));
+    }
+}